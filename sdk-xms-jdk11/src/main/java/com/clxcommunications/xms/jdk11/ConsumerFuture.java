@@ -0,0 +1,394 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms.jdk11;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.net.http.HttpResponse.ResponseInfo;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.impl.EnglishReasonPhraseCatalog;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.protocol.HttpAsyncResponseConsumer;
+import org.apache.http.protocol.HttpCoreContext;
+
+/**
+ * A future that drives a {@link HttpAsyncResponseConsumer} from the body of a
+ * JDK HTTP client response and completes with the consumer's result.
+ * 
+ * @param <T>
+ *            the result type
+ */
+final class ConsumerFuture<T> extends BasicFuture<T> {
+
+	/**
+	 * HTTP/2 as an Apache protocol version.
+	 */
+	private static final ProtocolVersion HTTP_2 =
+	        new ProtocolVersion("HTTP", 2, 0);
+
+	private final HttpAsyncResponseConsumer<T> consumer;
+
+	private final HttpCoreContext context;
+
+	private volatile CompletableFuture<?> exchange;
+
+	ConsumerFuture(HttpUriRequest request,
+	        HttpAsyncResponseConsumer<T> consumer, FutureCallback<T> callback) {
+		super(callback);
+
+		this.consumer = consumer;
+		this.context = HttpCoreContext.create();
+		this.context.setAttribute(HttpCoreContext.HTTP_REQUEST, request);
+	}
+
+	/**
+	 * Registers the underlying exchange, which is cancelled if this future is
+	 * cancelled.
+	 * 
+	 * @param exchange
+	 *            the underlying exchange
+	 */
+	void exchange(CompletableFuture<?> exchange) {
+		this.exchange = exchange;
+
+		if (isCancelled()) {
+			exchange.cancel(true);
+		}
+	}
+
+	/**
+	 * Creates the body subscriber of a response. This delivers the status
+	 * line and headers to the consumer.
+	 * 
+	 * @param info
+	 *            the response status and headers
+	 * @return a body subscriber feeding the consumer
+	 */
+	BodySubscriber<Void> subscriber(ResponseInfo info) {
+		BasicHttpResponse response = new BasicHttpResponse(
+		        protocolVersion(info.version()), info.statusCode(),
+		        EnglishReasonPhraseCatalog.INSTANCE
+		                .getReason(info.statusCode(), Locale.ENGLISH));
+
+		for (Map.Entry<String, List<String>> header : info.headers().map()
+		        .entrySet()) {
+			for (String value : header.getValue()) {
+				response.addHeader(header.getKey(), value);
+			}
+		}
+
+		if (hasBody(info.statusCode())) {
+			BasicHttpEntity entity = new BasicHttpEntity();
+			entity.setContentLength(
+			        info.headers().firstValueAsLong("content-length")
+			                .orElse(-1));
+			entity.setContentType(response.getFirstHeader("Content-Type"));
+			entity.setContentEncoding(
+			        response.getFirstHeader("Content-Encoding"));
+			response.setEntity(entity);
+		}
+
+		context.setAttribute(HttpCoreContext.HTTP_RESPONSE, response);
+
+		try {
+			consumer.responseReceived(response);
+		} catch (Exception e) {
+			fail(e);
+		}
+
+		return new Subscriber();
+	}
+
+	/**
+	 * Fails this future and the consumer, unless already done.
+	 * 
+	 * @param t
+	 *            the cause of failure
+	 */
+	void fail(Throwable t) {
+		if (isDone()) {
+			return;
+		}
+
+		if (t instanceof CompletionException && t.getCause() != null) {
+			t = t.getCause();
+		}
+
+		Exception e = (t instanceof Exception)
+		        ? (Exception) t
+		        : new IOException(t);
+
+		consumer.failed(e);
+		JdkHttpTransport.closeQuietly(consumer);
+		failed(e);
+	}
+
+	/**
+	 * Completes this future using the result of the consumer.
+	 */
+	private void complete() {
+		consumer.responseCompleted(context);
+
+		Exception e = consumer.getException();
+		T result = consumer.getResult();
+
+		JdkHttpTransport.closeQuietly(consumer);
+
+		if (e != null) {
+			failed(e);
+		} else {
+			completed(result);
+		}
+	}
+
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		boolean cancelled = super.cancel(mayInterruptIfRunning);
+
+		if (cancelled) {
+			consumer.cancel();
+			JdkHttpTransport.closeQuietly(consumer);
+
+			CompletableFuture<?> ex = exchange;
+			if (ex != null) {
+				ex.cancel(true);
+			}
+		}
+
+		return cancelled;
+	}
+
+	private static ProtocolVersion protocolVersion(HttpClient.Version v) {
+		return v == HttpClient.Version.HTTP_2 ? HTTP_2 : HttpVersion.HTTP_1_1;
+	}
+
+	private static boolean hasBody(int status) {
+		return status >= HttpStatus.SC_OK
+		        && status != HttpStatus.SC_NO_CONTENT
+		        && status != HttpStatus.SC_NOT_MODIFIED;
+	}
+
+	/**
+	 * Subscribes to the response body and feeds each received chunk to the
+	 * consumer. Chunks are requested one at a time, so a slow consumer
+	 * applies back pressure to the connection.
+	 */
+	private final class Subscriber implements BodySubscriber<Void> {
+
+		private final CompletableFuture<Void> body =
+		        new CompletableFuture<Void>();
+
+		private final BufferDecoder decoder = new BufferDecoder();
+
+		private Flow.Subscription subscription;
+
+		@Override
+		public CompletionStage<Void> getBody() {
+			return body;
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+
+			if (isDone()) {
+				subscription.cancel();
+			} else {
+				subscription.request(1);
+			}
+		}
+
+		@Override
+		public void onNext(List<ByteBuffer> buffers) {
+			if (isDone()) {
+				subscription.cancel();
+				return;
+			}
+
+			try {
+				decoder.feed(buffers);
+				feedConsumer();
+				subscription.request(1);
+			} catch (Exception e) {
+				subscription.cancel();
+				fail(e);
+				body.completeExceptionally(e);
+			}
+		}
+
+		@Override
+		public void onError(Throwable t) {
+			fail(t);
+			body.completeExceptionally(t);
+		}
+
+		@Override
+		public void onComplete() {
+			if (!isDone()) {
+				try {
+					decoder.complete();
+					feedConsumer();
+					complete();
+				} catch (Exception e) {
+					fail(e);
+				}
+			}
+
+			body.complete(null);
+		}
+
+		/**
+		 * Lets the consumer read from the decoder until all buffered data has
+		 * been read or the consumer stops reading.
+		 * 
+		 * @throws IOException
+		 *             if the consumer failed to consume the content
+		 */
+		private void feedConsumer() throws IOException {
+			long remaining = decoder.remaining();
+
+			while (remaining > 0 && !consumer.isDone()) {
+				consumer.consumeContent(decoder, NoopIOControl.INSTANCE);
+
+				long after = decoder.remaining();
+				if (after == remaining) {
+					break;
+				}
+
+				remaining = after;
+			}
+		}
+
+	}
+
+	/**
+	 * A content decoder reading from a queue of received buffers.
+	 */
+	private static final class BufferDecoder implements ContentDecoder {
+
+		private final ArrayDeque<ByteBuffer> buffers =
+		        new ArrayDeque<ByteBuffer>();
+
+		private boolean completed;
+
+		void feed(List<ByteBuffer> received) {
+			for (ByteBuffer buffer : received) {
+				if (buffer.hasRemaining()) {
+					buffers.add(buffer);
+				}
+			}
+		}
+
+		void complete() {
+			completed = true;
+		}
+
+		long remaining() {
+			long n = 0;
+			for (ByteBuffer buffer : buffers) {
+				n += buffer.remaining();
+			}
+			return n;
+		}
+
+		@Override
+		public int read(ByteBuffer dst) {
+			if (buffers.isEmpty()) {
+				return completed ? -1 : 0;
+			}
+
+			int n = 0;
+
+			while (dst.hasRemaining() && !buffers.isEmpty()) {
+				ByteBuffer src = buffers.peek();
+
+				if (src.remaining() <= dst.remaining()) {
+					n += src.remaining();
+					dst.put(src);
+					buffers.poll();
+				} else {
+					ByteBuffer slice = src.duplicate();
+					slice.limit(slice.position() + dst.remaining());
+					n += slice.remaining();
+					dst.put(slice);
+					src.position(slice.position());
+				}
+			}
+
+			return n;
+		}
+
+		@Override
+		public boolean isCompleted() {
+			return completed && buffers.isEmpty();
+		}
+
+	}
+
+	/**
+	 * An I/O control that ignores all requests. Flow control is instead
+	 * handled through the body subscription.
+	 */
+	private enum NoopIOControl implements IOControl {
+
+		INSTANCE;
+
+		@Override
+		public void requestInput() {
+		}
+
+		@Override
+		public void suspendInput() {
+		}
+
+		@Override
+		public void requestOutput() {
+		}
+
+		@Override
+		public void suspendOutput() {
+		}
+
+		@Override
+		public void shutdown() {
+		}
+
+	}
+
+}
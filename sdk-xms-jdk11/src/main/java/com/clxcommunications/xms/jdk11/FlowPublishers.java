@@ -0,0 +1,121 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms.jdk11;
+
+import java.util.concurrent.Flow;
+
+import javax.annotation.Nonnull;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import com.clxcommunications.xms.PagedFetcher;
+
+/**
+ * Adapters exposing the SDK's Reactive Streams publishers as
+ * {@link Flow.Publisher} objects of the Java platform.
+ */
+public final class FlowPublishers {
+
+	private FlowPublishers() {
+	}
+
+	/**
+	 * Returns a publisher of all elements across all pages of the given
+	 * fetcher. Pages are fetched only when the subscriber has signaled demand,
+	 * as described in {@link PagedFetcher#publisher()}.
+	 * 
+	 * @param fetcher
+	 *            the page fetcher
+	 * @return a non-null publisher
+	 */
+	@Nonnull
+	public static <T> Flow.Publisher<T> elements(PagedFetcher<T> fetcher) {
+		return toFlow(fetcher.publisher());
+	}
+
+	/**
+	 * Adapts the given Reactive Streams publisher to a {@link Flow.Publisher}.
+	 * 
+	 * @param publisher
+	 *            the publisher to adapt
+	 * @return a non-null publisher
+	 */
+	@Nonnull
+	public static <T> Flow.Publisher<T> toFlow(Publisher<T> publisher) {
+		if (publisher == null) {
+			throw new NullPointerException("publisher");
+		}
+
+		return subscriber -> publisher.subscribe(new SubscriberAdapter<T>(
+		        subscriber));
+	}
+
+	/**
+	 * Forwards Reactive Streams signals to a {@link Flow.Subscriber}.
+	 */
+	private static final class SubscriberAdapter<T> implements Subscriber<T> {
+
+		private final Flow.Subscriber<? super T> subscriber;
+
+		SubscriberAdapter(Flow.Subscriber<? super T> subscriber) {
+			if (subscriber == null) {
+				throw new NullPointerException("subscriber");
+			}
+
+			this.subscriber = subscriber;
+		}
+
+		@Override
+		public void onSubscribe(Subscription s) {
+			subscriber.onSubscribe(new Flow.Subscription() {
+
+				@Override
+				public void request(long n) {
+					s.request(n);
+				}
+
+				@Override
+				public void cancel() {
+					s.cancel();
+				}
+
+			});
+		}
+
+		@Override
+		public void onNext(T t) {
+			subscriber.onNext(t);
+		}
+
+		@Override
+		public void onError(Throwable t) {
+			subscriber.onError(t);
+		}
+
+		@Override
+		public void onComplete() {
+			subscriber.onComplete();
+		}
+
+	}
+
+}
@@ -0,0 +1,265 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms.jdk11;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse.BodyHandler;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nonnull;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.nio.protocol.HttpAsyncResponseConsumer;
+
+import com.clxcommunications.xms.ApiConnection;
+import com.clxcommunications.xms.ApiTransport;
+
+/**
+ * A transport that sends requests using the HTTP client of the Java platform.
+ * By default the client negotiates HTTP/2 when the server supports it, which
+ * allows many concurrent requests to be multiplexed over a small number of
+ * connections.
+ * <p>
+ * Use by giving an instance to the {@link ApiConnection} builder:
+ * 
+ * <pre>
+ * ApiConnection conn = ApiConnection.builder()
+ *         .servicePlanId("my service plan id")
+ *         .token("my token")
+ *         .transport(JdkHttpTransport.of())
+ *         .start();
+ * </pre>
+ * 
+ * Note, a transport may be shared between many API connections.
+ */
+public final class JdkHttpTransport implements ApiTransport {
+
+	/**
+	 * The default limit for the connect and request timeouts.
+	 */
+	private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(30);
+
+	/**
+	 * Headers that are managed by the JDK HTTP client and may not be set
+	 * explicitly.
+	 */
+	private static final Set<String> RESTRICTED_HEADERS = Set.of("connection",
+	        "content-length", "date", "expect", "from", "host", "upgrade",
+	        "via", "warning");
+
+	private final HttpClient client;
+
+	private final Duration requestTimeout;
+
+	private JdkHttpTransport(HttpClient client, Duration requestTimeout) {
+		this.client = client;
+		this.requestTimeout = requestTimeout;
+	}
+
+	/**
+	 * Creates a new transport using a HTTP client that prefers HTTP/2 and
+	 * uses a 30 second connect and request timeout.
+	 * 
+	 * @return a newly constructed transport
+	 */
+	@Nonnull
+	public static JdkHttpTransport of() {
+		HttpClient client = HttpClient.newBuilder()
+		        .version(HttpClient.Version.HTTP_2)
+		        .connectTimeout(DEFAULT_TIMEOUT)
+		        .build();
+
+		return new JdkHttpTransport(client, DEFAULT_TIMEOUT);
+	}
+
+	/**
+	 * Creates a new transport using the given HTTP client. Requests are given
+	 * the given timeout.
+	 * 
+	 * @param client
+	 *            the HTTP client to use
+	 * @param requestTimeout
+	 *            the request timeout
+	 * @return a newly constructed transport
+	 */
+	@Nonnull
+	public static JdkHttpTransport of(HttpClient client,
+	        Duration requestTimeout) {
+		if (client == null) {
+			throw new NullPointerException("client");
+		}
+
+		if (requestTimeout == null) {
+			throw new NullPointerException("requestTimeout");
+		}
+
+		return new JdkHttpTransport(client, requestTimeout);
+	}
+
+	/**
+	 * The HTTP client used by this transport.
+	 * 
+	 * @return a non-null HTTP client
+	 */
+	@Nonnull
+	public HttpClient httpClient() {
+		return client;
+	}
+
+	/**
+	 * Does nothing, the JDK HTTP client does not need to be started.
+	 */
+	@Override
+	public void start() {
+	}
+
+	/**
+	 * Does nothing, the JDK HTTP client releases its resources once it is no
+	 * longer referenced.
+	 */
+	@Override
+	public void close() throws IOException {
+	}
+
+	@Override
+	public <T> Future<T> execute(HttpUriRequest request,
+	        HttpAsyncResponseConsumer<T> consumer,
+	        FutureCallback<T> callback) {
+		final HttpRequest jdkRequest;
+		try {
+			jdkRequest = toJdkRequest(request);
+		} catch (RuntimeException e) {
+			BasicFuture<T> future = new BasicFuture<T>(callback);
+			consumer.failed(e);
+			closeQuietly(consumer);
+			future.failed(e);
+			return future;
+		}
+
+		final ConsumerFuture<T> future =
+		        new ConsumerFuture<T>(request, consumer, callback);
+
+		BodyHandler<Void> handler = future::subscriber;
+
+		CompletableFuture<?> exchange =
+		        client.sendAsync(jdkRequest, handler)
+		                .whenComplete((response, e) -> {
+			                if (e != null) {
+				                future.fail(e);
+			                }
+		                });
+
+		future.exchange(exchange);
+
+		return future;
+	}
+
+	/**
+	 * Converts the given Apache request into a JDK HTTP request.
+	 * 
+	 * @param request
+	 *            the request to convert
+	 * @return a JDK HTTP request
+	 */
+	private HttpRequest toJdkRequest(HttpUriRequest request) {
+		HttpRequest.Builder builder = HttpRequest.newBuilder(request.getURI())
+		        .timeout(requestTimeout);
+
+		for (Header header : request.getAllHeaders()) {
+			String name = header.getName().toLowerCase(Locale.ROOT);
+			if (!RESTRICTED_HEADERS.contains(name)) {
+				builder.header(header.getName(), header.getValue());
+			}
+		}
+
+		BodyPublisher body = BodyPublishers.noBody();
+
+		if (request instanceof HttpEntityEnclosingRequest) {
+			HttpEntity entity =
+			        ((HttpEntityEnclosingRequest) request).getEntity();
+
+			if (entity != null) {
+				if (entity.getContentType() != null) {
+					builder.setHeader(entity.getContentType().getName(),
+					        entity.getContentType().getValue());
+				}
+
+				body = bodyPublisher(entity);
+			}
+		}
+
+		return builder.method(request.getMethod(), body).build();
+	}
+
+	/**
+	 * Returns a body publisher streaming the content of the given entity.
+	 * 
+	 * @param entity
+	 *            the request entity
+	 * @return a body publisher
+	 */
+	private static BodyPublisher bodyPublisher(HttpEntity entity) {
+		BodyPublisher publisher = BodyPublishers.ofInputStream(() -> {
+			try {
+				return entity.getContent();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+
+		long length = entity.getContentLength();
+
+		if (length < 0) {
+			return publisher;
+		} else if (length == 0) {
+			return BodyPublishers.noBody();
+		} else {
+			return BodyPublishers.fromPublisher(publisher, length);
+		}
+	}
+
+	static void closeQuietly(HttpAsyncResponseConsumer<?> consumer) {
+		try {
+			consumer.close();
+		} catch (IOException e) {
+			// Ignore, nothing more can be done.
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "JdkHttpTransport[" + client + "]";
+	}
+
+}
@@ -0,0 +1,129 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms.jdk11;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+import org.junit.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscription;
+
+public class FlowPublishersTest {
+
+	/**
+	 * A Reactive Streams publisher emitting the given elements as demanded.
+	 */
+	private static Publisher<Integer> publisherOf(Integer... elements) {
+		return subscriber -> subscriber.onSubscribe(new Subscription() {
+
+			private int next = 0;
+
+			private boolean cancelled = false;
+
+			@Override
+			public void request(long n) {
+				for (long i = 0; i < n && !cancelled
+				        && next < elements.length; i++) {
+					subscriber.onNext(elements[next++]);
+				}
+
+				if (!cancelled && next == elements.length) {
+					cancelled = true;
+					subscriber.onComplete();
+				}
+			}
+
+			@Override
+			public void cancel() {
+				cancelled = true;
+			}
+
+		});
+	}
+
+	private static class RecordingSubscriber
+	        implements Flow.Subscriber<Integer> {
+
+		Flow.Subscription subscription;
+
+		final List<Integer> elements = new ArrayList<>();
+
+		boolean completed;
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+		}
+
+		@Override
+		public void onNext(Integer item) {
+			elements.add(item);
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			throw new AssertionError("unexpected", throwable);
+		}
+
+		@Override
+		public void onComplete() {
+			completed = true;
+		}
+
+	}
+
+	@Test
+	public void forwardsDemandAndSignals() throws Exception {
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+
+		FlowPublishers.toFlow(publisherOf(1, 2, 3)).subscribe(subscriber);
+
+		subscriber.subscription.request(2);
+
+		assertThat(subscriber.elements, is(Arrays.asList(1, 2)));
+		assertThat(subscriber.completed, is(false));
+
+		subscriber.subscription.request(1);
+
+		assertThat(subscriber.elements, is(Arrays.asList(1, 2, 3)));
+		assertThat(subscriber.completed, is(true));
+	}
+
+	@Test
+	public void forwardsCancel() throws Exception {
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+
+		FlowPublishers.toFlow(publisherOf(1, 2, 3)).subscribe(subscriber);
+
+		subscriber.subscription.request(1);
+		subscriber.subscription.cancel();
+		subscriber.subscription.request(5);
+
+		assertThat(subscriber.elements, is(Arrays.asList(1)));
+		assertThat(subscriber.completed, is(false));
+	}
+
+}
@@ -0,0 +1,173 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms.jdk11;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalToJson;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.threeten.bp.OffsetDateTime;
+import org.threeten.bp.ZoneOffset;
+
+import com.clxcommunications.xms.ApiConnection;
+import com.clxcommunications.xms.ApiObjectMapper;
+import com.clxcommunications.xms.ClxApi;
+import com.clxcommunications.xms.ErrorResponseException;
+import com.clxcommunications.xms.api.ApiError;
+import com.clxcommunications.xms.api.BatchId;
+import com.clxcommunications.xms.api.MtBatchSmsResult;
+import com.clxcommunications.xms.api.MtBatchTextSmsCreate;
+import com.clxcommunications.xms.api.MtBatchTextSmsResult;
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+
+public class JdkHttpTransportIT {
+
+	private final ApiObjectMapper json = new ApiObjectMapper();
+
+	private final OffsetDateTime time = OffsetDateTime.of(2016, 10, 2, 9, 34,
+	        28, 542000000, ZoneOffset.UTC);
+
+	@Rule
+	public WireMockRule wm = new WireMockRule(
+	        WireMockConfiguration.options()
+	                .dynamicPort()
+	                .dynamicHttpsPort());
+
+	private ApiConnection connection(String spid) {
+		return ApiConnection.builder()
+		        .servicePlanId(spid)
+		        .token("tok")
+		        .endpoint("http://localhost:" + wm.port())
+		        .transport(JdkHttpTransport.of())
+		        .start();
+	}
+
+	@Test
+	public void canFetchBatch() throws Exception {
+		BatchId batchId = BatchId.of("batchid");
+
+		MtBatchSmsResult expected = MtBatchTextSmsResult.builder()
+		        .sender("12345")
+		        .addRecipient("123456789")
+		        .body("Hello, world!")
+		        .canceled(false)
+		        .id(batchId)
+		        .createdAt(time)
+		        .modifiedAt(time)
+		        .build();
+
+		wm.stubFor(get(urlEqualTo("/v1/spid/batches/batchid"))
+		        .withHeader("Authorization", equalTo("Bearer tok"))
+		        .willReturn(aResponse()
+		                .withStatus(200)
+		                .withHeader("Content-Type", "application/json")
+		                .withBody(json.writeValueAsBytes(expected))));
+
+		ApiConnection conn = connection("spid");
+
+		try {
+			assertThat(conn.fetchBatch(batchId), is(expected));
+		} finally {
+			conn.close();
+		}
+	}
+
+	@Test
+	public void canCreateBatch() throws Exception {
+		MtBatchTextSmsCreate request = ClxApi.batchTextSms()
+		        .sender("12345")
+		        .addRecipient("123456789")
+		        .body("Hello, world! Здравей свят!")
+		        .build();
+
+		MtBatchTextSmsResult expected = MtBatchTextSmsResult.builder()
+		        .sender(request.sender())
+		        .recipients(request.recipients())
+		        .body(request.body())
+		        .canceled(false)
+		        .id(BatchId.of("batchid"))
+		        .createdAt(time)
+		        .modifiedAt(time)
+		        .build();
+
+		wm.stubFor(post(urlEqualTo("/v1/spid/batches"))
+		        .willReturn(aResponse()
+		                .withStatus(201)
+		                .withHeader("Content-Type", "application/json")
+		                .withBody(json.writeValueAsBytes(expected))));
+
+		ApiConnection conn = connection("spid");
+
+		try {
+			assertThat(conn.createBatch(request), is(expected));
+		} finally {
+			conn.close();
+		}
+
+		wm.verify(postRequestedFor(urlEqualTo("/v1/spid/batches"))
+		        .withRequestBody(
+		                equalToJson(json.writeValueAsString(request))));
+	}
+
+	@Test
+	public void canHandleErrorResponse() throws Exception {
+		ApiError error = ApiError.of("syntax_constraint_violation",
+		        "The syntax constraint was violated");
+
+		wm.stubFor(get(urlEqualTo("/v1/spid/batches/batchid"))
+		        .willReturn(aResponse()
+		                .withStatus(400)
+		                .withHeader("Content-Type", "application/json")
+		                .withBody(json.writeValueAsBytes(error))));
+
+		ApiConnection conn = connection("spid");
+
+		try {
+			Future<MtBatchSmsResult> future =
+			        conn.fetchBatchAsync(BatchId.of("batchid"), null);
+
+			future.get();
+
+			fail("expected exception");
+		} catch (ExecutionException e) {
+			assertThat(e.getCause(), is(instanceOf(
+			        ErrorResponseException.class)));
+			assertThat(((ErrorResponseException) e.getCause()).getCode(),
+			        is(error.code()));
+		} finally {
+			conn.close();
+		}
+	}
+
+}
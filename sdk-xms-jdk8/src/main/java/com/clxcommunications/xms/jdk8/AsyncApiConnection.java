@@ -0,0 +1,539 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms.jdk8;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import javax.annotation.Nonnull;
+
+import org.apache.http.concurrent.FutureCallback;
+
+import com.clxcommunications.xms.ApiConnection;
+import com.clxcommunications.xms.BatchDeliveryReportParams;
+import com.clxcommunications.xms.BatchFilter;
+import com.clxcommunications.xms.GroupFilter;
+import com.clxcommunications.xms.InboundsFilter;
+import com.clxcommunications.xms.api.BatchDeliveryReport;
+import com.clxcommunications.xms.api.BatchId;
+import com.clxcommunications.xms.api.GroupCreate;
+import com.clxcommunications.xms.api.GroupId;
+import com.clxcommunications.xms.api.GroupResult;
+import com.clxcommunications.xms.api.GroupUpdate;
+import com.clxcommunications.xms.api.MoSms;
+import com.clxcommunications.xms.api.MtBatchBinarySmsCreate;
+import com.clxcommunications.xms.api.MtBatchBinarySmsResult;
+import com.clxcommunications.xms.api.MtBatchBinarySmsUpdate;
+import com.clxcommunications.xms.api.MtBatchDryRunResult;
+import com.clxcommunications.xms.api.MtBatchSmsCreate;
+import com.clxcommunications.xms.api.MtBatchSmsResult;
+import com.clxcommunications.xms.api.MtBatchTextSmsCreate;
+import com.clxcommunications.xms.api.MtBatchTextSmsResult;
+import com.clxcommunications.xms.api.MtBatchTextSmsUpdate;
+import com.clxcommunications.xms.api.Page;
+import com.clxcommunications.xms.api.RecipientDeliveryReport;
+import com.clxcommunications.xms.api.Tags;
+import com.clxcommunications.xms.api.TagsUpdate;
+
+/**
+ * A view of an {@link ApiConnection} whose operations return
+ * {@link CompletableFuture} objects. The futures are completed directly from
+ * the HTTP client's callback, that is, on the I/O thread that received the
+ * response. Non-async dependent stages therefore also run on that thread and
+ * should not block.
+ * <p>
+ * Cancelling a returned future also cancels the underlying request.
+ * <p>
+ * The life cycle of the underlying connection is not affected by this class,
+ * it must still be started and closed as usual. For example,
+ * 
+ * <pre>
+ * try (ApiConnection conn = ApiConnection.builder()
+ *         .servicePlanId("my service plan id")
+ *         .token("my token")
+ *         .start()) {
+ *     AsyncApiConnection async = AsyncApiConnection.of(conn);
+ * 
+ *     async.createBatch(batch)
+ *             .thenCompose(result -&gt; async.fetchTags(result.id()))
+ *             .thenAccept(tags -&gt; System.out.println(tags));
+ * }
+ * </pre>
+ */
+public final class AsyncApiConnection {
+
+	/**
+	 * A completable future that is completed by the callback of an
+	 * asynchronous API call and that cancels the call when cancelled.
+	 * 
+	 * @param <T>
+	 *            the result type
+	 */
+	private static final class CallbackFuture<T> extends CompletableFuture<T>
+	        implements FutureCallback<T> {
+
+		private volatile Future<T> call;
+
+		void call(Future<T> call) {
+			this.call = call;
+
+			if (isCancelled()) {
+				call.cancel(true);
+			}
+		}
+
+		@Override
+		public void completed(T result) {
+			complete(result);
+		}
+
+		@Override
+		public void failed(Exception e) {
+			completeExceptionally(e);
+		}
+
+		@Override
+		public void cancelled() {
+			super.cancel(false);
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			boolean cancelled = super.cancel(mayInterruptIfRunning);
+
+			Future<T> c = call;
+			if (cancelled && c != null) {
+				c.cancel(mayInterruptIfRunning);
+			}
+
+			return cancelled;
+		}
+
+	}
+
+	private final ApiConnection connection;
+
+	private AsyncApiConnection(ApiConnection connection) {
+		this.connection = connection;
+	}
+
+	/**
+	 * Returns a completable future view of the given API connection.
+	 * 
+	 * @param connection
+	 *            the API connection to use
+	 * @return a non-null asynchronous API connection
+	 */
+	@Nonnull
+	public static AsyncApiConnection of(ApiConnection connection) {
+		if (connection == null) {
+			throw new NullPointerException("connection");
+		}
+
+		return new AsyncApiConnection(connection);
+	}
+
+	/**
+	 * The underlying API connection.
+	 * 
+	 * @return a non-null API connection
+	 */
+	@Nonnull
+	public ApiConnection connection() {
+		return connection;
+	}
+
+	/**
+	 * Performs the given asynchronous call with a callback that completes the
+	 * returned future.
+	 * 
+	 * @param call
+	 *            function performing the call using the given callback
+	 * @return a future completed by the call
+	 */
+	private static <T> CompletableFuture<T> adapt(
+	        Function<FutureCallback<T>, Future<T>> call) {
+		CallbackFuture<T> future = new CallbackFuture<T>();
+
+		try {
+			future.call(call.apply(future));
+		} catch (RuntimeException e) {
+			future.completeExceptionally(e);
+		}
+
+		return future;
+	}
+
+	/**
+	 * Creates the given text batch and schedules it for submission.
+	 * 
+	 * @param sms
+	 *            the batch to create
+	 * @return a future completed with the result
+	 */
+	public CompletableFuture<MtBatchTextSmsResult> createBatch(
+	        MtBatchTextSmsCreate sms) {
+		return adapt(cb -> connection.createBatchAsync(sms, cb));
+	}
+
+	/**
+	 * Creates the given binary batch and schedules it for submission.
+	 * 
+	 * @param sms
+	 *            the batch to create
+	 * @return a future completed with the result
+	 */
+	public CompletableFuture<MtBatchBinarySmsResult> createBatch(
+	        MtBatchBinarySmsCreate sms) {
+		return adapt(cb -> connection.createBatchAsync(sms, cb));
+	}
+
+	/**
+	 * Replaces the text batch with the given identifier.
+	 * 
+	 * @param id
+	 *            identifier of the batch
+	 * @param sms
+	 *            the replacement batch
+	 * @return a future completed with the result
+	 */
+	public CompletableFuture<MtBatchTextSmsResult> replaceBatch(BatchId id,
+	        MtBatchTextSmsCreate sms) {
+		return adapt(cb -> connection.replaceBatchAsync(id, sms, cb));
+	}
+
+	/**
+	 * Replaces the binary batch with the given identifier.
+	 * 
+	 * @param id
+	 *            identifier of the batch
+	 * @param sms
+	 *            the replacement batch
+	 * @return a future completed with the result
+	 */
+	public CompletableFuture<MtBatchBinarySmsResult> replaceBatch(BatchId id,
+	        MtBatchBinarySmsCreate sms) {
+		return adapt(cb -> connection.replaceBatchAsync(id, sms, cb));
+	}
+
+	/**
+	 * Updates the text batch with the given identifier.
+	 * 
+	 * @param id
+	 *            identifier of the batch
+	 * @param sms
+	 *            description of the desired update
+	 * @return a future completed with the result
+	 */
+	public CompletableFuture<MtBatchTextSmsResult> updateBatch(BatchId id,
+	        MtBatchTextSmsUpdate sms) {
+		return adapt(cb -> connection.updateBatchAsync(id, sms, cb));
+	}
+
+	/**
+	 * Updates the binary batch with the given identifier.
+	 * 
+	 * @param id
+	 *            identifier of the batch
+	 * @param sms
+	 *            description of the desired update
+	 * @return a future completed with the result
+	 */
+	public CompletableFuture<MtBatchBinarySmsResult> updateBatch(BatchId id,
+	        MtBatchBinarySmsUpdate sms) {
+		return adapt(cb -> connection.updateBatchAsync(id, sms, cb));
+	}
+
+	/**
+	 * Fetches the batch with the given identifier.
+	 * 
+	 * @param id
+	 *            identifier of the batch
+	 * @return a future completed with the result
+	 */
+	public CompletableFuture<MtBatchSmsResult> fetchBatch(BatchId id) {
+		return adapt(cb -> connection.fetchBatchAsync(id, cb));
+	}
+
+	/**
+	 * Fetches the given page of the batches matching the given filter.
+	 * 
+	 * @param filter
+	 *            the batch filter
+	 * @param page
+	 *            the page to fetch (starting from zero)
+	 * @return a future completed with the page
+	 */
+	public CompletableFuture<Page<MtBatchSmsResult>> fetchBatches(
+	        BatchFilter filter, int page) {
+		return adapt(
+		        cb -> connection.fetchBatches(filter).fetchPageAsync(page, cb));
+	}
+
+	/**
+	 * Cancels the batch with the given identifier.
+	 * 
+	 * @param id
+	 *            identifier of the batch
+	 * @return a future completed with the result
+	 */
+	public CompletableFuture<MtBatchSmsResult> cancelBatch(BatchId id) {
+		return adapt(cb -> connection.cancelBatchAsync(id, cb));
+	}
+
+	/**
+	 * Performs a dry run of the given batch.
+	 * 
+	 * @param sms
+	 *            the batch to dry run
+	 * @param perRecipient
+	 *            whether the per-recipient result should be populated, may be
+	 *            null
+	 * @param numRecipients
+	 *            the number of recipients to populate, may be null
+	 * @return a future completed with the result
+	 */
+	public CompletableFuture<MtBatchDryRunResult> createBatchDryRun(
+	        MtBatchSmsCreate sms, Boolean perRecipient, Integer numRecipients) {
+		return adapt(cb -> connection.createBatchDryRunAsync(sms, perRecipient,
+		        numRecipients, cb));
+	}
+
+	/**
+	 * Fetches the delivery report of the batch with the given identifier.
+	 * 
+	 * @param id
+	 *            identifier of the batch
+	 * @param filter
+	 *            parameters controlling the report
+	 * @return a future completed with the result
+	 */
+	public CompletableFuture<BatchDeliveryReport> fetchDeliveryReport(
+	        BatchId id, BatchDeliveryReportParams filter) {
+		return adapt(cb -> connection.fetchDeliveryReportAsync(id, filter, cb));
+	}
+
+	/**
+	 * Fetches the delivery report of a single recipient of the batch with the
+	 * given identifier.
+	 * 
+	 * @param id
+	 *            identifier of the batch
+	 * @param recipient
+	 *            the recipient MSISDN
+	 * @return a future completed with the result
+	 */
+	public CompletableFuture<RecipientDeliveryReport> fetchDeliveryReport(
+	        BatchId id, String recipient) {
+		return adapt(
+		        cb -> connection.fetchDeliveryReportAsync(id, recipient, cb));
+	}
+
+	/**
+	 * Updates the tags of the batch with the given identifier.
+	 * 
+	 * @param id
+	 *            identifier of the batch
+	 * @param tags
+	 *            the tag update
+	 * @return a future completed with the result
+	 */
+	public CompletableFuture<Tags> updateTags(BatchId id, TagsUpdate tags) {
+		return adapt(cb -> connection.updateTagsAsync(id, tags, cb));
+	}
+
+	/**
+	 * Replaces the tags of the batch with the given identifier.
+	 * 
+	 * @param id
+	 *            identifier of the batch
+	 * @param tags
+	 *            the replacement tags
+	 * @return a future completed with the result
+	 */
+	public CompletableFuture<Tags> replaceTags(BatchId id, Tags tags) {
+		return adapt(cb -> connection.replaceTagsAsync(id, tags, cb));
+	}
+
+	/**
+	 * Fetches the tags of the batch with the given identifier.
+	 * 
+	 * @param id
+	 *            identifier of the batch
+	 * @return a future completed with the result
+	 */
+	public CompletableFuture<Tags> fetchTags(BatchId id) {
+		return adapt(cb -> connection.fetchTagsAsync(id, cb));
+	}
+
+	/**
+	 * Creates the given group.
+	 * 
+	 * @param group
+	 *            the group to create
+	 * @return a future completed with the result
+	 */
+	public CompletableFuture<GroupResult> createGroup(GroupCreate group) {
+		return adapt(cb -> connection.createGroupAsync(group, cb));
+	}
+
+	/**
+	 * Fetches the group with the given identifier.
+	 * 
+	 * @param id
+	 *            identifier of the group
+	 * @return a future completed with the result
+	 */
+	public CompletableFuture<GroupResult> fetchGroup(GroupId id) {
+		return adapt(cb -> connection.fetchGroupAsync(id, cb));
+	}
+
+	/**
+	 * Fetches the members of the group with the given identifier.
+	 * 
+	 * @param id
+	 *            identifier of the group
+	 * @return a future completed with the result
+	 */
+	public CompletableFuture<Set<String>> fetchGroupMembers(GroupId id) {
+		return adapt(cb -> connection.fetchGroupMembersAsync(id, cb));
+	}
+
+	/**
+	 * Fetches the given page of the groups matching the given filter.
+	 * 
+	 * @param filter
+	 *            the group filter
+	 * @param page
+	 *            the page to fetch (starting from zero)
+	 * @return a future completed with the page
+	 */
+	public CompletableFuture<Page<GroupResult>> fetchGroups(GroupFilter filter,
+	        int page) {
+		return adapt(
+		        cb -> connection.fetchGroups(filter).fetchPageAsync(page, cb));
+	}
+
+	/**
+	 * Updates the group with the given identifier.
+	 * 
+	 * @param id
+	 *            identifier of the group
+	 * @param group
+	 *            description of the desired update
+	 * @return a future completed with the result
+	 */
+	public CompletableFuture<GroupResult> updateGroup(GroupId id,
+	        GroupUpdate group) {
+		return adapt(cb -> connection.updateGroupAsync(id, group, cb));
+	}
+
+	/**
+	 * Replaces the group with the given identifier.
+	 * 
+	 * @param id
+	 *            identifier of the group
+	 * @param group
+	 *            the replacement group
+	 * @return a future completed with the result
+	 */
+	public CompletableFuture<GroupResult> replaceGroup(GroupId id,
+	        GroupCreate group) {
+		return adapt(cb -> connection.replaceGroupAsync(id, group, cb));
+	}
+
+	/**
+	 * Deletes the group with the given identifier.
+	 * 
+	 * @param id
+	 *            identifier of the group
+	 * @return a future completed with the deletion result, which is null
+	 */
+	public CompletableFuture<Void> deleteGroup(GroupId id) {
+		return adapt(cb -> connection.deleteGroupAsync(id, cb));
+	}
+
+	/**
+	 * Updates the tags of the group with the given identifier.
+	 * 
+	 * @param id
+	 *            identifier of the group
+	 * @param tags
+	 *            the tag update
+	 * @return a future completed with the result
+	 */
+	public CompletableFuture<Tags> updateTags(GroupId id, TagsUpdate tags) {
+		return adapt(cb -> connection.updateTagsAsync(id, tags, cb));
+	}
+
+	/**
+	 * Replaces the tags of the group with the given identifier.
+	 * 
+	 * @param id
+	 *            identifier of the group
+	 * @param tags
+	 *            the replacement tags
+	 * @return a future completed with the result
+	 */
+	public CompletableFuture<Tags> replaceTags(GroupId id, Tags tags) {
+		return adapt(cb -> connection.replaceTagsAsync(id, tags, cb));
+	}
+
+	/**
+	 * Fetches the tags of the group with the given identifier.
+	 * 
+	 * @param id
+	 *            identifier of the group
+	 * @return a future completed with the result
+	 */
+	public CompletableFuture<Tags> fetchTags(GroupId id) {
+		return adapt(cb -> connection.fetchTagsAsync(id, cb));
+	}
+
+	/**
+	 * Fetches the given page of the inbound messages matching the given
+	 * filter.
+	 * 
+	 * @param filter
+	 *            the inbounds filter
+	 * @param page
+	 *            the page to fetch (starting from zero)
+	 * @return a future completed with the page
+	 */
+	public CompletableFuture<Page<MoSms>> fetchInbounds(InboundsFilter filter,
+	        int page) {
+		return adapt(cb -> connection.fetchInbounds(filter)
+		        .fetchPageAsync(page, cb));
+	}
+
+	/**
+	 * Fetches the inbound message with the given identifier.
+	 * 
+	 * @param id
+	 *            identifier of the inbound message
+	 * @return a future completed with the result
+	 */
+	public CompletableFuture<MoSms> fetchInbound(String id) {
+		return adapt(cb -> connection.fetchInboundAsync(id, cb));
+	}
+
+}
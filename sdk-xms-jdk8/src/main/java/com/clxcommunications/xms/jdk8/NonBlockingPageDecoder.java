@@ -0,0 +1,311 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms.jdk8;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import com.clxcommunications.xms.ApiConnection;
+import com.clxcommunications.xms.StreamingDecoder;
+import com.clxcommunications.xms.api.GroupResult;
+import com.clxcommunications.xms.api.MoSms;
+import com.clxcommunications.xms.api.MtBatchSmsResult;
+import com.clxcommunications.xms.api.PagedBatchResult;
+import com.clxcommunications.xms.api.PagedGroupResult;
+import com.clxcommunications.xms.api.PagedInboundsResult;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+/**
+ * A streaming decoder of listing pages built on the non-blocking parser of
+ * Jackson 2.9. The page elements are bound one at a time as soon as their last
+ * byte has arrived, so only the tokens of a single element are held in memory
+ * besides the already bound elements. Responses other than batch, group, and
+ * inbound listing pages are left to be buffered as usual.
+ * <p>
+ * To use it, give the {@link #factory() factory} to the API connection:
+ * 
+ * <pre>
+ * ApiConnection conn = ApiConnection.builder()
+ *         .servicePlanId("my service plan id")
+ *         .token("my token")
+ *         .streamingDecoder(NonBlockingPageDecoder.factory())
+ *         .start();
+ * </pre>
+ * 
+ * @param <T>
+ *            the page type
+ * @param <E>
+ *            the page element type
+ * @see ApiConnection#streamingDecoder()
+ */
+public final class NonBlockingPageDecoder<T, E> implements StreamingDecoder<T> {
+
+	/**
+	 * Builds a page from its decoded parts.
+	 */
+	@FunctionalInterface
+	private interface Assembler<T, E> {
+
+		T assemble(int page, int size, int totalSize, List<E> content);
+
+	}
+
+	private static final Assembler<PagedBatchResult, MtBatchSmsResult> BATCHES =
+	        (page, size, totalSize, content) -> PagedBatchResult.builder()
+	                .page(page)
+	                .size(size)
+	                .totalSize(totalSize)
+	                .addAllContent(content)
+	                .build();
+
+	private static final Assembler<PagedGroupResult, GroupResult> GROUPS =
+	        (page, size, totalSize, content) -> PagedGroupResult.builder()
+	                .page(page)
+	                .size(size)
+	                .totalSize(totalSize)
+	                .addAllContent(content)
+	                .build();
+
+	private static final Assembler<PagedInboundsResult, MoSms> INBOUNDS =
+	        (page, size, totalSize, content) -> PagedInboundsResult.builder()
+	                .page(page)
+	                .size(size)
+	                .totalSize(totalSize)
+	                .addAllContent(content)
+	                .build();
+
+	private static final StreamingDecoder.Factory FACTORY =
+	        new StreamingDecoder.Factory() {
+
+		        @SuppressWarnings("unchecked")
+		        @Override
+		        public <T> StreamingDecoder<T> create(Class<T> type,
+		                ObjectReader reader) {
+			        StreamingDecoder<?> decoder;
+
+			        if (type == PagedBatchResult.class) {
+				        decoder = new NonBlockingPageDecoder<>(reader,
+				                "batches", MtBatchSmsResult.class, BATCHES);
+			        } else if (type == PagedGroupResult.class) {
+				        decoder = new NonBlockingPageDecoder<>(reader,
+				                "groups", GroupResult.class, GROUPS);
+			        } else if (type == PagedInboundsResult.class) {
+				        decoder = new NonBlockingPageDecoder<>(reader,
+				                "inbounds", MoSms.class, INBOUNDS);
+			        } else {
+				        decoder = null;
+			        }
+
+			        return (StreamingDecoder<T>) decoder;
+		        }
+
+	        };
+
+	private final JsonParser parser;
+	private final ByteArrayFeeder feeder;
+	private final String contentField;
+	private final ObjectReader elementReader;
+	private final Assembler<T, E> assembler;
+
+	private final List<E> content = new ArrayList<E>();
+	private int page;
+	private int size;
+	private int totalSize;
+
+	/**
+	 * The number of currently open objects and arrays.
+	 */
+	private int depth = 0;
+
+	/**
+	 * The name of the most recent field of the page object.
+	 */
+	private String field;
+
+	/**
+	 * Whether the parser is within the content array.
+	 */
+	private boolean inContent = false;
+
+	/**
+	 * The tokens of the element currently being received, <code>null</code>
+	 * if between elements.
+	 */
+	private TokenBuffer element;
+
+	/**
+	 * Whether the page object has been fully received.
+	 */
+	private boolean complete = false;
+
+	/**
+	 * Scratch array used to feed the parser from buffers without accessible
+	 * backing array.
+	 */
+	private byte[] scratch;
+
+	private NonBlockingPageDecoder(ObjectReader reader, String contentField,
+	        Class<E> elementType, Assembler<T, E> assembler) {
+		try {
+			this.parser =
+			        reader.getFactory().createNonBlockingByteArrayParser();
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+
+		this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+		this.contentField = contentField;
+		this.elementReader = reader.forType(elementType);
+		this.assembler = assembler;
+	}
+
+	/**
+	 * Returns a factory of decoders of batch, group, and inbound listing
+	 * pages.
+	 * 
+	 * @return a non-null decoder factory
+	 */
+	@Nonnull
+	public static StreamingDecoder.Factory factory() {
+		return FACTORY;
+	}
+
+	@Override
+	public void decode(ByteBuffer buf) throws IOException {
+		int n = buf.remaining();
+
+		if (buf.hasArray()) {
+			int start = buf.arrayOffset() + buf.position();
+			feeder.feedInput(buf.array(), start, start + n);
+		} else {
+			if (scratch == null || scratch.length < n) {
+				scratch = new byte[n];
+			}
+
+			buf.duplicate().get(scratch, 0, n);
+			feeder.feedInput(scratch, 0, n);
+		}
+
+		buf.position(buf.limit());
+
+		/*
+		 * Consume all tokens available in the fed bytes, the parser keeps the
+		 * state of a partially received token internally.
+		 */
+		drain();
+	}
+
+	@Override
+	public T result() throws IOException {
+		feeder.endOfInput();
+		drain();
+
+		if (!complete) {
+			throw new JsonParseException(parser, "incomplete page object");
+		}
+
+		return assembler.assemble(page, size, totalSize, content);
+	}
+
+	private void drain() throws IOException {
+		JsonToken token;
+
+		while ((token = parser.nextToken()) != null
+		        && token != JsonToken.NOT_AVAILABLE) {
+			handle(token);
+		}
+	}
+
+	private void handle(JsonToken token) throws IOException {
+		// The nesting level of the token, 0 for the page object itself.
+		int level = depth;
+
+		if (token.isStructStart()) {
+			depth++;
+		} else if (token.isStructEnd()) {
+			level = --depth;
+		}
+
+		if (complete) {
+			throw new JsonParseException(parser, "trailing data after page");
+		} else if (level == 0) {
+			if (token == JsonToken.END_OBJECT) {
+				complete = true;
+			} else if (token != JsonToken.START_OBJECT) {
+				throw new JsonParseException(parser, "expected page object");
+			}
+		} else if (level == 1) {
+			handlePageField(token);
+		} else if (inContent) {
+			handleElement(token, level);
+		}
+	}
+
+	private void handlePageField(JsonToken token) throws IOException {
+		switch (token) {
+		case FIELD_NAME:
+			field = parser.getCurrentName();
+			break;
+		case START_ARRAY:
+			inContent = contentField.equals(field);
+			break;
+		case END_ARRAY:
+			inContent = false;
+			break;
+		case VALUE_NUMBER_INT:
+			if ("page".equals(field)) {
+				page = parser.getIntValue();
+			} else if ("page_size".equals(field)) {
+				size = parser.getIntValue();
+			} else if ("count".equals(field)) {
+				totalSize = parser.getIntValue();
+			}
+			break;
+		default:
+			// Other fields are not part of a page.
+			break;
+		}
+	}
+
+	private void handleElement(JsonToken token, int level) throws IOException {
+		if (element == null) {
+			element = new TokenBuffer(parser);
+		}
+
+		element.copyCurrentEvent(parser);
+
+		// An element is complete when we are back at its level.
+		if (level == 2 && !token.isStructStart()) {
+			E value = elementReader.readValue(element.asParser());
+			content.add(value);
+			element = null;
+		}
+	}
+
+}
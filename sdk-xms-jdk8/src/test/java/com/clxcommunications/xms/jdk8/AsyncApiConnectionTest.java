@@ -0,0 +1,168 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms.jdk8;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.nio.protocol.HttpAsyncResponseConsumer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.clxcommunications.xms.ApiConnection;
+import com.clxcommunications.xms.ApiTransport;
+import com.clxcommunications.xms.api.BatchId;
+import com.clxcommunications.xms.api.Tags;
+
+public class AsyncApiConnectionTest {
+
+	/**
+	 * A transport that never sends anything but remembers the future of the
+	 * most recent call.
+	 */
+	private static class CapturingTransport implements ApiTransport {
+
+		BasicFuture<?> future;
+
+		@Override
+		public void start() {
+		}
+
+		@Override
+		public void close() throws IOException {
+		}
+
+		@Override
+		public <T> Future<T> execute(HttpUriRequest request,
+		        HttpAsyncResponseConsumer<T> consumer,
+		        FutureCallback<T> callback) {
+			BasicFuture<T> f = new BasicFuture<T>(callback);
+			future = f;
+			return f;
+		}
+
+		@SuppressWarnings("unchecked")
+		<T> BasicFuture<T> future() {
+			return (BasicFuture<T>) future;
+		}
+
+	}
+
+	private final CapturingTransport transport = new CapturingTransport();
+
+	private ApiConnection conn;
+
+	private AsyncApiConnection async;
+
+	@Before
+	public void setUp() {
+		conn = ApiConnection.builder()
+		        .servicePlanId("spid")
+		        .token("token")
+		        .transport(transport)
+		        .start();
+		async = AsyncApiConnection.of(conn);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		conn.close();
+	}
+
+	@Test
+	public void completesWithResult() throws Exception {
+		Tags expected = Tags.of("tag1", "tag2");
+
+		CompletableFuture<Tags> actual = async.fetchTags(BatchId.of("id"));
+
+		assertThat(actual.isDone(), is(false));
+
+		transport.<Tags> future().completed(expected);
+
+		assertThat(actual.isDone(), is(true));
+		assertThat(actual.get(), is(sameInstance(expected)));
+	}
+
+	@Test
+	public void completesExceptionallyOnFailure() throws Exception {
+		Exception expected = new IOException("oops");
+
+		CompletableFuture<Tags> actual = async.fetchTags(BatchId.of("id"));
+
+		transport.<Tags> future().failed(expected);
+
+		try {
+			actual.get();
+			fail("expected exception");
+		} catch (ExecutionException e) {
+			assertThat(e.getCause(), is(sameInstance((Throwable) expected)));
+		}
+	}
+
+	@Test
+	public void cancelsUnderlyingCall() throws Exception {
+		CompletableFuture<Tags> actual = async.fetchTags(BatchId.of("id"));
+
+		actual.cancel(true);
+
+		assertThat(transport.future().isCancelled(), is(true));
+	}
+
+	@Test
+	public void isCancelledWhenCallIsCancelled() throws Exception {
+		CompletableFuture<Tags> actual = async.fetchTags(BatchId.of("id"));
+
+		transport.future().cancel(true);
+
+		assertThat(actual.isCancelled(), is(true));
+	}
+
+	@Test
+	public void canCompose() throws Exception {
+		CompletableFuture<String> actual = async.fetchTags(BatchId.of("id"))
+		        .thenApply(tags -> tags.tags().iterator().next());
+
+		transport.<Tags> future().completed(Tags.of("tag1"));
+
+		assertThat(actual.get(), is("tag1"));
+	}
+
+	@Test(expected = NullPointerException.class)
+	public void rejectsNullConnection() {
+		AsyncApiConnection.of(null);
+	}
+
+	@Test
+	public void exposesConnection() {
+		assertThat(async.connection(), is(sameInstance(conn)));
+	}
+
+}
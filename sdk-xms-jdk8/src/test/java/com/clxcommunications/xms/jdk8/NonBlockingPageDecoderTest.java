@@ -0,0 +1,150 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms.jdk8;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.threeten.bp.OffsetDateTime;
+import org.threeten.bp.ZoneOffset;
+
+import com.clxcommunications.xms.ApiObjectMapper;
+import com.clxcommunications.xms.StreamingDecoder;
+import com.clxcommunications.xms.api.GroupId;
+import com.clxcommunications.xms.api.GroupResult;
+import com.clxcommunications.xms.api.MtBatchDryRunResult;
+import com.clxcommunications.xms.api.PagedGroupResult;
+
+public class NonBlockingPageDecoderTest {
+
+	private final ApiObjectMapper json = new ApiObjectMapper();
+
+	private final PagedGroupResult page = PagedGroupResult.builder()
+	        .page(3)
+	        .size(2)
+	        .totalSize(42)
+	        .addContent(group("group1", "first"))
+	        .addContent(group("group2", "second \u2603"))
+	        .build();
+
+	private static GroupResult group(String id, String name) {
+		OffsetDateTime time =
+		        OffsetDateTime.of(2016, 10, 2, 9, 34, 28, 0, ZoneOffset.UTC);
+
+		return GroupResult.builder()
+		        .id(GroupId.of(id))
+		        .name(name)
+		        .size(7)
+		        .createdAt(time)
+		        .modifiedAt(time)
+		        .build();
+	}
+
+	private StreamingDecoder<PagedGroupResult> decoder() {
+		return NonBlockingPageDecoder.factory().create(PagedGroupResult.class,
+		        json.readerFor(PagedGroupResult.class));
+	}
+
+	private PagedGroupResult decodeInChunks(byte[] bytes, int chunkSize)
+	        throws IOException {
+		StreamingDecoder<PagedGroupResult> decoder = decoder();
+
+		for (int i = 0; i < bytes.length; i += chunkSize) {
+			int n = Math.min(chunkSize, bytes.length - i);
+			decoder.decode(ByteBuffer.wrap(bytes, i, n));
+		}
+
+		return decoder.result();
+	}
+
+	@Test
+	public void decodesPageFedInOneChunk() throws Exception {
+		byte[] bytes = json.writeValueAsBytes(page);
+
+		assertThat(decodeInChunks(bytes, bytes.length), is(page));
+	}
+
+	@Test
+	public void decodesPageFedOneByteAtATime() throws Exception {
+		byte[] bytes = json.writeValueAsBytes(page);
+
+		assertThat(decodeInChunks(bytes, 1), is(page));
+	}
+
+	@Test
+	public void decodesPageFedInOddChunks() throws Exception {
+		byte[] bytes = json.writeValueAsBytes(page);
+
+		assertThat(decodeInChunks(bytes, 7), is(page));
+	}
+
+	@Test
+	public void decodesPageFromDirectBuffers() throws Exception {
+		byte[] bytes = json.writeValueAsBytes(page);
+		StreamingDecoder<PagedGroupResult> decoder = decoder();
+
+		for (int i = 0; i < bytes.length; i += 16) {
+			int n = Math.min(16, bytes.length - i);
+			ByteBuffer buf = ByteBuffer.allocateDirect(n);
+			buf.put(bytes, i, n).flip();
+			decoder.decode(buf);
+		}
+
+		assertThat(decoder.result(), is(page));
+	}
+
+	@Test
+	public void ignoresUnknownFields() throws Exception {
+		String input = "{\"page\":3,\"page_size\":0,\"count\":42,"
+		        + "\"extra\":{\"groups\":[1,[2]]},\"groups\":[]}";
+
+		PagedGroupResult expected = PagedGroupResult.builder()
+		        .page(3)
+		        .size(0)
+		        .totalSize(42)
+		        .build();
+
+		assertThat(decodeInChunks(input.getBytes("UTF-8"), 5), is(expected));
+	}
+
+	@Test(expected = IOException.class)
+	public void rejectsTruncatedPage() throws Exception {
+		byte[] bytes = json.writeValueAsBytes(page);
+
+		decodeInChunks(Arrays.copyOf(bytes, bytes.length - 3), 8);
+	}
+
+	@Test
+	public void leavesOtherTypesToBeBuffered() throws Exception {
+		StreamingDecoder<MtBatchDryRunResult> decoder =
+		        NonBlockingPageDecoder.factory().create(
+		                MtBatchDryRunResult.class,
+		                json.readerFor(MtBatchDryRunResult.class));
+
+		assertThat(decoder, is(nullValue()));
+	}
+
+}
@@ -21,19 +21,22 @@ package com.clxcommunications.xms;
 
 import java.io.Closeable;
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
 import java.net.URI;
-import java.net.URISyntaxException;
-import java.net.URLEncoder;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
+import org.apache.http.Consts;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpHeaders;
 import org.apache.http.HttpHost;
@@ -43,14 +46,14 @@ import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
-import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.apache.http.concurrent.BasicFuture;
 import org.apache.http.concurrent.FutureCallback;
-import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.ContentType;
+import org.apache.http.message.BasicHeader;
 import org.apache.http.message.BasicNameValuePair;
 import org.apache.http.nio.client.HttpAsyncClient;
-import org.apache.http.nio.protocol.BasicAsyncRequestProducer;
-import org.apache.http.nio.protocol.HttpAsyncRequestProducer;
 import org.apache.http.nio.protocol.HttpAsyncResponseConsumer;
 import org.immutables.value.Value;
 import org.slf4j.Logger;
@@ -79,8 +82,6 @@ import com.clxcommunications.xms.api.PagedInboundsResult;
 import com.clxcommunications.xms.api.RecipientDeliveryReport;
 import com.clxcommunications.xms.api.Tags;
 import com.clxcommunications.xms.api.TagsUpdate;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.SerializationFeature;
 
 /**
  * An abstract representation of an XMS connection. This class exposes a number
@@ -160,11 +161,46 @@ public abstract class ApiConnection implements Closeable {
 	public static final URI DEFAULT_ENDPOINT =
 	        URI.create("https://api.clxcommunications.com/xms");
 
+	/**
+	 * The default maximum number of recipients per sub-batch when creating
+	 * batches in chunks.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+	/**
+	 * The default maximum number of concurrent create requests when creating
+	 * batches in chunks.
+	 */
+	public static final int DEFAULT_MAX_CHUNKS_IN_FLIGHT = 4;
+
+	/**
+	 * The accept header sent with every request.
+	 */
+	private static final Header ACCEPT_HEADER = new BasicHeader(
+	        HttpHeaders.ACCEPT, ContentType.APPLICATION_JSON.toString());
+
+	/**
+	 * The SDK version header sent with every request.
+	 */
+	private static final Header SDK_VERSION_HEADER =
+	        new BasicHeader("X-CLX-SDK-Version", Version.VERSION);
+
+	/**
+	 * The source of retry backoff jitter.
+	 */
+	private static final Random RETRY_JITTER = new Random();
+
 	/**
 	 * A Jackson object mapper.
 	 */
 	private final ApiObjectMapper json;
 
+	/**
+	 * Whether this connection has released its {@link #rateLimiter() rate
+	 * limiter}.
+	 */
+	private final AtomicBoolean rateLimiterReleased = new AtomicBoolean();
+
 	/**
 	 * Constructor of API connections. This only has package visibility since
 	 * users of the SDK are not expected to inherit from this class.
@@ -190,12 +226,7 @@ public abstract class ApiConnection implements Closeable {
 	public void start() {
 		log.debug("Starting API connection: {}", this);
 
-		if (httpClient() instanceof ApiHttpAsyncClient) {
-			((ApiHttpAsyncClient) httpClient()).start();
-		} else {
-			log.debug("Not starting HTTP client since it"
-			        + " was given externally");
-		}
+		transport().start();
 	}
 
 	/**
@@ -211,12 +242,22 @@ public abstract class ApiConnection implements Closeable {
 	public void close() throws IOException {
 		log.debug("Closing API connection: {}", this);
 
-		HttpAsyncClient c = httpClient();
-		if (c instanceof ApiHttpAsyncClient
-		        && ((ApiHttpAsyncClient) c).isStartedInternally()) {
-			((ApiHttpAsyncClient) c).close();
-		} else {
-			log.debug("Not closing HTTP client since it was given externally");
+		try {
+			transport().close();
+		} finally {
+			releaseRateLimiter();
+		}
+	}
+
+	/**
+	 * Releases the {@link #rateLimiter() rate limiter} of this connection, if
+	 * any and not already released.
+	 */
+	private void releaseRateLimiter() {
+		RateLimiter limiter = rateLimiter();
+
+		if (limiter != null && rateLimiterReleased.compareAndSet(false, true)) {
+			limiter.release();
 		}
 	}
 
@@ -245,6 +286,30 @@ public abstract class ApiConnection implements Closeable {
 		return false;
 	}
 
+	/**
+	 * The pool of byte arrays used to buffer response bodies. By default each
+	 * connection has its own pool but a pool may be shared between multiple
+	 * connections. The pool counters may be used to monitor how well response
+	 * buffers are reused.
+	 * 
+	 * @return a non-null buffer pool
+	 */
+	@Value.Default
+	public ResponseBufferPool responseBufferPool() {
+		return ResponseBufferPool.of();
+	}
+
+	/**
+	 * The factory of decoders used to decode successful response bodies as
+	 * they arrive, rather than buffering them in full. Responses for which the
+	 * factory provides no decoder are buffered. By default all responses are
+	 * buffered.
+	 * 
+	 * @return a streaming decoder factory or <code>null</code> if none
+	 */
+	@Nullable
+	public abstract StreamingDecoder.Factory streamingDecoder();
+
 	/**
 	 * The HTTP client used by this connection. The default client is a minimal
 	 * one that does not support, for example, authentication or redirects.
@@ -262,6 +327,23 @@ public abstract class ApiConnection implements Closeable {
 		return new ApiHttpAsyncClient(true);
 	}
 
+	/**
+	 * The transport used by this connection to send requests. The default
+	 * transport sends requests using the {@link #httpClient() HTTP client}. A
+	 * custom transport cannot be combined with a custom HTTP client. The
+	 * default HTTP client is then never used and its resources are never
+	 * allocated.
+	 * <p>
+	 * Note, the transport is started when this API connection is started and
+	 * closed when this API connection is closed.
+	 * 
+	 * @return a non-null transport
+	 */
+	@Value.Default
+	public ApiTransport transport() {
+		return new HttpAsyncClientTransport(httpClient());
+	}
+
 	/**
 	 * The future callback wrapper to use in all API calls. By default this is
 	 * {@link CallbackWrapper#exceptionDropper}, that is, any exception thrown
@@ -286,6 +368,89 @@ public abstract class ApiConnection implements Closeable {
 		return DEFAULT_ENDPOINT;
 	}
 
+	/**
+	 * The client side rate limit of this connection. All connections using
+	 * the same service plan share the same limit, that is, their combined
+	 * traffic is limited. By default no rate limit is applied.
+	 * <p>
+	 * The limit of a service plan is fixed by the first rate limited
+	 * connection of that service plan. Building a connection having a
+	 * different rate limit for the same service plan fails with an
+	 * {@link IllegalStateException} until all connections having the first
+	 * limit have been closed.
+	 * 
+	 * @return a rate limit or <code>null</code> if unlimited
+	 */
+	@Nullable
+	public abstract RateLimit rateLimit();
+
+	/**
+	 * The adaptive concurrency limit of this connection. If set then the
+	 * number of requests in flight is limited and adjusted according to the
+	 * observed request latency. Requests exceeding the limit are queued until
+	 * an earlier request completes. By default no concurrency limit is
+	 * applied.
+	 * 
+	 * @return a concurrency limit or <code>null</code> if unlimited
+	 */
+	@Nullable
+	public abstract ConcurrencyLimit concurrencyLimit();
+
+	/**
+	 * The retry policy of this connection. If set then requests failing due
+	 * to I/O errors or transient server errors are retried as described by
+	 * the policy. By default requests are not retried.
+	 * 
+	 * @return a retry policy or <code>null</code> if requests are not retried
+	 */
+	@Nullable
+	public abstract RetryPolicy retryPolicy();
+
+	/**
+	 * The circuit breaker policy of this connection. If set then the health
+	 * of each {@link EndpointFamily} is tracked and requests to an unhealthy
+	 * family fail immediately with {@link CircuitOpenException}. By default no
+	 * circuit breakers are used.
+	 * 
+	 * @return a circuit breaker policy or <code>null</code> if none
+	 */
+	@Nullable
+	public abstract CircuitBreakerPolicy circuitBreakerPolicy();
+
+	/**
+	 * The hedging policy of this connection. If set then GET requests are
+	 * duplicated when they take longer than usual to complete, as described
+	 * by the policy. By default requests are not hedged.
+	 * 
+	 * @return a hedging policy or <code>null</code> if requests are not
+	 *         hedged
+	 */
+	@Nullable
+	public abstract HedgingPolicy hedgingPolicy();
+
+	/**
+	 * The priority lanes shared by this connection with other connections of
+	 * different priority. If set then requests are sent only when the lanes
+	 * have capacity for the {@link #priority() priority} of this connection.
+	 * By default no priority lanes are used.
+	 * 
+	 * @return priority lanes or <code>null</code> if none
+	 */
+	@Nullable
+	public abstract PriorityLanes priorityLanes();
+
+	/**
+	 * The priority of the requests sent by this connection. Only used if
+	 * this connection has {@link #priorityLanes() priority lanes}. By default
+	 * normal priority is used.
+	 * 
+	 * @return a non-null priority
+	 */
+	@Value.Default
+	public Priority priority() {
+		return Priority.NORMAL;
+	}
+
 	/**
 	 * The HTTP host providing the XMS API.
 	 * 
@@ -297,13 +462,131 @@ public abstract class ApiConnection implements Closeable {
 		return new HttpHost(uri.getHost(), uri.getPort(), uri.getScheme());
 	}
 
+	/**
+	 * The JSON readers and writers used by this connection. These are created
+	 * once, when the connection is built, and then shared by all requests.
+	 * 
+	 * @return non-null JSON codecs
+	 */
+	@Value.Derived
+	@Value.Auxiliary
+	JsonCodecs jsonCodecs() {
+		return new JsonCodecs(json, prettyPrintJson());
+	}
+
+	/**
+	 * The endpoint URLs of this connection's service plan. The base URL is
+	 * encoded once, when the connection is built, and request URLs are then
+	 * formed from it without reparsing.
+	 * 
+	 * @return non-null endpoint URLs
+	 */
+	@Value.Derived
+	@Value.Auxiliary
+	Endpoints endpoints() {
+		return new Endpoints(endpoint(), servicePlanId());
+	}
+
+	/**
+	 * The authorization header sent with every request. Since the token is
+	 * fixed for the lifetime of the connection the header is created once.
+	 * 
+	 * @return a non-null header
+	 */
+	@Value.Derived
+	@Value.Auxiliary
+	Header authorizationHeader() {
+		return new BasicHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token());
+	}
+
+	/**
+	 * The rate limiter shared with other connections of the same service
+	 * plan. The limiter is released when this connection is closed.
+	 * 
+	 * @return a rate limiter or <code>null</code> if unlimited
+	 */
+	@Nullable
+	@Value.Derived
+	@Value.Auxiliary
+	RateLimiter rateLimiter() {
+		RateLimit limit = rateLimit();
+
+		if (limit == null) {
+			return null;
+		}
+
+		return RateLimiter.acquire(servicePlanId(), limit);
+	}
+
+	/**
+	 * The concurrency limiter of this connection.
+	 * 
+	 * @return a concurrency limiter or <code>null</code> if unlimited
+	 */
+	@Nullable
+	@Value.Derived
+	@Value.Auxiliary
+	ConcurrencyLimiter concurrencyLimiter() {
+		ConcurrencyLimit limit = concurrencyLimit();
+
+		if (limit == null) {
+			return null;
+		}
+
+		return new ConcurrencyLimiter(limit);
+	}
+
+	/**
+	 * The circuit breakers of this connection.
+	 * 
+	 * @return circuit breakers or <code>null</code> if none are used
+	 */
+	@Nullable
+	@Value.Derived
+	@Value.Auxiliary
+	CircuitBreakers circuitBreakers() {
+		CircuitBreakerPolicy policy = circuitBreakerPolicy();
+
+		if (policy == null) {
+			return null;
+		}
+
+		return new CircuitBreakers(policy);
+	}
+
+	/**
+	 * The hedging state of this connection.
+	 * 
+	 * @return a hedger or <code>null</code> if requests are not hedged
+	 */
+	@Nullable
+	@Value.Derived
+	@Value.Auxiliary
+	Hedger hedger() {
+		HedgingPolicy policy = hedgingPolicy();
+
+		if (policy == null) {
+			return null;
+		}
+
+		return new Hedger(policy);
+	}
+
 	/**
 	 * Validates that this object is in a coherent state.
 	 */
 	@Value.Check
 	protected void check() {
-		json.configure(SerializationFeature.INDENT_OUTPUT, prettyPrintJson());
+		try {
+			checkAttributes();
+		} catch (RuntimeException e) {
+			// The connection is never handed out, so it is never closed.
+			releaseRateLimiter();
+			throw e;
+		}
+	}
 
+	private void checkAttributes() {
 		if (endpoint().getQuery() != null) {
 			throw new IllegalStateException(
 			        "base endpoint has query component");
@@ -322,6 +605,22 @@ public abstract class ApiConnection implements Closeable {
 		 * means that the code will not throw exceptions.
 		 */
 		endpoint("");
+
+		if (!(transport() instanceof HttpAsyncClientTransport)
+		        && !isDefaultHttpClient()) {
+			throw new IllegalStateException(
+			        "both custom HTTP client and transport given");
+		}
+	}
+
+	/**
+	 * Whether the HTTP client is the default one created by this connection.
+	 * 
+	 * @return true if the default HTTP client is used; false otherwise
+	 */
+	private boolean isDefaultHttpClient() {
+		return httpClient() instanceof ApiHttpAsyncClient
+		        && ((ApiHttpAsyncClient) httpClient()).isStartedInternally();
 	}
 
 	/**
@@ -337,42 +636,29 @@ public abstract class ApiConnection implements Closeable {
 	@Nonnull
 	private URI endpoint(@Nonnull String subPath,
 	        @Nonnull List<NameValuePair> params) {
-		try {
-			String spid = URLEncoder.encode(servicePlanId(), "UTF-8");
-			String path = endpoint().getPath() + "/v1/" + spid + subPath;
-			URIBuilder uriBuilder = new URIBuilder(endpoint())
-			        .setPath(path);
-
-			if (!params.isEmpty()) {
-				uriBuilder.setParameters(params);
-			}
-
-			return uriBuilder.build();
-		} catch (URISyntaxException e) {
-			throw new IllegalArgumentException(e);
-		} catch (UnsupportedEncodingException e) {
-			throw new IllegalStateException(e);
-		}
+		return endpoints().uri(subPath, params);
 	}
 
 	/**
-	 * Like {@link #endpoint(String, String)} but with no query parameters.
+	 * Like {@link #endpoint(String, List)} but with no query parameters.
 	 * 
 	 * @param subPath
 	 *            path fragment to place after the base path
 	 * @return a non-null endpoint URL
-	 * @throws IllegalArgumentException
-	 *             if the generated URL is invalid, wraps the
-	 *             {@link URISyntaxException}
 	 */
 	@Nonnull
 	private URI endpoint(String subPath) {
-		return endpoint(subPath, Collections.<NameValuePair> emptyList());
+		return endpoints().uri(subPath);
 	}
 
 	@Nonnull
 	private URI batchesEndpoint() {
-		return endpoint("/batches");
+		return endpoints().batches();
+	}
+
+	@Nonnull
+	private URI batchesEndpoint(List<NameValuePair> params) {
+		return endpoint("/batches", params);
 	}
 
 	@Nonnull
@@ -405,7 +691,7 @@ public abstract class ApiConnection implements Closeable {
 
 	@Nonnull
 	private URI groupsEndpoint() {
-		return endpoint("/groups");
+		return endpoints().groups();
 	}
 
 	@Nonnull
@@ -457,8 +743,11 @@ public abstract class ApiConnection implements Closeable {
 	@SuppressWarnings("unchecked")
 	private <T, P extends T> JsonApiAsyncConsumer<T> jsonAsyncConsumer(
 	        Class<P> clazz) {
-		return (JsonApiAsyncConsumer<T>) new JsonApiAsyncConsumer<P>(json,
-		        clazz);
+		JsonCodecs codecs = jsonCodecs();
+
+		return (JsonApiAsyncConsumer<T>) new JsonApiAsyncConsumer<P>(clazz,
+		        codecs.reader(clazz), codecs.errorReader(),
+		        responseBufferPool(), streamingDecoder());
 	}
 
 	/**
@@ -511,6 +800,373 @@ public abstract class ApiConnection implements Closeable {
 		return withStandardHeaders(new HttpDelete(endpoint));
 	}
 
+	/**
+	 * Describes a paged listing using its path and filter parameters,
+	 * ignoring the page parameter.
+	 * 
+	 * @param path
+	 *            the listing path
+	 * @param params
+	 *            the filter parameters
+	 * @return a non-null listing description
+	 */
+	@Nonnull
+	private static String listingOf(String path, List<NameValuePair> params) {
+		List<NameValuePair> filter =
+		        new ArrayList<NameValuePair>(params.size());
+
+		for (NameValuePair param : params) {
+			if (!"page".equals(param.getName())) {
+				filter.add(param);
+			}
+		}
+
+		return path + "?" + URLEncodedUtils.format(filter, Consts.UTF_8);
+	}
+
+	/**
+	 * Sends the given request using this connection's transport.
+	 * 
+	 * @param req
+	 *            the request to send
+	 * @param consumer
+	 *            the consumer of the response
+	 * @param callback
+	 *            the user callback, may be null
+	 * @return a future yielding the consumer's result
+	 */
+	private <T> Future<T> execute(HttpUriRequest req,
+	        HttpAsyncResponseConsumer<T> consumer,
+	        FutureCallback<T> callback) {
+		return execute(req, consumer, callback, 0);
+	}
+
+	/**
+	 * Sends the given request using this connection's transport. If this
+	 * connection has a {@link #retryPolicy() retry policy} then the request
+	 * may be sent multiple times.
+	 * 
+	 * @param req
+	 *            the request to send
+	 * @param consumer
+	 *            the consumer of the response
+	 * @param callback
+	 *            the user callback, may be null
+	 * @param messageCount
+	 *            the number of messages sent by the request
+	 * @return a future yielding the consumer's result
+	 */
+	private <T> Future<T> execute(HttpUriRequest req,
+	        HttpAsyncResponseConsumer<T> consumer,
+	        FutureCallback<T> callback, int messageCount) {
+		FutureCallback<T> wrapped = callbackWrapper().wrap(callback);
+		RetryPolicy policy = retryPolicy();
+
+		if (policy == null || policy.maxAttempts() == 1) {
+			return attempt(req, consumer, wrapped, messageCount);
+		}
+
+		DeferredFuture<T> future = new DeferredFuture<T>(wrapped);
+
+		new RetryingRequest<T>(policy, req, consumer, messageCount, future)
+		        .run();
+
+		return future;
+	}
+
+	/**
+	 * Makes a single attempt at sending the given request. If this connection
+	 * has a {@link #hedgingPolicy() hedging policy} and the request is a GET
+	 * request then the request may be sent twice.
+	 * 
+	 * @param req
+	 *            the request to send
+	 * @param consumer
+	 *            the consumer of the response
+	 * @param callback
+	 *            the wrapped callback
+	 * @param messageCount
+	 *            the number of messages sent by the request
+	 * @return a future yielding the consumer's result
+	 */
+	private <T> Future<T> attempt(HttpUriRequest req,
+	        HttpAsyncResponseConsumer<T> consumer,
+	        FutureCallback<T> callback, int messageCount) {
+		Hedger hedger = hedger();
+
+		if (hedger == null || !HttpGet.METHOD_NAME.equals(req.getMethod())) {
+			return guard(req, consumer, callback, messageCount);
+		}
+
+		return new HedgedRequest<T>(hedger, req, consumer, callback).start();
+	}
+
+	/**
+	 * Sends the given request unless its circuit is open. If this connection
+	 * has a {@link #circuitBreakerPolicy() circuit breaker policy} and the
+	 * circuit of the request's endpoint family is open then the request is
+	 * rejected.
+	 * 
+	 * @param req
+	 *            the request to send
+	 * @param consumer
+	 *            the consumer of the response
+	 * @param callback
+	 *            the wrapped callback
+	 * @param messageCount
+	 *            the number of messages sent by the request
+	 * @return a future yielding the consumer's result
+	 */
+	private <T> Future<T> guard(HttpUriRequest req,
+	        HttpAsyncResponseConsumer<T> consumer,
+	        FutureCallback<T> callback, int messageCount) {
+		CircuitBreaker breaker = circuitBreaker(req);
+
+		if (breaker == null) {
+			return throttle(req, consumer, callback, messageCount);
+		}
+
+		int permit = breaker.acquire(System.nanoTime());
+
+		if (permit == CircuitBreaker.REJECTED) {
+			DeferredFuture<T> future = new DeferredFuture<T>(callback);
+			future.failed(new CircuitOpenException(breaker.family()));
+			return future;
+		}
+
+		try {
+			return throttle(req, consumer, breaker.track(permit, callback),
+			        messageCount);
+		} catch (RuntimeException e) {
+			breaker.ignored(permit);
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the circuit breaker protecting the endpoint of the given
+	 * request.
+	 * 
+	 * @param req
+	 *            the request to send
+	 * @return a circuit breaker or <code>null</code> if none applies
+	 */
+	private CircuitBreaker circuitBreaker(HttpUriRequest req) {
+		CircuitBreakers breakers = circuitBreakers();
+
+		if (breakers == null) {
+			return null;
+		}
+
+		EndpointFamily family = endpoints().familyOf(req.getURI());
+
+		return (family == null) ? null : breakers.get(family);
+	}
+
+	/**
+	 * Sends the given request, subject to the limits of this connection. If
+	 * this connection has a {@link #rateLimit() rate limit} then the request
+	 * may be delayed or rejected. If this connection has a
+	 * {@link #concurrencyLimit() concurrency limit} then the request may be
+	 * queued.
+	 * 
+	 * @param req
+	 *            the request to send
+	 * @param consumer
+	 *            the consumer of the response
+	 * @param callback
+	 *            the wrapped callback
+	 * @param messageCount
+	 *            the number of messages sent by the request
+	 * @return a future yielding the consumer's result
+	 */
+	private <T> Future<T> throttle(final HttpUriRequest req,
+	        final HttpAsyncResponseConsumer<T> consumer,
+	        FutureCallback<T> callback, int messageCount) {
+		RateLimiter limiter = rateLimiter();
+
+		if (limiter == null) {
+			return send(req, consumer, callback);
+		}
+
+		long delay = limiter.reserve(messageCount);
+
+		if (delay == 0) {
+			return send(req, consumer, callback);
+		}
+
+		final DeferredFuture<T> future = new DeferredFuture<T>(callback);
+
+		if (delay < 0) {
+			future.failed(
+			        new RateLimitExceededException(limiter.servicePlanId()));
+			return future;
+		}
+
+		Future<?> scheduled = SharedTimer.schedule(new Runnable() {
+
+			@Override
+			public void run() {
+				if (future.isDone()) {
+					return;
+				}
+
+				try {
+					future.setDelegate(
+					        send(req, consumer, future.completer()));
+				} catch (RuntimeException e) {
+					// The shared timer would otherwise swallow the exception.
+					future.failed(e);
+				}
+			}
+
+		}, delay, TimeUnit.NANOSECONDS);
+
+		// The task may already have run and registered the sent request.
+		future.setDelegateIfAbsent(scheduled);
+
+		return future;
+	}
+
+	/**
+	 * Returns a fresh consumer configured like the given consumer.
+	 * 
+	 * @param consumer
+	 *            the consumer to copy
+	 * @return a new consumer
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T> HttpAsyncResponseConsumer<T> copyOf(
+	        HttpAsyncResponseConsumer<T> consumer) {
+		if (consumer instanceof JsonApiAsyncConsumer) {
+			return ((JsonApiAsyncConsumer<T>) consumer).copy();
+		} else if (consumer instanceof EmptyAsyncConsumer) {
+			EmptyAsyncConsumer empty = (EmptyAsyncConsumer) consumer;
+			return (HttpAsyncResponseConsumer<T>) empty.copy();
+		} else {
+			throw new IllegalArgumentException(
+			        "cannot copy consumer " + consumer);
+		}
+	}
+
+	/**
+	 * Gives the given request its own copy of its entity, if the entity keeps
+	 * track of how much content has been sent. This lets a new attempt send
+	 * the content from the start while a previous exchange still holds, and
+	 * eventually closes, the old entity.
+	 * 
+	 * @param req
+	 *            the request to prepare for another attempt
+	 */
+	private static void renewEntity(HttpUriRequest req) {
+		if (req instanceof HttpEntityEnclosingRequest) {
+			HttpEntityEnclosingRequest r = (HttpEntityEnclosingRequest) req;
+			HttpEntity entity = r.getEntity();
+
+			if (entity instanceof ChunkedJsonEntity) {
+				r.setEntity(((ChunkedJsonEntity) entity).copy());
+			}
+		}
+	}
+
+	/**
+	 * Whether the given request may be sent more than once without changing
+	 * its effect.
+	 * 
+	 * @param req
+	 *            the request to inspect
+	 * @return true if the request is idempotent
+	 */
+	private static boolean isIdempotent(HttpUriRequest req) {
+		String method = req.getMethod();
+
+		return HttpGet.METHOD_NAME.equals(method)
+		        || HttpPut.METHOD_NAME.equals(method)
+		        || HttpDelete.METHOD_NAME.equals(method);
+	}
+
+	/**
+	 * Sends the given request using this connection's transport once
+	 * permitted by the concurrency limiter.
+	 * 
+	 * @param req
+	 *            the request to send
+	 * @param consumer
+	 *            the consumer of the response
+	 * @param callback
+	 *            the wrapped callback
+	 * @return a future yielding the consumer's result
+	 */
+	private <T> Future<T> send(final HttpUriRequest req,
+	        final HttpAsyncResponseConsumer<T> consumer,
+	        FutureCallback<T> callback) {
+		final ConcurrencyLimiter limiter = concurrencyLimiter();
+
+		if (limiter == null) {
+			return dispatch(req, consumer, callback);
+		}
+
+		final DeferredFuture<T> future = new DeferredFuture<T>(callback);
+
+		limiter.acquire(future, new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					future.setDelegate(dispatch(req, consumer,
+					        limiter.track(future.completer())));
+				} catch (RuntimeException e) {
+					limiter.release(-1, false);
+					future.failed(e);
+				}
+			}
+
+		});
+
+		return future;
+	}
+
+	/**
+	 * Hands the given request to this connection's transport once the
+	 * priority lanes have capacity for it.
+	 * 
+	 * @param req
+	 *            the request to send
+	 * @param consumer
+	 *            the consumer of the response
+	 * @param callback
+	 *            the wrapped callback
+	 * @return a future yielding the consumer's result
+	 */
+	private <T> Future<T> dispatch(final HttpUriRequest req,
+	        final HttpAsyncResponseConsumer<T> consumer,
+	        FutureCallback<T> callback) {
+		final PriorityLanes lanes = priorityLanes();
+
+		if (lanes == null) {
+			return transport().execute(req, consumer, callback);
+		}
+
+		final DeferredFuture<T> future = new DeferredFuture<T>(callback);
+
+		lanes.acquire(priority(), future, new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					future.setDelegate(transport().execute(req, consumer,
+					        lanes.track(future.completer())));
+				} catch (RuntimeException e) {
+					lanes.release();
+					future.failed(e);
+				}
+			}
+
+		});
+
+		return future;
+	}
+
 	/**
 	 * Decorates the given request with headers that XMS require.
 	 * 
@@ -519,10 +1175,9 @@ public abstract class ApiConnection implements Closeable {
 	 * @return the given request object
 	 */
 	private <T extends HttpRequest> T withStandardHeaders(T req) {
-		req.setHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token());
-		req.setHeader(HttpHeaders.ACCEPT,
-		        ContentType.APPLICATION_JSON.toString());
-		req.setHeader("X-CLX-SDK-Version", Version.VERSION);
+		req.setHeader(authorizationHeader());
+		req.setHeader(ACCEPT_HEADER);
+		req.setHeader(SDK_VERSION_HEADER);
 
 		return req;
 	}
@@ -538,24 +1193,22 @@ public abstract class ApiConnection implements Closeable {
 	 */
 	private <T extends HttpEntityEnclosingRequest> T withJsonContent(
 	        Object object, T req) {
-		final byte[] content;
+		final ChunkedJsonEntity entity;
 
 		/*
 		 * Attempt to serialize the given object into JSON. Note, we wrap the
-		 * JsonProcessingException in a runtime exception since we control which
-		 * objects will be serialized and can guarantee that they all should be
-		 * serializable. Thus, if the exception still is thrown it indicates a
-		 * severe bug in internal state management.
+		 * IOException in a runtime exception since we control which objects
+		 * will be serialized and can guarantee that they all should be
+		 * serializable. The chunked output stream itself never throws. Thus,
+		 * if the exception still is thrown it indicates a severe bug in
+		 * internal state management.
 		 */
 		try {
-			content = json.writeValueAsBytes(object);
-		} catch (JsonProcessingException e) {
+			entity = ChunkedJsonEntity.of(jsonCodecs().writer(object), object);
+		} catch (IOException e) {
 			throw new IllegalStateException(e);
 		}
 
-		ByteArrayEntity entity =
-		        new ByteArrayEntity(content, ContentType.APPLICATION_JSON);
-
 		req.setEntity(entity);
 
 		return req;
@@ -603,13 +1256,11 @@ public abstract class ApiConnection implements Closeable {
 	        FutureCallback<MtBatchTextSmsResult> callback) {
 		HttpPost req = post(batchesEndpoint(), sms);
 
-		HttpAsyncRequestProducer requestProducer =
-		        new BasicAsyncRequestProducer(endpointHost(), req);
 		HttpAsyncResponseConsumer<MtBatchTextSmsResult> responseConsumer =
 		        jsonAsyncConsumer(MtBatchTextSmsResult.class);
 
-		return httpClient().execute(requestProducer, responseConsumer,
-		        callbackWrapper().wrap(callback));
+		return execute(req, responseConsumer, callback,
+		        sms.recipients().size());
 	}
 
 	/**
@@ -655,13 +1306,465 @@ public abstract class ApiConnection implements Closeable {
 	        FutureCallback<MtBatchBinarySmsResult> callback) {
 		HttpPost req = post(batchesEndpoint(), sms);
 
-		HttpAsyncRequestProducer requestProducer =
-		        new BasicAsyncRequestProducer(endpointHost(), req);
 		HttpAsyncResponseConsumer<MtBatchBinarySmsResult> responseConsumer =
 		        jsonAsyncConsumer(MtBatchBinarySmsResult.class);
 
-		return httpClient().execute(requestProducer, responseConsumer,
-		        callbackWrapper().wrap(callback));
+		return execute(req, responseConsumer, callback,
+		        sms.recipients().size());
+	}
+
+	/**
+	 * Creates the given text batch as a number of sub-batches of at most
+	 * {@value #DEFAULT_CHUNK_SIZE} recipients each, keeping at most
+	 * {@value #DEFAULT_MAX_CHUNKS_IN_FLIGHT} create requests in flight.
+	 * 
+	 * @param sms
+	 *            the batch to create
+	 * @return a handle to the submission
+	 * @see #createBatchesChunked(MtBatchTextSmsCreate, int, int)
+	 */
+	@Nonnull
+	public ChunkedBatches<MtBatchTextSmsResult> createBatchesChunked(
+	        MtBatchTextSmsCreate sms) {
+		return createBatchesChunked(sms, DEFAULT_CHUNK_SIZE,
+		        DEFAULT_MAX_CHUNKS_IN_FLIGHT);
+	}
+
+	/**
+	 * Creates the given text batch as a number of sub-batches, each holding a
+	 * consecutive range of at most <code>chunkSize</code> recipients. Template
+	 * parameter substitutions are passed along with the recipients they
+	 * concern.
+	 * <p>
+	 * The sub-batches are submitted concurrently in the background, keeping at
+	 * most <code>maxInFlight</code> create requests outstanding. This method
+	 * does not block, the returned handle may be used to await completion and
+	 * to inspect or cancel the created sub-batches.
+	 * 
+	 * @param sms
+	 *            the batch to create
+	 * @param chunkSize
+	 *            the maximum number of recipients per sub-batch
+	 * @param maxInFlight
+	 *            the maximum number of concurrent create requests
+	 * @return a handle to the submission
+	 * @throws IllegalArgumentException
+	 *             if the chunk size or the in-flight limit is not positive
+	 */
+	@Nonnull
+	public ChunkedBatches<MtBatchTextSmsResult> createBatchesChunked(
+	        final MtBatchTextSmsCreate sms, final int chunkSize,
+	        int maxInFlight) {
+		int chunkCount = chunkCount(sms, chunkSize, maxInFlight);
+
+		return new ChunkedBatches<MtBatchTextSmsResult>(
+		        new ChunkSubmitter<MtBatchTextSmsResult>() {
+
+			        @Override
+			        Future<MtBatchTextSmsResult> submit(int chunk,
+			                FutureCallback<MtBatchTextSmsResult> callback) {
+				        return createBatchAsync(
+				                BatchChunks.text(sms, chunk, chunkSize),
+				                callback);
+			        }
+
+		        }, chunkCount, maxInFlight).start();
+	}
+
+	/**
+	 * Creates the given binary batch as a number of sub-batches of at most
+	 * {@value #DEFAULT_CHUNK_SIZE} recipients each, keeping at most
+	 * {@value #DEFAULT_MAX_CHUNKS_IN_FLIGHT} create requests in flight.
+	 * 
+	 * @param sms
+	 *            the batch to create
+	 * @return a handle to the submission
+	 * @see #createBatchesChunked(MtBatchBinarySmsCreate, int, int)
+	 */
+	@Nonnull
+	public ChunkedBatches<MtBatchBinarySmsResult> createBatchesChunked(
+	        MtBatchBinarySmsCreate sms) {
+		return createBatchesChunked(sms, DEFAULT_CHUNK_SIZE,
+		        DEFAULT_MAX_CHUNKS_IN_FLIGHT);
+	}
+
+	/**
+	 * Creates the given binary batch as a number of sub-batches, each holding
+	 * a consecutive range of at most <code>chunkSize</code> recipients.
+	 * <p>
+	 * The sub-batches are submitted concurrently in the background, keeping at
+	 * most <code>maxInFlight</code> create requests outstanding. This method
+	 * does not block, the returned handle may be used to await completion and
+	 * to inspect or cancel the created sub-batches.
+	 * 
+	 * @param sms
+	 *            the batch to create
+	 * @param chunkSize
+	 *            the maximum number of recipients per sub-batch
+	 * @param maxInFlight
+	 *            the maximum number of concurrent create requests
+	 * @return a handle to the submission
+	 * @throws IllegalArgumentException
+	 *             if the chunk size or the in-flight limit is not positive
+	 */
+	@Nonnull
+	public ChunkedBatches<MtBatchBinarySmsResult> createBatchesChunked(
+	        final MtBatchBinarySmsCreate sms, final int chunkSize,
+	        int maxInFlight) {
+		int chunkCount = chunkCount(sms, chunkSize, maxInFlight);
+
+		return new ChunkedBatches<MtBatchBinarySmsResult>(
+		        new ChunkSubmitter<MtBatchBinarySmsResult>() {
+
+			        @Override
+			        Future<MtBatchBinarySmsResult> submit(int chunk,
+			                FutureCallback<MtBatchBinarySmsResult> callback) {
+				        return createBatchAsync(
+				                BatchChunks.binary(sms, chunk, chunkSize),
+				                callback);
+			        }
+
+		        }, chunkCount, maxInFlight).start();
+	}
+
+	/**
+	 * Validates the chunking parameters and returns the number of chunks.
+	 * 
+	 * @param sms
+	 *            the batch to split
+	 * @param chunkSize
+	 *            the maximum number of recipients per chunk
+	 * @param maxInFlight
+	 *            the maximum number of concurrent create requests
+	 * @return the number of chunks
+	 */
+	private static int chunkCount(MtBatchSmsCreate sms, int chunkSize,
+	        int maxInFlight) {
+		Utils.requireNonNull(sms, "sms");
+
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException(
+			        "chunk size must be positive, got " + chunkSize);
+		}
+
+		if (maxInFlight < 1) {
+			throw new IllegalArgumentException(
+			        "in-flight limit must be positive, got " + maxInFlight);
+		}
+
+		return BatchChunks.count(sms.recipients().size(), chunkSize);
+	}
+
+	/**
+	 * A request that is attempted again when failing, according to a retry
+	 * policy. Retries are scheduled on the shared timer so no thread is
+	 * blocked while waiting.
+	 * 
+	 * @param <T>
+	 *            the type of the response
+	 */
+	private final class RetryingRequest<T>
+	        implements FutureCallback<T>, Runnable {
+
+		private final RetryPolicy policy;
+
+		private final HttpUriRequest req;
+
+		private final HttpAsyncResponseConsumer<T> consumer;
+
+		private final int messageCount;
+
+		private final boolean idempotent;
+
+		private final DeferredFuture<T> future;
+
+		/**
+		 * The number of attempts started so far.
+		 */
+		private int attempts = 0;
+
+		/**
+		 * The number of attempts that have failed so far.
+		 */
+		private int failures = 0;
+
+		RetryingRequest(RetryPolicy policy, HttpUriRequest req,
+		        HttpAsyncResponseConsumer<T> consumer, int messageCount,
+		        DeferredFuture<T> future) {
+			this.policy = policy;
+			this.req = req;
+			this.consumer = consumer;
+			this.messageCount = messageCount;
+			this.idempotent = isIdempotent(req);
+			this.future = future;
+		}
+
+		@Override
+		public void run() {
+			if (future.isDone()) {
+				return;
+			}
+
+			int attempt;
+			synchronized (this) {
+				attempt = ++attempts;
+			}
+
+			Future<T> current;
+			try {
+				HttpAsyncResponseConsumer<T> c = consumer;
+
+				if (attempt > 1) {
+					c = copyOf(consumer);
+					renewEntity(req);
+				}
+
+				current = attempt(req, c, this, messageCount);
+			} catch (RuntimeException e) {
+				// Retries run on the shared timer, which would swallow the
+				// exception, for example if the connection was closed.
+				future.failed(e);
+				return;
+			}
+
+			synchronized (this) {
+				// Unless the attempt already failed and a retry is scheduled.
+				if (failures < attempt) {
+					future.setDelegate(current);
+				}
+			}
+		}
+
+		@Override
+		public void completed(T result) {
+			future.completed(result);
+		}
+
+		@Override
+		public void failed(Exception ex) {
+			synchronized (this) {
+				failures++;
+
+				long delay = policy.retryDelay(failures, ex, idempotent,
+				        RETRY_JITTER.nextDouble(), System.currentTimeMillis());
+
+				if (delay >= 0 && !future.isDone()) {
+					log.debug("Retrying {} {} in {} ms after attempt {} failed",
+					        req.getMethod(), req.getURI(),
+					        TimeUnit.NANOSECONDS.toMillis(delay), failures, ex);
+
+					future.setDelegate(SharedTimer.schedule(this, delay,
+					        TimeUnit.NANOSECONDS));
+					return;
+				}
+			}
+
+			future.failed(ex);
+		}
+
+		@Override
+		public void cancelled() {
+			future.cancel();
+		}
+
+	}
+
+	/**
+	 * A GET request that is duplicated if no response has arrived within the
+	 * hedging delay. The first response wins and the outstanding requests are
+	 * cancelled. The request only fails if all sent requests fail.
+	 * 
+	 * @param <T>
+	 *            the type of the response
+	 */
+	private final class HedgedRequest<T>
+	        implements FutureCallback<T>, Runnable {
+
+		private final Hedger hedger;
+
+		private final HttpUriRequest req;
+
+		private final HttpAsyncResponseConsumer<T> consumer;
+
+		private final FutureCallback<T> callback;
+
+		private final BasicFuture<T> future;
+
+		private final long startNanos = System.nanoTime();
+
+		/**
+		 * The outstanding requests and the scheduled hedge.
+		 */
+		private final List<Future<?>> pending = new ArrayList<Future<?>>(3);
+
+		/**
+		 * The number of requests sent.
+		 */
+		private int sent = 0;
+
+		/**
+		 * The number of sent requests that failed or were cancelled.
+		 */
+		private int ended = 0;
+
+		HedgedRequest(Hedger hedger, HttpUriRequest req,
+		        HttpAsyncResponseConsumer<T> consumer,
+		        FutureCallback<T> callback) {
+			this.hedger = hedger;
+			this.req = req;
+			this.consumer = consumer;
+			this.callback = callback;
+			this.future = new BasicFuture<T>(this);
+		}
+
+		/**
+		 * Sends the first request and schedules the hedge.
+		 * 
+		 * @return a future yielding the first response
+		 */
+		Future<T> start() {
+			hedger.requested();
+
+			send(consumer);
+
+			if (!future.isDone()) {
+				track(SharedTimer.schedule(this, hedger.delay(),
+				        TimeUnit.NANOSECONDS));
+			}
+
+			return future;
+		}
+
+		/**
+		 * Sends the hedge, if the first request still is outstanding and the
+		 * budget permits.
+		 */
+		@Override
+		public void run() {
+			if (!future.isDone() && hedger.tryHedge()) {
+				log.debug("Hedging {} {}", req.getMethod(), req.getURI());
+				send(copyOf(consumer));
+			}
+		}
+
+		private void send(HttpAsyncResponseConsumer<T> c) {
+			// Counted before sending since the outcome may be known at once.
+			synchronized (this) {
+				sent++;
+			}
+
+			FutureCallback<T> outcome = new FutureCallback<T>() {
+
+				@Override
+				public void completed(T result) {
+					future.completed(result);
+				}
+
+				@Override
+				public void failed(Exception ex) {
+					if (allEnded()) {
+						future.failed(ex);
+					}
+				}
+
+				@Override
+				public void cancelled() {
+					if (allEnded()) {
+						future.cancel();
+					}
+				}
+
+			};
+
+			try {
+				track(guard(req, c, outcome, 0));
+			} catch (RuntimeException e) {
+				// The request ended without being sent. For the hedge this
+				// also keeps the exception from being swallowed by the timer.
+				outcome.failed(e);
+			}
+		}
+
+		private synchronized boolean allEnded() {
+			return ++ended == sent;
+		}
+
+		/**
+		 * Remembers the given operation such that it is cancelled once the
+		 * outcome is known. If the outcome already is known then the
+		 * operation is cancelled immediately.
+		 * 
+		 * @param operation
+		 *            an outstanding request or scheduled hedge
+		 */
+		private void track(Future<?> operation) {
+			synchronized (this) {
+				if (!future.isDone()) {
+					pending.add(operation);
+					return;
+				}
+			}
+
+			operation.cancel(true);
+		}
+
+		private void cancelPending() {
+			List<Future<?>> operations;
+
+			synchronized (this) {
+				operations = new ArrayList<Future<?>>(pending);
+				pending.clear();
+			}
+
+			for (Future<?> operation : operations) {
+				operation.cancel(true);
+			}
+		}
+
+		@Override
+		public void completed(T result) {
+			hedger.record(System.nanoTime() - startNanos);
+			cancelPending();
+
+			if (callback != null) {
+				callback.completed(result);
+			}
+		}
+
+		@Override
+		public void failed(Exception ex) {
+			cancelPending();
+
+			if (callback != null) {
+				callback.failed(ex);
+			}
+		}
+
+		@Override
+		public void cancelled() {
+			cancelPending();
+
+			if (callback != null) {
+				callback.cancelled();
+			}
+		}
+
+	}
+
+	/**
+	 * A chunk submitter that cancels created batches using this connection.
+	 * 
+	 * @param <T>
+	 *            the type of the created batches
+	 */
+	private abstract class ChunkSubmitter<T>
+	        extends ChunkedBatches.Submitter<T> {
+
+		@Override
+		void cancel(BatchId batchId) {
+			cancelBatchAsync(batchId, null);
+		}
+
 	}
 
 	/**
@@ -710,13 +1813,11 @@ public abstract class ApiConnection implements Closeable {
 	        FutureCallback<MtBatchTextSmsResult> callback) {
 		HttpPut req = put(batchEndpoint(id), sms);
 
-		HttpAsyncRequestProducer requestProducer =
-		        new BasicAsyncRequestProducer(endpointHost(), req);
 		HttpAsyncResponseConsumer<MtBatchTextSmsResult> responseConsumer =
 		        jsonAsyncConsumer(MtBatchTextSmsResult.class);
 
-		return httpClient().execute(requestProducer, responseConsumer,
-		        callbackWrapper().wrap(callback));
+		return execute(req, responseConsumer, callback,
+		        sms.recipients().size());
 	}
 
 	/**
@@ -765,13 +1866,11 @@ public abstract class ApiConnection implements Closeable {
 	        FutureCallback<MtBatchBinarySmsResult> callback) {
 		HttpPut req = put(batchEndpoint(id), sms);
 
-		HttpAsyncRequestProducer requestProducer =
-		        new BasicAsyncRequestProducer(endpointHost(), req);
 		HttpAsyncResponseConsumer<MtBatchBinarySmsResult> responseConsumer =
 		        jsonAsyncConsumer(MtBatchBinarySmsResult.class);
 
-		return httpClient().execute(requestProducer, responseConsumer,
-		        callbackWrapper().wrap(callback));
+		return execute(req, responseConsumer, callback,
+		        sms.recipients().size());
 	}
 
 	/**
@@ -819,13 +1918,10 @@ public abstract class ApiConnection implements Closeable {
 	        FutureCallback<MtBatchTextSmsResult> callback) {
 		HttpPost req = post(batchEndpoint(batchId), sms);
 
-		HttpAsyncRequestProducer producer =
-		        new BasicAsyncRequestProducer(endpointHost(), req);
 		HttpAsyncResponseConsumer<MtBatchTextSmsResult> consumer =
 		        jsonAsyncConsumer(MtBatchTextSmsResult.class);
 
-		return httpClient().execute(producer, consumer,
-		        callbackWrapper().wrap(callback));
+		return execute(req, consumer, callback);
 	}
 
 	/**
@@ -873,13 +1969,10 @@ public abstract class ApiConnection implements Closeable {
 	        FutureCallback<MtBatchBinarySmsResult> callback) {
 		HttpPost req = post(batchEndpoint(batchId), sms);
 
-		HttpAsyncRequestProducer producer =
-		        new BasicAsyncRequestProducer(endpointHost(), req);
 		HttpAsyncResponseConsumer<MtBatchBinarySmsResult> consumer =
 		        jsonAsyncConsumer(MtBatchBinarySmsResult.class);
 
-		return httpClient().execute(producer, consumer,
-		        callbackWrapper().wrap(callback));
+		return execute(req, consumer, callback);
 	}
 
 	/**
@@ -919,14 +2012,10 @@ public abstract class ApiConnection implements Closeable {
 	        FutureCallback<MtBatchSmsResult> callback) {
 		HttpGet req = get(batchEndpoint(batchId));
 
-		HttpAsyncRequestProducer producer =
-		        new BasicAsyncRequestProducer(endpointHost(), req);
-
 		HttpAsyncResponseConsumer<MtBatchSmsResult> consumer =
 		        jsonAsyncConsumer(MtBatchSmsResult.class);
 
-		return httpClient().execute(producer, consumer,
-		        callbackWrapper().wrap(callback));
+		return execute(req, consumer, callback);
 	}
 
 	/**
@@ -948,6 +2037,11 @@ public abstract class ApiConnection implements Closeable {
 				        callbackWrapper().wrap(callback));
 			}
 
+			@Override
+			String listing() {
+				return listingOf("/batches", filter.toQueryParams(0));
+			}
+
 		};
 	}
 
@@ -966,18 +2060,14 @@ public abstract class ApiConnection implements Closeable {
 	        BatchFilter filter,
 	        FutureCallback<Page<MtBatchSmsResult>> callback) {
 		List<NameValuePair> params = filter.toQueryParams(page);
-		URI url = endpoint("/batches", params);
+		URI url = batchesEndpoint(params);
 
 		HttpGet req = get(url);
 
-		HttpAsyncRequestProducer producer =
-		        new BasicAsyncRequestProducer(endpointHost(), req);
-
 		HttpAsyncResponseConsumer<Page<MtBatchSmsResult>> consumer =
 		        jsonAsyncConsumer(PagedBatchResult.class);
 
-		return httpClient().execute(producer, consumer,
-		        callbackWrapper().wrap(callback));
+		return execute(req, consumer, callback);
 	}
 
 	/**
@@ -1017,14 +2107,10 @@ public abstract class ApiConnection implements Closeable {
 	        FutureCallback<MtBatchSmsResult> callback) {
 		HttpDelete req = delete(batchEndpoint(batchId));
 
-		HttpAsyncRequestProducer producer =
-		        new BasicAsyncRequestProducer(endpointHost(), req);
-
 		HttpAsyncResponseConsumer<MtBatchSmsResult> consumer =
 		        jsonAsyncConsumer(MtBatchSmsResult.class);
 
-		return httpClient().execute(producer, consumer,
-		        callbackWrapper().wrap(callback));
+		return execute(req, consumer, callback);
 	}
 
 	/**
@@ -1088,13 +2174,10 @@ public abstract class ApiConnection implements Closeable {
 
 		HttpPost req = post(batchDryRunEndpoint(params), sms);
 
-		HttpAsyncRequestProducer requestProducer =
-		        new BasicAsyncRequestProducer(endpointHost(), req);
 		HttpAsyncResponseConsumer<MtBatchDryRunResult> responseConsumer =
 		        jsonAsyncConsumer(MtBatchDryRunResult.class);
 
-		return httpClient().execute(requestProducer, responseConsumer,
-		        callbackWrapper().wrap(callback));
+		return execute(req, responseConsumer, callback);
 	}
 
 	/**
@@ -1142,14 +2225,10 @@ public abstract class ApiConnection implements Closeable {
 		List<NameValuePair> params = filter.toQueryParams();
 		HttpGet req = get(batchDeliveryReportEndpoint(id, params));
 
-		HttpAsyncRequestProducer producer =
-		        new BasicAsyncRequestProducer(endpointHost(), req);
-
 		HttpAsyncResponseConsumer<BatchDeliveryReport> consumer =
 		        jsonAsyncConsumer(BatchDeliveryReport.class);
 
-		return httpClient().execute(producer, consumer,
-		        callbackWrapper().wrap(callback));
+		return execute(req, consumer, callback);
 	}
 
 	/**
@@ -1197,14 +2276,10 @@ public abstract class ApiConnection implements Closeable {
 	        FutureCallback<RecipientDeliveryReport> callback) {
 		HttpGet req = get(batchRecipientDeliveryReportEndpoint(id, recipient));
 
-		HttpAsyncRequestProducer producer =
-		        new BasicAsyncRequestProducer(endpointHost(), req);
-
 		HttpAsyncResponseConsumer<RecipientDeliveryReport> consumer =
 		        jsonAsyncConsumer(RecipientDeliveryReport.class);
 
-		return httpClient().execute(producer, consumer,
-		        callbackWrapper().wrap(callback));
+		return execute(req, consumer, callback);
 	}
 
 	/**
@@ -1248,14 +2323,10 @@ public abstract class ApiConnection implements Closeable {
 	        FutureCallback<Tags> callback) {
 		HttpPost req = post(batchTagsEndpoint(id), tags);
 
-		HttpAsyncRequestProducer producer =
-		        new BasicAsyncRequestProducer(endpointHost(), req);
-
 		HttpAsyncResponseConsumer<Tags> consumer =
 		        jsonAsyncConsumer(Tags.class);
 
-		return httpClient().execute(producer, consumer,
-		        callbackWrapper().wrap(callback));
+		return execute(req, consumer, callback);
 	}
 
 	/**
@@ -1299,14 +2370,10 @@ public abstract class ApiConnection implements Closeable {
 	        FutureCallback<Tags> callback) {
 		HttpPut req = put(batchTagsEndpoint(id), tags);
 
-		HttpAsyncRequestProducer producer =
-		        new BasicAsyncRequestProducer(endpointHost(), req);
-
 		HttpAsyncResponseConsumer<Tags> consumer =
 		        jsonAsyncConsumer(Tags.class);
 
-		return httpClient().execute(producer, consumer,
-		        callbackWrapper().wrap(callback));
+		return execute(req, consumer, callback);
 	}
 
 	/**
@@ -1346,14 +2413,10 @@ public abstract class ApiConnection implements Closeable {
 	        FutureCallback<Tags> callback) {
 		HttpGet req = get(batchTagsEndpoint(id));
 
-		HttpAsyncRequestProducer producer =
-		        new BasicAsyncRequestProducer(endpointHost(), req);
-
 		HttpAsyncResponseConsumer<Tags> consumer =
 		        jsonAsyncConsumer(Tags.class);
 
-		return httpClient().execute(producer, consumer,
-		        callbackWrapper().wrap(callback));
+		return execute(req, consumer, callback);
 	}
 
 	/**
@@ -1393,13 +2456,10 @@ public abstract class ApiConnection implements Closeable {
 	        FutureCallback<GroupResult> callback) {
 		HttpPost req = post(groupsEndpoint(), group);
 
-		HttpAsyncRequestProducer requestProducer =
-		        new BasicAsyncRequestProducer(endpointHost(), req);
 		HttpAsyncResponseConsumer<GroupResult> responseConsumer =
 		        jsonAsyncConsumer(GroupResult.class);
 
-		return httpClient().execute(requestProducer, responseConsumer,
-		        callbackWrapper().wrap(callback));
+		return execute(req, responseConsumer, callback);
 	}
 
 	/**
@@ -1439,13 +2499,10 @@ public abstract class ApiConnection implements Closeable {
 	        FutureCallback<GroupResult> callback) {
 		HttpGet req = get(groupEndpoint(id));
 
-		HttpAsyncRequestProducer requestProducer =
-		        new BasicAsyncRequestProducer(endpointHost(), req);
 		HttpAsyncResponseConsumer<GroupResult> responseConsumer =
 		        jsonAsyncConsumer(GroupResult.class);
 
-		return httpClient().execute(requestProducer, responseConsumer,
-		        callbackWrapper().wrap(callback));
+		return execute(req, responseConsumer, callback);
 	}
 
 	/**
@@ -1485,15 +2542,11 @@ public abstract class ApiConnection implements Closeable {
 	        FutureCallback<Set<String>> callback) {
 		HttpGet req = get(groupMembersEndpoint(id));
 
-		HttpAsyncRequestProducer requestProducer =
-		        new BasicAsyncRequestProducer(endpointHost(), req);
-
 		@SuppressWarnings("unchecked")
 		HttpAsyncResponseConsumer<Set<String>> responseConsumer =
 		        jsonAsyncConsumer(Set.class);
 
-		return httpClient().execute(requestProducer, responseConsumer,
-		        callbackWrapper().wrap(callback));
+		return execute(req, responseConsumer, callback);
 	}
 
 	/**
@@ -1515,6 +2568,11 @@ public abstract class ApiConnection implements Closeable {
 				        callbackWrapper().wrap(callback));
 			}
 
+			@Override
+			String listing() {
+				return listingOf("/groups", filter.toQueryParams(0));
+			}
+
 		};
 	}
 
@@ -1535,14 +2593,10 @@ public abstract class ApiConnection implements Closeable {
 		List<NameValuePair> params = filter.toQueryParams(page);
 		HttpGet req = get(groupsEndpoint(params));
 
-		HttpAsyncRequestProducer producer =
-		        new BasicAsyncRequestProducer(endpointHost(), req);
-
 		HttpAsyncResponseConsumer<Page<GroupResult>> consumer =
 		        jsonAsyncConsumer(PagedGroupResult.class);
 
-		return httpClient().execute(producer, consumer,
-		        callbackWrapper().wrap(callback));
+		return execute(req, consumer, callback);
 	}
 
 	/**
@@ -1587,13 +2641,10 @@ public abstract class ApiConnection implements Closeable {
 	        FutureCallback<GroupResult> callback) {
 		HttpPost req = post(groupEndpoint(id), group);
 
-		HttpAsyncRequestProducer producer =
-		        new BasicAsyncRequestProducer(endpointHost(), req);
 		HttpAsyncResponseConsumer<GroupResult> consumer =
 		        jsonAsyncConsumer(GroupResult.class);
 
-		return httpClient().execute(producer, consumer,
-		        callbackWrapper().wrap(callback));
+		return execute(req, consumer, callback);
 	}
 
 	/**
@@ -1638,13 +2689,10 @@ public abstract class ApiConnection implements Closeable {
 	        GroupCreate group, FutureCallback<GroupResult> callback) {
 		HttpPut req = put(groupEndpoint(id), group);
 
-		HttpAsyncRequestProducer producer =
-		        new BasicAsyncRequestProducer(endpointHost(), req);
 		HttpAsyncResponseConsumer<GroupResult> consumer =
 		        jsonAsyncConsumer(GroupResult.class);
 
-		return httpClient().execute(producer, consumer,
-		        callbackWrapper().wrap(callback));
+		return execute(req, consumer, callback);
 	}
 
 	/**
@@ -1683,13 +2731,10 @@ public abstract class ApiConnection implements Closeable {
 	        FutureCallback<Void> callback) {
 		HttpDelete req = delete(groupEndpoint(id));
 
-		HttpAsyncRequestProducer producer =
-		        new BasicAsyncRequestProducer(endpointHost(), req);
 		HttpAsyncResponseConsumer<Void> consumer =
-		        new EmptyAsyncConsumer(json);
+		        new EmptyAsyncConsumer(jsonCodecs().errorReader());
 
-		return httpClient().execute(producer, consumer,
-		        callbackWrapper().wrap(callback));
+		return execute(req, consumer, callback);
 	}
 
 	/**
@@ -1733,14 +2778,10 @@ public abstract class ApiConnection implements Closeable {
 	        FutureCallback<Tags> callback) {
 		HttpPost req = post(groupTagsEndpoint(id), tags);
 
-		HttpAsyncRequestProducer producer =
-		        new BasicAsyncRequestProducer(endpointHost(), req);
-
 		HttpAsyncResponseConsumer<Tags> consumer =
 		        jsonAsyncConsumer(Tags.class);
 
-		return httpClient().execute(producer, consumer,
-		        callbackWrapper().wrap(callback));
+		return execute(req, consumer, callback);
 	}
 
 	/**
@@ -1784,14 +2825,10 @@ public abstract class ApiConnection implements Closeable {
 	        FutureCallback<Tags> callback) {
 		HttpPut req = put(groupTagsEndpoint(id), tags);
 
-		HttpAsyncRequestProducer producer =
-		        new BasicAsyncRequestProducer(endpointHost(), req);
-
 		HttpAsyncResponseConsumer<Tags> consumer =
 		        jsonAsyncConsumer(Tags.class);
 
-		return httpClient().execute(producer, consumer,
-		        callbackWrapper().wrap(callback));
+		return execute(req, consumer, callback);
 	}
 
 	/**
@@ -1831,14 +2868,10 @@ public abstract class ApiConnection implements Closeable {
 	        FutureCallback<Tags> callback) {
 		HttpGet req = get(groupTagsEndpoint(id));
 
-		HttpAsyncRequestProducer producer =
-		        new BasicAsyncRequestProducer(endpointHost(), req);
-
 		HttpAsyncResponseConsumer<Tags> consumer =
 		        jsonAsyncConsumer(Tags.class);
 
-		return httpClient().execute(producer, consumer,
-		        callbackWrapper().wrap(callback));
+		return execute(req, consumer, callback);
 	}
 
 	/**
@@ -1860,6 +2893,11 @@ public abstract class ApiConnection implements Closeable {
 				        callbackWrapper().wrap(callback));
 			}
 
+			@Override
+			String listing() {
+				return listingOf("/inbounds", filter.toQueryParams(0));
+			}
+
 		};
 	}
 
@@ -1880,14 +2918,32 @@ public abstract class ApiConnection implements Closeable {
 		List<NameValuePair> params = filter.toQueryParams(page);
 		HttpGet req = get(inboundsEndpoint(params));
 
-		HttpAsyncRequestProducer producer =
-		        new BasicAsyncRequestProducer(endpointHost(), req);
-
 		HttpAsyncResponseConsumer<Page<MoSms>> consumer =
 		        jsonAsyncConsumer(PagedInboundsResult.class);
 
-		return httpClient().execute(producer, consumer,
-		        callbackWrapper().wrap(callback));
+		return execute(req, consumer, callback);
+	}
+
+	/**
+	 * Fetches a page of the given listing without deserializing its elements.
+	 * Used when exporting listings in bulk.
+	 * 
+	 * @param subPath
+	 *            the listing path, for example <code>/batches</code>
+	 * @param params
+	 *            the query parameters, including the page number
+	 * @param callback
+	 *            the callback to invoke when call is finished
+	 * @return a future raw page
+	 */
+	Future<RawPage> fetchRawPage(String subPath, List<NameValuePair> params,
+	        FutureCallback<RawPage> callback) {
+		HttpGet req = get(endpoint(subPath, params));
+
+		HttpAsyncResponseConsumer<RawPage> consumer =
+		        jsonAsyncConsumer(RawPage.class);
+
+		return execute(req, consumer, callback);
 	}
 
 	/**
@@ -1927,14 +2983,10 @@ public abstract class ApiConnection implements Closeable {
 	        FutureCallback<MoSms> callback) {
 		HttpGet req = get(inboundEndpoint(id));
 
-		HttpAsyncRequestProducer producer =
-		        new BasicAsyncRequestProducer(endpointHost(), req);
-
 		HttpAsyncResponseConsumer<MoSms> consumer =
 		        jsonAsyncConsumer(MoSms.class);
 
-		return httpClient().execute(producer, consumer,
-		        callbackWrapper().wrap(callback));
+		return execute(req, consumer, callback);
 	}
 
 }
@@ -31,8 +31,11 @@ import org.apache.http.HttpResponse;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
 import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
 import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
 import org.apache.http.nio.client.HttpAsyncClient;
 import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
 import org.apache.http.nio.protocol.HttpAsyncRequestProducer;
@@ -52,6 +55,244 @@ import org.threeten.bp.Duration;
  */
 public class ApiHttpAsyncClient implements HttpAsyncClient, Closeable {
 
+	/**
+	 * A builder of asynchronous HTTP clients. Any setting that is not given
+	 * explicitly will use a default suitable for modest traffic towards XMS.
+	 * For high throughput it is typically necessary to, at least, raise the
+	 * maximum number of connections.
+	 */
+	public static final class Builder {
+
+		private int maxConnections = DEFAULT_MAX_CONN;
+
+		/**
+		 * The per-route maximum, <code>null</code> if it should follow the
+		 * total maximum.
+		 */
+		private Integer maxConnectionsPerRoute = null;
+
+		private int ioThreadCount =
+		        Runtime.getRuntime().availableProcessors();
+
+		private Duration connectTimeout = DEFAULT_TIMEOUT;
+
+		private Duration socketTimeout = DEFAULT_TIMEOUT;
+
+		private Duration connectionRequestTimeout = null;
+
+		private ConnectionKeepAliveStrategy keepAliveStrategy = null;
+
+		private boolean tcpNoDelay = true;
+
+		private int sendBufferSize = 0;
+
+		private int receiveBufferSize = 0;
+
+		Builder() {
+		}
+
+		/**
+		 * Sets the maximum total number of simultaneous connections. Default
+		 * is 10.
+		 * 
+		 * @param maxConnections
+		 *            the maximum number of connections, must be positive
+		 * @return this builder for use in a chained invocation
+		 */
+		public Builder maxConnections(int maxConnections) {
+			this.maxConnections =
+			        requirePositive(maxConnections, "maxConnections");
+			return this;
+		}
+
+		/**
+		 * Sets the maximum number of simultaneous connections towards a single
+		 * HTTP host. Since the client is mainly used towards the XMS endpoint
+		 * this should typically equal the {@link #maxConnections(int) total
+		 * maximum}, which is the default.
+		 * 
+		 * @param maxConnectionsPerRoute
+		 *            the maximum number of connections, must be positive
+		 * @return this builder for use in a chained invocation
+		 */
+		public Builder maxConnectionsPerRoute(int maxConnectionsPerRoute) {
+			this.maxConnectionsPerRoute = requirePositive(
+			        maxConnectionsPerRoute, "maxConnectionsPerRoute");
+			return this;
+		}
+
+		/**
+		 * Returns the per-route connection maximum that will be used by the
+		 * built client.
+		 * 
+		 * @return the maximum number of connections towards a single host
+		 */
+		int effectiveMaxConnectionsPerRoute() {
+			return (maxConnectionsPerRoute == null)
+			        ? maxConnections
+			        : maxConnectionsPerRoute;
+		}
+
+		/**
+		 * Sets the number of I/O dispatcher threads. Default is the number of
+		 * available processors.
+		 * 
+		 * @param ioThreadCount
+		 *            the number of threads, must be positive
+		 * @return this builder for use in a chained invocation
+		 */
+		public Builder ioThreadCount(int ioThreadCount) {
+			this.ioThreadCount =
+			        requirePositive(ioThreadCount, "ioThreadCount");
+			return this;
+		}
+
+		/**
+		 * Sets the timeout for establishing a connection. Default is 30
+		 * seconds.
+		 * 
+		 * @param connectTimeout
+		 *            the timeout, zero means no timeout
+		 * @return this builder for use in a chained invocation
+		 */
+		public Builder connectTimeout(Duration connectTimeout) {
+			this.connectTimeout =
+			        requireTimeout(connectTimeout, "connectTimeout");
+			return this;
+		}
+
+		/**
+		 * Sets the maximum period of inactivity between two consecutive data
+		 * packets. Default is 30 seconds.
+		 * 
+		 * @param socketTimeout
+		 *            the timeout, zero means no timeout
+		 * @return this builder for use in a chained invocation
+		 */
+		public Builder socketTimeout(Duration socketTimeout) {
+			this.socketTimeout =
+			        requireTimeout(socketTimeout, "socketTimeout");
+			return this;
+		}
+
+		/**
+		 * Sets the timeout for leasing a connection from the connection pool.
+		 * By default there is no timeout.
+		 * 
+		 * @param connectionRequestTimeout
+		 *            the timeout, zero means no timeout
+		 * @return this builder for use in a chained invocation
+		 */
+		public Builder connectionRequestTimeout(
+		        Duration connectionRequestTimeout) {
+			this.connectionRequestTimeout = requireTimeout(
+			        connectionRequestTimeout, "connectionRequestTimeout");
+			return this;
+		}
+
+		/**
+		 * Sets the strategy deciding how long idle connections are kept alive.
+		 * By default the <code>Keep-Alive</code> response header is honored and
+		 * connections are otherwise kept indefinitely.
+		 * 
+		 * @param keepAliveStrategy
+		 *            the keep-alive strategy
+		 * @return this builder for use in a chained invocation
+		 */
+		public Builder keepAliveStrategy(
+		        ConnectionKeepAliveStrategy keepAliveStrategy) {
+			this.keepAliveStrategy =
+			        Utils.requireNonNull(keepAliveStrategy, "keepAliveStrategy");
+			return this;
+		}
+
+		/**
+		 * Sets whether Nagle's algorithm should be disabled on connections,
+		 * i.e., the <code>TCP_NODELAY</code> socket option. Default is
+		 * <code>true</code>.
+		 * 
+		 * @param tcpNoDelay
+		 *            whether to disable Nagle's algorithm
+		 * @return this builder for use in a chained invocation
+		 */
+		public Builder tcpNoDelay(boolean tcpNoDelay) {
+			this.tcpNoDelay = tcpNoDelay;
+			return this;
+		}
+
+		/**
+		 * Sets the socket send buffer size. Default is zero, which means that
+		 * the system default is used.
+		 * 
+		 * @param sendBufferSize
+		 *            the buffer size in bytes, must be non-negative
+		 * @return this builder for use in a chained invocation
+		 */
+		public Builder sendBufferSize(int sendBufferSize) {
+			this.sendBufferSize =
+			        requireNonNegative(sendBufferSize, "sendBufferSize");
+			return this;
+		}
+
+		/**
+		 * Sets the socket receive buffer size. Default is zero, which means
+		 * that the system default is used.
+		 * 
+		 * @param receiveBufferSize
+		 *            the buffer size in bytes, must be non-negative
+		 * @return this builder for use in a chained invocation
+		 */
+		public Builder receiveBufferSize(int receiveBufferSize) {
+			this.receiveBufferSize =
+			        requireNonNegative(receiveBufferSize, "receiveBufferSize");
+			return this;
+		}
+
+		/**
+		 * Builds a new, initially stopped, HTTP client. The client must be
+		 * started and closed by the caller.
+		 * 
+		 * @return a newly constructed HTTP client
+		 */
+		@Nonnull
+		public ApiHttpAsyncClient build() {
+			return new ApiHttpAsyncClient(this, false);
+		}
+
+		private static int requirePositive(int value, String name) {
+			if (value <= 0) {
+				throw new IllegalArgumentException(name + " must be positive");
+			}
+
+			return value;
+		}
+
+		private static int requireNonNegative(int value, String name) {
+			if (value < 0) {
+				throw new IllegalArgumentException(
+				        name + " must be non-negative");
+			}
+
+			return value;
+		}
+
+		private static Duration requireTimeout(Duration value, String name) {
+			Utils.requireNonNull(value, name);
+
+			if (value.isNegative()) {
+				throw new IllegalArgumentException(
+				        name + " must be non-negative");
+			}
+
+			if (value.toMillis() > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException(name + " is too large");
+			}
+
+			return value;
+		}
+
+	}
+
 	/**
 	 * The default limit for the socket and connect timeout.
 	 */
@@ -69,18 +310,43 @@ public class ApiHttpAsyncClient implements HttpAsyncClient, Closeable {
 	private boolean startedInternally;
 
 	/**
-	 * The underlying actual HTTP client.
+	 * The builder of the underlying HTTP client.
 	 */
-	private final CloseableHttpAsyncClient client;
+	private final HttpAsyncClientBuilder clientBuilder;
+
+	/**
+	 * The underlying actual HTTP client. It is built on first use since
+	 * building it opens the I/O reactor, which would otherwise leak if this
+	 * client is never started and closed.
+	 */
+	private volatile CloseableHttpAsyncClient client = null;
+
+	/**
+	 * Whether this client has been closed. Guarded by this.
+	 */
+	private boolean closed = false;
 
 	/**
 	 * Creates a new HTTP asynchronous client suitable for communicating with
-	 * XMS.
+	 * XMS using default settings.
 	 * 
 	 * @param startedInternally
 	 *            whether this object was created inside this SDK
 	 */
 	ApiHttpAsyncClient(boolean startedInternally) {
+		this(new Builder(), startedInternally);
+	}
+
+	/**
+	 * Creates a new HTTP asynchronous client suitable for communicating with
+	 * XMS.
+	 * 
+	 * @param builder
+	 *            the builder holding the client settings
+	 * @param startedInternally
+	 *            whether this object was created inside this SDK
+	 */
+	private ApiHttpAsyncClient(Builder builder, boolean startedInternally) {
 		this.startedInternally = startedInternally;
 
 		// Allow TLSv1.2 protocol only
@@ -91,21 +357,41 @@ public class ApiHttpAsyncClient implements HttpAsyncClient, Closeable {
 		                null,
 		                SSLIOSessionStrategy.getDefaultHostnameVerifier());
 
-		RequestConfig requestConfig =
+		RequestConfig.Builder requestConfig =
 		        RequestConfig.custom()
-		                .setConnectTimeout((int) DEFAULT_TIMEOUT.toMillis())
-		                .setSocketTimeout((int) DEFAULT_TIMEOUT.toMillis())
+		                .setConnectTimeout(
+		                        (int) builder.connectTimeout.toMillis())
+		                .setSocketTimeout(
+		                        (int) builder.socketTimeout.toMillis());
+
+		if (builder.connectionRequestTimeout != null) {
+			requestConfig.setConnectionRequestTimeout(
+			        (int) builder.connectionRequestTimeout.toMillis());
+		}
+
+		IOReactorConfig ioReactorConfig =
+		        IOReactorConfig.custom()
+		                .setIoThreadCount(builder.ioThreadCount)
+		                .setTcpNoDelay(builder.tcpNoDelay)
+		                .setSndBufSize(builder.sendBufferSize)
+		                .setRcvBufSize(builder.receiveBufferSize)
 		                .build();
 
-		// TODO: Is this a good default setup?
-		this.client =
+		HttpAsyncClientBuilder clientBuilder =
 		        HttpAsyncClients.custom()
 		                .setSSLStrategy(sslSessionStrategy)
 		                .disableCookieManagement()
-		                .setMaxConnPerRoute(DEFAULT_MAX_CONN)
-		                .setMaxConnTotal(DEFAULT_MAX_CONN)
-		                .setDefaultRequestConfig(requestConfig)
-		                .build();
+		                .setMaxConnPerRoute(
+		                        builder.effectiveMaxConnectionsPerRoute())
+		                .setMaxConnTotal(builder.maxConnections)
+		                .setDefaultIOReactorConfig(ioReactorConfig)
+		                .setDefaultRequestConfig(requestConfig.build());
+
+		if (builder.keepAliveStrategy != null) {
+			clientBuilder.setKeepAliveStrategy(builder.keepAliveStrategy);
+		}
+
+		this.clientBuilder = clientBuilder;
 	}
 
 	/**
@@ -119,6 +405,19 @@ public class ApiHttpAsyncClient implements HttpAsyncClient, Closeable {
 		return new ApiHttpAsyncClient(false);
 	}
 
+	/**
+	 * Returns a fresh builder of asynchronous HTTP clients. Note, a client
+	 * created using the builder is considered external to any
+	 * {@link ApiConnection} using it and must therefore be started and closed
+	 * by the caller.
+	 * 
+	 * @return a non-null client builder
+	 */
+	@Nonnull
+	public static Builder builder() {
+		return new Builder();
+	}
+
 	/**
 	 * Whether this object was created inside the SDK.
 	 * 
@@ -129,20 +428,48 @@ public class ApiHttpAsyncClient implements HttpAsyncClient, Closeable {
 		return startedInternally;
 	}
 
+	/**
+	 * Returns the underlying HTTP client, building it if necessary.
+	 * 
+	 * @return a non-null HTTP client
+	 */
+	private CloseableHttpAsyncClient client() {
+		CloseableHttpAsyncClient c = client;
+
+		if (c == null) {
+			synchronized (this) {
+				c = client;
+
+				if (c == null) {
+					if (closed) {
+						throw new IllegalStateException("client is closed");
+					}
+
+					c = clientBuilder.build();
+					client = c;
+				}
+			}
+		}
+
+		return c;
+	}
+
 	/**
 	 * Whether this client is started.
 	 * 
 	 * @return <code>true</code> if started, <code>false</code> otherwise
 	 */
 	public boolean isRunning() {
-		return client.isRunning();
+		CloseableHttpAsyncClient c = client;
+
+		return c != null && c.isRunning();
 	}
 
 	/**
 	 * Starts this client.
 	 */
 	public void start() {
-		client.start();
+		client().start();
 	}
 
 	/**
@@ -153,14 +480,23 @@ public class ApiHttpAsyncClient implements HttpAsyncClient, Closeable {
 	 */
 	@Override
 	public void close() throws IOException {
-		client.close();
+		CloseableHttpAsyncClient c;
+
+		synchronized (this) {
+			closed = true;
+			c = client;
+		}
+
+		if (c != null) {
+			c.close();
+		}
 	}
 
 	@Override
 	public <T> Future<T> execute(HttpAsyncRequestProducer requestProducer,
 	        HttpAsyncResponseConsumer<T> responseConsumer, HttpContext context,
 	        FutureCallback<T> callback) {
-		return client.execute(requestProducer, responseConsumer, context,
+		return client().execute(requestProducer, responseConsumer, context,
 		        callback);
 	}
 
@@ -168,31 +504,31 @@ public class ApiHttpAsyncClient implements HttpAsyncClient, Closeable {
 	public <T> Future<T> execute(HttpAsyncRequestProducer requestProducer,
 	        HttpAsyncResponseConsumer<T> responseConsumer,
 	        FutureCallback<T> callback) {
-		return client.execute(requestProducer, responseConsumer, callback);
+		return client().execute(requestProducer, responseConsumer, callback);
 	}
 
 	@Override
 	public Future<HttpResponse> execute(HttpHost target, HttpRequest request,
 	        HttpContext context, FutureCallback<HttpResponse> callback) {
-		return client.execute(target, request, context, callback);
+		return client().execute(target, request, context, callback);
 	}
 
 	@Override
 	public Future<HttpResponse> execute(HttpHost target, HttpRequest request,
 	        FutureCallback<HttpResponse> callback) {
-		return client.execute(target, request, callback);
+		return client().execute(target, request, callback);
 	}
 
 	@Override
 	public Future<HttpResponse> execute(HttpUriRequest request,
 	        HttpContext context, FutureCallback<HttpResponse> callback) {
-		return client.execute(request, context, callback);
+		return client().execute(request, context, callback);
 	}
 
 	@Override
 	public Future<HttpResponse> execute(HttpUriRequest request,
 	        FutureCallback<HttpResponse> callback) {
-		return client.execute(request, callback);
+		return client().execute(request, callback);
 	}
 
 }
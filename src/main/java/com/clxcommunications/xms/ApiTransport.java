@@ -0,0 +1,81 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import java.io.Closeable;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.nio.protocol.HttpAsyncResponseConsumer;
+
+/**
+ * The transport used by an {@link ApiConnection} to exchange HTTP messages
+ * with XMS. By default API connections use a transport backed by the
+ * connection's {@link ApiConnection#httpClient() HTTP client} but it is
+ * possible to provide an alternative implementation, for example one using
+ * HTTP/2, through {@link ApiConnection.Builder#transport(ApiTransport)}.
+ * <p>
+ * Requests are described using the HTTP request types of Apache HttpCore and
+ * responses are delivered to an {@link HttpAsyncResponseConsumer}. An
+ * implementation must drive the consumer in the same way as the Apache
+ * asynchronous HTTP client, that is,
+ * <ol>
+ * <li>{@link HttpAsyncResponseConsumer#responseReceived(org.apache.http.HttpResponse)
+ * responseReceived} once the status line and headers are available, with the
+ * response entity set if the response has a body,</li>
+ * <li>{@link HttpAsyncResponseConsumer#consumeContent(org.apache.http.nio.ContentDecoder, org.apache.http.nio.IOControl)
+ * consumeContent} repeatedly until the body is exhausted,</li>
+ * <li>{@link HttpAsyncResponseConsumer#responseCompleted(org.apache.http.protocol.HttpContext)
+ * responseCompleted} when the body has been received, or
+ * {@link HttpAsyncResponseConsumer#failed(Exception) failed} if the exchange
+ * fails, and finally</li>
+ * <li>{@link HttpAsyncResponseConsumer#close() close}.</li>
+ * </ol>
+ * The returned future should then complete with the consumer's result or
+ * exception.
+ */
+public interface ApiTransport extends Closeable {
+
+	/**
+	 * Starts this transport. Called when the owning API connection is started.
+	 */
+	void start();
+
+	/**
+	 * Asynchronously executes the given request.
+	 * 
+	 * @param request
+	 *            the request to send, its URI is absolute
+	 * @param consumer
+	 *            the consumer of the response
+	 * @param callback
+	 *            the callback to notify on completion, may be null
+	 * @return a future yielding the consumer's result
+	 */
+	@Nonnull
+	<T> Future<T> execute(@Nonnull HttpUriRequest request,
+	        @Nonnull HttpAsyncResponseConsumer<T> consumer,
+	        @Nullable FutureCallback<T> callback);
+
+}
@@ -0,0 +1,136 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.clxcommunications.xms.api.MtBatchBinarySmsCreate;
+import com.clxcommunications.xms.api.MtBatchTextSmsCreate;
+import com.clxcommunications.xms.api.ParameterValues;
+
+/**
+ * Helpers that split a batch into sub-batches over consecutive ranges of its
+ * recipients.
+ */
+final class BatchChunks {
+
+	/**
+	 * The number of chunks needed to cover the given number of recipients.
+	 * 
+	 * @param recipients
+	 *            the number of recipients
+	 * @param chunkSize
+	 *            the maximum number of recipients per chunk
+	 * @return the number of chunks
+	 */
+	static int count(int recipients, int chunkSize) {
+		return (int) (((long) recipients + chunkSize - 1) / chunkSize);
+	}
+
+	/**
+	 * Returns a copy of the given batch restricted to the recipients of the
+	 * given chunk. Template parameter substitutions are restricted to the same
+	 * recipients, default values are kept.
+	 * 
+	 * @param sms
+	 *            the full batch
+	 * @param chunk
+	 *            the chunk index
+	 * @param chunkSize
+	 *            the maximum number of recipients per chunk
+	 * @return a non-null batch
+	 */
+	static MtBatchTextSmsCreate text(MtBatchTextSmsCreate sms, int chunk,
+	        int chunkSize) {
+		List<String> recipients = recipients(sms.recipients(), chunk,
+		        chunkSize);
+
+		if (sms.parameters().isEmpty()) {
+			return MtBatchTextSmsCreate.builder()
+			        .using(sms)
+			        .recipients(recipients)
+			        .build();
+		}
+
+		Map<String, ParameterValues> parameters =
+		        new HashMap<String, ParameterValues>();
+
+		for (Map.Entry<String, ParameterValues> entry : sms.parameters()
+		        .entrySet()) {
+			parameters.put(entry.getKey(),
+			        restrict(entry.getValue(), recipients));
+		}
+
+		return MtBatchTextSmsCreate.builder()
+		        .using(sms)
+		        .recipients(recipients)
+		        .parameters(parameters)
+		        .build();
+	}
+
+	/**
+	 * Returns a copy of the given batch restricted to the recipients of the
+	 * given chunk.
+	 * 
+	 * @param sms
+	 *            the full batch
+	 * @param chunk
+	 *            the chunk index
+	 * @param chunkSize
+	 *            the maximum number of recipients per chunk
+	 * @return a non-null batch
+	 */
+	static MtBatchBinarySmsCreate binary(MtBatchBinarySmsCreate sms,
+	        int chunk, int chunkSize) {
+		return MtBatchBinarySmsCreate.builder()
+		        .using(sms)
+		        .recipients(recipients(sms.recipients(), chunk, chunkSize))
+		        .build();
+	}
+
+	private static List<String> recipients(List<String> recipients,
+	        int chunk, int chunkSize) {
+		int from = chunk * chunkSize;
+		int to = Math.min(from + chunkSize, recipients.size());
+
+		return recipients.subList(from, to);
+	}
+
+	private static ParameterValues restrict(ParameterValues values,
+	        List<String> recipients) {
+		Map<String, String> all = values.substitutions();
+		Map<String, String> substitutions = new HashMap<String, String>();
+
+		for (String recipient : recipients) {
+			String substitution = all.get(recipient);
+			if (substitution != null) {
+				substitutions.put(recipient, substitution);
+			}
+		}
+
+		return ParameterValues.builder()
+		        .substitutions(substitutions)
+		        .defaultValue(values.defaultValue())
+		        .build();
+	}
+
+}
@@ -0,0 +1,790 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import javax.annotation.Nonnull;
+
+import org.apache.http.Consts;
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.FutureCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.clxcommunications.xms.api.MtBatchBinarySmsCreate;
+import com.clxcommunications.xms.api.MtBatchBinarySmsResult;
+import com.clxcommunications.xms.api.MtBatchSmsCreate;
+import com.clxcommunications.xms.api.MtBatchSmsResult;
+import com.clxcommunications.xms.api.MtBatchTextSmsCreate;
+import com.clxcommunications.xms.api.MtBatchTextSmsResult;
+
+/**
+ * A write-ahead outbox of batches to create. Each batch is appended to a
+ * journal on disk before being sent and is marked as done once XMS has
+ * created it. If the process stops before a batch is marked done then the
+ * batch is found when the outbox is opened again and can be sent once more
+ * using {@link #replay(FutureCallback)}. This gives at-least-once submission,
+ * that is, a batch is never lost but may be created twice.
+ * <p>
+ * The journal is a sequence of memory-mapped segment files in a directory of
+ * its own. Appending a batch is a memory copy. The journal is forced to disk
+ * by a dedicated committer thread, which sends the appended batches once they
+ * are durable. Batches appended while a force is in progress are committed
+ * together by the following force, so the cost of syncing is shared by all
+ * concurrently submitted batches. Segments are rotated when full. Since a
+ * batch may be marked as done in a later segment than the one holding the
+ * batch, segments are deleted oldest first, once they and all older segments
+ * only hold done batches.
+ * <p>
+ * A batch rejected by XMS with an API error is marked as done since sending
+ * it again would fail the same way. Batches failing for other reasons, for
+ * example an I/O error, remain in the journal and are sent again by the next
+ * call to {@link #replay(FutureCallback)}.
+ * <p>
+ * Only one outbox may use a directory at a time.
+ */
+public class BatchOutbox implements Closeable {
+
+	/**
+	 * The default size of a journal segment, 16 MiB.
+	 */
+	public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+	private static final Logger log = LoggerFactory.getLogger(BatchOutbox.class);
+
+	private static final String SEGMENT_PREFIX = "outbox-";
+
+	private static final String SEGMENT_SUFFIX = ".log";
+
+	/**
+	 * Record type of a batch to create, the payload holds the JSON
+	 * serialization of the batch.
+	 */
+	private static final byte ENTRY = 1;
+
+	/**
+	 * Record type marking an entry as done, the payload holds the identifier
+	 * of the created batch, or is empty if the batch was rejected.
+	 */
+	private static final byte DONE = 2;
+
+	/**
+	 * The record size, type, and entry identifier. The size covers the whole
+	 * record and is thus never zero, a zero size marks the end of a segment.
+	 */
+	private static final int HEADER_SIZE = 4 + 1 + 8;
+
+	/**
+	 * The record checksum.
+	 */
+	private static final int TRAILER_SIZE = 4;
+
+	private static final long CLOSE_TIMEOUT_SECONDS = 60;
+
+	/**
+	 * A journal segment file.
+	 */
+	private static final class Segment {
+
+		final long sequence;
+
+		final File file;
+
+		final MappedByteBuffer buffer;
+
+		/**
+		 * The number of entries in this segment that are not done.
+		 */
+		int undone = 0;
+
+		Segment(long sequence, File file, MappedByteBuffer buffer) {
+			this.sequence = sequence;
+			this.file = file;
+			this.buffer = buffer;
+		}
+
+	}
+
+	/**
+	 * A batch in the journal that is not done.
+	 */
+	private static final class Entry {
+
+		final long id;
+
+		final MtBatchSmsCreate sms;
+
+		final Segment segment;
+
+		/**
+		 * The future of the current send, <code>null</code> for a recovered
+		 * entry that has not been replayed or an entry whose last send
+		 * failed. Guarded by the outbox.
+		 */
+		BasicFuture<MtBatchSmsResult> future;
+
+		Entry(long id, MtBatchSmsCreate sms, Segment segment,
+		        BasicFuture<MtBatchSmsResult> future) {
+			this.id = id;
+			this.sms = sms;
+			this.segment = segment;
+			this.future = future;
+		}
+
+	}
+
+	private final ApiConnection conn;
+
+	private final File directory;
+
+	private final int segmentSize;
+
+	private final ApiObjectMapper json = new ApiObjectMapper();
+
+	private final ExecutorService committer;
+
+	private final Runnable commitTask = new Runnable() {
+
+		@Override
+		public void run() {
+			commit();
+		}
+
+	};
+
+	/*
+	 * Guarded by this.
+	 */
+
+	private final Map<Long, Entry> undone = new LinkedHashMap<Long, Entry>();
+
+	private final Set<Segment> dirty = new LinkedHashSet<Segment>();
+
+	private List<Entry> uncommitted = new ArrayList<Entry>();
+
+	/**
+	 * The segments on disk, oldest first. The last one is the current
+	 * segment, if any.
+	 */
+	private final LinkedList<Segment> segments = new LinkedList<Segment>();
+
+	private Segment current;
+
+	private long nextSequence = 0;
+
+	private long nextId = 0;
+
+	private boolean commitScheduled = false;
+
+	private boolean closed = false;
+
+	BatchOutbox(ApiConnection conn, File directory, int segmentSize) {
+		if (segmentSize < HEADER_SIZE + TRAILER_SIZE + 4) {
+			throw new IllegalArgumentException(
+			        "segment size too small, got " + segmentSize);
+		}
+
+		this.conn = conn;
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.committer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "xms-outbox");
+				t.setDaemon(true);
+				return t;
+			}
+
+		});
+	}
+
+	/**
+	 * Opens the outbox journal in the given directory using segments of
+	 * {@value #DEFAULT_SEGMENT_SIZE} bytes.
+	 * 
+	 * @param conn
+	 *            the connection to send through
+	 * @param directory
+	 *            the journal directory, created if missing
+	 * @return an open outbox
+	 * @throws IOException
+	 *             if the journal could not be read
+	 */
+	@Nonnull
+	public static BatchOutbox open(ApiConnection conn, File directory)
+	        throws IOException {
+		return open(conn, directory, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Opens the outbox journal in the given directory. Batches that were
+	 * appended to the journal but not done are recovered, they may be sent
+	 * using {@link #replay(FutureCallback)}.
+	 * 
+	 * @param conn
+	 *            the connection to send through
+	 * @param directory
+	 *            the journal directory, created if missing
+	 * @param segmentSize
+	 *            the size in bytes of new journal segments, a larger segment
+	 *            is created for a batch that does not fit
+	 * @return an open outbox
+	 * @throws IOException
+	 *             if the journal could not be read
+	 * @throws IllegalArgumentException
+	 *             if the segment size is too small
+	 */
+	@Nonnull
+	public static BatchOutbox open(ApiConnection conn, File directory,
+	        int segmentSize) throws IOException {
+		BatchOutbox outbox = new BatchOutbox(Utils.requireNonNull(conn, "conn"),
+		        Utils.requireNonNull(directory, "directory"), segmentSize);
+
+		outbox.recover();
+
+		return outbox;
+	}
+
+	/**
+	 * Appends the given batch to the journal and sends it once the journal
+	 * is durable.
+	 * 
+	 * @param sms
+	 *            the batch to create
+	 * @param callback
+	 *            a callback that is invoked when the batch is created
+	 * @return a future whose result is the created batch
+	 * @throws IllegalStateException
+	 *             if this outbox is closed
+	 */
+	public Future<MtBatchSmsResult> submit(MtBatchSmsCreate sms,
+	        FutureCallback<MtBatchSmsResult> callback) {
+		Utils.requireNonNull(sms, "sms");
+
+		BasicFuture<MtBatchSmsResult> future =
+		        new BasicFuture<MtBatchSmsResult>(callback);
+
+		byte[] payload;
+		try {
+			payload = json.writeValueAsBytes(sms);
+		} catch (IOException e) {
+			future.failed(e);
+			return future;
+		}
+
+		synchronized (this) {
+			if (closed) {
+				throw new IllegalStateException("outbox is closed");
+			}
+
+			long id = nextId++;
+
+			try {
+				append(ENTRY, id, payload);
+			} catch (IOException e) {
+				future.failed(e);
+				return future;
+			}
+
+			Entry entry = new Entry(id, sms, current, future);
+			current.undone++;
+			undone.put(id, entry);
+			uncommitted.add(entry);
+
+			scheduleCommit();
+		}
+
+		return future;
+	}
+
+	/**
+	 * Sends the batches recovered from the journal when this outbox was
+	 * opened, as well as the batches whose last send failed without being
+	 * rejected by XMS. A batch currently being sent is not sent again.
+	 * 
+	 * @param callback
+	 *            a callback that is invoked for each created batch
+	 * @return the futures of the replayed batches, in journal order
+	 */
+	public List<Future<MtBatchSmsResult>> replay(
+	        FutureCallback<MtBatchSmsResult> callback) {
+		List<Entry> recovered = new ArrayList<Entry>();
+		List<Future<MtBatchSmsResult>> futures =
+		        new ArrayList<Future<MtBatchSmsResult>>();
+
+		synchronized (this) {
+			for (Entry entry : undone.values()) {
+				if (entry.future == null) {
+					entry.future = new BasicFuture<MtBatchSmsResult>(callback);
+					recovered.add(entry);
+					futures.add(entry.future);
+				}
+			}
+		}
+
+		for (Entry entry : recovered) {
+			send(entry);
+		}
+
+		return futures;
+	}
+
+	/**
+	 * The number of batches in the journal that are not done.
+	 * 
+	 * @return a non-negative number of batches
+	 */
+	public synchronized int undoneCount() {
+		return undone.size();
+	}
+
+	/**
+	 * Stops accepting batches and waits for appended batches to be
+	 * committed. Batches that are not done remain in the journal.
+	 */
+	@Override
+	public void close() {
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+
+			closed = true;
+		}
+
+		committer.execute(commitTask);
+		committer.shutdown();
+
+		try {
+			committer.awaitTermination(CLOSE_TIMEOUT_SECONDS,
+			        TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Creates the given batch.
+	 * 
+	 * @param sms
+	 *            the batch to create
+	 * @param callback
+	 *            the callback to invoke when the batch is created
+	 */
+	void createBatch(MtBatchSmsCreate sms,
+	        FutureCallback<MtBatchSmsResult> callback) {
+		if (sms instanceof MtBatchTextSmsCreate) {
+			conn.createBatchAsync((MtBatchTextSmsCreate) sms,
+			        BatchOutbox.<MtBatchTextSmsResult> widen(callback));
+		} else if (sms instanceof MtBatchBinarySmsCreate) {
+			conn.createBatchAsync((MtBatchBinarySmsCreate) sms,
+			        BatchOutbox.<MtBatchBinarySmsResult> widen(callback));
+		} else {
+			throw new IllegalArgumentException("unexpected batch type");
+		}
+	}
+
+	private static <T extends MtBatchSmsResult> FutureCallback<T> widen(
+	        final FutureCallback<MtBatchSmsResult> callback) {
+		return new FutureCallback<T>() {
+
+			@Override
+			public void completed(T result) {
+				callback.completed(result);
+			}
+
+			@Override
+			public void failed(Exception ex) {
+				callback.failed(ex);
+			}
+
+			@Override
+			public void cancelled() {
+				callback.cancelled();
+			}
+
+		};
+	}
+
+	/**
+	 * Sends the given entry and marks it as done when created. If the entry
+	 * could not be sent then its future fails and it remains in the journal,
+	 * ready to be replayed.
+	 * 
+	 * @param entry
+	 *            the entry to send
+	 */
+	private void send(final Entry entry) {
+		final BasicFuture<MtBatchSmsResult> future;
+		synchronized (this) {
+			future = entry.future;
+		}
+
+		FutureCallback<MtBatchSmsResult> callback =
+		        new FutureCallback<MtBatchSmsResult>() {
+
+			        @Override
+			        public void completed(MtBatchSmsResult result) {
+				        markDone(entry, result.id().toString());
+				        future.completed(result);
+			        }
+
+			        @Override
+			        public void failed(Exception ex) {
+				        if (ex instanceof ErrorResponseException) {
+					        markDone(entry, "");
+				        } else {
+					        release(entry, future);
+				        }
+
+				        future.failed(ex);
+			        }
+
+			        @Override
+			        public void cancelled() {
+				        release(entry, future);
+				        future.cancel();
+			        }
+
+		        };
+
+		try {
+			createBatch(entry.sms, callback);
+		} catch (RuntimeException e) {
+			// The entry remains in the journal, like for a failed send.
+			release(entry, future);
+			future.failed(e);
+		}
+	}
+
+	/**
+	 * Makes the given entry available to {@link #replay(FutureCallback)}
+	 * once more, unless it already has been replayed.
+	 * 
+	 * @param entry
+	 *            the entry whose send failed
+	 * @param future
+	 *            the future of the failed send
+	 */
+	private synchronized void release(Entry entry,
+	        BasicFuture<MtBatchSmsResult> future) {
+		if (entry.future == future) {
+			entry.future = null;
+		}
+	}
+
+	/**
+	 * Appends a record marking the given entry as done.
+	 * 
+	 * @param entry
+	 *            the done entry
+	 * @param batchId
+	 *            the identifier of the created batch, empty if rejected
+	 */
+	private synchronized void markDone(Entry entry, String batchId) {
+		if (undone.remove(entry.id) == null) {
+			return;
+		}
+
+		try {
+			append(DONE, entry.id, batchId.getBytes(Consts.UTF_8));
+		} catch (IOException e) {
+			// The entry will be replayed, which is acceptable.
+			log.warn("Failed to mark outbox entry {} as done", entry.id, e);
+		}
+
+		entry.segment.undone--;
+
+		scheduleCommit();
+	}
+
+	private void scheduleCommit() {
+		if (!commitScheduled && !closed) {
+			commitScheduled = true;
+			committer.execute(commitTask);
+		}
+	}
+
+	/**
+	 * Removes the oldest segments as long as all their entries are done.
+	 * Marks of done entries are only ever found in the segment of the entry
+	 * or a later one, so a segment may only be deleted along with all older
+	 * segments. Must be called holding the lock.
+	 * 
+	 * @return the removed segments, oldest first
+	 */
+	private List<Segment> removeDoneSegments() {
+		List<Segment> removed = new ArrayList<Segment>();
+
+		while (!segments.isEmpty() && segments.getFirst() != current
+		        && segments.getFirst().undone == 0) {
+			removed.add(segments.removeFirst());
+		}
+
+		return removed;
+	}
+
+	/**
+	 * Forces all written records to disk, then deletes the oldest segments
+	 * whose entries all are done and sends the committed entries.
+	 */
+	private void commit() {
+		List<Entry> ready;
+		List<Segment> forced;
+		List<Segment> deleted;
+
+		synchronized (this) {
+			commitScheduled = false;
+
+			ready = uncommitted;
+			uncommitted = new ArrayList<Entry>();
+
+			forced = new ArrayList<Segment>(dirty);
+			dirty.clear();
+
+			deleted = removeDoneSegments();
+		}
+
+		for (Segment segment : forced) {
+			segment.buffer.force();
+		}
+
+		for (Segment segment : deleted) {
+			if (!segment.file.delete()) {
+				log.debug("Could not delete outbox segment {}", segment.file);
+			}
+		}
+
+		for (Entry entry : ready) {
+			send(entry);
+		}
+	}
+
+	/**
+	 * Writes a record to the current segment, rotating the segment if the
+	 * record does not fit. Must be called holding the lock.
+	 * 
+	 * @param type
+	 *            the record type
+	 * @param id
+	 *            the entry identifier
+	 * @param payload
+	 *            the record payload
+	 * @throws IOException
+	 *             if a new segment could not be created
+	 */
+	private void append(byte type, long id, byte[] payload)
+	        throws IOException {
+		int size = HEADER_SIZE + payload.length + TRAILER_SIZE;
+
+		// Leave room for the zero size marking the end of the segment.
+		if (current == null || current.buffer.remaining() < size + 4) {
+			rotate(size + 4);
+		}
+
+		ByteBuffer buf = current.buffer;
+		int start = buf.position();
+
+		// Write the size last such that a torn record is never read.
+		buf.position(start + 4);
+		buf.put(type);
+		buf.putLong(id);
+		buf.put(payload);
+		buf.putInt(checksum(type, id, payload));
+		buf.putInt(start, size);
+
+		dirty.add(current);
+	}
+
+	/**
+	 * Starts a new segment that can hold at least the given number of bytes.
+	 * 
+	 * @param minSize
+	 *            the minimum segment size
+	 * @throws IOException
+	 *             if the segment could not be created
+	 */
+	private void rotate(int minSize) throws IOException {
+		int size = Math.max(segmentSize, minSize);
+		long sequence = nextSequence++;
+		File file = new File(directory, String.format("%s%016d%s",
+		        SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+
+		current = new Segment(sequence, file,
+		        map(file, FileChannel.MapMode.READ_WRITE, size));
+		segments.add(current);
+	}
+
+	/**
+	 * Reads all segments in the journal directory and rebuilds the set of
+	 * entries that are not done. Leading segments holding no such entry are
+	 * deleted.
+	 * 
+	 * @throws IOException
+	 *             if the journal could not be read
+	 */
+	synchronized void recover() throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("could not create directory " + directory);
+		}
+
+		File[] files = directory.listFiles(new FileFilter() {
+
+			@Override
+			public boolean accept(File file) {
+				String name = file.getName();
+				return name.startsWith(SEGMENT_PREFIX)
+				        && name.endsWith(SEGMENT_SUFFIX);
+			}
+
+		});
+
+		if (files == null) {
+			throw new IOException("could not list directory " + directory);
+		}
+
+		Arrays.sort(files);
+
+		for (File file : files) {
+			String name = file.getName();
+			long sequence = Long.parseLong(name.substring(
+			        SEGMENT_PREFIX.length(),
+			        name.length() - SEGMENT_SUFFIX.length()));
+
+			Segment segment = new Segment(sequence, file,
+			        map(file, FileChannel.MapMode.READ_ONLY, file.length()));
+
+			readSegment(segment);
+			segments.add(segment);
+
+			nextSequence = Math.max(nextSequence, sequence + 1);
+		}
+
+		if (!segments.isEmpty() && segments.getFirst().undone == 0) {
+			scheduleCommit();
+		}
+
+		if (!undone.isEmpty()) {
+			log.info("Recovered {} outbox entries from {}", undone.size(),
+			        directory);
+		}
+	}
+
+	/**
+	 * Reads the valid records of the given segment. Reading stops at the end
+	 * marker or at the first torn record.
+	 * 
+	 * @param segment
+	 *            the segment to read
+	 * @throws IOException
+	 *             if an entry could not be deserialized
+	 */
+	private void readSegment(Segment segment) throws IOException {
+		ByteBuffer buf = segment.buffer;
+
+		while (buf.remaining() >= HEADER_SIZE + TRAILER_SIZE) {
+			int size = buf.getInt();
+
+			if (size < HEADER_SIZE + TRAILER_SIZE
+			        || size - 4 > buf.remaining()) {
+				break;
+			}
+
+			byte type = buf.get();
+			long id = buf.getLong();
+			byte[] payload = new byte[size - HEADER_SIZE - TRAILER_SIZE];
+			buf.get(payload);
+			int checksum = buf.getInt();
+
+			if (checksum != checksum(type, id, payload)) {
+				log.warn("Ignoring torn outbox record in {}", segment.file);
+				break;
+			}
+
+			nextId = Math.max(nextId, id + 1);
+
+			if (type == ENTRY) {
+				MtBatchSmsCreate sms =
+				        json.readValue(payload, MtBatchSmsCreate.class);
+				undone.put(id, new Entry(id, sms, segment, null));
+				segment.undone++;
+			} else if (type == DONE) {
+				Entry entry = undone.remove(id);
+
+				if (entry != null) {
+					entry.segment.undone--;
+				}
+			}
+		}
+	}
+
+	private static int checksum(byte type, long id, byte[] payload) {
+		CRC32 crc = new CRC32();
+
+		crc.update(type);
+		for (int shift = 56; shift >= 0; shift -= 8) {
+			crc.update((int) (id >>> shift));
+		}
+		crc.update(payload);
+
+		return (int) crc.getValue();
+	}
+
+	private static MappedByteBuffer map(File file, FileChannel.MapMode mode,
+	        long size) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file,
+		        mode == FileChannel.MapMode.READ_ONLY ? "r" : "rw");
+
+		try {
+			if (mode != FileChannel.MapMode.READ_ONLY) {
+				raf.setLength(size);
+			}
+
+			// The mapping remains valid after the file is closed.
+			return raf.getChannel().map(mode, 0, size);
+		} finally {
+			raf.close();
+		}
+	}
+
+}
@@ -42,6 +42,19 @@ final class ByteInOutStream extends ByteArrayOutputStream {
 		super(initialSize);
 	}
 
+	/**
+	 * Creates a stream that initially writes into the given array. If more
+	 * bytes are written than fit in the array then a larger array will be
+	 * allocated, see {@link #buffer()}.
+	 * 
+	 * @param buf
+	 *            the initial buffer, its contents is overwritten
+	 */
+	public ByteInOutStream(byte[] buf) {
+		super(0);
+		this.buf = buf;
+	}
+
 	/**
 	 * Writes the given byte buffer to this stream.
 	 * 
@@ -78,4 +91,17 @@ final class ByteInOutStream extends ByteArrayOutputStream {
 		return new ByteArrayInputStream(buf, 0, count);
 	}
 
+	/**
+	 * Returns the array currently backing this stream. This may be a different
+	 * array than the one given at construction if the stream has grown. As for
+	 * {@link #toInputStream()}, it is important to not interact further with
+	 * this object after this method is called.
+	 * 
+	 * @return the backing array
+	 */
+	@Nonnull
+	byte[] buffer() {
+		return buf;
+	}
+
 }
@@ -0,0 +1,419 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import org.apache.http.concurrent.FutureCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.clxcommunications.xms.api.BatchId;
+import com.clxcommunications.xms.api.MtBatchSmsResult;
+import com.clxcommunications.xms.api.MtBatchTextSmsCreate;
+
+/**
+ * A handle to a batch whose recipients have been split into several
+ * sub-batches, see
+ * {@link ApiConnection#createBatchesChunked(MtBatchTextSmsCreate, int, int)}.
+ * <p>
+ * The chunks are submitted concurrently, keeping a bounded number of create
+ * requests in flight. Submission proceeds in the background and this handle
+ * can be used to wait for completion, to inspect the created batches and the
+ * failed chunks, and to cancel the whole submission.
+ * <p>
+ * A failed chunk does not stop the submission of the remaining chunks.
+ * 
+ * @param <T>
+ *            the type of the created batches
+ */
+public final class ChunkedBatches<T extends MtBatchSmsResult> {
+
+	/**
+	 * Submits chunks and cancels created batches on behalf of the handle.
+	 * 
+	 * @param <T>
+	 *            the type of the created batches
+	 */
+	static abstract class Submitter<T> {
+
+		/**
+		 * Asynchronously creates the batch of the given chunk.
+		 * 
+		 * @param chunk
+		 *            the chunk index
+		 * @param callback
+		 *            the callback to invoke when the create completes
+		 * @return a future create result
+		 */
+		abstract Future<T> submit(int chunk, FutureCallback<T> callback);
+
+		/**
+		 * Asynchronously cancels the given created batch.
+		 * 
+		 * @param batchId
+		 *            the batch to cancel
+		 */
+		abstract void cancel(BatchId batchId);
+
+	}
+
+	private static final Logger log =
+	        LoggerFactory.getLogger(ChunkedBatches.class);
+
+	private final Submitter<T> submitter;
+
+	private final int chunkCount;
+
+	private final int maxInFlight;
+
+	private final CountDownLatch done = new CountDownLatch(1);
+
+	/*
+	 * The fields below are guarded by this.
+	 */
+
+	private final Map<Integer, T> results = new HashMap<Integer, T>();
+
+	private final Map<Integer, ApiException> failures =
+	        new HashMap<Integer, ApiException>();
+
+	private final Map<Integer, Future<T>> inFlight =
+	        new HashMap<Integer, Future<T>>();
+
+	/**
+	 * The chunks whose create request has completed, in any way.
+	 */
+	private final boolean[] finished;
+
+	private int finishedCount = 0;
+
+	private int nextChunk = 0;
+
+	private boolean cancelled = false;
+
+	/**
+	 * Whether {@link #fill()} is running on the current call stack, used to
+	 * avoid recursion when a chunk completes synchronously.
+	 */
+	private boolean filling = false;
+
+	ChunkedBatches(Submitter<T> submitter, int chunkCount, int maxInFlight) {
+		this.submitter = submitter;
+		this.chunkCount = chunkCount;
+		this.maxInFlight = maxInFlight;
+		this.finished = new boolean[chunkCount];
+	}
+
+	/**
+	 * Starts submitting chunks.
+	 * 
+	 * @return this handle
+	 */
+	ChunkedBatches<T> start() {
+		synchronized (this) {
+			fill();
+			checkDone();
+		}
+
+		return this;
+	}
+
+	/**
+	 * The number of chunks that the batch was split into.
+	 * 
+	 * @return a positive integer
+	 */
+	public int chunkCount() {
+		return chunkCount;
+	}
+
+	/**
+	 * Whether all chunks have been created, have failed, or have been
+	 * cancelled.
+	 * 
+	 * @return <code>true</code> if the submission has finished
+	 */
+	public boolean isDone() {
+		return done.getCount() == 0;
+	}
+
+	/**
+	 * Whether {@link #cancel()} has been called.
+	 * 
+	 * @return <code>true</code> if cancelled
+	 */
+	public synchronized boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Waits until the submission has finished.
+	 * 
+	 * @throws InterruptedException
+	 *             if the current thread was interrupted while waiting
+	 */
+	public void await() throws InterruptedException {
+		done.await();
+	}
+
+	/**
+	 * Waits at most the given time for the submission to finish.
+	 * 
+	 * @param timeout
+	 *            the maximum time to wait
+	 * @param unit
+	 *            the time unit of the timeout
+	 * @return <code>true</code> if finished, <code>false</code> if the timeout
+	 *         elapsed
+	 * @throws InterruptedException
+	 *             if the current thread was interrupted while waiting
+	 */
+	public boolean await(long timeout, TimeUnit unit)
+	        throws InterruptedException {
+		return done.await(timeout, unit);
+	}
+
+	/**
+	 * The batches created so far, in chunk order.
+	 * 
+	 * @return a non-null list of created batches
+	 */
+	@Nonnull
+	public synchronized List<T> results() {
+		return new ArrayList<T>(new TreeMap<Integer, T>(results).values());
+	}
+
+	/**
+	 * The identifiers of the batches created so far, in chunk order.
+	 * 
+	 * @return a non-null list of batch identifiers
+	 */
+	@Nonnull
+	public List<BatchId> batchIds() {
+		List<T> created = results();
+		List<BatchId> ids = new ArrayList<BatchId>(created.size());
+
+		for (T result : created) {
+			ids.add(result.id());
+		}
+
+		return ids;
+	}
+
+	/**
+	 * The chunks that failed so far, keyed on chunk index. Chunks that were
+	 * cancelled are not considered failed.
+	 * 
+	 * @return a non-null map from chunk index to failure
+	 */
+	@Nonnull
+	public synchronized SortedMap<Integer, ApiException> failures() {
+		return Collections.unmodifiableSortedMap(
+		        new TreeMap<Integer, ApiException>(failures));
+	}
+
+	/**
+	 * Cancels the submission. Chunks not yet submitted are skipped,
+	 * outstanding create requests are cancelled, and a cancel request is
+	 * issued for every batch that was created or that is created after this
+	 * call.
+	 */
+	public void cancel() {
+		List<Future<T>> outstanding;
+		List<T> created;
+
+		synchronized (this) {
+			if (cancelled) {
+				return;
+			}
+
+			cancelled = true;
+			outstanding = new ArrayList<Future<T>>(inFlight.values());
+			created = new ArrayList<T>(results.values());
+			checkDone();
+		}
+
+		for (Future<T> future : outstanding) {
+			future.cancel(true);
+		}
+
+		for (T result : created) {
+			cancelBatch(result);
+		}
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "ChunkedBatches{chunks=" + chunkCount + ", created="
+		        + results.size() + ", failed=" + failures.size()
+		        + ", inFlight=" + inFlight.size() + ", cancelled="
+		        + cancelled + "}";
+	}
+
+	/**
+	 * Submits chunks until the in-flight limit is reached or all chunks are
+	 * submitted. Must be called while holding the lock of this object.
+	 */
+	private void fill() {
+		if (filling) {
+			return;
+		}
+
+		filling = true;
+
+		try {
+			while (!cancelled && nextChunk < chunkCount
+			        && inFlight.size() < maxInFlight) {
+				final int chunk = nextChunk++;
+
+				Future<T> future;
+
+				try {
+					future = submitter.submit(chunk, new ChunkCallback(chunk));
+				} catch (RuntimeException e) {
+					finish(chunk, null, new ConcurrentException(e));
+					continue;
+				}
+
+				if (!finished[chunk]) {
+					inFlight.put(chunk, future);
+				}
+			}
+		} finally {
+			filling = false;
+		}
+	}
+
+	/**
+	 * Records the outcome of a chunk. Must be called while holding the lock of
+	 * this object.
+	 * 
+	 * @param chunk
+	 *            the chunk index
+	 * @param result
+	 *            the created batch or <code>null</code>
+	 * @param failure
+	 *            the failure or <code>null</code>
+	 */
+	private void finish(int chunk, T result, ApiException failure) {
+		if (finished[chunk]) {
+			return;
+		}
+
+		finished[chunk] = true;
+		finishedCount++;
+		inFlight.remove(chunk);
+
+		if (result != null) {
+			results.put(chunk, result);
+		} else if (failure != null) {
+			failures.put(chunk, failure);
+		}
+	}
+
+	/**
+	 * Signals waiters if all submitted chunks have finished and no more
+	 * chunks will be submitted. Must be called while holding the lock of this
+	 * object.
+	 */
+	private void checkDone() {
+		boolean submitted = cancelled || nextChunk == chunkCount;
+
+		if (submitted && finishedCount == nextChunk) {
+			done.countDown();
+		}
+	}
+
+	private void cancelBatch(T result) {
+		try {
+			submitter.cancel(result.id());
+		} catch (RuntimeException e) {
+			log.warn("Failed to cancel batch {}", result.id(), e);
+		}
+	}
+
+	/**
+	 * Receives the outcome of a single chunk create request.
+	 */
+	private final class ChunkCallback implements FutureCallback<T> {
+
+		private final int chunk;
+
+		ChunkCallback(int chunk) {
+			this.chunk = chunk;
+		}
+
+		@Override
+		public void completed(T result) {
+			boolean cancelCreated;
+
+			synchronized (ChunkedBatches.this) {
+				finish(chunk, result, null);
+				cancelCreated = cancelled;
+				fill();
+				checkDone();
+			}
+
+			if (cancelCreated) {
+				cancelBatch(result);
+			}
+		}
+
+		@Override
+		public void failed(Exception ex) {
+			ApiException failure;
+
+			if (ex instanceof ApiException) {
+				failure = (ApiException) ex;
+			} else {
+				failure = new ConcurrentException(ex);
+			}
+
+			synchronized (ChunkedBatches.this) {
+				finish(chunk, null, failure);
+				fill();
+				checkDone();
+			}
+		}
+
+		@Override
+		public void cancelled() {
+			synchronized (ChunkedBatches.this) {
+				finish(chunk, null, null);
+				fill();
+				checkDone();
+			}
+		}
+
+	}
+
+}
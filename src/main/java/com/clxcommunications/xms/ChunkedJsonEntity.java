@@ -0,0 +1,256 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.entity.HttpAsyncContentProducer;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * An HTTP entity holding a JSON document split over a sequence of moderately
+ * sized chunks. Since this entity is a {@link HttpAsyncContentProducer} the
+ * HTTP client will stream the chunks directly into the connection's content
+ * encoder.
+ * <p>
+ * Compared to serializing into a single byte array this avoids allocating
+ * one, possibly multi-megabyte, array per request as well as the repeated
+ * copying needed to grow such an array. The total length is known up front so
+ * the request is sent with a regular <code>Content-Length</code> header.
+ * <p>
+ * The entity is repeatable, closing it rewinds the content such that the
+ * request may be sent again within the same exchange, for example after an
+ * authentication challenge. Since the position in the content is kept by the
+ * entity it must not be produced by two exchanges at once. A new exchange,
+ * for example a retry, should therefore send a {@link #copy()}.
+ */
+final class ChunkedJsonEntity extends AbstractHttpEntity
+        implements HttpAsyncContentProducer {
+
+	/**
+	 * An output stream that writes into a sequence of chunks. The first chunk
+	 * is small and subsequent chunks double in size until reaching
+	 * {@link #MAX_CHUNK_SIZE}.
+	 */
+	private static final class ChunkOutputStream extends OutputStream {
+
+		private final List<ByteBuffer> chunks = new ArrayList<ByteBuffer>();
+
+		private byte[] current = new byte[MIN_CHUNK_SIZE];
+
+		private int count = 0;
+
+		private long length = 0;
+
+		@Override
+		public void write(int b) {
+			if (count == current.length) {
+				nextChunk();
+			}
+
+			current[count++] = (byte) b;
+			length++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			while (len > 0) {
+				if (count == current.length) {
+					nextChunk();
+				}
+
+				int n = Math.min(len, current.length - count);
+				System.arraycopy(b, off, current, count, n);
+
+				count += n;
+				off += n;
+				len -= n;
+				length += n;
+			}
+		}
+
+		@Override
+		public void close() {
+			if (count > 0) {
+				chunks.add(ByteBuffer.wrap(current, 0, count));
+			}
+
+			current = null;
+		}
+
+		private void nextChunk() {
+			chunks.add(ByteBuffer.wrap(current, 0, count));
+
+			int size = Math.min(current.length * 2, MAX_CHUNK_SIZE);
+			current = new byte[size];
+			count = 0;
+		}
+
+	}
+
+	/**
+	 * The size of the first chunk. Most requests fit within this size.
+	 */
+	static final int MIN_CHUNK_SIZE = 512;
+
+	/**
+	 * The maximum size of a chunk.
+	 */
+	static final int MAX_CHUNK_SIZE = 64 * 1024;
+
+	/**
+	 * All chunks of the document.
+	 */
+	private final List<ByteBuffer> content;
+
+	/**
+	 * The chunks yet to be written.
+	 */
+	private final ArrayDeque<ByteBuffer> chunks;
+
+	private final long length;
+
+	private ChunkedJsonEntity(List<ByteBuffer> content, long length) {
+		this.content = content;
+		this.chunks = new ArrayDeque<ByteBuffer>(content.size());
+		this.length = length;
+
+		rewind();
+		setContentType(ContentType.APPLICATION_JSON.toString());
+	}
+
+	/**
+	 * Serializes the given value into a chunked JSON entity.
+	 * 
+	 * @param writer
+	 *            the JSON writer to use
+	 * @param value
+	 *            the value to serialize
+	 * @return a non-null entity
+	 * @throws IOException
+	 *             if the value could not be serialized
+	 */
+	@Nonnull
+	static ChunkedJsonEntity of(ObjectWriter writer, Object value)
+	        throws IOException {
+		ChunkOutputStream out = new ChunkOutputStream();
+
+		writer.writeValue(out, value);
+
+		return new ChunkedJsonEntity(out.chunks, out.length);
+	}
+
+	/**
+	 * Creates an entity holding the same content as this one, positioned at
+	 * the start of the content. The chunks are shared, not copied.
+	 * 
+	 * @return a non-null entity
+	 */
+	@Nonnull
+	ChunkedJsonEntity copy() {
+		return new ChunkedJsonEntity(content, length);
+	}
+
+	@Override
+	public long getContentLength() {
+		return length;
+	}
+
+	@Override
+	public boolean isRepeatable() {
+		return true;
+	}
+
+	@Override
+	public boolean isStreaming() {
+		return false;
+	}
+
+	@Override
+	public InputStream getContent() {
+		List<InputStream> streams = new ArrayList<InputStream>(content.size());
+
+		for (ByteBuffer chunk : content) {
+			streams.add(new ByteArrayInputStream(chunk.array(),
+			        chunk.position(), chunk.remaining()));
+		}
+
+		return new SequenceInputStream(Collections.enumeration(streams));
+	}
+
+	@Override
+	public void writeTo(OutputStream out) throws IOException {
+		for (ByteBuffer chunk : content) {
+			out.write(chunk.array(), chunk.position(), chunk.remaining());
+		}
+	}
+
+	@Override
+	public void produceContent(ContentEncoder encoder, IOControl ioctrl)
+	        throws IOException {
+		ByteBuffer chunk;
+
+		while ((chunk = chunks.peek()) != null) {
+			encoder.write(chunk);
+
+			if (chunk.hasRemaining()) {
+				// The channel is full, we'll be called again later.
+				return;
+			}
+
+			chunks.poll();
+		}
+
+		encoder.complete();
+	}
+
+	@Override
+	public void close() {
+		rewind();
+	}
+
+	/**
+	 * Prepares the chunks for being produced from the start.
+	 */
+	private void rewind() {
+		chunks.clear();
+
+		for (ByteBuffer chunk : content) {
+			chunks.add(chunk.duplicate());
+		}
+	}
+
+}
@@ -0,0 +1,279 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import org.apache.http.HttpStatus;
+import org.apache.http.concurrent.FutureCallback;
+
+/**
+ * The circuit breaker of a single endpoint family, enforcing a
+ * {@link CircuitBreakerPolicy}.
+ * <p>
+ * A request must acquire a permit before being sent. The permit tells whether
+ * the request is a regular request or a probe of a half open circuit and is
+ * handed back, together with the outcome of the request, when the request
+ * completes.
+ */
+final class CircuitBreaker {
+
+	/**
+	 * The states of a circuit.
+	 */
+	static enum State {
+
+		CLOSED, OPEN, HALF_OPEN
+
+	}
+
+	/**
+	 * Permit indicating that the request must be rejected.
+	 */
+	static final int REJECTED = 0;
+
+	/**
+	 * Permit of a regular request sent while the circuit is closed.
+	 */
+	static final int REGULAR = 1;
+
+	/**
+	 * Permit of a probe request sent while the circuit is half open.
+	 */
+	static final int PROBE = 2;
+
+	private final EndpointFamily family;
+
+	private final int failureThreshold;
+
+	private final long openNanos;
+
+	private final int halfOpenProbes;
+
+	private State state = State.CLOSED;
+
+	private int consecutiveFailures = 0;
+
+	private long openedAt;
+
+	private int probesInFlight;
+
+	private int probeSuccesses;
+
+	CircuitBreaker(EndpointFamily family, CircuitBreakerPolicy policy) {
+		this.family = family;
+		this.failureThreshold = policy.failureThreshold();
+		this.openNanos = TimeUnit.MILLISECONDS
+		        .toNanos(policy.openDuration().toMillis());
+		this.halfOpenProbes = policy.halfOpenProbes();
+	}
+
+	/**
+	 * The endpoint family protected by this circuit breaker.
+	 * 
+	 * @return a non-null endpoint family
+	 */
+	EndpointFamily family() {
+		return family;
+	}
+
+	/**
+	 * The current state of the circuit.
+	 * 
+	 * @return a non-null state
+	 */
+	synchronized State state() {
+		return state;
+	}
+
+	/**
+	 * Attempts to acquire a permit to send a request.
+	 * 
+	 * @param now
+	 *            the current time in nanoseconds
+	 * @return {@link #REGULAR} or {@link #PROBE} if the request may be sent,
+	 *         {@link #REJECTED} otherwise
+	 */
+	synchronized int acquire(long now) {
+		switch (state) {
+		case CLOSED:
+			return REGULAR;
+		case OPEN:
+			if (now - openedAt < openNanos) {
+				return REJECTED;
+			}
+
+			state = State.HALF_OPEN;
+			probesInFlight = 0;
+			probeSuccesses = 0;
+			// Fall through to admit a probe.
+		case HALF_OPEN:
+		default:
+			if (probesInFlight >= halfOpenProbes) {
+				return REJECTED;
+			}
+
+			probesInFlight++;
+			return PROBE;
+		}
+	}
+
+	/**
+	 * Records that a request reached a responsive server.
+	 * 
+	 * @param permit
+	 *            the permit of the request
+	 */
+	synchronized void succeeded(int permit) {
+		if (permit == PROBE && state == State.HALF_OPEN) {
+			probesInFlight--;
+
+			if (++probeSuccesses >= halfOpenProbes) {
+				state = State.CLOSED;
+				consecutiveFailures = 0;
+			}
+		} else if (permit == REGULAR && state == State.CLOSED) {
+			consecutiveFailures = 0;
+		}
+	}
+
+	/**
+	 * Records that a request failed due to an unhealthy server.
+	 * 
+	 * @param permit
+	 *            the permit of the request
+	 * @param now
+	 *            the current time in nanoseconds
+	 */
+	synchronized void failed(int permit, long now) {
+		if (permit == PROBE && state == State.HALF_OPEN) {
+			open(now);
+		} else if (permit == REGULAR && state == State.CLOSED
+		        && ++consecutiveFailures >= failureThreshold) {
+			open(now);
+		}
+	}
+
+	/**
+	 * Records that a request ended without telling anything about the
+	 * server's health, for example because it was cancelled.
+	 * 
+	 * @param permit
+	 *            the permit of the request
+	 */
+	synchronized void ignored(int permit) {
+		if (permit == PROBE && state == State.HALF_OPEN) {
+			probesInFlight--;
+		}
+	}
+
+	private void open(long now) {
+		state = State.OPEN;
+		openedAt = now;
+	}
+
+	/**
+	 * Returns a callback that records the outcome of a request holding the
+	 * given permit and then notifies the given callback.
+	 * 
+	 * @param permit
+	 *            the permit of the request
+	 * @param callback
+	 *            the callback to notify, may be null
+	 * @return a non-null callback
+	 */
+	<T> FutureCallback<T> track(final int permit,
+	        @Nullable final FutureCallback<T> callback) {
+		return new FutureCallback<T>() {
+
+			@Override
+			public void completed(T result) {
+				succeeded(permit);
+
+				if (callback != null) {
+					callback.completed(result);
+				}
+			}
+
+			@Override
+			public void failed(Exception ex) {
+				if (isFailure(ex)) {
+					CircuitBreaker.this.failed(permit, System.nanoTime());
+				} else if (isResponse(ex)) {
+					succeeded(permit);
+				} else {
+					ignored(permit);
+				}
+
+				if (callback != null) {
+					callback.failed(ex);
+				}
+			}
+
+			@Override
+			public void cancelled() {
+				ignored(permit);
+
+				if (callback != null) {
+					callback.cancelled();
+				}
+			}
+
+		};
+	}
+
+	/**
+	 * Whether the given request failure indicates an unhealthy server.
+	 * 
+	 * @param ex
+	 *            the request failure
+	 * @return true if the server appears unhealthy
+	 */
+	static boolean isFailure(Exception ex) {
+		if (ex instanceof IOException) {
+			return true;
+		} else if (ex instanceof UnexpectedResponseException) {
+			return ((UnexpectedResponseException) ex).getResponse()
+			        .getStatusLine()
+			        .getStatusCode() >= HttpStatus.SC_INTERNAL_SERVER_ERROR;
+		} else {
+			return false;
+		}
+	}
+
+	/**
+	 * Whether the given request failure was caused by a response from the
+	 * server, that is, the server was responsive.
+	 * 
+	 * @param ex
+	 *            the request failure
+	 * @return true if the server responded
+	 */
+	private static boolean isResponse(Exception ex) {
+		return ex instanceof UnexpectedResponseException
+		        || ex instanceof ErrorResponseException
+		        || ex instanceof NotFoundException
+		        || ex instanceof UnauthorizedException;
+	}
+
+}
@@ -0,0 +1,112 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import javax.annotation.Nonnull;
+
+import org.immutables.value.Value;
+import org.threeten.bp.Duration;
+
+/**
+ * Describes the circuit breakers of a connection. A connection configured
+ * with a circuit breaker policy tracks the health of each
+ * {@link EndpointFamily} separately. When a number of consecutive requests to
+ * an endpoint family have failed due to I/O errors, including timeouts, or
+ * server errors (5xx) the circuit of that family opens and further requests
+ * fail immediately with {@link CircuitOpenException}.
+ * <p>
+ * Once the circuit has been open for {@link #openDuration()} a limited number
+ * of probe requests are let through. If they all succeed then the circuit
+ * closes again, if any fails then the circuit reopens.
+ */
+@Value.Immutable
+@ValueStylePackage
+public abstract class CircuitBreakerPolicy {
+
+	/**
+	 * A builder of circuit breaker policies.
+	 */
+	public static class Builder extends CircuitBreakerPolicyImpl.Builder {
+
+		Builder() {
+		}
+
+	}
+
+	/**
+	 * Creates a builder of {@link CircuitBreakerPolicy} instances.
+	 * 
+	 * @return a builder
+	 */
+	@Nonnull
+	public static final CircuitBreakerPolicy.Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * The number of consecutive failed requests that opens the circuit.
+	 * 
+	 * @return a positive number of requests
+	 */
+	@Value.Default
+	public int failureThreshold() {
+		return 5;
+	}
+
+	/**
+	 * How long the circuit stays open before probe requests are permitted.
+	 * 
+	 * @return a non-negative duration
+	 */
+	@Value.Default
+	public Duration openDuration() {
+		return Duration.ofSeconds(10);
+	}
+
+	/**
+	 * The number of probe requests permitted while the circuit is half open.
+	 * This many probes must succeed for the circuit to close.
+	 * 
+	 * @return a positive number of requests
+	 */
+	@Value.Default
+	public int halfOpenProbes() {
+		return 1;
+	}
+
+	/**
+	 * Verifies that this circuit breaker policy is in a reasonable state.
+	 */
+	@Value.Check
+	protected void check() {
+		if (failureThreshold() < 1) {
+			throw new IllegalStateException("non-positive failure threshold");
+		}
+
+		if (openDuration().isNegative()) {
+			throw new IllegalStateException("negative open duration");
+		}
+
+		if (halfOpenProbes() < 1) {
+			throw new IllegalStateException("non-positive half open probes");
+		}
+	}
+
+}
@@ -0,0 +1,50 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The circuit breakers of a connection, one per {@link EndpointFamily}.
+ */
+final class CircuitBreakers {
+
+	private final Map<EndpointFamily, CircuitBreaker> breakers =
+	        new EnumMap<EndpointFamily, CircuitBreaker>(EndpointFamily.class);
+
+	CircuitBreakers(CircuitBreakerPolicy policy) {
+		for (EndpointFamily family : EndpointFamily.values()) {
+			breakers.put(family, new CircuitBreaker(family, policy));
+		}
+	}
+
+	/**
+	 * Returns the circuit breaker of the given endpoint family.
+	 * 
+	 * @param family
+	 *            the endpoint family
+	 * @return a non-null circuit breaker
+	 */
+	CircuitBreaker get(EndpointFamily family) {
+		return breakers.get(family);
+	}
+
+}
@@ -0,0 +1,47 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+/**
+ * Exception indicating that a request was rejected because the circuit
+ * breaker of its endpoint family is open, see {@link CircuitBreakerPolicy}.
+ * The request was never sent to XMS.
+ */
+public class CircuitOpenException extends ApiException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final EndpointFamily endpointFamily;
+
+	CircuitOpenException(EndpointFamily endpointFamily) {
+		super("circuit open for " + endpointFamily + " endpoints");
+		this.endpointFamily = endpointFamily;
+	}
+
+	/**
+	 * The endpoint family whose circuit is open.
+	 * 
+	 * @return an endpoint family
+	 */
+	public EndpointFamily getEndpointFamily() {
+		return endpointFamily;
+	}
+
+}
@@ -0,0 +1,451 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import java.io.Closeable;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.FutureCallback;
+import org.threeten.bp.OffsetDateTime;
+
+import com.clxcommunications.xms.api.MtBatchTextSmsCreate;
+import com.clxcommunications.xms.api.MtBatchTextSmsResult;
+import com.clxcommunications.xms.api.ReportType;
+
+/**
+ * Merges text messages sent to single recipients into shared batches. Each
+ * message handed to {@link #send(MtBatchTextSmsCreate, FutureCallback)} is
+ * held back for a short linger time. Messages that differ only in their
+ * recipient are collected into a single batch that is created using one
+ * request once the linger time has passed or the batch has reached its
+ * maximum number of recipients.
+ * <p>
+ * The future returned for each message completes when the shared batch has
+ * been created. Its result is the shared batch, which therefore may list
+ * additional recipients. If the batch could not be created then the futures
+ * of all messages in the batch fail with the same exception.
+ * <p>
+ * Messages having several recipients or template parameters are sent
+ * immediately without being merged. A message that is cancelled before its
+ * batch is created is left out of the batch.
+ * <p>
+ * The sender owns a single daemon thread used to time the lingering batches.
+ * It must be closed when no longer needed, which creates all pending batches.
+ */
+public class CoalescingSender implements Closeable {
+
+	/**
+	 * The default linger time in milliseconds.
+	 */
+	static final long DEFAULT_LINGER_MILLIS = 5;
+
+	/**
+	 * The default maximum number of recipients per merged batch.
+	 */
+	static final int DEFAULT_MAX_RECIPIENTS = 100;
+
+	/**
+	 * Identifies the messages that may share a batch, that is, all message
+	 * properties except the recipient.
+	 */
+	private static final class Key {
+
+		private final String sender;
+		private final String body;
+		private final ReportType deliveryReport;
+		private final OffsetDateTime sendAt;
+		private final OffsetDateTime expireAt;
+		private final URI callbackUrl;
+		private final Set<String> tags;
+		private final int hash;
+
+		Key(MtBatchTextSmsCreate sms) {
+			this.sender = sms.sender();
+			this.body = sms.body();
+			this.deliveryReport = sms.deliveryReport();
+			this.sendAt = sms.sendAt();
+			this.expireAt = sms.expireAt();
+			this.callbackUrl = sms.callbackUrl();
+			this.tags = sms.tags();
+			this.hash = Arrays.hashCode(new Object[] {
+			        sender, body, deliveryReport, sendAt, expireAt,
+			        callbackUrl, tags });
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			} else if (!(obj instanceof Key)) {
+				return false;
+			}
+
+			Key other = (Key) obj;
+
+			return hash == other.hash
+			        && sender.equals(other.sender)
+			        && body.equals(other.body)
+			        && eq(deliveryReport, other.deliveryReport)
+			        && eq(sendAt, other.sendAt)
+			        && eq(expireAt, other.expireAt)
+			        && eq(callbackUrl, other.callbackUrl)
+			        && tags.equals(other.tags);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		private static boolean eq(Object a, Object b) {
+			return a == null ? b == null : a.equals(b);
+		}
+
+	}
+
+	/**
+	 * A batch being collected.
+	 */
+	private final class Pending implements Runnable {
+
+		final Key key;
+
+		/**
+		 * The first message, used as template for the merged batch.
+		 */
+		final MtBatchTextSmsCreate template;
+
+		final Set<String> recipients = new HashSet<String>();
+
+		final List<String> order = new ArrayList<String>();
+
+		final List<BasicFuture<MtBatchTextSmsResult>> futures =
+		        new ArrayList<BasicFuture<MtBatchTextSmsResult>>();
+
+		ScheduledFuture<?> timer;
+
+		Pending(Key key, MtBatchTextSmsCreate template) {
+			this.key = key;
+			this.template = template;
+		}
+
+		@Override
+		public void run() {
+			synchronized (CoalescingSender.this) {
+				if (pending.get(key) != this) {
+					return;
+				}
+
+				pending.remove(key);
+			}
+
+			flush(this);
+		}
+
+	}
+
+	private final ApiConnection conn;
+
+	private final long lingerMillis;
+
+	private final int maxRecipients;
+
+	private final ScheduledExecutorService scheduler;
+
+	/*
+	 * Guarded by this.
+	 */
+
+	private final Map<Key, Pending> pending =
+	        new LinkedHashMap<Key, Pending>();
+
+	private boolean closed = false;
+
+	CoalescingSender(ApiConnection conn, long lingerMillis,
+	        int maxRecipients) {
+		if (lingerMillis < 0) {
+			throw new IllegalArgumentException(
+			        "linger time must be non-negative, got " + lingerMillis);
+		}
+
+		if (maxRecipients < 1) {
+			throw new IllegalArgumentException(
+			        "max recipients must be positive, got " + maxRecipients);
+		}
+
+		this.conn = conn;
+		this.lingerMillis = lingerMillis;
+		this.maxRecipients = maxRecipients;
+
+		ScheduledThreadPoolExecutor executor =
+		        new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+
+			        @Override
+			        public Thread newThread(Runnable r) {
+				        Thread t = new Thread(r, "xms-coalescing-sender");
+				        t.setDaemon(true);
+				        return t;
+			        }
+
+		        });
+		executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+
+		this.scheduler = executor;
+	}
+
+	/**
+	 * Creates a coalescing sender using a linger time of
+	 * {@value #DEFAULT_LINGER_MILLIS} ms and at most
+	 * {@value #DEFAULT_MAX_RECIPIENTS} recipients per merged batch.
+	 * 
+	 * @param conn
+	 *            the connection to send through
+	 * @return a new sender
+	 */
+	@Nonnull
+	public static CoalescingSender of(ApiConnection conn) {
+		return of(conn, DEFAULT_LINGER_MILLIS, DEFAULT_MAX_RECIPIENTS);
+	}
+
+	/**
+	 * Creates a coalescing sender.
+	 * 
+	 * @param conn
+	 *            the connection to send through
+	 * @param lingerMillis
+	 *            the time in milliseconds a message may be held back
+	 * @param maxRecipients
+	 *            the maximum number of recipients per merged batch
+	 * @return a new sender
+	 * @throws IllegalArgumentException
+	 *             if the linger time is negative or the maximum number of
+	 *             recipients is not positive
+	 */
+	@Nonnull
+	public static CoalescingSender of(ApiConnection conn, long lingerMillis,
+	        int maxRecipients) {
+		return new CoalescingSender(Utils.requireNonNull(conn, "conn"),
+		        lingerMillis, maxRecipients);
+	}
+
+	/**
+	 * Sends the given text message, possibly merged with other messages.
+	 * 
+	 * @param sms
+	 *            the message to send
+	 * @param callback
+	 *            a callback that is invoked when the batch holding the
+	 *            message is created
+	 * @return a future whose result is the batch holding the message
+	 * @throws IllegalStateException
+	 *             if this sender is closed
+	 */
+	public Future<MtBatchTextSmsResult> send(MtBatchTextSmsCreate sms,
+	        FutureCallback<MtBatchTextSmsResult> callback) {
+		Utils.requireNonNull(sms, "sms");
+
+		if (sms.recipients().size() != 1 || !sms.parameters().isEmpty()) {
+			checkOpen();
+			return createBatch(sms, callback);
+		}
+
+		String recipient = sms.recipients().get(0);
+		BasicFuture<MtBatchTextSmsResult> future =
+		        new BasicFuture<MtBatchTextSmsResult>(callback);
+
+		Pending full = null;
+		Pending conflicting = null;
+
+		synchronized (this) {
+			checkOpen();
+
+			Key key = new Key(sms);
+			Pending p = pending.get(key);
+
+			if (p != null && p.recipients.contains(recipient)) {
+				// The same recipient may only occur once per batch.
+				pending.remove(key);
+				p.timer.cancel(false);
+				conflicting = p;
+				p = null;
+			}
+
+			if (p == null) {
+				p = new Pending(key, sms);
+				pending.put(key, p);
+				p.timer = scheduler.schedule(p, lingerMillis,
+				        TimeUnit.MILLISECONDS);
+			}
+
+			p.recipients.add(recipient);
+			p.order.add(recipient);
+			p.futures.add(future);
+
+			if (p.order.size() >= maxRecipients) {
+				pending.remove(key);
+				p.timer.cancel(false);
+				full = p;
+			}
+		}
+
+		if (conflicting != null) {
+			flush(conflicting);
+		}
+
+		if (full != null) {
+			flush(full);
+		}
+
+		return future;
+	}
+
+	/**
+	 * Immediately creates all pending batches.
+	 */
+	public void flush() {
+		List<Pending> ready;
+
+		synchronized (this) {
+			ready = new ArrayList<Pending>(pending.values());
+			pending.clear();
+		}
+
+		for (Pending p : ready) {
+			p.timer.cancel(false);
+			flush(p);
+		}
+	}
+
+	/**
+	 * Creates all pending batches and stops the linger timer thread. Any
+	 * further call to {@link #send(MtBatchTextSmsCreate, FutureCallback)}
+	 * will fail.
+	 */
+	@Override
+	public void close() {
+		synchronized (this) {
+			closed = true;
+		}
+
+		flush();
+		scheduler.shutdownNow();
+	}
+
+	/**
+	 * Creates the given batch.
+	 * 
+	 * @param sms
+	 *            the batch to create
+	 * @param callback
+	 *            the callback to invoke when the batch is created
+	 * @return a future batch creation result
+	 */
+	Future<MtBatchTextSmsResult> createBatch(MtBatchTextSmsCreate sms,
+	        FutureCallback<MtBatchTextSmsResult> callback) {
+		return conn.createBatchAsync(sms, callback);
+	}
+
+	private void checkOpen() {
+		synchronized (this) {
+			if (closed) {
+				throw new IllegalStateException("sender is closed");
+			}
+		}
+	}
+
+	/**
+	 * Creates the batch of the given pending messages, leaving out messages
+	 * that have been cancelled.
+	 * 
+	 * @param p
+	 *            the messages to send
+	 */
+	private void flush(Pending p) {
+		final List<BasicFuture<MtBatchTextSmsResult>> futures =
+		        new ArrayList<BasicFuture<MtBatchTextSmsResult>>(
+		                p.futures.size());
+		List<String> recipients = new ArrayList<String>(p.order.size());
+
+		for (int i = 0; i < p.futures.size(); i++) {
+			if (!p.futures.get(i).isCancelled()) {
+				futures.add(p.futures.get(i));
+				recipients.add(p.order.get(i));
+			}
+		}
+
+		if (futures.isEmpty()) {
+			return;
+		}
+
+		MtBatchTextSmsCreate batch = MtBatchTextSmsCreate.builder()
+		        .using(p.template)
+		        .recipients(recipients)
+		        .build();
+
+		FutureCallback<MtBatchTextSmsResult> callback =
+		        new FutureCallback<MtBatchTextSmsResult>() {
+
+			        @Override
+			        public void completed(MtBatchTextSmsResult result) {
+				        for (BasicFuture<MtBatchTextSmsResult> f : futures) {
+					        f.completed(result);
+				        }
+			        }
+
+			        @Override
+			        public void failed(Exception ex) {
+				        for (BasicFuture<MtBatchTextSmsResult> f : futures) {
+					        f.failed(ex);
+				        }
+			        }
+
+			        @Override
+			        public void cancelled() {
+				        for (BasicFuture<MtBatchTextSmsResult> f : futures) {
+					        f.cancel();
+				        }
+			        }
+
+		        };
+
+		try {
+			createBatch(batch, callback);
+		} catch (RuntimeException e) {
+			callback.failed(e);
+		}
+	}
+
+}
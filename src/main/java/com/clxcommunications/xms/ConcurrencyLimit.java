@@ -0,0 +1,112 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import javax.annotation.Nonnull;
+
+import org.immutables.value.Value;
+
+/**
+ * Describes the bounds of an adaptive concurrency limit. A connection
+ * configured with a concurrency limit restricts the number of requests in
+ * flight and queues additional requests until an earlier request completes.
+ * <p>
+ * The permitted concurrency is adjusted from the observed request latency:
+ * while the latency stays close to the lowest latency seen the limit grows by
+ * one, when requests start queueing up on the server side the limit shrinks by
+ * one, and when requests time out or fail with a server error the limit is
+ * reduced multiplicatively.
+ * <p>
+ * Note, the concurrency limit cannot exceed the number of connections of the
+ * underlying HTTP client. When using a large maximum limit the client should
+ * be configured accordingly, see
+ * {@link ApiHttpAsyncClient.Builder#maxConnections(int)}.
+ */
+@Value.Immutable
+@ValueStylePackage
+public abstract class ConcurrencyLimit {
+
+	/**
+	 * A builder of concurrency limits.
+	 */
+	public static class Builder extends ConcurrencyLimitImpl.Builder {
+
+		Builder() {
+		}
+
+	}
+
+	/**
+	 * Creates a builder of {@link ConcurrencyLimit} instances.
+	 * 
+	 * @return a builder
+	 */
+	@Nonnull
+	public static final ConcurrencyLimit.Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * The number of concurrent requests permitted before any latency has been
+	 * observed.
+	 * 
+	 * @return a positive number of requests
+	 */
+	@Value.Default
+	public int initialLimit() {
+		return 10;
+	}
+
+	/**
+	 * The lowest number of concurrent requests the limit may shrink to.
+	 * 
+	 * @return a positive number of requests
+	 */
+	@Value.Default
+	public int minLimit() {
+		return 1;
+	}
+
+	/**
+	 * The highest number of concurrent requests the limit may grow to.
+	 * 
+	 * @return a positive number of requests
+	 */
+	@Value.Default
+	public int maxLimit() {
+		return 100;
+	}
+
+	/**
+	 * Verifies that this concurrency limit is in a reasonable state.
+	 */
+	@Value.Check
+	protected void check() {
+		if (minLimit() < 1) {
+			throw new IllegalStateException("non-positive min limit");
+		}
+
+		if (initialLimit() < minLimit() || initialLimit() > maxLimit()) {
+			throw new IllegalStateException(
+			        "initial limit outside min and max limit");
+		}
+	}
+
+}
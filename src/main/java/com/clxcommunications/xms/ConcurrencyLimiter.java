@@ -0,0 +1,271 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Future;
+
+import org.apache.http.HttpStatus;
+import org.apache.http.concurrent.FutureCallback;
+
+/**
+ * Enforces a {@link ConcurrencyLimit} by handing out a limited number of
+ * permits to send a request. Tasks that cannot get a permit are queued and run
+ * in order as earlier requests complete.
+ * <p>
+ * The limit is adjusted using a Vegas style algorithm. The lowest observed
+ * latency is taken as the latency of an unloaded server and from each
+ * subsequent latency sample the number of requests queued at the server is
+ * estimated. The limit grows while fewer than {@link #ALPHA} requests are
+ * estimated to be queued and shrinks if more than {@link #BETA} are. A request
+ * that times out or is rejected by an overloaded server reduces the limit by
+ * {@link #BACKOFF_RATIO}.
+ */
+final class ConcurrencyLimiter {
+
+	/**
+	 * The estimated server side queue size below which the limit grows.
+	 */
+	static final int ALPHA = 3;
+
+	/**
+	 * The estimated server side queue size above which the limit shrinks.
+	 */
+	static final int BETA = 6;
+
+	/**
+	 * The factor applied to the limit when a request is dropped.
+	 */
+	static final double BACKOFF_RATIO = 0.9;
+
+	/**
+	 * The number of samples after which the no load latency is measured
+	 * anew, this lets the limiter adapt to a permanently slower server.
+	 */
+	static final int PROBE_INTERVAL = 1000;
+
+	private static final int SC_TOO_MANY_REQUESTS = 429;
+
+	private static final class Waiter {
+
+		final Future<?> owner;
+
+		final Runnable task;
+
+		Waiter(Future<?> owner, Runnable task) {
+			this.owner = owner;
+			this.task = task;
+		}
+
+	}
+
+	private final int minLimit;
+
+	private final int maxLimit;
+
+	private final Queue<Waiter> waiters = new ArrayDeque<Waiter>();
+
+	private final Trampoline trampoline = new Trampoline();
+
+	private int limit;
+
+	private int inFlight = 0;
+
+	private long noLoadLatency = Long.MAX_VALUE;
+
+	private int samples = 0;
+
+	ConcurrencyLimiter(ConcurrencyLimit config) {
+		this.minLimit = config.minLimit();
+		this.maxLimit = config.maxLimit();
+		this.limit = config.initialLimit();
+	}
+
+	/**
+	 * The current number of permitted concurrent requests.
+	 * 
+	 * @return a positive number
+	 */
+	synchronized int limit() {
+		return limit;
+	}
+
+	/**
+	 * The current number of requests holding a permit.
+	 * 
+	 * @return a non-negative number
+	 */
+	synchronized int inFlight() {
+		return inFlight;
+	}
+
+	/**
+	 * The current number of tasks waiting for a permit.
+	 * 
+	 * @return a non-negative number
+	 */
+	synchronized int queued() {
+		return waiters.size();
+	}
+
+	/**
+	 * Runs the given task once a permit is available, possibly immediately in
+	 * the calling thread. The task must eventually return the permit using
+	 * {@link #release(long, boolean)}. If the owner is done by the time the
+	 * permit becomes available then the task is dropped without being run.
+	 * 
+	 * @param owner
+	 *            the future whose outcome is decided by the task
+	 * @param task
+	 *            the task to run
+	 */
+	void acquire(Future<?> owner, Runnable task) {
+		synchronized (this) {
+			if (inFlight >= limit) {
+				waiters.add(new Waiter(owner, task));
+				return;
+			}
+
+			inFlight++;
+		}
+
+		task.run();
+	}
+
+	/**
+	 * Returns a permit and updates the limit using the given latency sample.
+	 * Waiting tasks are run in the calling thread if permits become available.
+	 * If called from within such a task then the tasks are run after it
+	 * returns, rather than recursively.
+	 * 
+	 * @param latency
+	 *            the request latency in nanoseconds, or a negative value if
+	 *            no sample is available
+	 * @param dropped
+	 *            whether the request timed out or was rejected by an
+	 *            overloaded server
+	 */
+	void release(long latency, boolean dropped) {
+		List<Runnable> ready = new ArrayList<Runnable>();
+
+		synchronized (this) {
+			if (dropped) {
+				limit = Math.max(minLimit, (int) (limit * BACKOFF_RATIO));
+			} else if (latency >= 0) {
+				update(latency);
+			}
+
+			inFlight--;
+
+			while (inFlight < limit && !waiters.isEmpty()) {
+				Waiter waiter = waiters.remove();
+
+				if (!waiter.owner.isDone()) {
+					inFlight++;
+					ready.add(waiter.task);
+				}
+			}
+		}
+
+		trampoline.run(ready);
+	}
+
+	private void update(long latency) {
+		if (++samples >= PROBE_INTERVAL) {
+			samples = 0;
+			noLoadLatency = latency;
+		} else {
+			noLoadLatency = Math.min(noLoadLatency, latency);
+		}
+
+		double queueSize = (latency == 0)
+		        ? 0
+		        : limit * (1.0 - (double) noLoadLatency / latency);
+
+		if (queueSize < ALPHA) {
+			// Only grow the limit if it is actually being used.
+			if (2 * inFlight >= limit) {
+				limit = Math.min(maxLimit, limit + 1);
+			}
+		} else if (queueSize > BETA) {
+			limit = Math.max(minLimit, limit - 1);
+		}
+	}
+
+	/**
+	 * Returns a callback that returns the permit of a request started now and
+	 * then notifies the given callback.
+	 * 
+	 * @param callback
+	 *            the callback to notify
+	 * @return a non-null callback
+	 */
+	<T> FutureCallback<T> track(final FutureCallback<T> callback) {
+		final long start = System.nanoTime();
+
+		return new FutureCallback<T>() {
+
+			@Override
+			public void completed(T result) {
+				release(System.nanoTime() - start, false);
+				callback.completed(result);
+			}
+
+			@Override
+			public void failed(Exception ex) {
+				release(System.nanoTime() - start, isDropped(ex));
+				callback.failed(ex);
+			}
+
+			@Override
+			public void cancelled() {
+				release(-1, false);
+				callback.cancelled();
+			}
+
+		};
+	}
+
+	/**
+	 * Whether the given failure indicates that the server is overloaded.
+	 * 
+	 * @param ex
+	 *            the request failure
+	 * @return true if the server appears overloaded
+	 */
+	static boolean isDropped(Exception ex) {
+		if (ex instanceof IOException) {
+			return true;
+		} else if (ex instanceof UnexpectedResponseException) {
+			int status = ((UnexpectedResponseException) ex).getResponse()
+			        .getStatusLine().getStatusCode();
+
+			return status == SC_TOO_MANY_REQUESTS
+			        || status >= HttpStatus.SC_INTERNAL_SERVER_ERROR;
+		} else {
+			return false;
+		}
+	}
+
+}
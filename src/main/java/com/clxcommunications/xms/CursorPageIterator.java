@@ -0,0 +1,171 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+
+import javax.annotation.Nonnull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.clxcommunications.xms.api.Page;
+
+/**
+ * A page iterator that tracks its position as a {@link PagingCursor} and that
+ * retries failed page fetches.
+ * <p>
+ * After a page has been processed, the value of {@link #cursor()} may be
+ * stored and later given to {@link PagedFetcher#pagesFrom(PagingCursor)} to
+ * resume the traversal with the following page.
+ * <p>
+ * A page fetch is retried if it failed due to a transport level error, rate
+ * limiting (HTTP status 429), or a temporary server error (HTTP status 502,
+ * 503, or 504). The delay between attempts starts at the
+ * initial backoff and is doubled for each attempt. API errors, such as an
+ * invalid filter, are not retried.
+ * 
+ * @param <T>
+ *            the page element type
+ */
+public final class CursorPageIterator<T> implements Iterator<Page<T>> {
+
+	private static final Logger log =
+	        LoggerFactory.getLogger(CursorPageIterator.class);
+
+	private final PagedFetcher<T> fetcher;
+
+	private final int maxRetries;
+
+	private final long initialBackoffMillis;
+
+	private PagingCursor cursor;
+
+	CursorPageIterator(PagedFetcher<T> fetcher, PagingCursor cursor,
+	        int maxRetries, long initialBackoffMillis) {
+		this.fetcher = fetcher;
+		this.cursor = cursor;
+		this.maxRetries = maxRetries;
+		this.initialBackoffMillis = initialBackoffMillis;
+	}
+
+	/**
+	 * The position of this iterator. This points to the page following the
+	 * most recently returned page.
+	 * 
+	 * @return a non-null cursor
+	 */
+	@Nonnull
+	public PagingCursor cursor() {
+		return cursor;
+	}
+
+	@Override
+	public boolean hasNext() {
+		return !cursor.isExhausted();
+	}
+
+	/**
+	 * Fetches the next page, retrying as necessary.
+	 * 
+	 * @return the next page
+	 * @throws RuntimeApiException
+	 *             if the page could not be fetched, the cursor is then left
+	 *             unchanged
+	 */
+	@Override
+	public Page<T> next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+
+		Page<T> page = fetchWithRetry(cursor.page());
+
+		int seen = cursor.seenElements() + page.size();
+		boolean exhausted = seen >= page.totalSize() || page.isEmpty();
+
+		cursor = new PagingCursor(cursor.listing(), page.page() + 1, seen,
+		        exhausted);
+
+		return page;
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	private Page<T> fetchWithRetry(int pageNum) {
+		long backoff = initialBackoffMillis;
+
+		for (int attempt = 0;; attempt++) {
+			ApiException cause;
+
+			try {
+				return fetcher.fetchAsync(pageNum, null).get();
+			} catch (InterruptedException e) {
+				// Interrupt the thread to let upstream code know.
+				Thread.currentThread().interrupt();
+				throw new RuntimeApiException(new ConcurrentException(e));
+			} catch (ExecutionException e) {
+				try {
+					cause = Utils.unwrapExecutionException(e);
+				} catch (ApiException einner) {
+					cause = einner;
+				}
+			}
+
+			if (attempt >= maxRetries || !isRetryable(cause)) {
+				throw new RuntimeApiException(cause);
+			}
+
+			log.debug("Fetching page {} failed, retrying in {} ms", pageNum,
+			        backoff, cause);
+
+			try {
+				Thread.sleep(backoff);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeApiException(new ConcurrentException(e));
+			}
+
+			backoff = Math.min(2 * backoff, Long.MAX_VALUE / 2);
+		}
+	}
+
+	/**
+	 * Whether the given failure may be temporary. Page fetches are
+	 * idempotent so this follows {@link RetryPolicy} for idempotent requests.
+	 * 
+	 * @param e
+	 *            the failure
+	 * @return <code>true</code> if the fetch should be retried
+	 */
+	private static boolean isRetryable(ApiException e) {
+		Throwable failure =
+		        (e instanceof ConcurrentException) ? e.getCause() : e;
+
+		return failure instanceof Exception
+		        && RetryPolicy.isRetryable((Exception) failure, true);
+	}
+
+}
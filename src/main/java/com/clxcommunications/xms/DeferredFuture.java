@@ -0,0 +1,124 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import java.util.concurrent.Future;
+
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.FutureCallback;
+
+/**
+ * A future whose outcome is decided by another, later, operation. The
+ * operation currently working towards the outcome, for example a scheduled
+ * task or an outstanding request, is registered using
+ * {@link #setDelegate(Future)} and is cancelled if this future is cancelled.
+ * 
+ * @param <T>
+ *            the result type
+ */
+final class DeferredFuture<T> extends BasicFuture<T> {
+
+	private volatile Future<?> delegate;
+
+	DeferredFuture(FutureCallback<T> callback) {
+		super(callback);
+	}
+
+	/**
+	 * Registers the operation currently working towards the outcome of this
+	 * future. If this future already is cancelled then the given operation is
+	 * cancelled immediately.
+	 * 
+	 * @param delegate
+	 *            the current operation
+	 */
+	void setDelegate(Future<?> delegate) {
+		synchronized (this) {
+			this.delegate = delegate;
+		}
+
+		if (isCancelled()) {
+			delegate.cancel(true);
+		}
+	}
+
+	/**
+	 * Registers the given operation unless an operation already is registered.
+	 * Useful when registering a scheduled task since the task may run, and
+	 * register its own follow-up operation, before the scheduling call
+	 * returns. If this future already is cancelled then the given operation is
+	 * cancelled immediately.
+	 * 
+	 * @param delegate
+	 *            the operation
+	 */
+	void setDelegateIfAbsent(Future<?> delegate) {
+		synchronized (this) {
+			if (this.delegate != null) {
+				return;
+			}
+
+			this.delegate = delegate;
+		}
+
+		if (isCancelled()) {
+			delegate.cancel(true);
+		}
+	}
+
+	/**
+	 * Returns a callback that completes this future.
+	 * 
+	 * @return a non-null callback
+	 */
+	FutureCallback<T> completer() {
+		return new FutureCallback<T>() {
+
+			@Override
+			public void completed(T result) {
+				DeferredFuture.this.completed(result);
+			}
+
+			@Override
+			public void failed(Exception ex) {
+				DeferredFuture.this.failed(ex);
+			}
+
+			@Override
+			public void cancelled() {
+				DeferredFuture.this.cancel();
+			}
+
+		};
+	}
+
+	@Override
+	public boolean cancel() {
+		boolean cancelled = super.cancel();
+
+		Future<?> current = delegate;
+		if (cancelled && current != null) {
+			current.cancel(true);
+		}
+
+		return cancelled;
+	}
+
+}
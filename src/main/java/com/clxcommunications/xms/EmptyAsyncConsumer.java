@@ -36,7 +36,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.clxcommunications.xms.api.ApiError;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 
 /**
  * An asynchronous consumer that consumes empty responses. If a non-empty
@@ -48,18 +48,29 @@ class EmptyAsyncConsumer extends AsyncCharConsumer<Void> {
 	private static final Logger log =
 	        LoggerFactory.getLogger(EmptyAsyncConsumer.class);
 
-	private final ObjectMapper json;
+	private final ObjectReader errorReader;
 	private HttpResponse response;
 	private StringBuilder sb;
 
 	/**
 	 * Builds a new empty body consumer.
 	 * 
-	 * @param json
-	 *            the object mapper
+	 * @param errorReader
+	 *            the reader of API error objects
 	 */
-	public EmptyAsyncConsumer(ObjectMapper json) {
-		this.json = json;
+	public EmptyAsyncConsumer(ObjectReader errorReader) {
+		this.errorReader = errorReader;
+	}
+
+	/**
+	 * Creates a fresh consumer having the same configuration as this one. A
+	 * consumer can only consume a single response so a retried request needs
+	 * a new consumer.
+	 * 
+	 * @return a new consumer
+	 */
+	EmptyAsyncConsumer copy() {
+		return new EmptyAsyncConsumer(errorReader);
 	}
 
 	@Override
@@ -89,7 +100,7 @@ class EmptyAsyncConsumer extends AsyncCharConsumer<Void> {
 			return null;
 		case HttpStatus.SC_BAD_REQUEST:
 		case HttpStatus.SC_FORBIDDEN:
-			ApiError error = json.readValue(content, ApiError.class);
+			ApiError error = errorReader.readValue(content);
 			throw new ErrorResponseException(error);
 		case HttpStatus.SC_NOT_FOUND:
 			HttpCoreContext coreContext = HttpCoreContext.adapt(context);
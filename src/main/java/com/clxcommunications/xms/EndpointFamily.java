@@ -0,0 +1,49 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+/**
+ * The groups of XMS endpoints whose health is tracked separately by a
+ * connection's circuit breakers, see {@link CircuitBreakerPolicy}.
+ */
+public enum EndpointFamily {
+
+	/**
+	 * Endpoints creating, fetching, updating, and cancelling batches,
+	 * including batch tags and dry runs.
+	 */
+	BATCHES,
+
+	/**
+	 * Endpoints fetching batch and recipient delivery reports.
+	 */
+	DELIVERY_REPORTS,
+
+	/**
+	 * Endpoints managing groups, including group members and tags.
+	 */
+	GROUPS,
+
+	/**
+	 * Endpoints fetching inbound messages.
+	 */
+	INBOUNDS
+
+}
@@ -0,0 +1,234 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URLEncoder;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.http.Consts;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.client.utils.URLEncodedUtils;
+
+/**
+ * Precomputed endpoint URLs of a single XMS service plan. The base URL, which
+ * includes the encoded service plan identifier, is built once and endpoint
+ * URLs are then formed by plain string concatenation. The fixed endpoints are
+ * fully precomputed.
+ */
+final class Endpoints {
+
+	/**
+	 * Hexadecimal digits used when percent-encoding.
+	 */
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+	/**
+	 * The characters that may appear unencoded in a URL path. This matches
+	 * the set of characters left alone by {@link URIBuilder}.
+	 */
+	private static final boolean[] PATH_SAFE = new boolean[128];
+
+	static {
+		for (char c = 'a'; c <= 'z'; c++) {
+			PATH_SAFE[c] = true;
+		}
+
+		for (char c = 'A'; c <= 'Z'; c++) {
+			PATH_SAFE[c] = true;
+		}
+
+		for (char c = '0'; c <= '9'; c++) {
+			PATH_SAFE[c] = true;
+		}
+
+		for (char c : "_-!.~'()*,;:$&+=/@".toCharArray()) {
+			PATH_SAFE[c] = true;
+		}
+	}
+
+	/**
+	 * The encoded URL of the service plan, e.g.,
+	 * <code>https://api.clxcommunications.com/xms/v1/myspid</code>.
+	 */
+	private final String prefix;
+
+	private final URI batches;
+
+	private final URI groups;
+
+	/**
+	 * Creates endpoint URLs for the given base URL and service plan.
+	 * 
+	 * @param base
+	 *            the XMS base URL
+	 * @param servicePlanId
+	 *            the service plan identifier
+	 * @throws IllegalArgumentException
+	 *             if the generated URL is invalid, wraps the
+	 *             {@link URISyntaxException}
+	 */
+	Endpoints(URI base, String servicePlanId) {
+		try {
+			String spid = URLEncoder.encode(servicePlanId, "UTF-8");
+			String path = base.getPath() + "/v1/" + spid;
+
+			this.prefix = new URIBuilder(base).setPath(path).build().toString();
+		} catch (URISyntaxException e) {
+			throw new IllegalArgumentException(e);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+
+		this.batches = uri("/batches");
+		this.groups = uri("/groups");
+	}
+
+	/**
+	 * The URL of the batches endpoint.
+	 * 
+	 * @return a non-null URL
+	 */
+	@Nonnull
+	URI batches() {
+		return batches;
+	}
+
+	/**
+	 * The URL of the groups endpoint.
+	 * 
+	 * @return a non-null URL
+	 */
+	@Nonnull
+	URI groups() {
+		return groups;
+	}
+
+	/**
+	 * Determines the endpoint family of the given URL.
+	 * 
+	 * @param uri
+	 *            a URL formed by this object
+	 * @return an endpoint family or <code>null</code> if the URL does not
+	 *         belong to any family
+	 */
+	@Nullable
+	EndpointFamily familyOf(URI uri) {
+		String url = uri.toString();
+
+		if (!url.startsWith(prefix)) {
+			return null;
+		}
+
+		String subPath = url.substring(prefix.length());
+
+		if (subPath.startsWith("/batches")) {
+			return subPath.contains("/delivery_report")
+			        ? EndpointFamily.DELIVERY_REPORTS
+			        : EndpointFamily.BATCHES;
+		} else if (subPath.startsWith("/groups")) {
+			return EndpointFamily.GROUPS;
+		} else if (subPath.startsWith("/inbounds")) {
+			return EndpointFamily.INBOUNDS;
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the URL for the given sub-path.
+	 * 
+	 * @param subPath
+	 *            the path fragment to place after the service plan path
+	 * @return a non-null URL
+	 */
+	@Nonnull
+	URI uri(String subPath) {
+		return URI.create(prefix + encodePath(subPath));
+	}
+
+	/**
+	 * Returns the URL for the given sub-path and query parameters.
+	 * 
+	 * @param subPath
+	 *            the path fragment to place after the service plan path
+	 * @param params
+	 *            the query parameters, may be empty
+	 * @return a non-null URL
+	 */
+	@Nonnull
+	URI uri(String subPath, List<NameValuePair> params) {
+		if (params.isEmpty()) {
+			return uri(subPath);
+		}
+
+		String query = URLEncodedUtils.format(params, Consts.UTF_8);
+
+		return URI.create(prefix + encodePath(subPath) + '?' + query);
+	}
+
+	/**
+	 * Percent-encodes the characters of the given path that may not appear
+	 * literally in a URL path. If no character needs encoding then the given
+	 * string is returned as is.
+	 * 
+	 * @param path
+	 *            the path to encode
+	 * @return the encoded path
+	 */
+	@Nonnull
+	static String encodePath(String path) {
+		int i = 0;
+		while (i < path.length() && isPathSafe(path.charAt(i))) {
+			i++;
+		}
+
+		if (i == path.length()) {
+			return path;
+		}
+
+		StringBuilder sb = new StringBuilder(path.length() + 16);
+		sb.append(path, 0, i);
+
+		byte[] bytes = path.substring(i).getBytes(Consts.UTF_8);
+		for (byte b : bytes) {
+			char c = (char) (b & 0xff);
+
+			if (isPathSafe(c)) {
+				sb.append(c);
+			} else {
+				sb.append('%').append(HEX[(b >> 4) & 0xf]).append(HEX[b & 0xf]);
+			}
+		}
+
+		return sb.toString();
+	}
+
+	private static boolean isPathSafe(char c) {
+		return c < 128 && PATH_SAFE[c];
+	}
+
+}
@@ -0,0 +1,134 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks the state needed to enforce a {@link HedgingPolicy}: a window of
+ * recent request latencies, from which the hedging delay is derived, and the
+ * hedging budget.
+ * <p>
+ * The delay is recomputed every {@link #REFRESH_INTERVAL} samples rather than
+ * for every request since it requires sorting the window. The budget grows by
+ * the maximum hedge ratio for every hedgeable request and each duplicate
+ * request spends one unit. The budget is capped at {@link #MAX_BUDGET} to
+ * limit the size of a burst of duplicate requests.
+ */
+final class Hedger {
+
+	/**
+	 * The number of latency samples kept.
+	 */
+	static final int WINDOW_SIZE = 1024;
+
+	/**
+	 * The number of samples between recomputations of the hedging delay.
+	 */
+	static final int REFRESH_INTERVAL = 64;
+
+	/**
+	 * The largest number of duplicate requests that may be saved up.
+	 */
+	static final double MAX_BUDGET = 10;
+
+	private final double percentile;
+
+	private final double ratio;
+
+	private final long[] window = new long[WINDOW_SIZE];
+
+	private int samples = 0;
+
+	private int next = 0;
+
+	private int sinceRefresh = 0;
+
+	private long delay;
+
+	private double budget = 0;
+
+	Hedger(HedgingPolicy policy) {
+		this.percentile = policy.percentile();
+		this.ratio = policy.maxHedgeRatio();
+		this.delay = TimeUnit.MILLISECONDS
+		        .toNanos(policy.initialDelay().toMillis());
+	}
+
+	/**
+	 * The current hedging delay.
+	 * 
+	 * @return a non-negative number of nanoseconds
+	 */
+	synchronized long delay() {
+		return delay;
+	}
+
+	/**
+	 * Records that a hedgeable request is sent, this increases the hedging
+	 * budget.
+	 */
+	synchronized void requested() {
+		budget = Math.min(MAX_BUDGET, budget + ratio);
+	}
+
+	/**
+	 * Attempts to spend budget on a duplicate request.
+	 * 
+	 * @return true if a duplicate request may be sent
+	 */
+	synchronized boolean tryHedge() {
+		if (budget < 1) {
+			return false;
+		}
+
+		budget -= 1;
+		return true;
+	}
+
+	/**
+	 * Records the latency of a completed request.
+	 * 
+	 * @param latency
+	 *            the latency in nanoseconds
+	 */
+	synchronized void record(long latency) {
+		window[next] = latency;
+		next = (next + 1) % WINDOW_SIZE;
+
+		if (samples < WINDOW_SIZE) {
+			samples++;
+		}
+
+		if (++sinceRefresh < REFRESH_INTERVAL) {
+			return;
+		}
+
+		sinceRefresh = 0;
+
+		long[] sorted = Arrays.copyOf(window, samples);
+		Arrays.sort(sorted);
+
+		int index = (int) Math.ceil(percentile / 100 * samples) - 1;
+		delay = sorted[Math.max(0, index)];
+	}
+
+}
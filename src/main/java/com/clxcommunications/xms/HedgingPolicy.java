@@ -0,0 +1,117 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import javax.annotation.Nonnull;
+
+import org.immutables.value.Value;
+import org.threeten.bp.Duration;
+
+/**
+ * Describes how GET requests are hedged. A connection configured with a
+ * hedging policy sends a duplicate of a GET request if no response has
+ * arrived after a delay. The first response is used and the other request is
+ * cancelled. Since the duplicate request will typically use another pooled
+ * connection, and possibly hit another server, this cuts the latency of
+ * requests that would otherwise end up in the tail of the latency
+ * distribution.
+ * <p>
+ * The delay is the given {@link #percentile()} of recently observed request
+ * latencies. Until enough latencies have been observed the
+ * {@link #initialDelay()} is used.
+ * <p>
+ * To avoid overloading XMS the number of duplicate requests is capped at a
+ * fraction of all hedgeable requests, see {@link #maxHedgeRatio()}.
+ */
+@Value.Immutable
+@ValueStylePackage
+public abstract class HedgingPolicy {
+
+	/**
+	 * A builder of hedging policies.
+	 */
+	public static class Builder extends HedgingPolicyImpl.Builder {
+
+		Builder() {
+		}
+
+	}
+
+	/**
+	 * Creates a builder of {@link HedgingPolicy} instances.
+	 * 
+	 * @return a builder
+	 */
+	@Nonnull
+	public static final HedgingPolicy.Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * The latency percentile after which a duplicate request is sent.
+	 * 
+	 * @return a percentile in the range (0, 100]
+	 */
+	@Value.Default
+	public double percentile() {
+		return 95;
+	}
+
+	/**
+	 * The delay before sending a duplicate request used until enough request
+	 * latencies have been observed.
+	 * 
+	 * @return a non-negative duration
+	 */
+	@Value.Default
+	public Duration initialDelay() {
+		return Duration.ofMillis(100);
+	}
+
+	/**
+	 * The largest number of duplicate requests, as a fraction of the number
+	 * of hedgeable requests.
+	 * 
+	 * @return a fraction in the range [0, 1]
+	 */
+	@Value.Default
+	public double maxHedgeRatio() {
+		return 0.05;
+	}
+
+	/**
+	 * Verifies that this hedging policy is in a reasonable state.
+	 */
+	@Value.Check
+	protected void check() {
+		if (!(percentile() > 0 && percentile() <= 100)) {
+			throw new IllegalStateException("percentile out of range");
+		}
+
+		if (initialDelay().isNegative()) {
+			throw new IllegalStateException("negative initial delay");
+		}
+
+		if (!(maxHedgeRatio() >= 0 && maxHedgeRatio() <= 1)) {
+			throw new IllegalStateException("max hedge ratio out of range");
+		}
+	}
+
+}
@@ -0,0 +1,88 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import java.io.IOException;
+import java.util.concurrent.Future;
+
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.nio.client.HttpAsyncClient;
+import org.apache.http.nio.protocol.BasicAsyncRequestProducer;
+import org.apache.http.nio.protocol.HttpAsyncResponseConsumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A transport that sends requests using an Apache asynchronous HTTP client.
+ * <p>
+ * The HTTP client is started by this transport if it is an
+ * {@link ApiHttpAsyncClient} and closed only if it is an
+ * {@link ApiHttpAsyncClient} created inside the SDK. Other clients must be
+ * started and closed externally.
+ */
+final class HttpAsyncClientTransport implements ApiTransport {
+
+	private static final Logger log =
+	        LoggerFactory.getLogger(HttpAsyncClientTransport.class);
+
+	private final HttpAsyncClient client;
+
+	HttpAsyncClientTransport(HttpAsyncClient client) {
+		this.client = client;
+	}
+
+	@Override
+	public void start() {
+		if (client instanceof ApiHttpAsyncClient) {
+			((ApiHttpAsyncClient) client).start();
+		} else {
+			log.debug("Not starting HTTP client since it"
+			        + " was given externally");
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (client instanceof ApiHttpAsyncClient
+		        && ((ApiHttpAsyncClient) client).isStartedInternally()) {
+			((ApiHttpAsyncClient) client).close();
+		} else {
+			log.debug("Not closing HTTP client since it was given externally");
+		}
+	}
+
+	@Override
+	public <T> Future<T> execute(HttpUriRequest request,
+	        HttpAsyncResponseConsumer<T> consumer,
+	        FutureCallback<T> callback) {
+		BasicAsyncRequestProducer producer = new BasicAsyncRequestProducer(
+		        URIUtils.extractHost(request.getURI()), request);
+
+		return client.execute(producer, consumer, callback);
+	}
+
+	@Override
+	public String toString() {
+		return "HttpAsyncClientTransport[" + client + "]";
+	}
+
+}
@@ -0,0 +1,225 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+
+import org.threeten.bp.LocalDate;
+import org.threeten.bp.ZoneOffset;
+
+import com.clxcommunications.xms.api.MoSms;
+import com.clxcommunications.xms.api.Page;
+
+/**
+ * Incrementally synchronizes inbound messages. Each call to {@link #sync()}
+ * walks the inbounds listing from the newest message and stops as soon as it
+ * reaches messages older than the current {@link InboundsWatermark}. Messages
+ * not seen before are handed to the listener in the order they were received
+ * and the watermark is advanced past each delivered message.
+ * <p>
+ * The watermark is also used to narrow the start date of the inbounds filter,
+ * so a periodic poll only transfers the pages containing new messages rather
+ * than the full listing for the day.
+ * <p>
+ * The watermark can be persisted between application runs using
+ * {@link #watermark()} and passed to
+ * {@link #of(ApiConnection, InboundsFilter, InboundsWatermark, Listener)}.
+ * <p>
+ * Note, messages are considered new only if they sort after the watermark, a
+ * message that the service reports with a receive time older than already
+ * delivered messages will therefore not be delivered.
+ */
+public class InboundsSynchronizer {
+
+	/**
+	 * A receiver of new inbound messages.
+	 */
+	public interface Listener {
+
+		/**
+		 * Called for each new inbound message. If this method throws an
+		 * exception then the synchronization is aborted and the watermark
+		 * will not cover the message.
+		 * 
+		 * @param mo
+		 *            the new message
+		 */
+		void onInbound(MoSms mo);
+
+	}
+
+	/**
+	 * Orders messages by their receive time, oldest first.
+	 */
+	private static final Comparator<MoSms> BY_RECEIVED_AT =
+	        new Comparator<MoSms>() {
+
+		        @Override
+		        public int compare(MoSms a, MoSms b) {
+			        return a.receivedAt().compareTo(b.receivedAt());
+		        }
+
+	        };
+
+	private final ApiConnection conn;
+
+	private final InboundsFilter filter;
+
+	private final Listener listener;
+
+	private volatile InboundsWatermark watermark;
+
+	InboundsSynchronizer(ApiConnection conn, InboundsFilter filter,
+	        InboundsWatermark watermark, Listener listener) {
+		this.conn = conn;
+		this.filter = Utils.requireNonNull(filter, "filter");
+		this.watermark = Utils.requireNonNull(watermark, "watermark");
+		this.listener = Utils.requireNonNull(listener, "listener");
+	}
+
+	/**
+	 * Creates a synchronizer that will deliver all messages matching the given
+	 * filter on its first synchronization.
+	 * 
+	 * @param conn
+	 *            the connection to use
+	 * @param filter
+	 *            the filter limiting the synchronized messages
+	 * @param listener
+	 *            the receiver of new messages
+	 * @return a new synchronizer
+	 */
+	@Nonnull
+	public static InboundsSynchronizer of(ApiConnection conn,
+	        InboundsFilter filter, Listener listener) {
+		return of(conn, filter, InboundsWatermark.initial(), listener);
+	}
+
+	/**
+	 * Creates a synchronizer that resumes from the given watermark.
+	 * 
+	 * @param conn
+	 *            the connection to use
+	 * @param filter
+	 *            the filter limiting the synchronized messages
+	 * @param watermark
+	 *            the watermark to resume from
+	 * @param listener
+	 *            the receiver of new messages
+	 * @return a new synchronizer
+	 */
+	@Nonnull
+	public static InboundsSynchronizer of(ApiConnection conn,
+	        InboundsFilter filter, InboundsWatermark watermark,
+	        Listener listener) {
+		return new InboundsSynchronizer(
+		        Utils.requireNonNull(conn, "conn"), filter, watermark,
+		        listener);
+	}
+
+	/**
+	 * The current watermark. The returned value may be persisted and later
+	 * used to resume synchronization.
+	 * 
+	 * @return a non-null watermark
+	 */
+	@Nonnull
+	public InboundsWatermark watermark() {
+		return watermark;
+	}
+
+	/**
+	 * Fetches new inbound messages and delivers them to the listener. This
+	 * method blocks until all new messages are delivered.
+	 * 
+	 * @return the number of delivered messages
+	 * @throws RuntimeApiException
+	 *             if an error occurred while fetching a page
+	 */
+	public synchronized int sync() {
+		InboundsWatermark mark = watermark;
+		List<MoSms> fresh = new ArrayList<MoSms>();
+		Set<String> freshIds = new HashSet<String>();
+
+		pages: for (Page<MoSms> page : fetcher(filterFor(mark)).pages()) {
+			for (MoSms mo : page) {
+				if (mark.isNewerThan(mo)) {
+					break pages;
+				} else if (!mark.hasSeen(mo) && freshIds.add(mo.id())) {
+					fresh.add(mo);
+				}
+			}
+		}
+
+		Collections.sort(fresh, BY_RECEIVED_AT);
+
+		for (MoSms mo : fresh) {
+			listener.onInbound(mo);
+			watermark = watermark.advance(mo);
+		}
+
+		return fresh.size();
+	}
+
+	/**
+	 * Returns a fetcher of the inbounds listing using the given filter.
+	 * 
+	 * @param filter
+	 *            the inbounds filter
+	 * @return a non-null paged fetcher
+	 */
+	PagedFetcher<MoSms> fetcher(InboundsFilter filter) {
+		return conn.fetchInbounds(filter);
+	}
+
+	/**
+	 * Narrows the configured filter to start at the day of the given
+	 * watermark.
+	 * 
+	 * @param mark
+	 *            the current watermark
+	 * @return a non-null filter
+	 */
+	InboundsFilter filterFor(InboundsWatermark mark) {
+		if (mark.receivedAt() == null) {
+			return filter;
+		}
+
+		LocalDate day = mark.receivedAt()
+		        .withOffsetSameInstant(ZoneOffset.UTC).toLocalDate();
+
+		if (filter.startDate() != null && !filter.startDate().isBefore(day)) {
+			return filter;
+		}
+
+		return InboundsFilter.builder()
+		        .using(filter)
+		        .startDate(day)
+		        .build();
+	}
+
+}
@@ -0,0 +1,173 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.threeten.bp.OffsetDateTime;
+
+import com.clxcommunications.xms.api.MoSms;
+
+/**
+ * The high-water mark of an {@link InboundsSynchronizer}. The watermark holds
+ * the latest receive time of any delivered inbound message together with the
+ * identifiers of the delivered messages having exactly that receive time.
+ * Watermarks are serializable so that the synchronization state may be
+ * persisted between application runs.
+ */
+public final class InboundsWatermark implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final InboundsWatermark INITIAL =
+	        new InboundsWatermark(null, Collections.<String> emptySet());
+
+	private final OffsetDateTime receivedAt;
+
+	private final Set<String> boundaryIds;
+
+	private InboundsWatermark(OffsetDateTime receivedAt,
+	        Set<String> boundaryIds) {
+		this.receivedAt = receivedAt;
+		this.boundaryIds = boundaryIds;
+	}
+
+	/**
+	 * A watermark that has seen no messages.
+	 * 
+	 * @return a non-null watermark
+	 */
+	@Nonnull
+	public static InboundsWatermark initial() {
+		return INITIAL;
+	}
+
+	/**
+	 * The receive time of the newest delivered message.
+	 * 
+	 * @return a timestamp or <code>null</code> if no message has been seen
+	 */
+	@Nullable
+	public OffsetDateTime receivedAt() {
+		return receivedAt;
+	}
+
+	/**
+	 * The identifiers of the delivered messages received at exactly
+	 * {@link #receivedAt()}.
+	 * 
+	 * @return a non-null, unmodifiable set of message identifiers
+	 */
+	@Nonnull
+	public Set<String> boundaryIds() {
+		return boundaryIds;
+	}
+
+	/**
+	 * Whether the given message has already been passed by this watermark.
+	 * 
+	 * @param mo
+	 *            the message to check
+	 * @return <code>true</code> if the message is at or below this watermark
+	 */
+	boolean hasSeen(MoSms mo) {
+		if (receivedAt == null) {
+			return false;
+		}
+
+		OffsetDateTime t = mo.receivedAt();
+
+		return t.isBefore(receivedAt)
+		        || (t.isEqual(receivedAt) && boundaryIds.contains(mo.id()));
+	}
+
+	/**
+	 * Whether this watermark is newer than the given message, i.e., whether
+	 * the message was received at an instant strictly before the watermark.
+	 * 
+	 * @param mo
+	 *            the message to check
+	 * @return <code>true</code> if the message is older than this watermark
+	 */
+	boolean isNewerThan(MoSms mo) {
+		return receivedAt != null && mo.receivedAt().isBefore(receivedAt);
+	}
+
+	/**
+	 * Returns a watermark that also covers the given message.
+	 * 
+	 * @param mo
+	 *            the delivered message
+	 * @return a non-null watermark
+	 */
+	InboundsWatermark advance(MoSms mo) {
+		if (hasSeen(mo)) {
+			return this;
+		}
+
+		OffsetDateTime t = mo.receivedAt();
+
+		if (receivedAt == null || t.isAfter(receivedAt)) {
+			return new InboundsWatermark(t, Collections.singleton(mo.id()));
+		}
+
+		Set<String> ids = new HashSet<String>(boundaryIds);
+		ids.add(mo.id());
+
+		return new InboundsWatermark(receivedAt,
+		        Collections.unmodifiableSet(ids));
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		} else if (!(obj instanceof InboundsWatermark)) {
+			return false;
+		}
+
+		InboundsWatermark other = (InboundsWatermark) obj;
+
+		return (receivedAt == null
+		        ? other.receivedAt == null
+		        : receivedAt.equals(other.receivedAt))
+		        && boundaryIds.equals(other.boundaryIds);
+	}
+
+	@Override
+	public int hashCode() {
+		int h = 31 + (receivedAt == null ? 0 : receivedAt.hashCode());
+		h = 31 * h + boundaryIds.hashCode();
+		return h;
+	}
+
+	@Override
+	public String toString() {
+		return "InboundsWatermark{receivedAt=" + receivedAt + ", boundaryIds="
+		        + boundaryIds + "}";
+	}
+
+}
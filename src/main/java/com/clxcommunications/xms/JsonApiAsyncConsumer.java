@@ -23,6 +23,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 
+import javax.annotation.Nullable;
+
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpException;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
@@ -35,38 +38,91 @@ import org.apache.http.protocol.HttpContext;
 import org.apache.http.protocol.HttpCoreContext;
 
 import com.clxcommunications.xms.api.ApiError;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 
 /**
  * An asynchronous consumer that consumes JSON objects.
+ * <p>
+ * Response bodies are written into arrays taken from a
+ * {@link ResponseBufferPool}, sized after the response content length when
+ * known. The array is handed back to the pool once the result is built.
+ * <p>
+ * If a {@link StreamingDecoder.Factory} is given and it provides a decoder for
+ * a successful response then the response body is not buffered, it is instead
+ * passed to the decoder as it arrives.
  * 
  * @param <T>
  *            the expected type after deserialization
  */
 class JsonApiAsyncConsumer<T> extends AsyncByteConsumer<T> {
 
-	private final ObjectMapper json;
-	private final Class<T> jsonClass;
+	private final Class<T> type;
+	private final ObjectReader reader;
+	private final ObjectReader errorReader;
+	private final ResponseBufferPool bufferPool;
+
+	@Nullable
+	private final StreamingDecoder.Factory decoderFactory;
+
 	private HttpResponse response;
 	private ByteInOutStream bios;
 
+	/**
+	 * The decoder of the current response, <code>null</code> if the response
+	 * is buffered in {@link #bios}.
+	 */
+	private StreamingDecoder<T> decoder;
+
+	/**
+	 * The thread that acquired the buffer of {@link #bios}.
+	 */
+	private Thread biosAcquirer;
+
 	/**
 	 * Builds a new JSON consumer.
 	 * 
-	 * @param json
-	 *            the object mapper
-	 * @param jsonClass
-	 *            the class that will be deserialized
+	 * @param type
+	 *            the expected type
+	 * @param reader
+	 *            the reader of the expected type
+	 * @param errorReader
+	 *            the reader of API error objects
+	 * @param bufferPool
+	 *            the pool from which response buffers are taken
+	 * @param decoderFactory
+	 *            the factory of streaming decoders, <code>null</code> if
+	 *            responses always should be buffered
 	 */
-	public JsonApiAsyncConsumer(ObjectMapper json, Class<T> jsonClass) {
-		this.json = json;
-		this.jsonClass = jsonClass;
+	public JsonApiAsyncConsumer(Class<T> type, ObjectReader reader,
+	        ObjectReader errorReader, ResponseBufferPool bufferPool,
+	        @Nullable StreamingDecoder.Factory decoderFactory) {
+		this.type = type;
+		this.reader = reader;
+		this.errorReader = errorReader;
+		this.bufferPool = bufferPool;
+		this.decoderFactory = decoderFactory;
+	}
+
+	/**
+	 * Creates a fresh consumer having the same configuration as this one. A
+	 * consumer can only consume a single response so a retried request needs
+	 * a new consumer.
+	 * 
+	 * @return a new consumer
+	 */
+	JsonApiAsyncConsumer<T> copy() {
+		return new JsonApiAsyncConsumer<T>(type, reader, errorReader,
+		        bufferPool, decoderFactory);
 	}
 
 	@Override
 	protected void onByteReceived(ByteBuffer buf, IOControl ioctrl)
 	        throws IOException {
-		bios.write(buf);
+		if (decoder != null) {
+			decoder.decode(buf);
+		} else {
+			bios.write(buf);
+		}
 	}
 
 	@Override
@@ -74,25 +130,50 @@ class JsonApiAsyncConsumer<T> extends AsyncByteConsumer<T> {
 	        throws HttpException, IOException {
 		this.response = response;
 
+		if (decoderFactory != null && isSuccess(response)) {
+			this.decoder = decoderFactory.create(type, reader);
+
+			if (decoder != null) {
+				return;
+			}
+		}
+
 		/*
-		 * We'll assume that most responses fit within 1KiB. For larger
-		 * responses the output stream will grow automatically.
+		 * Size the buffer after the announced content length, if any. For
+		 * chunked responses the output stream will grow automatically.
 		 */
-		this.bios = new ByteInOutStream(1024);
+		HttpEntity entity = response.getEntity();
+		long length = (entity == null) ? -1 : entity.getContentLength();
+
+		this.bios = new ByteInOutStream(bufferPool.acquire(length));
+		this.biosAcquirer = Thread.currentThread();
 	}
 
 	@Override
 	protected T buildResult(HttpContext context) throws Exception {
+		if (decoder != null) {
+			return decoder.result();
+		}
+
 		int code = response.getStatusLine().getStatusCode();
 		InputStream inputStream = bios.toInputStream();
 
 		switch (code) {
 		case HttpStatus.SC_OK:
 		case HttpStatus.SC_CREATED:
-			return json.readValue(inputStream, jsonClass);
+			try {
+				return reader.readValue(inputStream);
+			} finally {
+				releaseBuffer();
+			}
 		case HttpStatus.SC_BAD_REQUEST:
 		case HttpStatus.SC_FORBIDDEN:
-			ApiError error = json.readValue(inputStream, ApiError.class);
+			ApiError error;
+			try {
+				error = errorReader.readValue(inputStream);
+			} finally {
+				releaseBuffer();
+			}
 			throw new ErrorResponseException(error);
 		case HttpStatus.SC_NOT_FOUND:
 			HttpCoreContext coreContext = HttpCoreContext.adapt(context);
@@ -106,8 +187,35 @@ class JsonApiAsyncConsumer<T> extends AsyncByteConsumer<T> {
 			InputStreamEntity entity =
 			        new InputStreamEntity(inputStream, bios.size(), type);
 			response.setEntity(entity);
+
+			// The buffer now belongs to the response, do not pool it.
+			bios = null;
+
 			throw new UnexpectedResponseException(response);
 		}
 	}
 
+	@Override
+	protected void releaseResources() {
+		if (bios != null) {
+			releaseBuffer();
+		}
+	}
+
+	private static boolean isSuccess(HttpResponse response) {
+		int code = response.getStatusLine().getStatusCode();
+		return code == HttpStatus.SC_OK || code == HttpStatus.SC_CREATED;
+	}
+
+	/**
+	 * Hands the response buffer back to the pool. Must only be called once
+	 * the buffered bytes no longer are needed. The buffer is dropped if not
+	 * released on the thread that acquired it.
+	 */
+	private void releaseBuffer() {
+		bufferPool.release(bios.buffer(), biosAcquirer);
+		bios = null;
+		biosAcquirer = null;
+	}
+
 }
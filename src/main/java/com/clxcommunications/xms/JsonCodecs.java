@@ -0,0 +1,219 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+
+import com.clxcommunications.xms.api.ApiError;
+import com.clxcommunications.xms.api.BatchDeliveryReport;
+import com.clxcommunications.xms.api.GroupCreate;
+import com.clxcommunications.xms.api.GroupResult;
+import com.clxcommunications.xms.api.GroupUpdate;
+import com.clxcommunications.xms.api.MoSms;
+import com.clxcommunications.xms.api.MtBatchBinarySmsCreate;
+import com.clxcommunications.xms.api.MtBatchBinarySmsResult;
+import com.clxcommunications.xms.api.MtBatchBinarySmsUpdate;
+import com.clxcommunications.xms.api.MtBatchDryRunResult;
+import com.clxcommunications.xms.api.MtBatchSmsResult;
+import com.clxcommunications.xms.api.MtBatchTextSmsCreate;
+import com.clxcommunications.xms.api.MtBatchTextSmsResult;
+import com.clxcommunications.xms.api.MtBatchTextSmsUpdate;
+import com.clxcommunications.xms.api.PagedBatchResult;
+import com.clxcommunications.xms.api.PagedGroupResult;
+import com.clxcommunications.xms.api.PagedInboundsResult;
+import com.clxcommunications.xms.api.RecipientDeliveryReport;
+import com.clxcommunications.xms.api.Tags;
+import com.clxcommunications.xms.api.TagsUpdate;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Holds prebuilt, immutable, Jackson readers and writers for the API types
+ * exchanged with XMS. Each reader and writer is bound to its type once,
+ * instead of on every call as with {@link ObjectMapper#readValue} and
+ * {@link ObjectMapper#writeValueAsBytes}.
+ */
+final class JsonCodecs {
+
+	/**
+	 * The types that may be read from an XMS response.
+	 */
+	private static final Class<?>[] READ_TYPES = {
+	        ApiError.class,
+	        BatchDeliveryReport.class,
+	        GroupResult.class,
+	        MoSms.class,
+	        MtBatchBinarySmsResult.class,
+	        MtBatchDryRunResult.class,
+	        MtBatchSmsResult.class,
+	        MtBatchTextSmsResult.class,
+	        PagedBatchResult.class,
+	        PagedGroupResult.class,
+	        PagedInboundsResult.class,
+	        RawPage.class,
+	        RecipientDeliveryReport.class,
+	        Set.class,
+	        Tags.class
+	};
+
+	/**
+	 * The types that may be written in an XMS request. Their writers are bound
+	 * to the generated implementation classes, which are named after the API
+	 * type with an <code>Impl</code> suffix.
+	 */
+	private static final Class<?>[] WRITE_TYPES = {
+	        GroupCreate.class,
+	        GroupUpdate.class,
+	        MtBatchBinarySmsCreate.class,
+	        MtBatchBinarySmsUpdate.class,
+	        MtBatchTextSmsCreate.class,
+	        MtBatchTextSmsUpdate.class,
+	        Tags.class,
+	        TagsUpdate.class
+	};
+
+	private final ObjectWriter baseWriter;
+
+	private final Map<Class<?>, ObjectReader> readers;
+
+	/**
+	 * Writers keyed on the implementation class of the written value.
+	 */
+	private final Map<Class<?>, ObjectWriter> writers;
+
+	/**
+	 * Creates readers and writers for all API types using the given object
+	 * mapper.
+	 * 
+	 * @param json
+	 *            the object mapper to use
+	 * @param prettyPrint
+	 *            whether written JSON should be indented
+	 */
+	@SuppressWarnings("deprecation") // For Jackson 2.4 compatibility.
+	JsonCodecs(ObjectMapper json, boolean prettyPrint) {
+		Map<Class<?>, ObjectReader> m =
+		        new HashMap<Class<?>, ObjectReader>(READ_TYPES.length * 2);
+
+		for (Class<?> type : READ_TYPES) {
+			m.put(type, json.reader(type));
+		}
+
+		this.readers = m;
+
+		if (prettyPrint) {
+			this.baseWriter =
+			        json.writer().with(SerializationFeature.INDENT_OUTPUT);
+		} else {
+			this.baseWriter =
+			        json.writer().without(SerializationFeature.INDENT_OUTPUT);
+		}
+
+		Map<Class<?>, ObjectWriter> w =
+		        new HashMap<Class<?>, ObjectWriter>(WRITE_TYPES.length * 2);
+
+		for (Class<?> type : WRITE_TYPES) {
+			Class<?> implType = implementationOf(type);
+			w.put(implType, baseWriter.withType(implType));
+		}
+
+		this.writers = w;
+	}
+
+	/**
+	 * Returns the generated implementation class of the given API type.
+	 * 
+	 * @param type
+	 *            the API type
+	 * @return the implementation class
+	 * @throws IllegalStateException
+	 *             if the implementation class does not exist
+	 */
+	private static Class<?> implementationOf(Class<?> type) {
+		try {
+			return Class.forName(type.getName() + "Impl", true,
+			        type.getClassLoader());
+		} catch (ClassNotFoundException e) {
+			throw new IllegalStateException(
+			        "no implementation class of " + type, e);
+		}
+	}
+
+	/**
+	 * Returns the reader of the given API type.
+	 * 
+	 * @param type
+	 *            the type to read
+	 * @return a non-null reader
+	 * @throws IllegalStateException
+	 *             if the given type is not an API type
+	 */
+	@Nonnull
+	ObjectReader reader(Class<?> type) {
+		ObjectReader reader = readers.get(type);
+
+		/*
+		 * We control which types are read so a missing reader indicates a bug
+		 * in this class.
+		 */
+		if (reader == null) {
+			throw new IllegalStateException("no JSON reader for " + type);
+		}
+
+		return reader;
+	}
+
+	/**
+	 * Returns the reader of API error objects.
+	 * 
+	 * @return a non-null reader
+	 */
+	@Nonnull
+	ObjectReader errorReader() {
+		return reader(ApiError.class);
+	}
+
+	/**
+	 * Returns a writer suitable for the given value.
+	 * <p>
+	 * Note, the writers are bound to the concrete class of the value rather
+	 * than the abstract API type. This is necessary since the JSON property
+	 * annotations of some API types only are present on their generated
+	 * implementation classes. Values of any other class, for example a user
+	 * provided subclass of an API type, are written using an untyped writer.
+	 * 
+	 * @param value
+	 *            the value to write
+	 * @return a non-null writer
+	 */
+	@Nonnull
+	ObjectWriter writer(Object value) {
+		ObjectWriter writer = writers.get(value.getClass());
+
+		return (writer == null) ? baseWriter : writer;
+	}
+
+}
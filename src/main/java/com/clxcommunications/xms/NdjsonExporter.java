@@ -0,0 +1,424 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.Nonnull;
+
+import org.apache.http.NameValuePair;
+
+/**
+ * Exports complete XMS listings as newline delimited JSON (NDJSON). Each line
+ * of the output holds one batch, group, or inbound message in the JSON form
+ * returned by XMS.
+ * <p>
+ * Unlike traversing a listing using {@link PagedFetcher#elements()}, the
+ * exporter never builds API objects. The elements of each fetched page are
+ * copied token by token into an output buffer that is written directly to
+ * the target channel. Pages are fetched concurrently but written in page
+ * order, and at most {@link #concurrency()} pages are held in memory at any
+ * time, independent of the size of the listing.
+ * <p>
+ * Fetch failures are reported as {@link RuntimeApiException}, write failures
+ * as {@link IOException}. In both cases all outstanding page requests are
+ * cancelled.
+ */
+public class NdjsonExporter {
+
+	/**
+	 * The default number of concurrent page requests.
+	 */
+	static final int DEFAULT_CONCURRENCY = 4;
+
+	/**
+	 * The size of the buffer used by the gzip compressor.
+	 */
+	private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * A listing endpoint and its filter.
+	 */
+	private static abstract class Listing {
+
+		final String path;
+
+		Listing(String path) {
+			this.path = path;
+		}
+
+		abstract List<NameValuePair> params(int page);
+
+	}
+
+	private final ApiConnection conn;
+
+	private final int concurrency;
+
+	private final boolean gzip;
+
+	NdjsonExporter(ApiConnection conn, int concurrency, boolean gzip) {
+		if (concurrency < 1) {
+			throw new IllegalArgumentException(
+			        "concurrency must be positive, got " + concurrency);
+		}
+
+		this.conn = conn;
+		this.concurrency = concurrency;
+		this.gzip = gzip;
+	}
+
+	/**
+	 * Creates an exporter writing uncompressed files using
+	 * {@value #DEFAULT_CONCURRENCY} concurrent page requests.
+	 * 
+	 * @param conn
+	 *            the connection to use
+	 * @return a new exporter
+	 */
+	@Nonnull
+	public static NdjsonExporter of(ApiConnection conn) {
+		return of(conn, DEFAULT_CONCURRENCY, false);
+	}
+
+	/**
+	 * Creates an exporter.
+	 * 
+	 * @param conn
+	 *            the connection to use
+	 * @param concurrency
+	 *            the maximum number of concurrent page requests
+	 * @param gzip
+	 *            whether files should be gzip compressed
+	 * @return a new exporter
+	 * @throws IllegalArgumentException
+	 *             if the concurrency is not positive
+	 */
+	@Nonnull
+	public static NdjsonExporter of(ApiConnection conn, int concurrency,
+	        boolean gzip) {
+		return new NdjsonExporter(Utils.requireNonNull(conn, "conn"),
+		        concurrency, gzip);
+	}
+
+	/**
+	 * The maximum number of concurrent page requests.
+	 * 
+	 * @return a positive integer
+	 */
+	public int concurrency() {
+		return concurrency;
+	}
+
+	/**
+	 * Whether files written by this exporter are gzip compressed.
+	 * 
+	 * @return <code>true</code> if gzip compressed
+	 */
+	public boolean isGzip() {
+		return gzip;
+	}
+
+	/**
+	 * Exports all batches matching the given filter to the given file. An
+	 * existing file is overwritten.
+	 * 
+	 * @param filter
+	 *            the batch filter
+	 * @param file
+	 *            the file to write
+	 * @return the number of exported batches
+	 * @throws IOException
+	 *             if writing to the file failed
+	 * @throws RuntimeApiException
+	 *             if fetching a page failed
+	 */
+	public long exportBatches(BatchFilter filter, File file)
+	        throws IOException {
+		return export(batches(filter), file);
+	}
+
+	/**
+	 * Exports all batches matching the given filter to the given channel. The
+	 * channel is not closed and the output is never compressed.
+	 * 
+	 * @param filter
+	 *            the batch filter
+	 * @param channel
+	 *            the channel to write
+	 * @return the number of exported batches
+	 * @throws IOException
+	 *             if writing to the channel failed
+	 * @throws RuntimeApiException
+	 *             if fetching a page failed
+	 */
+	public long exportBatches(BatchFilter filter, WritableByteChannel channel)
+	        throws IOException {
+		return export(batches(filter), channel);
+	}
+
+	/**
+	 * Exports all groups matching the given filter to the given file. An
+	 * existing file is overwritten.
+	 * 
+	 * @param filter
+	 *            the group filter
+	 * @param file
+	 *            the file to write
+	 * @return the number of exported groups
+	 * @throws IOException
+	 *             if writing to the file failed
+	 * @throws RuntimeApiException
+	 *             if fetching a page failed
+	 */
+	public long exportGroups(GroupFilter filter, File file)
+	        throws IOException {
+		return export(groups(filter), file);
+	}
+
+	/**
+	 * Exports all groups matching the given filter to the given channel. The
+	 * channel is not closed and the output is never compressed.
+	 * 
+	 * @param filter
+	 *            the group filter
+	 * @param channel
+	 *            the channel to write
+	 * @return the number of exported groups
+	 * @throws IOException
+	 *             if writing to the channel failed
+	 * @throws RuntimeApiException
+	 *             if fetching a page failed
+	 */
+	public long exportGroups(GroupFilter filter, WritableByteChannel channel)
+	        throws IOException {
+		return export(groups(filter), channel);
+	}
+
+	/**
+	 * Exports all inbound messages matching the given filter to the given
+	 * file. An existing file is overwritten.
+	 * 
+	 * @param filter
+	 *            the inbounds filter
+	 * @param file
+	 *            the file to write
+	 * @return the number of exported messages
+	 * @throws IOException
+	 *             if writing to the file failed
+	 * @throws RuntimeApiException
+	 *             if fetching a page failed
+	 */
+	public long exportInbounds(InboundsFilter filter, File file)
+	        throws IOException {
+		return export(inbounds(filter), file);
+	}
+
+	/**
+	 * Exports all inbound messages matching the given filter to the given
+	 * channel. The channel is not closed and the output is never compressed.
+	 * 
+	 * @param filter
+	 *            the inbounds filter
+	 * @param channel
+	 *            the channel to write
+	 * @return the number of exported messages
+	 * @throws IOException
+	 *             if writing to the channel failed
+	 * @throws RuntimeApiException
+	 *             if fetching a page failed
+	 */
+	public long exportInbounds(InboundsFilter filter,
+	        WritableByteChannel channel) throws IOException {
+		return export(inbounds(filter), channel);
+	}
+
+	/**
+	 * Fetches a raw page of a listing.
+	 * 
+	 * @param path
+	 *            the listing path
+	 * @param params
+	 *            the query parameters
+	 * @return a future raw page
+	 */
+	Future<RawPage> fetchRawPage(String path, List<NameValuePair> params) {
+		return conn.fetchRawPage(path, params, null);
+	}
+
+	private static Listing batches(final BatchFilter filter) {
+		Utils.requireNonNull(filter, "filter");
+
+		return new Listing("/batches") {
+
+			@Override
+			List<NameValuePair> params(int page) {
+				return filter.toQueryParams(page);
+			}
+
+		};
+	}
+
+	private static Listing groups(final GroupFilter filter) {
+		Utils.requireNonNull(filter, "filter");
+
+		return new Listing("/groups") {
+
+			@Override
+			List<NameValuePair> params(int page) {
+				return filter.toQueryParams(page);
+			}
+
+		};
+	}
+
+	private static Listing inbounds(final InboundsFilter filter) {
+		Utils.requireNonNull(filter, "filter");
+
+		return new Listing("/inbounds") {
+
+			@Override
+			List<NameValuePair> params(int page) {
+				return filter.toQueryParams(page);
+			}
+
+		};
+	}
+
+	private long export(Listing listing, File file) throws IOException {
+		FileOutputStream fos = new FileOutputStream(file);
+
+		try {
+			if (!gzip) {
+				return export(listing, fos.getChannel());
+			}
+
+			OutputStream gzos = new GZIPOutputStream(fos, GZIP_BUFFER_SIZE);
+			WritableByteChannel channel = Channels.newChannel(gzos);
+
+			long count = export(listing, channel);
+			channel.close();
+			return count;
+		} finally {
+			fos.close();
+		}
+	}
+
+	private long export(Listing listing, WritableByteChannel channel)
+	        throws IOException {
+		Utils.requireNonNull(channel, "channel");
+
+		ArrayDeque<Future<RawPage>> pending =
+		        new ArrayDeque<Future<RawPage>>();
+
+		try {
+			RawPage first = await(fetchRawPage(listing.path,
+			        listing.params(0)));
+			long count = write(first, channel);
+
+			int pageCount = pageCount(first);
+			int nextRequest = 1;
+
+			while (nextRequest < pageCount
+			        && pending.size() < concurrency) {
+				pending.add(fetchRawPage(listing.path,
+				        listing.params(nextRequest++)));
+			}
+
+			while (!pending.isEmpty()) {
+				RawPage page = await(pending.poll());
+
+				if (nextRequest < pageCount) {
+					pending.add(fetchRawPage(listing.path,
+					        listing.params(nextRequest++)));
+				}
+
+				count += write(page, channel);
+			}
+
+			return count;
+		} finally {
+			for (Future<RawPage> future : pending) {
+				future.cancel(true);
+			}
+		}
+	}
+
+	/**
+	 * Estimates the number of pages in a listing given its first page.
+	 * 
+	 * @param first
+	 *            the first page of the listing
+	 * @return the number of pages
+	 */
+	private static int pageCount(RawPage first) {
+		if (first.size() == 0) {
+			return 1;
+		}
+
+		long pages = ((long) first.totalSize() + first.size() - 1)
+		        / first.size();
+
+		return (int) Math.min(pages, Integer.MAX_VALUE);
+	}
+
+	private static long write(RawPage page, WritableByteChannel channel)
+	        throws IOException {
+		ByteBuffer buf = page.content();
+
+		while (buf.hasRemaining()) {
+			channel.write(buf);
+		}
+
+		return page.size();
+	}
+
+	private static RawPage await(Future<RawPage> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			// Interrupt the thread to let upstream code know.
+			Thread.currentThread().interrupt();
+			throw new RuntimeApiException(new ConcurrentException(e));
+		} catch (ExecutionException e) {
+			ApiException cause;
+
+			try {
+				cause = Utils.unwrapExecutionException(e);
+			} catch (ApiException einner) {
+				cause = einner;
+			}
+
+			throw new RuntimeApiException(cause);
+		}
+	}
+
+}
@@ -0,0 +1,264 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+
+import org.apache.http.concurrent.FutureCallback;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import com.clxcommunications.xms.api.Page;
+
+/**
+ * A publisher of the elements of a paged listing. Pages are fetched
+ * asynchronously and only when the subscriber has outstanding demand and all
+ * elements of the previous page have been delivered. At most one page is
+ * therefore buffered per subscription and no thread is blocked waiting for
+ * pages.
+ * <p>
+ * Each subscription traverses the listing from the first page.
+ * 
+ * @param <T>
+ *            the element type
+ */
+final class PagePublisher<T> implements Publisher<T> {
+
+	private final PagedFetcher<T> fetcher;
+
+	private PagePublisher(PagedFetcher<T> fetcher) {
+		this.fetcher = fetcher;
+	}
+
+	/**
+	 * Returns a publisher of the elements of the given fetcher.
+	 * 
+	 * @param <T>
+	 *            the element type
+	 * @param fetcher
+	 *            the fetcher of the listing to publish
+	 * @return a non-null publisher
+	 */
+	@Nonnull
+	static <T> Publisher<T> of(PagedFetcher<T> fetcher) {
+		return new PagePublisher<T>(fetcher);
+	}
+
+	@Override
+	public void subscribe(Subscriber<? super T> subscriber) {
+		Utils.requireNonNull(subscriber, "subscriber");
+
+		PageSubscription<T> subscription =
+		        new PageSubscription<T>(fetcher, subscriber);
+
+		subscriber.onSubscribe(subscription);
+	}
+
+	/**
+	 * The subscription state of a single subscriber. All signals to the
+	 * subscriber are emitted from {@link #drain()}, which is serialized using
+	 * a work-in-progress counter.
+	 */
+	private static final class PageSubscription<T>
+	        implements Subscription, FutureCallback<Page<T>> {
+
+		private final PagedFetcher<T> fetcher;
+
+		private final Subscriber<? super T> subscriber;
+
+		/**
+		 * The elements of the current page that have not yet been delivered.
+		 */
+		private final Queue<T> buffer = new ConcurrentLinkedQueue<T>();
+
+		private final AtomicLong requested = new AtomicLong();
+
+		private final AtomicInteger wip = new AtomicInteger();
+
+		private volatile boolean cancelled;
+
+		private volatile boolean fetching;
+
+		private volatile boolean lastPage;
+
+		private volatile Exception error;
+
+		private volatile Future<Page<T>> inFlight;
+
+		/**
+		 * Whether a terminal signal has been emitted. Only accessed from
+		 * within the drain loop.
+		 */
+		private boolean terminated;
+
+		private int nextPage = 0;
+
+		private int seenElements = 0;
+
+		PageSubscription(PagedFetcher<T> fetcher,
+		        Subscriber<? super T> subscriber) {
+			this.fetcher = fetcher;
+			this.subscriber = subscriber;
+		}
+
+		@Override
+		public void request(long n) {
+			if (n <= 0) {
+				error = new IllegalArgumentException(
+				        "non-positive subscription request: " + n);
+			} else {
+				addRequested(n);
+			}
+
+			drain();
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+
+			Future<Page<T>> f = inFlight;
+			if (f != null) {
+				f.cancel(false);
+			}
+
+			drain();
+		}
+
+		@Override
+		public void completed(Page<T> page) {
+			buffer.addAll(page.content());
+			seenElements += page.size();
+			nextPage = page.page() + 1;
+			lastPage = seenElements >= page.totalSize() || page.isEmpty();
+			inFlight = null;
+			fetching = false;
+
+			drain();
+		}
+
+		@Override
+		public void failed(Exception e) {
+			error = e;
+			drain();
+		}
+
+		@Override
+		public void cancelled() {
+			if (!cancelled) {
+				error = new CancellationException("page fetch cancelled");
+			}
+
+			drain();
+		}
+
+		private void addRequested(long n) {
+			for (;;) {
+				long current = requested.get();
+				long next = current + n;
+
+				// Saturate at Long.MAX_VALUE, which means unbounded.
+				if (next < 0) {
+					next = Long.MAX_VALUE;
+				}
+
+				if (requested.compareAndSet(current, next)) {
+					return;
+				}
+			}
+		}
+
+		private void drain() {
+			if (wip.getAndIncrement() != 0) {
+				return;
+			}
+
+			int missed = 1;
+
+			for (;;) {
+				if (terminated || cancelled) {
+					buffer.clear();
+				} else if (error != null) {
+					terminated = true;
+					buffer.clear();
+					subscriber.onError(error);
+				} else {
+					emit();
+				}
+
+				missed = wip.addAndGet(-missed);
+				if (missed == 0) {
+					return;
+				}
+			}
+		}
+
+		/**
+		 * Delivers buffered elements as demand allows and fetches the next
+		 * page when the buffer is exhausted.
+		 */
+		private void emit() {
+			long r = requested.get();
+			long emitted = 0;
+
+			while (emitted != r && !cancelled) {
+				T element = buffer.poll();
+				if (element == null) {
+					break;
+				}
+
+				subscriber.onNext(element);
+				emitted++;
+			}
+
+			if (emitted > 0 && r != Long.MAX_VALUE) {
+				requested.addAndGet(-emitted);
+			}
+
+			if (cancelled || !buffer.isEmpty() || fetching) {
+				return;
+			}
+
+			if (lastPage) {
+				terminated = true;
+				subscriber.onComplete();
+			} else if (requested.get() > 0) {
+				fetching = true;
+
+				try {
+					inFlight = fetcher.fetchAsync(nextPage, this);
+				} catch (RuntimeException e) {
+					terminated = true;
+					subscriber.onError(e);
+				}
+			}
+		}
+
+	}
+
+}
@@ -27,6 +27,7 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import org.apache.http.concurrent.FutureCallback;
+import org.reactivestreams.Publisher;
 
 import com.clxcommunications.xms.api.Page;
 
@@ -41,6 +42,17 @@ import com.clxcommunications.xms.api.Page;
  */
 public abstract class PagedFetcher<T> {
 
+	/**
+	 * The default number of times a page fetch is retried when traversing
+	 * using a {@link PagingCursor}.
+	 */
+	static final int DEFAULT_MAX_RETRIES = 3;
+
+	/**
+	 * The delay before the first retry of a page fetch, in milliseconds.
+	 */
+	static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 500;
+
 	/**
 	 * Synchronously fetches the page having the given page number.
 	 * 
@@ -74,6 +86,35 @@ public abstract class PagedFetcher<T> {
 	abstract Future<Page<T>> fetchAsync(int page,
 	        @Nullable FutureCallback<Page<T>> callback);
 
+	/**
+	 * A description of the listing fetched by this object, typically the
+	 * endpoint and the encoded filter. Used to verify that a
+	 * {@link PagingCursor} belongs to this listing.
+	 * 
+	 * @return a non-null listing description
+	 */
+	@Nonnull
+	String listing() {
+		return "";
+	}
+
+	/**
+	 * Asynchronously fetches the page having the given page number. This is
+	 * useful when pages should be processed without blocking a thread, for
+	 * example when composing calls.
+	 * 
+	 * @param page
+	 *            page to fetch (starting from zero)
+	 * @param callback
+	 *            request callback, may be null
+	 * @return a future providing the requested page
+	 */
+	@Nonnull
+	public Future<Page<T>> fetchPageAsync(int page,
+	        @Nullable FutureCallback<Page<T>> callback) {
+		return fetchAsync(page, callback);
+	}
+
 	/**
 	 * Returns an iterable object that traverses all fetched elements across all
 	 * associated pages. This is done by iterating over fetched pages and, when
@@ -94,13 +135,41 @@ public abstract class PagedFetcher<T> {
 	 */
 	@Nonnull
 	public Iterable<T> elements() {
+		return elementsOf(pages());
+	}
+
+	/**
+	 * Like {@link #elements()} but fetches pages ahead of the iteration, as
+	 * described in {@link #pages(int)}.
+	 * 
+	 * @param prefetch
+	 *            the maximum number of pages to fetch ahead
+	 * @return a non-null iterable
+	 * @throws IllegalArgumentException
+	 *             if the prefetch depth is negative
+	 */
+	@Nonnull
+	public Iterable<T> elements(int prefetch) {
+		return elementsOf(pages(prefetch));
+	}
+
+	/**
+	 * Returns an iterable object that traverses all elements of the pages
+	 * produced by the given iterable.
+	 * 
+	 * @param pages
+	 *            the pages to traverse
+	 * @return a non-null iterable
+	 */
+	@Nonnull
+	private static <T> Iterable<T> elementsOf(final Iterable<Page<T>> pages) {
 
 		return new Iterable<T>() {
 
 			@Override
 			public Iterator<T> iterator() {
 
-				final Iterator<Page<T>> pageIt = pages().iterator();
+				final Iterator<Page<T>> pageIt = pages.iterator();
 
 				return new Iterator<T>() {
 
@@ -206,4 +275,209 @@ public abstract class PagedFetcher<T> {
 		};
 	}
 
+	/**
+	 * Returns an iterable object that fetches and traverses all matching pages
+	 * while fetching up to <code>prefetch</code> pages ahead. That is, when a
+	 * page is returned by the iterator then the following pages are already
+	 * being fetched in the background, which hides the network latency when
+	 * iterating over many pages.
+	 * <p>
+	 * At most <code>prefetch</code> pages are outstanding or buffered at any
+	 * time, which bounds the memory used by the iterator. A prefetch depth of
+	 * zero gives the same behavior as {@link #pages()}.
+	 * <p>
+	 * As for {@link #pages()}, the {@link Iterator#next()} method may throw
+	 * {@link RuntimeApiException} if a page could not be fetched.
+	 * 
+	 * @param prefetch
+	 *            the maximum number of pages to fetch ahead
+	 * @return a non-null iterable
+	 * @throws IllegalArgumentException
+	 *             if the prefetch depth is negative
+	 */
+	@Nonnull
+	public Iterable<Page<T>> pages(final int prefetch) {
+		if (prefetch < 0) {
+			throw new IllegalArgumentException("negative prefetch depth");
+		} else if (prefetch == 0) {
+			return pages();
+		}
+
+		return new Iterable<Page<T>>() {
+
+			@Override
+			public Iterator<Page<T>> iterator() {
+				return new PrefetchingPageIterator<T>(PagedFetcher.this, 0,
+				        prefetch);
+			}
+
+		};
+	}
+
+	/**
+	 * Returns an iterable object that traverses all elements across all pages,
+	 * fetching up to <code>concurrency</code> pages simultaneously. The
+	 * elements are delivered in page order.
+	 * <p>
+	 * The first page is fetched on its own. Its page size and total size give
+	 * the remaining page numbers, which are then fetched concurrently. This
+	 * makes the time needed to fetch a long listing roughly proportional to
+	 * the number of pages divided by the concurrency.
+	 * 
+	 * @param concurrency
+	 *            the maximum number of simultaneous page requests
+	 * @return a non-null iterable
+	 * @throws IllegalArgumentException
+	 *             if the concurrency is not positive
+	 * @see #fetchAllParallel(int, boolean)
+	 */
+	@Nonnull
+	public Iterable<T> fetchAllParallel(int concurrency) {
+		return fetchAllParallel(concurrency, true);
+	}
+
+	/**
+	 * Like {@link #fetchAllParallel(int)} but, optionally, delivers the
+	 * elements of each page as soon as the page arrives, regardless of page
+	 * order. Unordered delivery avoids waiting for a slow page while later
+	 * pages are already available.
+	 * <p>
+	 * As for {@link #elements()}, the iterator may throw
+	 * {@link RuntimeApiException} if a page could not be fetched.
+	 * 
+	 * @param concurrency
+	 *            the maximum number of simultaneous page requests
+	 * @param ordered
+	 *            whether elements should be delivered in page order
+	 * @return a non-null iterable
+	 * @throws IllegalArgumentException
+	 *             if the concurrency is not positive
+	 */
+	@Nonnull
+	public Iterable<T> fetchAllParallel(final int concurrency,
+	        boolean ordered) {
+		if (concurrency < 1) {
+			throw new IllegalArgumentException("concurrency must be positive");
+		}
+
+		if (ordered) {
+			return elements(concurrency);
+		}
+
+		return elementsOf(new Iterable<Page<T>>() {
+
+			@Override
+			public Iterator<Page<T>> iterator() {
+				return new UnorderedPageIterator<T>(PagedFetcher.this,
+				        concurrency);
+			}
+
+		});
+	}
+
+	/**
+	 * Returns a <a href="http://www.reactive-streams.org/">Reactive
+	 * Streams</a> publisher of all elements across all pages. Unlike
+	 * {@link #elements()} no thread is blocked while waiting for pages.
+	 * <p>
+	 * A page is only fetched when the subscriber has signaled demand and all
+	 * elements of the previous page have been delivered, so at most one page
+	 * is buffered per subscription. Each subscription traverses the listing
+	 * from the first page. If a page cannot be fetched then the subscriber is
+	 * notified through {@link org.reactivestreams.Subscriber#onError(Throwable)
+	 * onError}.
+	 * <p>
+	 * The Reactive Streams API is an optional dependency of this SDK. To use
+	 * this method it must be declared as a dependency of the application.
+	 * 
+	 * @return a non-null publisher
+	 */
+	@Nonnull
+	public Publisher<T> publisher() {
+		/*
+		 * Go through the factory method so that verifying this class does
+		 * not load Publisher. This keeps the fetcher usable when the optional
+		 * Reactive Streams dependency is absent.
+		 */
+		return PagePublisher.of(this);
+	}
+
+	/**
+	 * Returns a cursor positioned at the first page of this listing.
+	 * 
+	 * @return a non-null cursor
+	 */
+	@Nonnull
+	public PagingCursor cursor() {
+		return new PagingCursor(listing(), 0, 0, false);
+	}
+
+	/**
+	 * Returns an iterator over the pages of this listing, starting at the
+	 * given cursor. Failed page fetches are retried up to three times.
+	 * 
+	 * @param cursor
+	 *            the position at which to start
+	 * @return a non-null page iterator
+	 * @throws IllegalArgumentException
+	 *             if the cursor belongs to a different listing
+	 * @see #pagesFrom(PagingCursor, int)
+	 */
+	@Nonnull
+	public CursorPageIterator<T> pagesFrom(PagingCursor cursor) {
+		return pagesFrom(cursor, DEFAULT_MAX_RETRIES);
+	}
+
+	/**
+	 * Returns an iterator over the pages of this listing, starting at the
+	 * given cursor. The returned iterator keeps track of its position, which
+	 * may be checkpointed and used to resume the traversal should it be
+	 * interrupted.
+	 * <p>
+	 * For example, to traverse inbound messages while checkpointing progress
+	 * 
+	 * <pre>
+	 * PagedFetcher&lt;MoSms&gt; fetcher = conn.fetchInbounds(filter);
+	 * PagingCursor start = loadCheckpoint(); // or fetcher.cursor()
+	 * CursorPageIterator&lt;MoSms&gt; it = fetcher.pagesFrom(start, 5);
+	 * 
+	 * while (it.hasNext()) {
+	 *     process(it.next());
+	 *     storeCheckpoint(it.cursor());
+	 * }
+	 * </pre>
+	 * 
+	 * @param cursor
+	 *            the position at which to start
+	 * @param maxRetries
+	 *            the maximum number of retries of each page fetch
+	 * @return a non-null page iterator
+	 * @throws IllegalArgumentException
+	 *             if the cursor belongs to a different listing or the number
+	 *             of retries is negative
+	 */
+	@Nonnull
+	public CursorPageIterator<T> pagesFrom(PagingCursor cursor,
+	        int maxRetries) {
+		return pagesFrom(cursor, maxRetries, DEFAULT_INITIAL_BACKOFF_MILLIS);
+	}
+
+	@Nonnull
+	CursorPageIterator<T> pagesFrom(PagingCursor cursor, int maxRetries,
+	        long initialBackoffMillis) {
+		Utils.requireNonNull(cursor, "cursor");
+
+		if (!cursor.listing().equals(listing())) {
+			throw new IllegalArgumentException(
+			        "cursor belongs to listing " + cursor.listing());
+		}
+
+		if (maxRetries < 0) {
+			throw new IllegalArgumentException("negative maxRetries");
+		}
+
+		return new CursorPageIterator<T>(this, cursor, maxRetries,
+		        initialBackoffMillis);
+	}
+
 }
@@ -0,0 +1,128 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import java.io.Serializable;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A position in a paged listing. A cursor identifies the listing, through its
+ * filter, and the next page to fetch. Cursors are serializable so that the
+ * progress of a long running traversal can be checkpointed, for example to
+ * disk, and later resumed using {@link PagedFetcher#pagesFrom(PagingCursor)}.
+ * <p>
+ * A cursor is obtained from {@link PagedFetcher#cursor()} or from
+ * {@link CursorPageIterator#cursor()} after consuming pages.
+ */
+public final class PagingCursor implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Identifies the listing, that is, the endpoint and filter.
+	 */
+	private final String listing;
+
+	private final int page;
+
+	private final int seenElements;
+
+	private final boolean exhausted;
+
+	PagingCursor(String listing, int page, int seenElements,
+	        boolean exhausted) {
+		this.listing = Utils.requireNonNull(listing, "listing");
+		this.page = page;
+		this.seenElements = seenElements;
+		this.exhausted = exhausted;
+	}
+
+	/**
+	 * A description of the listing that this cursor traverses. This includes
+	 * the listing endpoint and the encoded filter parameters.
+	 * 
+	 * @return a non-null listing description
+	 */
+	@Nonnull
+	public String listing() {
+		return listing;
+	}
+
+	/**
+	 * The number of the next page to fetch.
+	 * 
+	 * @return a page number, starting from zero
+	 */
+	public int page() {
+		return page;
+	}
+
+	/**
+	 * The number of elements in the pages before {@link #page()}.
+	 * 
+	 * @return a non-negative number of elements
+	 */
+	public int seenElements() {
+		return seenElements;
+	}
+
+	/**
+	 * Whether all pages of the listing have been traversed.
+	 * 
+	 * @return <code>true</code> if no pages remain, <code>false</code>
+	 *         otherwise
+	 */
+	public boolean isExhausted() {
+		return exhausted;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		} else if (!(obj instanceof PagingCursor)) {
+			return false;
+		}
+
+		PagingCursor other = (PagingCursor) obj;
+
+		return listing.equals(other.listing) && page == other.page
+		        && seenElements == other.seenElements
+		        && exhausted == other.exhausted;
+	}
+
+	@Override
+	public int hashCode() {
+		int h = 31 + listing.hashCode();
+		h = 31 * h + page;
+		h = 31 * h + seenElements;
+		h = 31 * h + (exhausted ? 1 : 0);
+		return h;
+	}
+
+	@Override
+	public String toString() {
+		return "PagingCursor{listing=" + listing + ", page=" + page
+		        + ", seenElements=" + seenElements + ", exhausted="
+		        + exhausted + "}";
+	}
+
+}
@@ -0,0 +1,187 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import com.clxcommunications.xms.api.Page;
+
+/**
+ * A page iterator that keeps a number of page requests ahead of the consumer.
+ * When a page is handed out the iterator makes sure that requests for the
+ * following pages are in flight, so network latency overlaps with the
+ * processing of the current page.
+ * <p>
+ * The number of outstanding requests, whether completed or not, is bounded by
+ * the prefetch depth. This also bounds the number of buffered pages.
+ * <p>
+ * The pages that exist are estimated from the size of the first page and the
+ * reported total size. The estimate only decides which pages are fetched in
+ * advance: the iteration itself ends under the same conditions as
+ * {@link PagedFetcher#pages()}, and a needed page that was not prefetched is
+ * fetched on demand.
+ * 
+ * @param <T>
+ *            the page element type
+ */
+final class PrefetchingPageIterator<T> implements Iterator<Page<T>> {
+
+	private final PagedFetcher<T> fetcher;
+
+	private final int depth;
+
+	/**
+	 * The requested but not yet consumed pages, in page order.
+	 */
+	private final ArrayDeque<Future<Page<T>>> pending =
+	        new ArrayDeque<Future<Page<T>>>();
+
+	/**
+	 * The number of the next page to request.
+	 */
+	private int nextRequest;
+
+	/**
+	 * The most recently consumed page.
+	 */
+	private Page<T> page = null;
+
+	private int seenElements = 0;
+
+	/**
+	 * The estimated page size, taken from the first fetched page.
+	 */
+	private int pageSize = -1;
+
+	PrefetchingPageIterator(PagedFetcher<T> fetcher, int firstPage,
+	        int depth) {
+		this.fetcher = fetcher;
+		this.nextRequest = firstPage;
+		this.depth = depth;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (page == null) {
+			return true;
+		} else {
+			return seenElements < page.totalSize() && !page.isEmpty();
+		}
+	}
+
+	@Override
+	public Page<T> next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+
+		Future<Page<T>> future = pending.poll();
+		if (future == null) {
+			future = fetcher.fetchAsync(nextRequest++, null);
+		}
+
+		page = await(future);
+		seenElements += page.size();
+
+		if (pageSize < 0) {
+			pageSize = page.size();
+		}
+
+		if (hasNext()) {
+			prefetch();
+		} else {
+			cancelPending();
+		}
+
+		return page;
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Issues requests for upcoming pages until the prefetch depth is reached
+	 * or no more pages are expected.
+	 */
+	private void prefetch() {
+		while (pending.size() < depth && isExpected(nextRequest)) {
+			pending.add(fetcher.fetchAsync(nextRequest++, null));
+		}
+	}
+
+	/**
+	 * Whether the given page is expected to exist, assuming all pages but the
+	 * last have the size of the first page.
+	 * 
+	 * @param pageNum
+	 *            the page number
+	 * @return <code>true</code> if the page is expected to exist
+	 */
+	private boolean isExpected(int pageNum) {
+		return pageSize > 0 && (long) pageNum * pageSize < page.totalSize();
+	}
+
+	private void cancelPending() {
+		for (Future<Page<T>> future : pending) {
+			future.cancel(false);
+		}
+
+		pending.clear();
+	}
+
+	/**
+	 * Waits for the given page, converting failures to runtime exceptions.
+	 * 
+	 * @param future
+	 *            the page future
+	 * @return the page
+	 * @throws RuntimeApiException
+	 *             if the page could not be fetched
+	 */
+	private Page<T> await(Future<Page<T>> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			// Interrupt the thread to let upstream code know.
+			Thread.currentThread().interrupt();
+			cancelPending();
+			throw new RuntimeApiException(new ConcurrentException(e));
+		} catch (ExecutionException e) {
+			cancelPending();
+
+			ApiException cause;
+
+			try {
+				cause = Utils.unwrapExecutionException(e);
+			} catch (ApiException einner) {
+				cause = einner;
+			}
+
+			throw new RuntimeApiException(cause);
+		}
+	}
+
+}
@@ -0,0 +1,46 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+/**
+ * The priority of the requests sent by a connection, see
+ * {@link PriorityLanes}.
+ */
+public enum Priority {
+
+	/**
+	 * Latency sensitive traffic, for example one time passwords. High
+	 * priority requests are sent before any other queued request and may use
+	 * the capacity reserved for them.
+	 */
+	HIGH,
+
+	/**
+	 * Regular traffic.
+	 */
+	NORMAL,
+
+	/**
+	 * Bulk traffic, for example marketing campaigns. Low priority requests
+	 * are only sent when no other request is queued.
+	 */
+	LOW
+
+}
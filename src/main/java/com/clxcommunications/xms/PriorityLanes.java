@@ -0,0 +1,294 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.http.concurrent.FutureCallback;
+
+/**
+ * Admission control letting high priority requests bypass queued low
+ * priority requests. A single instance is typically shared by all connections
+ * using the same HTTP client, each connection having a {@link Priority}. For
+ * example,
+ * 
+ * <pre>
+ * PriorityLanes lanes = PriorityLanes.of(10, 2);
+ * 
+ * ApiConnection otp = ApiConnection.builder()
+ *         ...
+ *         .httpClient(client)
+ *         .priorityLanes(lanes)
+ *         .priority(Priority.HIGH)
+ *         .build();
+ * 
+ * ApiConnection campaigns = ApiConnection.builder()
+ *         ...
+ *         .httpClient(client)
+ *         .priorityLanes(lanes)
+ *         .priority(Priority.LOW)
+ *         .build();
+ * </pre>
+ * <p>
+ * At most {@link #capacity()} requests are in flight, which should match the
+ * number of connections of the HTTP client. Of those, the last
+ * {@link #reservedForHigh()} are only available to high priority requests.
+ * Requests exceeding the capacity are queued per priority and when capacity
+ * becomes available the oldest request of the highest priority is sent.
+ */
+public final class PriorityLanes {
+
+	private static final class Waiter {
+
+		final Future<?> owner;
+
+		final Runnable task;
+
+		Waiter(Future<?> owner, Runnable task) {
+			this.owner = owner;
+			this.task = task;
+		}
+
+	}
+
+	private final int capacity;
+
+	private final int reservedForHigh;
+
+	private final Map<Priority, Queue<Waiter>> queues =
+	        new EnumMap<Priority, Queue<Waiter>>(Priority.class);
+
+	private final Trampoline trampoline = new Trampoline();
+
+	private int inFlight = 0;
+
+	private PriorityLanes(int capacity, int reservedForHigh) {
+		this.capacity = capacity;
+		this.reservedForHigh = reservedForHigh;
+
+		for (Priority priority : Priority.values()) {
+			queues.put(priority, new ArrayDeque<Waiter>());
+		}
+	}
+
+	/**
+	 * Creates priority lanes having the given capacity.
+	 * 
+	 * @param capacity
+	 *            the maximum number of requests in flight
+	 * @param reservedForHigh
+	 *            the part of the capacity only available to high priority
+	 *            requests
+	 * @return new priority lanes
+	 * @throws IllegalArgumentException
+	 *             if the capacity is non-positive or the reserved capacity is
+	 *             negative or not less than the capacity
+	 */
+	@Nonnull
+	public static PriorityLanes of(int capacity, int reservedForHigh) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("non-positive capacity");
+		}
+
+		if (reservedForHigh < 0 || reservedForHigh >= capacity) {
+			throw new IllegalArgumentException(
+			        "reserved capacity must be in [0, capacity)");
+		}
+
+		return new PriorityLanes(capacity, reservedForHigh);
+	}
+
+	/**
+	 * The maximum number of requests in flight.
+	 * 
+	 * @return a positive number of requests
+	 */
+	public int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * The part of the capacity only available to high priority requests.
+	 * 
+	 * @return a non-negative number of requests
+	 */
+	public int reservedForHigh() {
+		return reservedForHigh;
+	}
+
+	/**
+	 * The current number of requests in flight.
+	 * 
+	 * @return a non-negative number of requests
+	 */
+	synchronized int inFlight() {
+		return inFlight;
+	}
+
+	/**
+	 * The current number of queued requests of the given priority.
+	 * 
+	 * @param priority
+	 *            the priority
+	 * @return a non-negative number of requests
+	 */
+	synchronized int queued(Priority priority) {
+		return queues.get(priority).size();
+	}
+
+	/**
+	 * Runs the given task once capacity is available for the given priority,
+	 * possibly immediately in the calling thread. The task must eventually
+	 * return its capacity using {@link #release()}. If the owner is done by
+	 * the time capacity becomes available then the task is dropped without
+	 * being run.
+	 * 
+	 * @param priority
+	 *            the priority of the task
+	 * @param owner
+	 *            the future whose outcome is decided by the task
+	 * @param task
+	 *            the task to run
+	 */
+	void acquire(Priority priority, Future<?> owner, Runnable task) {
+		synchronized (this) {
+			if (!admits(priority) || hasQueued(priority)) {
+				queues.get(priority).add(new Waiter(owner, task));
+				return;
+			}
+
+			inFlight++;
+		}
+
+		task.run();
+	}
+
+	/**
+	 * Returns capacity. Queued tasks are run in the calling thread if they
+	 * now fit. If called from within such a task then the tasks are run after
+	 * it returns, rather than recursively.
+	 */
+	void release() {
+		List<Runnable> ready = new ArrayList<Runnable>();
+
+		synchronized (this) {
+			inFlight--;
+
+			Waiter waiter;
+			while ((waiter = nextWaiter()) != null) {
+				if (!waiter.owner.isDone()) {
+					inFlight++;
+					ready.add(waiter.task);
+				}
+			}
+		}
+
+		trampoline.run(ready);
+	}
+
+	/**
+	 * Removes the oldest waiter of the highest priority, provided there is
+	 * capacity for it.
+	 * 
+	 * @return a waiter or <code>null</code> if none may run
+	 */
+	@Nullable
+	private Waiter nextWaiter() {
+		for (Priority priority : Priority.values()) {
+			Queue<Waiter> queue = queues.get(priority);
+
+			if (!queue.isEmpty()) {
+				return admits(priority) ? queue.remove() : null;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Whether a request of the given priority fits within the capacity.
+	 */
+	private boolean admits(Priority priority) {
+		int available = (priority == Priority.HIGH)
+		        ? capacity
+		        : capacity - reservedForHigh;
+
+		return inFlight < available;
+	}
+
+	/**
+	 * Whether requests of the given or higher priority are queued.
+	 */
+	private boolean hasQueued(Priority priority) {
+		for (Priority p : Priority.values()) {
+			if (!queues.get(p).isEmpty()) {
+				return true;
+			}
+
+			if (p == priority) {
+				break;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Returns a callback that returns the capacity of a request and then
+	 * notifies the given callback.
+	 * 
+	 * @param callback
+	 *            the callback to notify
+	 * @return a non-null callback
+	 */
+	<T> FutureCallback<T> track(final FutureCallback<T> callback) {
+		return new FutureCallback<T>() {
+
+			@Override
+			public void completed(T result) {
+				release();
+				callback.completed(result);
+			}
+
+			@Override
+			public void failed(Exception ex) {
+				release();
+				callback.failed(ex);
+			}
+
+			@Override
+			public void cancelled() {
+				release();
+				callback.cancelled();
+			}
+
+		};
+	}
+
+}
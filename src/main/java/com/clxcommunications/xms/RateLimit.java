@@ -0,0 +1,111 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import javax.annotation.Nonnull;
+
+import org.immutables.value.Value;
+import org.threeten.bp.Duration;
+
+/**
+ * Describes client side throughput limits of a service plan. A connection
+ * configured with a rate limit delays requests that would exceed the limit, or
+ * fails them with {@link RateLimitExceededException} if they would need to be
+ * delayed for longer than {@link #maxQueueDelay()}.
+ * <p>
+ * Two limits are available: the number of requests per second and the number
+ * of messages per second, where a message is counted for each recipient of a
+ * created or replaced batch. A limit of zero means that the corresponding rate
+ * is not limited.
+ * <p>
+ * Short bursts are permitted, up to one second worth of requests or messages.
+ */
+@Value.Immutable
+@ValueStylePackage
+public abstract class RateLimit {
+
+	/**
+	 * A builder of rate limits.
+	 */
+	public static class Builder extends RateLimitImpl.Builder {
+
+		Builder() {
+		}
+
+	}
+
+	/**
+	 * Creates a builder of {@link RateLimit} instances.
+	 * 
+	 * @return a builder
+	 */
+	@Nonnull
+	public static final RateLimit.Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * The maximum number of requests per second.
+	 * 
+	 * @return a non-negative rate, zero if unlimited
+	 */
+	@Value.Default
+	public double requestsPerSecond() {
+		return 0;
+	}
+
+	/**
+	 * The maximum number of messages per second.
+	 * 
+	 * @return a non-negative rate, zero if unlimited
+	 */
+	@Value.Default
+	public double messagesPerSecond() {
+		return 0;
+	}
+
+	/**
+	 * The longest time a request may be held back to stay within the limits.
+	 * Requests needing a longer delay fail with
+	 * {@link RateLimitExceededException}. A zero delay means that requests
+	 * are never delayed, only rejected.
+	 * 
+	 * @return a non-negative duration
+	 */
+	@Value.Default
+	public Duration maxQueueDelay() {
+		return Duration.ofSeconds(5);
+	}
+
+	/**
+	 * Verifies that this rate limit is in a reasonable state.
+	 */
+	@Value.Check
+	protected void check() {
+		if (!(requestsPerSecond() >= 0) || !(messagesPerSecond() >= 0)) {
+			throw new IllegalStateException("negative rate");
+		}
+
+		if (maxQueueDelay().isNegative()) {
+			throw new IllegalStateException("negative max queue delay");
+		}
+	}
+
+}
@@ -0,0 +1,46 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+/**
+ * Exception indicating that a request was rejected by the client side rate
+ * limiter, see {@link RateLimit}. The request was never sent to XMS.
+ */
+public class RateLimitExceededException extends ApiException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String servicePlanId;
+
+	RateLimitExceededException(String servicePlanId) {
+		super("rate limit exceeded for service plan " + servicePlanId);
+		this.servicePlanId = servicePlanId;
+	}
+
+	/**
+	 * The service plan whose rate limit was exceeded.
+	 * 
+	 * @return a service plan identifier
+	 */
+	public String getServicePlanId() {
+		return servicePlanId;
+	}
+
+}
@@ -0,0 +1,233 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Enforces a {@link RateLimit} using one token bucket for requests and one for
+ * messages. Limiters are shared by all connections of a service plan, see
+ * {@link #acquire(String, RateLimit)}.
+ * <p>
+ * A request is admitted immediately if both buckets have credit. Its cost is
+ * then deducted in full, possibly leaving a bucket in debt, in which case the
+ * following requests are delayed until the debt has been paid back. This lets
+ * a batch with more recipients than the burst size through without starving
+ * it, while the long term rate still matches the limit.
+ */
+final class RateLimiter {
+
+	private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	/**
+	 * The limiters of each service plan in use. Also guards the user count of
+	 * each limiter.
+	 */
+	private static final Map<String, RateLimiter> LIMITERS =
+	        new HashMap<String, RateLimiter>();
+
+	/**
+	 * A bucket refilling at a fixed rate. The bucket state is kept as the time
+	 * at which the bucket is out of debt; the bucket is full when this time
+	 * lies at least one burst period in the past.
+	 */
+	private static final class TokenBucket {
+
+		/**
+		 * The cost in nanoseconds of a single token.
+		 */
+		private final double interval;
+
+		/**
+		 * How far in the past the debt free time may lie, that is, the stored
+		 * credit of a full bucket. Since a request is admitted as long as the
+		 * bucket is not in debt a full bucket holds one second worth of tokens,
+		 * but at least one token.
+		 */
+		private final long burst;
+
+		private long next;
+
+		TokenBucket(double rate, long now) {
+			this.interval = NANOS_PER_SECOND / rate;
+			this.burst = Math.max(0, NANOS_PER_SECOND - (long) interval);
+			this.next = now - burst;
+		}
+
+		/**
+		 * The earliest time a request may proceed, given the current time.
+		 */
+		long base(long now) {
+			return Math.max(next, now - burst);
+		}
+
+		void take(long base, int tokens) {
+			next = base + (long) Math.ceil(tokens * interval);
+		}
+
+	}
+
+	private final String servicePlanId;
+
+	private final RateLimit limit;
+
+	private final TokenBucket requests;
+
+	private final TokenBucket messages;
+
+	private final long maxDelay;
+
+	/**
+	 * The number of unreleased acquisitions of this limiter. Guarded by
+	 * {@link #LIMITERS}.
+	 */
+	private int users = 0;
+
+	RateLimiter(String servicePlanId, RateLimit limit, long now) {
+		this.servicePlanId = servicePlanId;
+		this.limit = limit;
+
+		this.requests = (limit.requestsPerSecond() > 0)
+		        ? new TokenBucket(limit.requestsPerSecond(), now)
+		        : null;
+
+		this.messages = (limit.messagesPerSecond() > 0)
+		        ? new TokenBucket(limit.messagesPerSecond(), now)
+		        : null;
+
+		this.maxDelay = TimeUnit.MILLISECONDS
+		        .toNanos(limit.maxQueueDelay().toMillis());
+	}
+
+	/**
+	 * Acquires the rate limiter shared by all connections of the given service
+	 * plan. The limit of a service plan is fixed by the first acquisition;
+	 * asking for a different limit is an error since it would change the
+	 * limit of all other connections of the service plan. Once every
+	 * acquisition has been {@link #release() released} the service plan may
+	 * be limited anew.
+	 * 
+	 * @param servicePlanId
+	 *            the service plan identifier
+	 * @param limit
+	 *            the limit to enforce
+	 * @return a non-null rate limiter
+	 * @throws IllegalStateException
+	 *             if the service plan already is limited using a different
+	 *             limit
+	 */
+	static RateLimiter acquire(String servicePlanId, RateLimit limit) {
+		synchronized (LIMITERS) {
+			RateLimiter limiter = LIMITERS.get(servicePlanId);
+
+			if (limiter == null) {
+				limiter = new RateLimiter(servicePlanId, limit,
+				        System.nanoTime());
+				LIMITERS.put(servicePlanId, limiter);
+			} else if (!limiter.limit.equals(limit)) {
+				throw new IllegalStateException("service plan "
+				        + servicePlanId + " already is limited using "
+				        + limiter.limit);
+			}
+
+			limiter.users++;
+
+			return limiter;
+		}
+	}
+
+	/**
+	 * Releases one acquisition of this limiter. When the last acquisition is
+	 * released the limiter is forgotten and the next acquisition for the
+	 * service plan creates a fresh limiter.
+	 */
+	void release() {
+		synchronized (LIMITERS) {
+			if (users == 0) {
+				return;
+			}
+
+			users--;
+
+			if (users == 0 && LIMITERS.get(servicePlanId) == this) {
+				LIMITERS.remove(servicePlanId);
+			}
+		}
+	}
+
+	/**
+	 * The identifier of the service plan whose limit this limiter enforces.
+	 * 
+	 * @return a service plan identifier
+	 */
+	String servicePlanId() {
+		return servicePlanId;
+	}
+
+	/**
+	 * Reserves capacity for a request sending the given number of messages.
+	 * 
+	 * @param messageCount
+	 *            the number of messages sent by the request
+	 * @return the number of nanoseconds the request must wait before being
+	 *         sent, or -1 if the request should be rejected
+	 */
+	long reserve(int messageCount) {
+		return reserve(messageCount, System.nanoTime());
+	}
+
+	/**
+	 * Reserves capacity for a request sending the given number of messages.
+	 * 
+	 * @param messageCount
+	 *            the number of messages sent by the request
+	 * @param now
+	 *            the current time in nanoseconds
+	 * @return the number of nanoseconds the request must wait before being
+	 *         sent, or -1 if the request should be rejected
+	 */
+	synchronized long reserve(int messageCount, long now) {
+		long requestBase = (requests == null) ? now : requests.base(now);
+		long messageBase = (messages == null || messageCount == 0)
+		        ? now
+		        : messages.base(now);
+
+		long delay = Math.max(requestBase, messageBase) - now;
+
+		if (delay < 0) {
+			delay = 0;
+		} else if (delay > maxDelay) {
+			return -1;
+		}
+
+		if (requests != null) {
+			requests.take(requestBase, 1);
+		}
+
+		if (messages != null && messageCount > 0) {
+			messages.take(messageBase, messageCount);
+		}
+
+		return delay;
+	}
+
+}
@@ -0,0 +1,192 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import javax.annotation.Nonnull;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+/**
+ * A page of a paged XMS listing whose elements are kept in their serialized
+ * form. The elements are held as newline delimited JSON, one element per line,
+ * exactly as the elements appeared in the response apart from whitespace. No
+ * API objects are built when reading a raw page.
+ */
+@JsonDeserialize(using = RawPage.Deserializer.class)
+final class RawPage {
+
+	/**
+	 * Reads the page header fields and copies every element of the content
+	 * array into a newline delimited buffer. The content array is identified
+	 * as the only array valued field of the page object, which means that the
+	 * same deserializer handles batch, group, and inbound listings.
+	 */
+	static final class Deserializer extends StdDeserializer<RawPage> {
+
+		private static final long serialVersionUID = 1L;
+
+		private static final JsonFactory FACTORY = new JsonFactory();
+
+		Deserializer() {
+			super(RawPage.class);
+		}
+
+		@Override
+		@SuppressWarnings("deprecation") // For Jackson 2.4 compatibility.
+		public RawPage deserialize(JsonParser p, DeserializationContext ctxt)
+		        throws IOException {
+			if (p.getCurrentToken() != JsonToken.START_OBJECT) {
+				throw ctxt.mappingException(RawPage.class);
+			}
+
+			int page = 0;
+			int size = 0;
+			int totalSize = 0;
+			int elements = 0;
+			ByteInOutStream bios = new ByteInOutStream(1024);
+
+			while (p.nextToken() == JsonToken.FIELD_NAME) {
+				String field = p.getCurrentName();
+				JsonToken value = p.nextToken();
+
+				if (value == JsonToken.START_ARRAY) {
+					elements += copyElements(p, bios);
+				} else if ("page".equals(field)) {
+					page = p.getValueAsInt();
+				} else if ("page_size".equals(field)) {
+					size = p.getValueAsInt();
+				} else if ("count".equals(field)) {
+					totalSize = p.getValueAsInt();
+				} else {
+					p.skipChildren();
+				}
+			}
+
+			if (elements != size) {
+				throw ctxt.mappingException(String.format(
+				        "page_size %d does not match %d content elements",
+				        size, elements));
+			}
+
+			return new RawPage(page, size, totalSize, bios.buffer(),
+			        bios.size());
+		}
+
+		/**
+		 * Copies the elements of the array at the current parser position
+		 * into the given stream, each element followed by a newline.
+		 * 
+		 * @param p
+		 *            a parser positioned at the start of an array
+		 * @param out
+		 *            the stream to write to
+		 * @return the number of copied elements
+		 * @throws IOException
+		 *             if the input is not valid JSON
+		 */
+		private static int copyElements(JsonParser p, ByteInOutStream out)
+		        throws IOException {
+			JsonGenerator gen = FACTORY.createGenerator(out);
+			gen.setRootValueSeparator(null);
+
+			int count = 0;
+
+			try {
+				while (p.nextToken() != JsonToken.END_ARRAY) {
+					gen.copyCurrentStructure(p);
+					gen.writeRaw('\n');
+					count++;
+				}
+			} finally {
+				gen.close();
+			}
+
+			return count;
+		}
+
+	}
+
+	private final int page;
+
+	private final int size;
+
+	private final int totalSize;
+
+	private final byte[] content;
+
+	private final int contentLength;
+
+	RawPage(int page, int size, int totalSize, byte[] content,
+	        int contentLength) {
+		this.page = page;
+		this.size = size;
+		this.totalSize = totalSize;
+		this.content = content;
+		this.contentLength = contentLength;
+	}
+
+	/**
+	 * The page number of this page.
+	 * 
+	 * @return the page number
+	 */
+	int page() {
+		return page;
+	}
+
+	/**
+	 * The number of elements in this page.
+	 * 
+	 * @return the page size
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * The total number of elements across all pages.
+	 * 
+	 * @return the total number of elements
+	 */
+	int totalSize() {
+		return totalSize;
+	}
+
+	/**
+	 * The page elements as newline delimited JSON. The returned buffer is a
+	 * new read-only view of the content, positioned at its beginning.
+	 * 
+	 * @return a non-null byte buffer
+	 */
+	@Nonnull
+	ByteBuffer content() {
+		return ByteBuffer.wrap(content, 0, contentLength).asReadOnlyBuffer();
+	}
+
+}
@@ -0,0 +1,193 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A bounded pool of byte arrays used to buffer HTTP response bodies. Each
+ * thread, typically an I/O dispatcher thread of the HTTP client, keeps its own
+ * small set of arrays such that acquiring and releasing arrays never requires
+ * synchronization.
+ * <p>
+ * The pool keeps track of the number of acquisitions that could be served by
+ * a pooled array, see {@link #hits()}, and the number of acquisitions that
+ * required a fresh allocation, see {@link #misses()}.
+ */
+public final class ResponseBufferPool {
+
+	/**
+	 * The default maximum number of arrays kept by each thread.
+	 */
+	static final int DEFAULT_MAX_POOLED_PER_THREAD = 4;
+
+	/**
+	 * The default maximum size of arrays kept in the pool. Larger arrays are
+	 * left for the garbage collector.
+	 */
+	static final int DEFAULT_MAX_POOLED_SIZE = 1024 * 1024;
+
+	/**
+	 * The size of fresh arrays allocated when the content length is unknown.
+	 */
+	static final int MIN_BUFFER_SIZE = 1024;
+
+	private final int maxPooledPerThread;
+
+	private final int maxPooledSize;
+
+	private final ThreadLocal<ArrayDeque<byte[]>> pools =
+	        new ThreadLocal<ArrayDeque<byte[]>>() {
+
+		        @Override
+		        protected ArrayDeque<byte[]> initialValue() {
+			        return new ArrayDeque<byte[]>(maxPooledPerThread);
+		        }
+
+	        };
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Creates a new pool having the given bounds.
+	 * 
+	 * @param maxPooledPerThread
+	 *            the maximum number of arrays kept by each thread
+	 * @param maxPooledSize
+	 *            the maximum size, in bytes, of a pooled array
+	 */
+	ResponseBufferPool(int maxPooledPerThread, int maxPooledSize) {
+		if (maxPooledPerThread < 0) {
+			throw new IllegalArgumentException("negative pool size");
+		}
+
+		this.maxPooledPerThread = maxPooledPerThread;
+		this.maxPooledSize = maxPooledSize;
+	}
+
+	/**
+	 * Creates a new pool using default bounds.
+	 * 
+	 * @return a non-null buffer pool
+	 */
+	@Nonnull
+	public static ResponseBufferPool of() {
+		return new ResponseBufferPool(DEFAULT_MAX_POOLED_PER_THREAD,
+		        DEFAULT_MAX_POOLED_SIZE);
+	}
+
+	/**
+	 * Acquires a byte array suitable for holding a response body of the given
+	 * length. The announced length is not trusted beyond the maximum pooled
+	 * size, a longer body has to grow the array as its bytes arrive.
+	 * 
+	 * @param contentLength
+	 *            the expected number of bytes, negative if unknown
+	 * @return a byte array, at least as long as the smaller of
+	 *         <code>contentLength</code> and the maximum pooled size
+	 */
+	@Nonnull
+	byte[] acquire(long contentLength) {
+		int wanted = (int) Math.min(contentLength, maxPooledSize);
+
+		Iterator<byte[]> it = pools.get().iterator();
+		while (it.hasNext()) {
+			byte[] buf = it.next();
+
+			if (buf.length >= wanted) {
+				it.remove();
+				hits.incrementAndGet();
+				return buf;
+			}
+		}
+
+		misses.incrementAndGet();
+
+		return new byte[Math.max(wanted, MIN_BUFFER_SIZE)];
+	}
+
+	/**
+	 * Returns the given array to the pool of the current thread. If the pool
+	 * is full or the array is too large then it is simply dropped.
+	 * 
+	 * @param buf
+	 *            the array to return
+	 */
+	void release(byte[] buf) {
+		if (buf.length > maxPooledSize) {
+			return;
+		}
+
+		ArrayDeque<byte[]> pool = pools.get();
+
+		if (pool.size() < maxPooledPerThread) {
+			pool.push(buf);
+		}
+	}
+
+	/**
+	 * Returns the given array to the pool if called from the thread that
+	 * acquired it, typically an I/O dispatcher thread. Arrays released from
+	 * any other thread, e.g., a thread cancelling the request, are dropped so
+	 * that they are not parked in the pool of a thread that may never acquire
+	 * another.
+	 * 
+	 * @param buf
+	 *            the array to return
+	 * @param acquirer
+	 *            the thread that acquired the array
+	 */
+	void release(byte[] buf, Thread acquirer) {
+		if (Thread.currentThread() == acquirer) {
+			release(buf);
+		}
+	}
+
+	/**
+	 * The number of acquisitions served by a pooled array.
+	 * 
+	 * @return a non-negative number
+	 */
+	public long hits() {
+		return hits.get();
+	}
+
+	/**
+	 * The number of acquisitions that required allocating a fresh array.
+	 * 
+	 * @return a non-negative number
+	 */
+	public long misses() {
+		return misses.get();
+	}
+
+	@Override
+	public String toString() {
+		return "ResponseBufferPool{hits=" + hits() + ", misses=" + misses()
+		        + "}";
+	}
+
+}
@@ -0,0 +1,283 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.immutables.value.Value;
+import org.threeten.bp.Duration;
+
+/**
+ * Describes how failed requests are retried. A connection configured with a
+ * retry policy transparently resends requests that failed due to an I/O error
+ * or a transient server error. The outcome reported to the caller is that of
+ * the last attempt.
+ * <p>
+ * Requests that are idempotent, that is, GET, PUT, and DELETE requests, are
+ * retried on any I/O error and on responses having status 429 (too many
+ * requests), 502 (bad gateway), 503 (service unavailable), or 504 (gateway
+ * timeout). Other requests, most notably batch creation, are only retried when
+ * the request is known not to have reached the server, that is, when the
+ * connection could not be established or when the server responded with
+ * status 429.
+ * <p>
+ * Between attempts the connection waits an exponentially growing, randomized,
+ * delay. If the server includes a <code>Retry-After</code> header in its
+ * response then the connection waits at least the given time.
+ */
+@Value.Immutable
+@ValueStylePackage
+public abstract class RetryPolicy {
+
+	private static final int SC_TOO_MANY_REQUESTS = 429;
+
+	/**
+	 * A builder of retry policies.
+	 */
+	public static class Builder extends RetryPolicyImpl.Builder {
+
+		Builder() {
+		}
+
+	}
+
+	/**
+	 * Creates a builder of {@link RetryPolicy} instances.
+	 * 
+	 * @return a builder
+	 */
+	@Nonnull
+	public static final RetryPolicy.Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * The maximum number of times a request is sent, including the first
+	 * attempt.
+	 * 
+	 * @return a positive number of attempts
+	 */
+	@Value.Default
+	public int maxAttempts() {
+		return 3;
+	}
+
+	/**
+	 * The upper bound of the delay before the first retry. The bound doubles
+	 * for each subsequent retry.
+	 * 
+	 * @return a positive duration
+	 */
+	@Value.Default
+	public Duration initialBackoff() {
+		return Duration.ofMillis(100);
+	}
+
+	/**
+	 * The largest upper bound of the delay between two attempts.
+	 * 
+	 * @return a positive duration
+	 */
+	@Value.Default
+	public Duration maxBackoff() {
+		return Duration.ofSeconds(10);
+	}
+
+	/**
+	 * The longest <code>Retry-After</code> time that is honored. If the
+	 * server asks for a longer wait then the request fails immediately.
+	 * 
+	 * @return a non-negative duration
+	 */
+	@Value.Default
+	public Duration maxRetryAfter() {
+		return Duration.ofSeconds(60);
+	}
+
+	/**
+	 * Verifies that this retry policy is in a reasonable state.
+	 */
+	@Value.Check
+	protected void check() {
+		if (maxAttempts() < 1) {
+			throw new IllegalStateException("non-positive max attempts");
+		}
+
+		if (initialBackoff().isNegative() || initialBackoff().isZero()
+		        || maxBackoff().compareTo(initialBackoff()) < 0) {
+			throw new IllegalStateException("invalid backoff");
+		}
+
+		if (maxRetryAfter().isNegative()) {
+			throw new IllegalStateException("negative max retry after");
+		}
+	}
+
+	/**
+	 * Determines how long to wait before retrying a failed request.
+	 * 
+	 * @param attempts
+	 *            the number of attempts made so far
+	 * @param failure
+	 *            the failure of the last attempt
+	 * @param idempotent
+	 *            whether the request may safely be sent more than once
+	 * @param random
+	 *            a random number in the range [0, 1)
+	 * @param nowMillis
+	 *            the current time in milliseconds since the epoch
+	 * @return the delay in nanoseconds or -1 if the request should not be
+	 *         retried
+	 */
+	long retryDelay(int attempts, Exception failure, boolean idempotent,
+	        double random, long nowMillis) {
+		if (attempts >= maxAttempts() || !isRetryable(failure, idempotent)) {
+			return -1;
+		}
+
+		long delay = backoff(attempts, random);
+
+		if (failure instanceof UnexpectedResponseException) {
+			long retryAfter = retryAfter(
+			        ((UnexpectedResponseException) failure).getResponse(),
+			        nowMillis);
+
+			if (retryAfter > maxRetryAfter().toMillis()) {
+				return -1;
+			}
+
+			delay = Math.max(delay,
+			        TimeUnit.MILLISECONDS.toNanos(retryAfter));
+		}
+
+		return delay;
+	}
+
+	/**
+	 * The randomized delay before the given retry. The delay is drawn
+	 * uniformly between zero and the exponentially growing bound.
+	 * 
+	 * @param retry
+	 *            the retry number, starting at 1
+	 * @param random
+	 *            a random number in the range [0, 1)
+	 * @return a delay in nanoseconds
+	 */
+	long backoff(int retry, double random) {
+		long max = TimeUnit.MILLISECONDS.toNanos(maxBackoff().toMillis());
+		long bound = TimeUnit.MILLISECONDS.toNanos(initialBackoff().toMillis());
+
+		for (int i = 1; i < retry && bound < max; i++) {
+			bound *= 2;
+		}
+
+		return (long) (Math.min(bound, max) * random);
+	}
+
+	/**
+	 * Whether the given failure is worth retrying.
+	 * 
+	 * @param failure
+	 *            the failure of the last attempt
+	 * @param idempotent
+	 *            whether the request may safely be sent more than once
+	 * @return true if the request may be retried
+	 */
+	static boolean isRetryable(Exception failure, boolean idempotent) {
+		if (failure instanceof UnexpectedResponseException) {
+			int status = ((UnexpectedResponseException) failure).getResponse()
+			        .getStatusLine().getStatusCode();
+
+			switch (status) {
+			case SC_TOO_MANY_REQUESTS:
+				return true;
+			case HttpStatus.SC_BAD_GATEWAY:
+			case HttpStatus.SC_SERVICE_UNAVAILABLE:
+			case HttpStatus.SC_GATEWAY_TIMEOUT:
+				return idempotent;
+			default:
+				return false;
+			}
+		} else if (isNotSent(failure)) {
+			return true;
+		} else if (failure instanceof IOException) {
+			return idempotent;
+		} else {
+			return false;
+		}
+	}
+
+	/**
+	 * Whether the given failure guarantees that the request never reached
+	 * the server.
+	 * 
+	 * @param failure
+	 *            the failure of the last attempt
+	 * @return true if the request was not sent
+	 */
+	private static boolean isNotSent(Exception failure) {
+		return failure instanceof ConnectException
+		        || failure instanceof ConnectTimeoutException
+		        || failure instanceof NoRouteToHostException
+		        || failure instanceof UnknownHostException;
+	}
+
+	/**
+	 * Reads the <code>Retry-After</code> header of the given response. The
+	 * header may hold either a number of seconds or a HTTP date.
+	 * 
+	 * @param response
+	 *            the response to inspect
+	 * @param nowMillis
+	 *            the current time in milliseconds since the epoch
+	 * @return the requested delay in milliseconds, zero if none
+	 */
+	static long retryAfter(HttpResponse response, long nowMillis) {
+		Header header = response.getFirstHeader(HttpHeaders.RETRY_AFTER);
+
+		if (header == null) {
+			return 0;
+		}
+
+		String value = header.getValue().trim();
+
+		try {
+			return TimeUnit.SECONDS.toMillis(Math.max(0, Long.parseLong(value)));
+		} catch (NumberFormatException e) {
+			Date date = DateUtils.parseDate(value);
+
+			return (date == null) ? 0 : Math.max(0, date.getTime() - nowMillis);
+		}
+	}
+
+}
@@ -0,0 +1,431 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+import com.clxcommunications.xms.api.MtBatchBinarySmsCreate;
+import com.clxcommunications.xms.api.MtBatchDryRunResult;
+import com.clxcommunications.xms.api.MtBatchSmsCreate;
+import com.clxcommunications.xms.api.MtBatchTextSmsCreate;
+import com.clxcommunications.xms.api.ParameterValues;
+
+/**
+ * Calculates locally how many SMS parts a message requires. This makes it
+ * possible to estimate the size of a batch without performing a dry run
+ * request, see {@link #dryRun(MtBatchSmsCreate, Boolean, Integer)}.
+ * <p>
+ * Text that only contains characters of the GSM 03.38 default alphabet and
+ * its extension table is encoded using 7-bit septets, where extension
+ * characters occupy two septets. A single part then holds 160 septets and each
+ * part of a concatenated message holds 153 septets. All other text is encoded
+ * using UCS-2, holding 70 characters in a single part and 67 characters per
+ * part of a concatenated message. Extension characters and surrogate pairs are
+ * never split between parts.
+ * <p>
+ * The methods taking character sequences do not allocate any memory.
+ */
+public final class SegmentCalculator {
+
+	/**
+	 * The encoding name used by XMS for GSM 7-bit text.
+	 */
+	public static final String ENCODING_TEXT = "text";
+
+	/**
+	 * The encoding name used by XMS for UCS-2 text.
+	 */
+	public static final String ENCODING_UNICODE = "unicode";
+
+	/**
+	 * The default number of per-recipient results in a dry run.
+	 */
+	static final int DEFAULT_PER_RECIPIENT_LIMIT = 100;
+
+	private static final int GSM_SINGLE_SEPTETS = 160;
+	private static final int GSM_PART_SEPTETS = 153;
+	private static final int UCS2_SINGLE_CHARS = 70;
+	private static final int UCS2_PART_CHARS = 67;
+	private static final int BINARY_SINGLE_OCTETS = 140;
+	private static final int CONCAT_UDH_OCTETS = 6;
+
+	/**
+	 * The characters of the GSM default alphabet, in table order.
+	 */
+	private static final String GSM_BASIC = "@£$¥èé"
+	        + "ùìòÇ\nØø\rÅåΔ_"
+	        + "ΦΓΛΩΠΨΣΘΞÆ"
+	        + "æßÉ !\"#¤%&'()*+,-./0123456789:;<=>?"
+	        + "¡ABCDEFGHIJKLMNOPQRSTUVWXYZÄÖÑÜ§"
+	        + "¿abcdefghijklmnopqrstuvwxyzäöñüà";
+
+	/**
+	 * The characters of the GSM default alphabet extension table.
+	 */
+	private static final String GSM_EXTENSION = "\f^{}\\[~]|€";
+
+	/**
+	 * The number of septets needed for each character below
+	 * {@link #SEPTETS_LIMIT}, zero if the character cannot be GSM encoded.
+	 */
+	private static final byte[] SEPTETS;
+
+	private static final int SEPTETS_LIMIT = 0x0400;
+
+	/**
+	 * The only GSM character at or above {@link #SEPTETS_LIMIT}.
+	 */
+	private static final char EURO = '€';
+
+	static {
+		SEPTETS = new byte[SEPTETS_LIMIT];
+
+		for (int i = 0; i < GSM_BASIC.length(); i++) {
+			SEPTETS[GSM_BASIC.charAt(i)] = 1;
+		}
+
+		for (int i = 0; i < GSM_EXTENSION.length(); i++) {
+			char c = GSM_EXTENSION.charAt(i);
+			if (c < SEPTETS_LIMIT) {
+				SEPTETS[c] = 2;
+			}
+		}
+	}
+
+	/**
+	 * The number of septets needed to GSM encode the given character.
+	 * 
+	 * @param c
+	 *            the character
+	 * @return 1 or 2, or 0 if the character cannot be GSM encoded
+	 */
+	private static int septets(char c) {
+		if (c < SEPTETS_LIMIT) {
+			return SEPTETS[c];
+		} else {
+			return c == EURO ? 2 : 0;
+		}
+	}
+
+	/**
+	 * Whether the given text can be encoded using the GSM 7-bit alphabet.
+	 * 
+	 * @param text
+	 *            the text to check
+	 * @return <code>true</code> if GSM encodable, <code>false</code> otherwise
+	 */
+	public static boolean isGsm7(CharSequence text) {
+		for (int i = 0, n = text.length(); i < n; i++) {
+			if (septets(text.charAt(i)) == 0) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * The XMS name of the encoding used for the given text.
+	 * 
+	 * @param text
+	 *            the message text
+	 * @return either {@link #ENCODING_TEXT} or {@link #ENCODING_UNICODE}
+	 */
+	@Nonnull
+	public static String encoding(CharSequence text) {
+		return isGsm7(text) ? ENCODING_TEXT : ENCODING_UNICODE;
+	}
+
+	/**
+	 * The number of SMS parts needed to send the given text.
+	 * 
+	 * @param text
+	 *            the message text
+	 * @return a positive integer
+	 */
+	public static int numberOfParts(CharSequence text) {
+		return isGsm7(text) ? gsmParts(text) : ucs2Parts(text);
+	}
+
+	/**
+	 * The number of SMS parts needed to send the given binary message.
+	 * 
+	 * @param udh
+	 *            the user data header
+	 * @param body
+	 *            the message body
+	 * @return a positive integer
+	 * @throws IllegalArgumentException
+	 *             if the message needs more than one part but the user data
+	 *             header leaves no room for the body in a concatenated part
+	 */
+	public static int numberOfParts(byte[] udh, byte[] body) {
+		if (udh.length + body.length <= BINARY_SINGLE_OCTETS) {
+			return 1;
+		}
+
+		int perPart = BINARY_SINGLE_OCTETS - CONCAT_UDH_OCTETS - udh.length;
+
+		if (perPart < 1) {
+			throw new IllegalArgumentException(
+			        "user data header too long for concatenated message, got "
+			                + udh.length + " octets");
+		}
+
+		return Math.max(1, (body.length + perPart - 1) / perPart);
+	}
+
+	private static int gsmParts(CharSequence text) {
+		int n = text.length();
+		int total = 0;
+
+		for (int i = 0; i < n; i++) {
+			total += septets(text.charAt(i));
+		}
+
+		if (total <= GSM_SINGLE_SEPTETS) {
+			return 1;
+		}
+
+		int parts = 1;
+		int used = 0;
+
+		for (int i = 0; i < n; i++) {
+			int width = septets(text.charAt(i));
+
+			if (used + width > GSM_PART_SEPTETS) {
+				parts++;
+				used = 0;
+			}
+
+			used += width;
+		}
+
+		return parts;
+	}
+
+	private static int ucs2Parts(CharSequence text) {
+		int n = text.length();
+
+		if (n <= UCS2_SINGLE_CHARS) {
+			return 1;
+		}
+
+		int parts = 1;
+		int used = 0;
+
+		for (int i = 0; i < n; i++) {
+			int width = 1;
+
+			if (Character.isHighSurrogate(text.charAt(i)) && i + 1 < n
+			        && Character.isLowSurrogate(text.charAt(i + 1))) {
+				width = 2;
+				i++;
+			}
+
+			if (used + width > UCS2_PART_CHARS) {
+				parts++;
+				used = 0;
+			}
+
+			used += width;
+		}
+
+		return parts;
+	}
+
+	/**
+	 * Calculates the result of a dry run of the given batch locally. The
+	 * arguments match those of
+	 * {@link ApiConnection#createBatchDryRun(MtBatchSmsCreate, Boolean, Integer)}
+	 * and the result has the same shape as the result of a dry run performed
+	 * by XMS.
+	 * <p>
+	 * Template parameters of text batches are expanded per recipient. A
+	 * parameter lacking both substitution and default value is left
+	 * unexpanded. As for XMS, per-recipient results are only given for text
+	 * batches.
+	 * 
+	 * @param sms
+	 *            the batch to dry run
+	 * @param perRecipient
+	 *            whether the per-recipient result should be populated
+	 * @param numRecipients
+	 *            the number of recipients to populate, if <code>null</code>
+	 *            then {@value #DEFAULT_PER_RECIPIENT_LIMIT} are populated
+	 * @return a dry run result
+	 * @throws IllegalArgumentException
+	 *             if the batch is binary and its user data header is too long
+	 *             for a concatenated message
+	 */
+	@Nonnull
+	public static MtBatchDryRunResult dryRun(MtBatchSmsCreate sms,
+	        Boolean perRecipient, Integer numRecipients) {
+		Utils.requireNonNull(sms, "sms");
+
+		List<String> recipients = sms.recipients();
+
+		if (sms instanceof MtBatchBinarySmsCreate) {
+			MtBatchBinarySmsCreate bin = (MtBatchBinarySmsCreate) sms;
+			int parts = numberOfParts(bin.udh(), bin.body());
+
+			return MtBatchDryRunResult.builder()
+			        .numberOfRecipients(recipients.size())
+			        .numberOfMessages(parts * recipients.size())
+			        .build();
+		}
+
+		MtBatchTextSmsCreate text = (MtBatchTextSmsCreate) sms;
+		Map<String, ParameterValues> parameters = text.parameters();
+
+		int limit = 0;
+		if (perRecipient != null && perRecipient) {
+			limit = (numRecipients == null)
+			        ? DEFAULT_PER_RECIPIENT_LIMIT
+			        : numRecipients;
+		}
+
+		List<MtBatchDryRunResult.PerRecipient> details =
+		        new ArrayList<MtBatchDryRunResult.PerRecipient>(
+		                Math.min(limit, recipients.size()));
+
+		/*
+		 * Recipients without substitutions all receive the same text so we
+		 * only calculate its parts once.
+		 */
+		StringBuilder sb = new StringBuilder(text.body().length() + 32);
+		expand(text.body(), parameters, null, sb);
+		String defaultBody = sb.toString();
+		int defaultParts = numberOfParts(defaultBody);
+		String defaultEncoding = encoding(defaultBody);
+
+		int messages = 0;
+
+		for (int i = 0; i < recipients.size(); i++) {
+			String recipient = recipients.get(i);
+			int parts;
+			String encoding;
+			CharSequence body;
+
+			if (hasSubstitution(parameters, recipient)) {
+				sb.setLength(0);
+				expand(text.body(), parameters, recipient, sb);
+				parts = numberOfParts(sb);
+				encoding = encoding(sb);
+				body = sb;
+			} else {
+				parts = defaultParts;
+				encoding = defaultEncoding;
+				body = defaultBody;
+			}
+
+			messages += parts;
+
+			if (i < limit) {
+				details.add(MtBatchDryRunResult.PerRecipient.builder()
+				        .recipient(recipient)
+				        .numberOfParts(parts)
+				        .body(body.toString())
+				        .encoding(encoding)
+				        .build());
+			}
+		}
+
+		return MtBatchDryRunResult.builder()
+		        .numberOfRecipients(recipients.size())
+		        .numberOfMessages(messages)
+		        .perRecipient(details)
+		        .build();
+	}
+
+	private static boolean hasSubstitution(
+	        Map<String, ParameterValues> parameters, String recipient) {
+		for (ParameterValues values : parameters.values()) {
+			if (values.substitutions().containsKey(recipient)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Expands the given template into the given string builder.
+	 * 
+	 * @param template
+	 *            the message template
+	 * @param parameters
+	 *            the template parameters
+	 * @param recipient
+	 *            the recipient whose substitutions to use, or
+	 *            <code>null</code> to only use default values
+	 * @param sb
+	 *            the builder to append to
+	 */
+	private static void expand(String template,
+	        Map<String, ParameterValues> parameters, String recipient,
+	        StringBuilder sb) {
+		if (parameters.isEmpty()) {
+			sb.append(template);
+			return;
+		}
+
+		int pos = 0;
+
+		while (true) {
+			int start = template.indexOf("${", pos);
+			int end = (start < 0) ? -1 : template.indexOf('}', start + 2);
+
+			if (end < 0) {
+				sb.append(template, pos, template.length());
+				return;
+			}
+
+			String value = null;
+			ParameterValues values =
+			        parameters.get(template.substring(start + 2, end));
+
+			if (values != null) {
+				if (recipient != null) {
+					value = values.substitutions().get(recipient);
+				}
+
+				if (value == null) {
+					value = values.defaultValue();
+				}
+			}
+
+			sb.append(template, pos, start);
+
+			if (value != null) {
+				sb.append(value);
+			} else {
+				sb.append(template, start, end + 1);
+			}
+
+			pos = end + 1;
+		}
+	}
+
+}
@@ -0,0 +1,76 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A timer shared by all connections. It is used to run delayed request
+ * submissions and must therefore only be given short, non-blocking tasks. The
+ * timer thread is a daemon thread that is started on first use.
+ */
+final class SharedTimer {
+
+	/**
+	 * Lazily creates the executor on first access.
+	 */
+	private static final class Holder {
+
+		static final ScheduledExecutorService EXECUTOR = create();
+
+		private static ScheduledExecutorService create() {
+			ScheduledThreadPoolExecutor executor =
+			        new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+
+				        @Override
+				        public Thread newThread(Runnable r) {
+					        Thread t = new Thread(r, "xms-timer");
+					        t.setDaemon(true);
+					        return t;
+				        }
+
+			        });
+
+			return executor;
+		}
+
+	}
+
+	/**
+	 * Runs the given task after the given delay.
+	 * 
+	 * @param task
+	 *            the task to run
+	 * @param delay
+	 *            the delay
+	 * @param unit
+	 *            the unit of the delay
+	 * @return a future that may be used to cancel the task
+	 */
+	static ScheduledFuture<?> schedule(Runnable task, long delay,
+	        TimeUnit unit) {
+		return Holder.EXECUTOR.schedule(task, delay, unit);
+	}
+
+}
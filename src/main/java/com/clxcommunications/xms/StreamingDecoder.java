@@ -0,0 +1,91 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * Decodes a successful JSON response body incrementally, as its bytes arrive
+ * from the network, instead of buffering the whole body before decoding it.
+ * <p>
+ * An API connection asks its {@link ApiConnection#streamingDecoder()
+ * streaming decoder factory}, if any, for a decoder when it receives a
+ * successful response. Responses for which the factory provides no decoder
+ * are buffered and decoded as usual. Error responses are always buffered.
+ * <p>
+ * The <code>sdk-xms-jdk8</code> module provides a factory whose decoders bind
+ * the elements of listing pages one at a time using the non-blocking parser of
+ * Jackson 2.9.
+ * 
+ * @param <T>
+ *            the type of the decoded value
+ */
+public interface StreamingDecoder<T> {
+
+	/**
+	 * A source of streaming decoders.
+	 */
+	interface Factory {
+
+		/**
+		 * Creates a decoder of a single response body of the given type.
+		 * 
+		 * @param type
+		 *            the type of the response value
+		 * @param reader
+		 *            the reader that would otherwise be used to read the
+		 *            buffered response body
+		 * @return a new decoder or <code>null</code> if the response should
+		 *         be buffered
+		 */
+		@Nullable
+		<T> StreamingDecoder<T> create(@Nonnull Class<T> type,
+		        @Nonnull ObjectReader reader);
+
+	}
+
+	/**
+	 * Decodes the given bytes of the response body. The buffer may be reused
+	 * once this method returns.
+	 * 
+	 * @param buf
+	 *            the received bytes
+	 * @throws IOException
+	 *             if the body is not valid
+	 */
+	void decode(@Nonnull ByteBuffer buf) throws IOException;
+
+	/**
+	 * Returns the decoded value. Called once the whole body has been passed
+	 * to {@link #decode(ByteBuffer)}.
+	 * 
+	 * @return the decoded value
+	 * @throws IOException
+	 *             if the body is incomplete or not valid
+	 */
+	T result() throws IOException;
+
+}
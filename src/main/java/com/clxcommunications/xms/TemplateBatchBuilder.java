@@ -0,0 +1,448 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nonnull;
+
+import com.clxcommunications.xms.api.MtBatchTextSmsCreate;
+import com.clxcommunications.xms.api.ParameterValues;
+
+/**
+ * Builds personalized text batches from a message template and a sequence of
+ * recipient rows. The template is a message body containing parameters using
+ * the syntax <code>${parameter_key}</code>, see
+ * {@link MtBatchTextSmsCreate#body()}, and each row holds a recipient and its
+ * parameter values.
+ * <p>
+ * The rows are split into batches of at most {@link #maxRecipients()}
+ * recipients. Within each batch the most common value of every parameter is
+ * used as the parameter default, so substitutions are only sent for the
+ * recipients whose value differs. While rows are added they are kept in a
+ * compact column form where equal values share a single string instance.
+ * <p>
+ * For example,
+ * 
+ * <pre>
+ * TemplateBatchBuilder builder =
+ *         TemplateBatchBuilder.of("12345", "Hi ${name}, your code is ${code}");
+ * 
+ * builder.addRow("987654321", "Jane", "1234");
+ * builder.addRow("987654322", "John", "5678");
+ * 
+ * for (MtBatchTextSmsCreate batch : builder.batches()) {
+ *     conn.createBatchAsync(batch, null);
+ * }
+ * </pre>
+ * <p>
+ * Note, the recipients of the rows are expected to be distinct. Instances of
+ * this class are not thread safe.
+ */
+public final class TemplateBatchBuilder {
+
+	private static final Pattern PARAMETER =
+	        Pattern.compile("\\$\\{([^}]+)\\}");
+
+	private final String sender;
+
+	private final String body;
+
+	/**
+	 * The template parameter keys in order of first appearance.
+	 */
+	private final String[] keys;
+
+	private final Map<String, Integer> keyIndex;
+
+	/**
+	 * The fallback value of each parameter, <code>null</code> if none.
+	 */
+	private final String[] fallbacks;
+
+	/**
+	 * The canonical instance of each seen value, per parameter.
+	 */
+	private final Map<String, String>[] interned;
+
+	private int maxRecipients = ApiConnection.DEFAULT_CHUNK_SIZE;
+
+	private String[] recipients = new String[16];
+
+	/**
+	 * The parameter values, indexed by parameter and then row. A
+	 * <code>null</code> value means that the fallback is used.
+	 */
+	private String[][] values;
+
+	private int rows = 0;
+
+	@SuppressWarnings("unchecked")
+	private TemplateBatchBuilder(String sender, String body) {
+		this.sender = sender;
+		this.body = body;
+
+		Map<String, Integer> index = new LinkedHashMap<String, Integer>();
+		Matcher m = PARAMETER.matcher(body);
+
+		while (m.find()) {
+			if (!index.containsKey(m.group(1))) {
+				index.put(m.group(1), index.size());
+			}
+		}
+
+		this.keys = index.keySet().toArray(new String[index.size()]);
+		this.keyIndex = index;
+		this.fallbacks = new String[keys.length];
+		this.interned = new Map[keys.length];
+		this.values = new String[keys.length][recipients.length];
+
+		for (int i = 0; i < keys.length; i++) {
+			interned[i] = new HashMap<String, String>();
+		}
+	}
+
+	/**
+	 * Creates a builder of batches using the given sender and message
+	 * template.
+	 * 
+	 * @param sender
+	 *            the message originator
+	 * @param body
+	 *            the message template
+	 * @return a new builder
+	 */
+	@Nonnull
+	public static TemplateBatchBuilder of(String sender, String body) {
+		return new TemplateBatchBuilder(Utils.requireNonNull(sender, "sender"),
+		        Utils.requireNonNull(body, "body"));
+	}
+
+	/**
+	 * The template parameter keys, in order of first appearance in the
+	 * template.
+	 * 
+	 * @return a non-null list of parameter keys
+	 */
+	@Nonnull
+	public List<String> parameters() {
+		return Arrays.asList(keys.clone());
+	}
+
+	/**
+	 * The maximum number of recipients per batch.
+	 * 
+	 * @return a positive integer
+	 */
+	public int maxRecipients() {
+		return maxRecipients;
+	}
+
+	/**
+	 * Sets the maximum number of recipients per batch. The default value is
+	 * {@value ApiConnection#DEFAULT_CHUNK_SIZE}.
+	 * 
+	 * @param maxRecipients
+	 *            the maximum number of recipients
+	 * @return this builder
+	 * @throws IllegalArgumentException
+	 *             if the given value is not positive
+	 */
+	@Nonnull
+	public TemplateBatchBuilder maxRecipients(int maxRecipients) {
+		if (maxRecipients < 1) {
+			throw new IllegalArgumentException(
+			        "max recipients must be positive, got " + maxRecipients);
+		}
+
+		this.maxRecipients = maxRecipients;
+		return this;
+	}
+
+	/**
+	 * Sets the value of the given parameter for rows that do not provide a
+	 * value of their own.
+	 * 
+	 * @param key
+	 *            the parameter key
+	 * @param value
+	 *            the fallback value
+	 * @return this builder
+	 * @throws IllegalArgumentException
+	 *             if the template does not contain the given parameter
+	 */
+	@Nonnull
+	public TemplateBatchBuilder defaultValue(String key, String value) {
+		fallbacks[index(key)] = Utils.requireNonNull(value, "value");
+		return this;
+	}
+
+	/**
+	 * Adds a row having the given parameter values. Parameters that are
+	 * missing from the given map take their default value.
+	 * 
+	 * @param recipient
+	 *            the recipient of the message
+	 * @param variables
+	 *            a map from parameter key to value
+	 * @return this builder
+	 * @throws IllegalArgumentException
+	 *             if the map contains a key that is not a template parameter
+	 *             or lacks a parameter without default value
+	 */
+	@Nonnull
+	public TemplateBatchBuilder addRow(String recipient,
+	        Map<String, String> variables) {
+		Utils.requireNonNull(variables, "variables");
+
+		String[] row = new String[keys.length];
+
+		for (Map.Entry<String, String> entry : variables.entrySet()) {
+			row[index(entry.getKey())] = entry.getValue();
+		}
+
+		return add(recipient, row);
+	}
+
+	/**
+	 * Adds a row having the given parameter values, given in the order of
+	 * {@link #parameters()}. A <code>null</code> value is replaced by the
+	 * parameter default value.
+	 * 
+	 * @param recipient
+	 *            the recipient of the message
+	 * @param values
+	 *            the parameter values
+	 * @return this builder
+	 * @throws IllegalArgumentException
+	 *             if the number of values does not match the number of
+	 *             parameters or a parameter without default value lacks a value
+	 */
+	@Nonnull
+	public TemplateBatchBuilder addRow(String recipient, String... values) {
+		if (values.length != keys.length) {
+			throw new IllegalArgumentException("expected " + keys.length
+			        + " values, got " + values.length);
+		}
+
+		return add(recipient, values.clone());
+	}
+
+	/**
+	 * The number of rows added so far.
+	 * 
+	 * @return a non-negative integer
+	 */
+	public int rowCount() {
+		return rows;
+	}
+
+	/**
+	 * The number of batches that {@link #batches()} will produce.
+	 * 
+	 * @return a non-negative integer
+	 */
+	public int batchCount() {
+		return BatchChunks.count(rows, maxRecipients);
+	}
+
+	/**
+	 * Returns the batches covering all rows added so far. The batches are
+	 * built one at a time as the returned iterable is traversed.
+	 * 
+	 * @return a non-null iterable of batches
+	 */
+	@Nonnull
+	public Iterable<MtBatchTextSmsCreate> batches() {
+		final int rowCount = rows;
+		final int chunkSize = maxRecipients;
+
+		return new Iterable<MtBatchTextSmsCreate>() {
+
+			@Override
+			public Iterator<MtBatchTextSmsCreate> iterator() {
+				return new Iterator<MtBatchTextSmsCreate>() {
+
+					private int next = 0;
+
+					@Override
+					public boolean hasNext() {
+						return next < rowCount;
+					}
+
+					@Override
+					public MtBatchTextSmsCreate next() {
+						if (!hasNext()) {
+							throw new NoSuchElementException();
+						}
+
+						int from = next;
+						next = Math.min(next + chunkSize, rowCount);
+
+						return batch(from, next);
+					}
+
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+
+				};
+			}
+
+		};
+	}
+
+	private int index(String key) {
+		Integer i = keyIndex.get(key);
+
+		if (i == null) {
+			throw new IllegalArgumentException(
+			        "template has no parameter " + key);
+		}
+
+		return i;
+	}
+
+	private TemplateBatchBuilder add(String recipient, String[] row) {
+		Utils.requireNonNull(recipient, "recipient");
+
+		for (int i = 0; i < keys.length; i++) {
+			if (row[i] == null && fallbacks[i] == null) {
+				throw new IllegalArgumentException(
+				        "no value for parameter " + keys[i]);
+			}
+		}
+
+		if (rows == recipients.length) {
+			int capacity = rows + (rows >> 1);
+
+			recipients = Arrays.copyOf(recipients, capacity);
+			for (int i = 0; i < keys.length; i++) {
+				values[i] = Arrays.copyOf(values[i], capacity);
+			}
+		}
+
+		recipients[rows] = recipient;
+
+		for (int i = 0; i < keys.length; i++) {
+			values[i][rows] = intern(i, row[i]);
+		}
+
+		rows++;
+
+		return this;
+	}
+
+	private String intern(int key, String value) {
+		if (value == null) {
+			return null;
+		}
+
+		String existing = interned[key].get(value);
+
+		if (existing == null) {
+			interned[key].put(value, value);
+			existing = value;
+		}
+
+		return existing;
+	}
+
+	/**
+	 * Builds the batch covering the given range of rows.
+	 * 
+	 * @param from
+	 *            the first row, inclusive
+	 * @param to
+	 *            the last row, exclusive
+	 * @return a non-null batch
+	 */
+	private MtBatchTextSmsCreate batch(int from, int to) {
+		Map<String, ParameterValues> parameters =
+		        new HashMap<String, ParameterValues>(keys.length * 2);
+
+		for (int i = 0; i < keys.length; i++) {
+			parameters.put(keys[i], parameterValues(i, from, to));
+		}
+
+		return MtBatchTextSmsCreate.builder()
+		        .sender(sender)
+		        .body(body)
+		        .recipients(Arrays.asList(recipients).subList(from, to))
+		        .parameters(parameters)
+		        .build();
+	}
+
+	/**
+	 * Builds the values of a parameter for the given range of rows. The most
+	 * common value becomes the default and only the remaining rows receive a
+	 * substitution.
+	 */
+	private ParameterValues parameterValues(int key, int from, int to) {
+		String[] column = values[key];
+		Map<String, int[]> counts = new HashMap<String, int[]>();
+		String common = null;
+		int commonCount = 0;
+
+		for (int row = from; row < to; row++) {
+			String value = effective(key, column[row]);
+			int[] count = counts.get(value);
+
+			if (count == null) {
+				count = new int[1];
+				counts.put(value, count);
+			}
+
+			if (++count[0] > commonCount) {
+				common = value;
+				commonCount = count[0];
+			}
+		}
+
+		Map<String, String> substitutions = new HashMap<String, String>();
+
+		for (int row = from; row < to; row++) {
+			String value = effective(key, column[row]);
+
+			if (!value.equals(common)) {
+				substitutions.put(recipients[row], value);
+			}
+		}
+
+		return ParameterValues.builder()
+		        .substitutions(substitutions)
+		        .defaultValue(common)
+		        .build();
+	}
+
+	private String effective(int key, String value) {
+		return value == null ? fallbacks[key] : value;
+	}
+
+}
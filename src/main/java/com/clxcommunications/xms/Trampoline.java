@@ -0,0 +1,107 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs tasks in the calling thread without nesting. A task that is handed to
+ * the trampoline while the same thread already is running tasks from it is
+ * queued and run by the outer loop once the current task returns.
+ * <p>
+ * This is used by the admission controls, whose queued tasks are run when an
+ * earlier request returns its permit. A task whose request fails immediately
+ * returns its permit from within the task, which without the trampoline would
+ * run the next queued task recursively and could overflow the stack when
+ * draining a long queue.
+ * <p>
+ * The admission controls hand out the permits of all queued tasks before
+ * running them. Therefore a task that throws must not prevent the tasks after
+ * it from running, the exception is instead logged and dropped. An
+ * {@link Error} is rethrown once all tasks have run.
+ */
+final class Trampoline {
+
+	private static final Logger log =
+	        LoggerFactory.getLogger(Trampoline.class);
+
+	/**
+	 * The tasks to be run by the loop in the current thread, or
+	 * <code>null</code> if the thread is not running tasks.
+	 */
+	private final ThreadLocal<Queue<Runnable>> pending =
+	        new ThreadLocal<Queue<Runnable>>();
+
+	/**
+	 * Runs the given tasks in order, unless the calling thread already is
+	 * running tasks of this trampoline in which case they are run after the
+	 * current task.
+	 * 
+	 * @param tasks
+	 *            the tasks to run
+	 */
+	void run(List<Runnable> tasks) {
+		if (tasks.isEmpty()) {
+			return;
+		}
+
+		Queue<Runnable> queue = pending.get();
+
+		if (queue != null) {
+			queue.addAll(tasks);
+			return;
+		}
+
+		queue = new ArrayDeque<Runnable>(tasks);
+		pending.set(queue);
+
+		Error error = null;
+
+		try {
+			Runnable task;
+			while ((task = queue.poll()) != null) {
+				try {
+					task.run();
+				} catch (RuntimeException e) {
+					log.error("caught and dropped exception in task: {}",
+					        e.getMessage(), e);
+				} catch (Error e) {
+					log.error("caught error in task: {}", e.getMessage(), e);
+
+					if (error == null) {
+						error = e;
+					}
+				}
+			}
+		} finally {
+			pending.remove();
+		}
+
+		if (error != null) {
+			throw error;
+		}
+	}
+
+}
@@ -0,0 +1,210 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.apache.http.concurrent.FutureCallback;
+
+import com.clxcommunications.xms.api.Page;
+
+/**
+ * A page iterator that fetches the pages following the first one
+ * concurrently and yields them in completion order.
+ * <p>
+ * The first page is fetched on its own and gives the page size and total
+ * size, from which the number of pages is computed. The remaining pages are
+ * then fetched with at most a given number of requests outstanding.
+ * 
+ * @param <T>
+ *            the page element type
+ */
+final class UnorderedPageIterator<T> implements Iterator<Page<T>> {
+
+	/**
+	 * The outcome of a page fetch.
+	 */
+	private static final class Completion<T> {
+
+		final Page<T> page;
+
+		final Exception exception;
+
+		Completion(Page<T> page, Exception exception) {
+			this.page = page;
+			this.exception = exception;
+		}
+
+	}
+
+	private final PagedFetcher<T> fetcher;
+
+	private final int concurrency;
+
+	private final BlockingQueue<Completion<T>> completions =
+	        new LinkedBlockingQueue<Completion<T>>();
+
+	private final FutureCallback<Page<T>> callback =
+	        new FutureCallback<Page<T>>() {
+
+		        @Override
+		        public void completed(Page<T> result) {
+			        completions.add(new Completion<T>(result, null));
+		        }
+
+		        @Override
+		        public void failed(Exception e) {
+			        completions.add(new Completion<T>(null, e));
+		        }
+
+		        @Override
+		        public void cancelled() {
+			        completions.add(new Completion<T>(null,
+			                new CancellationException()));
+		        }
+
+	        };
+
+	/**
+	 * The number of pages to deliver, or -1 before the first page is fetched.
+	 */
+	private int pageCount = -1;
+
+	private int delivered = 0;
+
+	private int nextRequest = 1;
+
+	/**
+	 * Whether a page fetch has failed. No further pages are delivered after a
+	 * failure.
+	 */
+	private boolean failed = false;
+
+	UnorderedPageIterator(PagedFetcher<T> fetcher, int concurrency) {
+		this.fetcher = fetcher;
+		this.concurrency = concurrency;
+	}
+
+	@Override
+	public boolean hasNext() {
+		return !failed && (pageCount < 0 || delivered < pageCount);
+	}
+
+	@Override
+	public Page<T> next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+
+		Page<T> page;
+
+		if (pageCount < 0) {
+			page = firstPage();
+		} else {
+			page = takeCompleted();
+
+			// Keep the window full.
+			request();
+		}
+
+		delivered++;
+
+		return page;
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	private Page<T> firstPage() {
+		Page<T> page;
+
+		try {
+			page = fetcher.fetchAsync(0, null).get();
+		} catch (InterruptedException e) {
+			throw interrupted(e);
+		} catch (ExecutionException e) {
+			throw failed(e.getCause());
+		}
+
+		if (page.size() == 0 || page.size() >= page.totalSize()) {
+			pageCount = 1;
+		} else {
+			long count = (page.totalSize() + (long) page.size() - 1)
+			        / page.size();
+			pageCount = (int) Math.min(count, Integer.MAX_VALUE);
+		}
+
+		for (int i = 0; i < concurrency; i++) {
+			request();
+		}
+
+		return page;
+	}
+
+	/**
+	 * Requests the next page, if any pages remain to be requested.
+	 */
+	private void request() {
+		if (nextRequest < pageCount) {
+			fetcher.fetchAsync(nextRequest++, callback);
+		}
+	}
+
+	private Page<T> takeCompleted() {
+		Completion<T> completion;
+
+		try {
+			completion = completions.take();
+		} catch (InterruptedException e) {
+			throw interrupted(e);
+		}
+
+		if (completion.exception != null) {
+			// Stop issuing requests for the remaining pages.
+			nextRequest = pageCount;
+			failed = true;
+			throw failed(completion.exception);
+		}
+
+		return completion.page;
+	}
+
+	private static RuntimeApiException interrupted(InterruptedException e) {
+		// Interrupt the thread to let upstream code know.
+		Thread.currentThread().interrupt();
+		return new RuntimeApiException(new ConcurrentException(e));
+	}
+
+	private static RuntimeApiException failed(Throwable e) {
+		try {
+			throw Utils.unwrapExecutionException(new ExecutionException(e));
+		} catch (ApiException einner) {
+			return new RuntimeApiException(einner);
+		}
+	}
+
+}
@@ -118,10 +118,15 @@ public final class Utils {
 	 *             if the server refused access
 	 * @throws NotFoundException
 	 *             if the desired resource was not found
+	 * @throws RateLimitExceededException
+	 *             if the client side rate limiter rejected the request
+	 * @throws CircuitOpenException
+	 *             if the circuit breaker of the endpoint family was open
 	 */
 	static ConcurrentException unwrapExecutionException(ExecutionException e)
 	        throws ErrorResponseException, UnexpectedResponseException,
-	        UnauthorizedException, NotFoundException {
+	        UnauthorizedException, NotFoundException,
+	        RateLimitExceededException, CircuitOpenException {
 		if (e.getCause() instanceof RuntimeException) {
 			throw (RuntimeException) e.getCause();
 		} else if (e.getCause() instanceof Error) {
@@ -134,6 +139,10 @@ public final class Utils {
 			throw (UnexpectedResponseException) e.getCause();
 		} else if (e.getCause() instanceof UnauthorizedException) {
 			throw (UnauthorizedException) e.getCause();
+		} else if (e.getCause() instanceof RateLimitExceededException) {
+			throw (RateLimitExceededException) e.getCause();
+		} else if (e.getCause() instanceof CircuitOpenException) {
+			throw (CircuitOpenException) e.getCause();
 		} else {
 			return new ConcurrentException(e.getCause());
 		}
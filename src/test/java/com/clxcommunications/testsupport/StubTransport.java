@@ -0,0 +1,277 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.testsupport;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.nio.protocol.HttpAsyncResponseConsumer;
+
+import com.clxcommunications.xms.ApiConnection;
+import com.clxcommunications.xms.ApiTransport;
+
+/**
+ * A transport that never touches the network. Each request is handed to a
+ * {@link Handler} that decides its outcome. The requests and their futures are
+ * recorded so that tests may inspect or complete them later.
+ */
+public final class StubTransport implements ApiTransport {
+
+	/**
+	 * Decides the outcome of the requests given to a stub transport.
+	 */
+	public interface Handler {
+
+		/**
+		 * Handles a request. The future may be completed or failed right away
+		 * or be left outstanding. A runtime exception thrown by this method is
+		 * thrown from {@link ApiTransport#execute}.
+		 * 
+		 * @param index
+		 *            the zero based index of the request
+		 * @param request
+		 *            the request
+		 * @param future
+		 *            the future of the request
+		 */
+		void handle(int index, HttpUriRequest request, BasicFuture<?> future);
+
+	}
+
+	/**
+	 * A handler that leaves every request outstanding.
+	 */
+	private static final Handler PENDING = new Handler() {
+
+		@Override
+		public void handle(int index, HttpUriRequest request,
+		        BasicFuture<?> future) {
+		}
+
+	};
+
+	private final Handler handler;
+
+	private final AtomicInteger executions = new AtomicInteger();
+
+	private final List<HttpUriRequest> requests =
+	        new CopyOnWriteArrayList<HttpUriRequest>();
+
+	private final List<BasicFuture<?>> futures =
+	        new CopyOnWriteArrayList<BasicFuture<?>>();
+
+	private volatile boolean started = false;
+
+	private volatile boolean closed = false;
+
+	/**
+	 * Creates a transport leaving every request outstanding.
+	 */
+	public StubTransport() {
+		this(PENDING);
+	}
+
+	/**
+	 * Creates a transport handling requests using the given handler.
+	 * 
+	 * @param handler
+	 *            the request handler
+	 */
+	public StubTransport(Handler handler) {
+		this.handler = handler;
+	}
+
+	/**
+	 * Returns a handler that leaves every request outstanding.
+	 * 
+	 * @return a non-null handler
+	 */
+	@Nonnull
+	public static Handler pending() {
+		return PENDING;
+	}
+
+	/**
+	 * Returns a handler that fails the first requests with the given failure
+	 * and completes the remaining requests with a <code>null</code> result.
+	 * 
+	 * @param failures
+	 *            the number of requests to fail
+	 * @param failure
+	 *            the failure
+	 * @return a non-null handler
+	 */
+	@Nonnull
+	public static Handler failing(final int failures, final Exception failure) {
+		return new Handler() {
+
+			@Override
+			public void handle(int index, HttpUriRequest request,
+			        BasicFuture<?> future) {
+				if (index < failures) {
+					future.failed(failure);
+				} else {
+					future.completed(null);
+				}
+			}
+
+		};
+	}
+
+	/**
+	 * Returns a handler that throws the given exception for all requests
+	 * following the first ones, which are handled by the given handler.
+	 * 
+	 * @param handler
+	 *            the handler of the first requests
+	 * @param count
+	 *            the number of requests to give to the handler
+	 * @param thrown
+	 *            the exception to throw
+	 * @return a non-null handler
+	 */
+	@Nonnull
+	public static Handler throwingAfter(final Handler handler, final int count,
+	        final RuntimeException thrown) {
+		return new Handler() {
+
+			@Override
+			public void handle(int index, HttpUriRequest request,
+			        BasicFuture<?> future) {
+				if (index >= count) {
+					throw thrown;
+				}
+
+				handler.handle(index, request, future);
+			}
+
+		};
+	}
+
+	/**
+	 * Returns a builder of connections using this transport, with the token
+	 * and service plan already set.
+	 * 
+	 * @return a non-null connection builder
+	 */
+	@Nonnull
+	public ApiConnection.Builder connectionBuilder() {
+		return ApiConnection.builder()
+		        .token("token")
+		        .servicePlanId("spid")
+		        .transport(this);
+	}
+
+	@Override
+	public void start() {
+		started = true;
+	}
+
+	@Override
+	public void close() throws IOException {
+		closed = true;
+	}
+
+	@Override
+	public <T> Future<T> execute(HttpUriRequest request,
+	        HttpAsyncResponseConsumer<T> consumer,
+	        FutureCallback<T> callback) {
+		int index = executions.getAndIncrement();
+		BasicFuture<T> future = new BasicFuture<T>(callback);
+
+		// Recorded before handling since handling may send further requests.
+		synchronized (this) {
+			requests.add(request);
+			futures.add(future);
+		}
+
+		try {
+			handler.handle(index, request, future);
+		} catch (RuntimeException e) {
+			synchronized (this) {
+				int i = futures.indexOf(future);
+				futures.remove(i);
+				requests.remove(i);
+			}
+
+			throw e;
+		}
+
+		return future;
+	}
+
+	/**
+	 * The number of calls to {@link #execute}, including calls that threw.
+	 * 
+	 * @return a non-negative number
+	 */
+	public int executions() {
+		return executions.get();
+	}
+
+	/**
+	 * The requests accepted by this transport, in the order they were sent.
+	 * 
+	 * @return a non-null list
+	 */
+	@Nonnull
+	public List<HttpUriRequest> requests() {
+		return requests;
+	}
+
+	/**
+	 * The futures of the requests accepted by this transport, in the order
+	 * they were sent. Completing or failing a future invokes the callback of
+	 * its request.
+	 * 
+	 * @return a non-null list
+	 */
+	@Nonnull
+	public List<BasicFuture<?>> futures() {
+		return futures;
+	}
+
+	/**
+	 * Whether this transport has been started.
+	 * 
+	 * @return <code>true</code> if started
+	 */
+	public boolean isStarted() {
+		return started;
+	}
+
+	/**
+	 * Whether this transport has been closed.
+	 * 
+	 * @return <code>true</code> if closed
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+
+}
@@ -20,6 +20,7 @@
 package com.clxcommunications.testsupport;
 
 import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.Nonnull;
@@ -38,6 +39,11 @@ public final class TestUtils {
 
 	public static final Charset UTF_8 = Charset.forName("UTF-8");
 
+	/**
+	 * The number of nanoseconds in a millisecond.
+	 */
+	public static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
 	/**
 	 * Field used by, e.g., {@link #freshServicePlanId()} and
 	 * {@link #freshBatchId()} to generate unique values.
@@ -43,7 +43,9 @@ import org.apache.http.nio.protocol.HttpAsyncResponseConsumer;
 import org.apache.http.protocol.HttpContext;
 import org.junit.Test;
 
+import com.clxcommunications.testsupport.StubTransport;
 import com.clxcommunications.testsupport.TestUtils;
+import com.clxcommunications.xms.api.BatchId;
 
 public class ApiConnectionTest {
 
@@ -135,6 +137,19 @@ public class ApiConnectionTest {
 		        .build();
 	}
 
+	@Test(expected = IllegalStateException.class)
+	public void rejectsHttpClientWithTransport() throws Exception {
+		new StubTransport().connectionBuilder()
+		        .httpClient(new DummyClient() {
+
+			        @Override
+			        public void close() throws IOException {
+			        }
+
+		        })
+		        .build();
+	}
+
 	@Test
 	public void closesInternalHttpClient() throws Exception {
 		ApiConnection conn = ApiConnection.builder()
@@ -198,4 +213,31 @@ public class ApiConnectionTest {
 		assertThat(client.isRunning(), is(true));
 	}
 
+	@Test
+	public void usesCustomTransport() throws Exception {
+		StubTransport transport = new StubTransport();
+
+		ApiConnection conn = transport.connectionBuilder()
+		        .endpoint("https://localhost:3000/basepath")
+		        .build();
+
+		conn.start();
+
+		assertThat(transport.isStarted(), is(true));
+
+		conn.fetchBatchAsync(BatchId.of("batchid"), null);
+
+		HttpUriRequest sent = transport.requests().get(0);
+
+		assertThat(sent.getMethod(), is("GET"));
+		assertThat(sent.getURI(), is(URI.create(
+		        "https://localhost:3000/basepath/v1/spid/batches/batchid")));
+		assertThat(sent.getFirstHeader("Authorization").getValue(),
+		        is("Bearer token"));
+
+		conn.close();
+
+		assertThat(transport.isClosed(), is(true));
+	}
+
 }
@@ -0,0 +1,117 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+import org.threeten.bp.Duration;
+
+public class ApiHttpAsyncClientTest {
+
+	@Test
+	public void canBuildCustomizedClient() throws Exception {
+		ApiHttpAsyncClient client = ApiHttpAsyncClient.builder()
+		        .maxConnections(200)
+		        .maxConnectionsPerRoute(200)
+		        .ioThreadCount(2)
+		        .connectTimeout(Duration.ofSeconds(5))
+		        .socketTimeout(Duration.ofSeconds(10))
+		        .connectionRequestTimeout(Duration.ofSeconds(1))
+		        .tcpNoDelay(true)
+		        .sendBufferSize(64 * 1024)
+		        .receiveBufferSize(64 * 1024)
+		        .build();
+
+		try {
+			assertThat(client.isRunning(), is(false));
+
+			client.start();
+
+			assertThat(client.isRunning(), is(true));
+		} finally {
+			client.close();
+		}
+
+		assertThat(client.isRunning(), is(false));
+	}
+
+	@Test
+	public void builtClientIsExternal() throws Exception {
+		ApiHttpAsyncClient client = ApiHttpAsyncClient.builder().build();
+
+		try {
+			assertThat(client.isStartedInternally(), is(false));
+		} finally {
+			client.close();
+		}
+	}
+
+	@Test
+	public void perRouteMaximumDefaultsToTotalMaximum() {
+		ApiHttpAsyncClient.Builder builder =
+		        ApiHttpAsyncClient.builder().maxConnections(200);
+
+		assertThat(builder.effectiveMaxConnectionsPerRoute(), is(200));
+	}
+
+	@Test
+	public void perRouteMaximumDefaultsToDefaultTotalMaximum() {
+		ApiHttpAsyncClient.Builder builder = ApiHttpAsyncClient.builder();
+
+		assertThat(builder.effectiveMaxConnectionsPerRoute(), is(10));
+	}
+
+	@Test
+	public void explicitPerRouteMaximumOverridesTotalMaximum() {
+		ApiHttpAsyncClient.Builder builder = ApiHttpAsyncClient.builder()
+		        .maxConnectionsPerRoute(50)
+		        .maxConnections(200);
+
+		assertThat(builder.effectiveMaxConnectionsPerRoute(), is(50));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsNonPositiveMaxConnections() {
+		ApiHttpAsyncClient.builder().maxConnections(0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsNonPositiveIoThreadCount() {
+		ApiHttpAsyncClient.builder().ioThreadCount(-1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsNegativeTimeout() {
+		ApiHttpAsyncClient.builder().socketTimeout(Duration.ofMillis(-1));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsNegativeBufferSize() {
+		ApiHttpAsyncClient.builder().sendBufferSize(-1);
+	}
+
+	@Test(expected = NullPointerException.class)
+	public void rejectsNullKeepAliveStrategy() {
+		ApiHttpAsyncClient.builder().keepAliveStrategy(null);
+	}
+
+}
@@ -0,0 +1,471 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.concurrent.FutureCallback;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.threeten.bp.OffsetDateTime;
+
+import com.clxcommunications.xms.api.ApiError;
+import com.clxcommunications.xms.api.BatchId;
+import com.clxcommunications.xms.api.MtBatchSmsCreate;
+import com.clxcommunications.xms.api.MtBatchSmsResult;
+import com.clxcommunications.xms.api.MtBatchTextSmsCreate;
+import com.clxcommunications.xms.api.MtBatchTextSmsResult;
+
+public class BatchOutboxTest {
+
+	/**
+	 * An outbox that records the created batches. Unless held, the batches
+	 * are completed at once.
+	 */
+	private static class RecordingOutbox extends BatchOutbox {
+
+		final List<MtBatchSmsCreate> created = Collections
+		        .synchronizedList(new ArrayList<MtBatchSmsCreate>());
+
+		final List<FutureCallback<MtBatchSmsResult>> held =
+		        Collections.synchronizedList(
+		                new ArrayList<FutureCallback<MtBatchSmsResult>>());
+
+		volatile boolean hold = false;
+
+		volatile Exception failure = null;
+
+		volatile RuntimeException thrown = null;
+
+		RecordingOutbox(File directory, int segmentSize) {
+			super(null, directory, segmentSize);
+		}
+
+		@Override
+		void createBatch(MtBatchSmsCreate sms,
+		        FutureCallback<MtBatchSmsResult> callback) {
+			if (thrown != null) {
+				throw thrown;
+			}
+
+			created.add(sms);
+
+			if (hold) {
+				held.add(callback);
+			} else if (failure != null) {
+				callback.failed(failure);
+			} else {
+				callback.completed(result(sms, created.size()));
+			}
+		}
+
+	}
+
+	@Rule
+	public final TemporaryFolder tmp = new TemporaryFolder();
+
+	private final List<RecordingOutbox> opened =
+	        new ArrayList<RecordingOutbox>();
+
+	@After
+	public void tearDown() {
+		for (RecordingOutbox outbox : opened) {
+			outbox.close();
+		}
+	}
+
+	private RecordingOutbox open(File directory, int segmentSize)
+	        throws IOException {
+		RecordingOutbox outbox = new RecordingOutbox(directory, segmentSize);
+		opened.add(outbox);
+		outbox.recover();
+		return outbox;
+	}
+
+	private static MtBatchTextSmsCreate sms(String body) {
+		return ClxApi.batchTextSms()
+		        .sender("12345")
+		        .addRecipient("987654321")
+		        .body(body)
+		        .build();
+	}
+
+	private static MtBatchSmsResult result(MtBatchSmsCreate sms, int n) {
+		MtBatchTextSmsCreate text = (MtBatchTextSmsCreate) sms;
+		OffsetDateTime time = OffsetDateTime.now();
+
+		return MtBatchTextSmsResult.builder()
+		        .sender(text.sender())
+		        .recipients(text.recipients())
+		        .body(text.body())
+		        .canceled(false)
+		        .id(BatchId.of("batch" + n))
+		        .createdAt(time)
+		        .modifiedAt(time)
+		        .build();
+	}
+
+	private static String body(MtBatchSmsCreate sms) {
+		return ((MtBatchTextSmsCreate) sms).body();
+	}
+
+	private static void awaitSent(RecordingOutbox outbox, int count)
+	        throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10000;
+
+		while (outbox.held.size() < count
+		        && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+
+		assertThat(outbox.held.size(), is(count));
+	}
+
+	private static void complete(RecordingOutbox outbox, int i) {
+		outbox.held.get(i).completed(result(outbox.created.get(i), i + 1));
+	}
+
+	private File[] segments(File directory) {
+		File[] files = directory.listFiles();
+		return files == null ? new File[0] : files;
+	}
+
+	@Test
+	public void createsSubmittedBatch() throws Exception {
+		File dir = tmp.newFolder();
+		RecordingOutbox outbox = open(dir, 4096);
+
+		Future<MtBatchSmsResult> future = outbox.submit(sms("hi"), null);
+
+		assertThat(future.get(10, TimeUnit.SECONDS).id(),
+		        is(BatchId.of("batch1")));
+		assertThat(outbox.undoneCount(), is(0));
+
+		outbox.close();
+
+		RecordingOutbox reopened = open(dir, 4096);
+
+		assertThat(reopened.undoneCount(), is(0));
+		assertThat(reopened.replay(null).isEmpty(), is(true));
+		assertThat(reopened.created.isEmpty(), is(true));
+	}
+
+	@Test
+	public void replaysUndoneBatchesAfterReopen() throws Exception {
+		File dir = tmp.newFolder();
+		RecordingOutbox outbox = open(dir, 4096);
+		outbox.hold = true;
+
+		outbox.submit(sms("first"), null);
+		outbox.submit(sms("second"), null);
+		outbox.submit(sms("third"), null);
+		outbox.close();
+
+		assertThat(outbox.held.size(), is(3));
+		outbox.held.get(1).completed(result(outbox.created.get(1), 2));
+
+		RecordingOutbox reopened = open(dir, 4096);
+
+		assertThat(reopened.undoneCount(), is(2));
+
+		List<Future<MtBatchSmsResult>> futures = reopened.replay(null);
+
+		assertThat(futures.size(), is(2));
+		for (Future<MtBatchSmsResult> future : futures) {
+			future.get(10, TimeUnit.SECONDS);
+		}
+
+		assertThat(reopened.created.size(), is(2));
+		assertThat(body(reopened.created.get(0)), is("first"));
+		assertThat(body(reopened.created.get(1)), is("third"));
+		assertThat(reopened.undoneCount(), is(0));
+		assertThat(reopened.replay(null).isEmpty(), is(true));
+	}
+
+	@Test
+	public void rotatesAndDeletesDoneSegments() throws Exception {
+		File dir = tmp.newFolder();
+		RecordingOutbox outbox = open(dir, 256);
+
+		List<Future<MtBatchSmsResult>> futures =
+		        new ArrayList<Future<MtBatchSmsResult>>();
+		for (int i = 0; i < 20; i++) {
+			futures.add(outbox.submit(sms("message " + i), null));
+		}
+
+		for (Future<MtBatchSmsResult> future : futures) {
+			future.get(10, TimeUnit.SECONDS);
+		}
+
+		outbox.close();
+
+		assertThat(outbox.created.size(), is(20));
+		assertThat(segments(dir).length, is(1));
+
+		RecordingOutbox reopened = open(dir, 256);
+
+		assertThat(reopened.undoneCount(), is(0));
+	}
+
+	@Test
+	public void keepsDoneMarksOfOlderSegments() throws Exception {
+		File dir = tmp.newFolder();
+		RecordingOutbox outbox = open(dir, 256);
+		outbox.hold = true;
+
+		for (int i = 0; i < 10; i++) {
+			outbox.submit(sms("message " + i), null);
+		}
+
+		awaitSent(outbox, 10);
+
+		// Leave the first batch undone, its segment must then be kept along
+		// with all later segments since they hold the marks of the others.
+		for (int i = 9; i > 0; i--) {
+			complete(outbox, i);
+		}
+
+		for (int i = 10; i < 20; i++) {
+			outbox.submit(sms("message " + i), null);
+			awaitSent(outbox, i + 1);
+			complete(outbox, i);
+		}
+
+		outbox.close();
+
+		RecordingOutbox reopened = open(dir, 256);
+
+		assertThat(reopened.undoneCount(), is(1));
+
+		reopened.replay(null).get(0).get(10, TimeUnit.SECONDS);
+
+		assertThat(reopened.created.size(), is(1));
+		assertThat(body(reopened.created.get(0)), is("message 0"));
+	}
+
+	@Test
+	public void storesBatchLargerThanSegment() throws Exception {
+		File dir = tmp.newFolder();
+		RecordingOutbox outbox = open(dir, 64);
+		outbox.hold = true;
+
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			sb.append("long message ");
+		}
+
+		outbox.submit(sms(sb.toString()), null);
+		outbox.close();
+
+		RecordingOutbox reopened = open(dir, 64);
+		reopened.replay(null).get(0).get(10, TimeUnit.SECONDS);
+
+		assertThat(body(reopened.created.get(0)), is(sb.toString()));
+	}
+
+	@Test
+	public void ignoresTornRecord() throws Exception {
+		File dir = tmp.newFolder();
+		RecordingOutbox outbox = open(dir, 4096);
+		outbox.hold = true;
+
+		outbox.submit(sms("kept"), null);
+		outbox.close();
+
+		// A segment whose first record has a bad checksum.
+		FileOutputStream out = new FileOutputStream(
+		        new File(dir, "outbox-0000000000000099.log"));
+		try {
+			byte[] garbage = new byte[64];
+			garbage[3] = 40;
+			garbage[4] = 1;
+			garbage[20] = 42;
+			out.write(garbage);
+		} finally {
+			out.close();
+		}
+
+		RecordingOutbox reopened = open(dir, 4096);
+
+		assertThat(reopened.undoneCount(), is(1));
+
+		reopened.submit(sms("new"), null).get(10, TimeUnit.SECONDS);
+		reopened.replay(null).get(0).get(10, TimeUnit.SECONDS);
+
+		assertThat(body(reopened.created.get(0)), is("new"));
+		assertThat(body(reopened.created.get(1)), is("kept"));
+	}
+
+	@Test
+	public void forgetsRejectedBatch() throws Exception {
+		File dir = tmp.newFolder();
+		RecordingOutbox outbox = open(dir, 4096);
+		outbox.failure =
+		        new ErrorResponseException(ApiError.of("code", "text"));
+
+		try {
+			outbox.submit(sms("hi"), null).get(10, TimeUnit.SECONDS);
+			fail("expected exception");
+		} catch (ExecutionException e) {
+			assertThat(e.getCause() instanceof ErrorResponseException,
+			        is(true));
+		}
+
+		outbox.close();
+
+		assertThat(open(dir, 4096).undoneCount(), is(0));
+	}
+
+	@Test
+	public void keepsBatchFailingWithIoError() throws Exception {
+		File dir = tmp.newFolder();
+		RecordingOutbox outbox = open(dir, 4096);
+		outbox.failure = new IOException("connection reset");
+
+		try {
+			outbox.submit(sms("hi"), null).get(10, TimeUnit.SECONDS);
+			fail("expected exception");
+		} catch (ExecutionException e) {
+			assertThat(e.getCause() instanceof IOException, is(true));
+		}
+
+		outbox.close();
+
+		assertThat(open(dir, 4096).undoneCount(), is(1));
+	}
+
+	@Test
+	public void replaysBatchFailingWithIoError() throws Exception {
+		File dir = tmp.newFolder();
+		RecordingOutbox outbox = open(dir, 4096);
+		outbox.failure = new IOException("connection reset");
+
+		try {
+			outbox.submit(sms("hi"), null).get(10, TimeUnit.SECONDS);
+			fail("expected exception");
+		} catch (ExecutionException e) {
+			assertThat(e.getCause() instanceof IOException, is(true));
+		}
+
+		outbox.failure = null;
+
+		List<Future<MtBatchSmsResult>> replayed = outbox.replay(null);
+
+		assertThat(replayed.size(), is(1));
+		assertThat(replayed.get(0).get(10, TimeUnit.SECONDS).id(),
+		        is(BatchId.of("batch2")));
+		assertThat(outbox.undoneCount(), is(0));
+		assertThat(outbox.replay(null).isEmpty(), is(true));
+	}
+
+	@Test
+	public void replaysBatchesAfterSendThrew() throws Exception {
+		File dir = tmp.newFolder();
+		RecordingOutbox outbox = open(dir, 4096);
+		outbox.thrown = new IllegalStateException("connection closed");
+
+		try {
+			outbox.submit(sms("hi"), null).get(10, TimeUnit.SECONDS);
+			fail("expected exception");
+		} catch (ExecutionException e) {
+			assertThat(e.getCause() == outbox.thrown, is(true));
+		}
+
+		outbox.thrown = null;
+
+		List<Future<MtBatchSmsResult>> replayed = outbox.replay(null);
+
+		assertThat(replayed.size(), is(1));
+		replayed.get(0).get(10, TimeUnit.SECONDS);
+
+		assertThat(body(outbox.created.get(0)), is("hi"));
+		assertThat(outbox.undoneCount(), is(0));
+	}
+
+	@Test
+	public void doesNotReplayBatchBeingSent() throws Exception {
+		File dir = tmp.newFolder();
+		RecordingOutbox outbox = open(dir, 4096);
+		outbox.hold = true;
+
+		outbox.submit(sms("hi"), null);
+		awaitSent(outbox, 1);
+
+		assertThat(outbox.replay(null).isEmpty(), is(true));
+
+		complete(outbox, 0);
+
+		assertThat(outbox.undoneCount(), is(0));
+	}
+
+	@Test
+	public void failsAllBatchesWhenSendThrows() throws Exception {
+		File dir = tmp.newFolder();
+		RecordingOutbox outbox = open(dir, 4096);
+		outbox.thrown = new IllegalStateException("connection closed");
+
+		List<Future<MtBatchSmsResult>> futures =
+		        new ArrayList<Future<MtBatchSmsResult>>();
+		for (int i = 0; i < 3; i++) {
+			futures.add(outbox.submit(sms("message " + i), null));
+		}
+
+		for (Future<MtBatchSmsResult> future : futures) {
+			try {
+				future.get(10, TimeUnit.SECONDS);
+				fail("expected exception");
+			} catch (ExecutionException e) {
+				assertThat(e.getCause() == outbox.thrown, is(true));
+			}
+		}
+
+		outbox.close();
+
+		assertThat(open(dir, 4096).undoneCount(), is(3));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void rejectsSubmitWhenClosed() throws Exception {
+		RecordingOutbox outbox = open(tmp.newFolder(), 4096);
+		outbox.close();
+
+		outbox.submit(sms("hi"), null);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsTinySegmentSize() throws Exception {
+		new RecordingOutbox(tmp.newFolder(), 8);
+	}
+
+}
@@ -77,6 +77,22 @@ public class ByteInOutStreamTest {
 		bios.close();
 	}
 
+	@Property
+	public void canGrowBeyondGivenArray(byte[] bytes) throws Exception {
+		byte[] initial = new byte[4];
+		ByteInOutStream bios = new ByteInOutStream(initial);
+
+		bios.write(bytes);
+
+		assertThat(bios.toByteArray(), is(bytes));
+
+		if (bytes.length <= initial.length) {
+			assertThat(bios.buffer() == initial, is(true));
+		}
+
+		bios.close();
+	}
+
 	private void doWriteByteBufferTest(ByteBuffer buf, byte[] bytes)
 	        throws IOException {
 		buf.put(bytes);
@@ -0,0 +1,238 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.FutureCallback;
+import org.junit.Test;
+import org.threeten.bp.OffsetDateTime;
+
+import com.clxcommunications.xms.api.BatchId;
+import com.clxcommunications.xms.api.MtBatchTextSmsCreate;
+import com.clxcommunications.xms.api.MtBatchTextSmsResult;
+
+public class ChunkedBatchesTest {
+
+	/**
+	 * A submitter whose requests are completed by the test.
+	 */
+	private static class ManualSubmitter
+	        extends ChunkedBatches.Submitter<MtBatchTextSmsResult> {
+
+		final Map<Integer, BasicFuture<MtBatchTextSmsResult>> pending =
+		        new HashMap<Integer, BasicFuture<MtBatchTextSmsResult>>();
+
+		final List<Integer> submitted = new ArrayList<Integer>();
+
+		final List<BatchId> cancelledBatches = new ArrayList<BatchId>();
+
+		int maxPending = 0;
+
+		@Override
+		Future<MtBatchTextSmsResult> submit(int chunk,
+		        FutureCallback<MtBatchTextSmsResult> callback) {
+			BasicFuture<MtBatchTextSmsResult> future =
+			        new BasicFuture<MtBatchTextSmsResult>(callback);
+
+			submitted.add(chunk);
+			pending.put(chunk, future);
+			maxPending = Math.max(maxPending, pending.size());
+
+			return future;
+		}
+
+		@Override
+		void cancel(BatchId batchId) {
+			cancelledBatches.add(batchId);
+		}
+
+		void complete(int chunk) {
+			pending.remove(chunk).completed(result(chunk));
+		}
+
+		void fail(int chunk, Exception e) {
+			pending.remove(chunk).failed(e);
+		}
+
+	}
+
+	private static MtBatchTextSmsResult result(int chunk) {
+		OffsetDateTime time = OffsetDateTime.now();
+
+		return MtBatchTextSmsResult.builder()
+		        .sender("12345")
+		        .addRecipient("987654321")
+		        .body("body")
+		        .canceled(false)
+		        .id(BatchId.of("batch" + chunk))
+		        .createdAt(time)
+		        .modifiedAt(time)
+		        .build();
+	}
+
+	@Test
+	public void boundsChunksInFlight() throws Exception {
+		ManualSubmitter submitter = new ManualSubmitter();
+
+		ChunkedBatches<MtBatchTextSmsResult> batches =
+		        new ChunkedBatches<MtBatchTextSmsResult>(submitter, 5, 2)
+		                .start();
+
+		assertThat(submitter.submitted, is(Arrays.asList(0, 1)));
+
+		submitter.complete(1);
+		assertThat(submitter.submitted, is(Arrays.asList(0, 1, 2)));
+
+		submitter.complete(0);
+		submitter.complete(2);
+		submitter.complete(3);
+
+		assertThat(batches.isDone(), is(false));
+
+		submitter.complete(4);
+
+		assertThat(batches.isDone(), is(true));
+		assertThat(submitter.maxPending, is(2));
+		assertThat(batches.batchIds(), is(Arrays.asList(BatchId.of("batch0"),
+		        BatchId.of("batch1"), BatchId.of("batch2"),
+		        BatchId.of("batch3"), BatchId.of("batch4"))));
+	}
+
+	@Test
+	public void reportsFailedChunksAndContinues() throws Exception {
+		ManualSubmitter submitter = new ManualSubmitter();
+
+		ChunkedBatches<MtBatchTextSmsResult> batches =
+		        new ChunkedBatches<MtBatchTextSmsResult>(submitter, 3, 1)
+		                .start();
+
+		submitter.complete(0);
+		submitter.fail(1, new UnauthorizedException());
+		submitter.complete(2);
+
+		batches.await();
+
+		assertThat(batches.batchIds(),
+		        is(Arrays.asList(BatchId.of("batch0"), BatchId.of("batch2"))));
+		assertThat(batches.failures().keySet(),
+		        is(Collections.singleton(1)));
+		assertThat(batches.failures().get(1) instanceof UnauthorizedException,
+		        is(true));
+	}
+
+	@Test
+	public void handlesSynchronousCompletion() throws Exception {
+		final int chunks = 10000;
+
+		ChunkedBatches<MtBatchTextSmsResult> batches =
+		        new ChunkedBatches<MtBatchTextSmsResult>(
+		                new ChunkedBatches.Submitter<MtBatchTextSmsResult>() {
+
+			                @Override
+			                Future<MtBatchTextSmsResult> submit(int chunk,
+			                        FutureCallback<MtBatchTextSmsResult> callback) {
+				                BasicFuture<MtBatchTextSmsResult> future =
+				                        new BasicFuture<MtBatchTextSmsResult>(
+				                                callback);
+				                future.completed(result(chunk));
+				                return future;
+			                }
+
+			                @Override
+			                void cancel(BatchId batchId) {
+			                }
+
+		                }, chunks, 3).start();
+
+		assertThat(batches.isDone(), is(true));
+		assertThat(batches.results().size(), is(chunks));
+	}
+
+	@Test
+	public void cancelStopsSubmissionAndCancelsCreatedBatches()
+	        throws Exception {
+		ManualSubmitter submitter = new ManualSubmitter();
+
+		ChunkedBatches<MtBatchTextSmsResult> batches =
+		        new ChunkedBatches<MtBatchTextSmsResult>(submitter, 10, 2)
+		                .start();
+
+		submitter.complete(0);
+
+		Future<MtBatchTextSmsResult> outstanding = submitter.pending.get(1);
+		Future<MtBatchTextSmsResult> completedLater = submitter.pending.get(2);
+
+		batches.cancel();
+
+		assertThat(batches.isCancelled(), is(true));
+		assertThat(outstanding.isCancelled(), is(true));
+		assertThat(completedLater.isCancelled(), is(true));
+		assertThat(submitter.submitted, is(Arrays.asList(0, 1, 2)));
+		assertThat(submitter.cancelledBatches,
+		        is(Arrays.asList(BatchId.of("batch0"))));
+		assertThat(batches.isDone(), is(true));
+		assertThat(batches.failures().isEmpty(), is(true));
+	}
+
+	@Test
+	public void chunksRestrictRecipientsAndSubstitutions() throws Exception {
+		MtBatchTextSmsCreate sms = ClxApi.batchTextSms()
+		        .sender("12345")
+		        .addRecipient("1", "2", "3", "4", "5")
+		        .body("Hello, ${name}")
+		        .putParameter("name",
+		                ClxApi.parameterValues()
+		                        .putSubstitution("2", "Jane")
+		                        .putSubstitution("5", "John")
+		                        .defaultValue("friend")
+		                        .build())
+		        .build();
+
+		assertThat(BatchChunks.count(5, 2), is(3));
+
+		MtBatchTextSmsCreate first = BatchChunks.text(sms, 0, 2);
+		MtBatchTextSmsCreate last = BatchChunks.text(sms, 2, 2);
+
+		assertThat(first.recipients(), is(Arrays.asList("1", "2")));
+		assertThat(first.parameters().get("name").substitutions(),
+		        is(Collections.singletonMap("2", "Jane")));
+		assertThat(first.parameters().get("name").defaultValue(),
+		        is("friend"));
+		assertThat(first.body(), is(sms.body()));
+
+		assertThat(last.recipients(), is(Arrays.asList("5")));
+		assertThat(last.parameters().get("name").substitutions(),
+		        is(Collections.singletonMap("5", "John")));
+		assertThat(last.sendAt(), is(nullValue()));
+	}
+
+}
@@ -0,0 +1,179 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+import org.apache.http.nio.ContentEncoder;
+import org.junit.Test;
+
+import com.clxcommunications.xms.api.MtBatchTextSmsCreate;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+public class ChunkedJsonEntityTest {
+
+	/**
+	 * A content encoder that accepts at most a given number of bytes per
+	 * write, simulating a congested channel.
+	 */
+	private static class ThrottledEncoder implements ContentEncoder {
+
+		private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		private final int maxPerWrite;
+
+		private boolean completed = false;
+
+		ThrottledEncoder(int maxPerWrite) {
+			this.maxPerWrite = maxPerWrite;
+		}
+
+		@Override
+		public int write(ByteBuffer src) {
+			int n = Math.min(src.remaining(), maxPerWrite);
+
+			for (int i = 0; i < n; i++) {
+				out.write(src.get());
+			}
+
+			return n;
+		}
+
+		@Override
+		public void complete() {
+			completed = true;
+		}
+
+		@Override
+		public boolean isCompleted() {
+			return completed;
+		}
+
+	}
+
+	private final ApiObjectMapper json = new ApiObjectMapper(false);
+
+	private final ObjectWriter writer = json.writer();
+
+	@Test
+	public void producesSameBytesAsMapper() throws Exception {
+		MtBatchTextSmsCreate batch = bigBatch(20000);
+		byte[] expected = json.writeValueAsBytes(batch);
+
+		ChunkedJsonEntity entity = ChunkedJsonEntity.of(writer, batch);
+
+		assertThat(entity.getContentLength(), is((long) expected.length));
+
+		ThrottledEncoder encoder = new ThrottledEncoder(10000);
+
+		int calls = 0;
+		while (!encoder.isCompleted()) {
+			entity.produceContent(encoder, null);
+			calls++;
+		}
+
+		assertThat(encoder.out.toByteArray(), is(expected));
+		assertThat(calls > 1, is(true));
+	}
+
+	@Test
+	public void producesContentAgainAfterClose() throws Exception {
+		MtBatchTextSmsCreate batch = bigBatch(5000);
+		byte[] expected = json.writeValueAsBytes(batch);
+
+		ChunkedJsonEntity entity = ChunkedJsonEntity.of(writer, batch);
+
+		assertThat(entity.isRepeatable(), is(true));
+
+		for (int attempt = 0; attempt < 2; attempt++) {
+			ThrottledEncoder encoder = new ThrottledEncoder(10000);
+
+			while (!encoder.isCompleted()) {
+				entity.produceContent(encoder, null);
+			}
+
+			entity.close();
+
+			assertThat(encoder.out.toByteArray(), is(expected));
+		}
+	}
+
+	@Test
+	public void copyProducesContentIndependently() throws Exception {
+		MtBatchTextSmsCreate batch = bigBatch(5000);
+		byte[] expected = json.writeValueAsBytes(batch);
+
+		ChunkedJsonEntity entity = ChunkedJsonEntity.of(writer, batch);
+
+		// Leave the original partially produced, as by a failed exchange.
+		entity.produceContent(new ThrottledEncoder(100), null);
+
+		ChunkedJsonEntity copy = entity.copy();
+		ThrottledEncoder encoder = new ThrottledEncoder(10000);
+
+		while (!encoder.isCompleted()) {
+			copy.produceContent(encoder, null);
+
+			// A late close of the original must not affect the copy.
+			entity.close();
+		}
+
+		assertThat(encoder.out.toByteArray(), is(expected));
+		assertThat(copy.getContentLength(), is((long) expected.length));
+	}
+
+	@Test
+	public void canWriteToOutputStream() throws Exception {
+		MtBatchTextSmsCreate batch = bigBatch(1000);
+		byte[] expected = json.writeValueAsBytes(batch);
+
+		ChunkedJsonEntity entity = ChunkedJsonEntity.of(writer, batch);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		entity.writeTo(out);
+
+		assertThat(out.toByteArray(), is(expected));
+	}
+
+	@Test
+	public void hasJsonContentType() throws Exception {
+		ChunkedJsonEntity entity = ChunkedJsonEntity.of(writer, bigBatch(1));
+
+		assertThat(entity.getContentType().getValue(),
+		        is("application/json; charset=UTF-8"));
+	}
+
+	private static MtBatchTextSmsCreate bigBatch(int recipients) {
+		MtBatchTextSmsCreate.Builder builder = ClxApi.batchTextSms();
+
+		builder.sender("12345").body("Hello, world!");
+
+		for (int i = 0; i < recipients; i++) {
+			builder.addRecipient(String.valueOf(46700000000L + i));
+		}
+
+		return builder.build();
+	}
+
+}
@@ -0,0 +1,189 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import static com.clxcommunications.testsupport.TestUtils.MS;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.http.HttpVersion;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Test;
+import org.threeten.bp.Duration;
+
+import com.clxcommunications.testsupport.StubTransport;
+import com.clxcommunications.xms.CircuitBreaker.State;
+import com.clxcommunications.xms.api.BatchId;
+import com.clxcommunications.xms.api.GroupId;
+
+public class CircuitBreakerTest {
+
+	private static final CircuitBreakerPolicy POLICY =
+	        CircuitBreakerPolicy.builder()
+	                .failureThreshold(3)
+	                .openDuration(Duration.ofMillis(1000))
+	                .halfOpenProbes(2)
+	                .build();
+
+	private static CircuitBreaker breaker() {
+		return new CircuitBreaker(EndpointFamily.BATCHES, POLICY);
+	}
+
+	private static void failRepeatedly(CircuitBreaker breaker, int times,
+	        long now) {
+		for (int i = 0; i < times; i++) {
+			breaker.failed(breaker.acquire(now), now);
+		}
+	}
+
+	@Test
+	public void opensAfterConsecutiveFailures() throws Exception {
+		CircuitBreaker breaker = breaker();
+
+		failRepeatedly(breaker, 2, 0);
+		assertThat(breaker.state(), is(State.CLOSED));
+
+		failRepeatedly(breaker, 1, 0);
+		assertThat(breaker.state(), is(State.OPEN));
+		assertThat(breaker.acquire(999 * MS), is(CircuitBreaker.REJECTED));
+	}
+
+	@Test
+	public void successResetsFailureCount() throws Exception {
+		CircuitBreaker breaker = breaker();
+
+		failRepeatedly(breaker, 2, 0);
+		breaker.succeeded(breaker.acquire(0));
+		failRepeatedly(breaker, 2, 0);
+
+		assertThat(breaker.state(), is(State.CLOSED));
+	}
+
+	@Test
+	public void closesAfterSuccessfulProbes() throws Exception {
+		CircuitBreaker breaker = breaker();
+
+		failRepeatedly(breaker, 3, 0);
+
+		int probe1 = breaker.acquire(1000 * MS);
+		int probe2 = breaker.acquire(1000 * MS);
+
+		assertThat(probe1, is(CircuitBreaker.PROBE));
+		assertThat(probe2, is(CircuitBreaker.PROBE));
+		assertThat(breaker.state(), is(State.HALF_OPEN));
+		assertThat(breaker.acquire(1000 * MS), is(CircuitBreaker.REJECTED));
+
+		breaker.succeeded(probe1);
+		assertThat(breaker.state(), is(State.HALF_OPEN));
+
+		breaker.succeeded(probe2);
+		assertThat(breaker.state(), is(State.CLOSED));
+		assertThat(breaker.acquire(1000 * MS), is(CircuitBreaker.REGULAR));
+	}
+
+	@Test
+	public void reopensOnFailedProbe() throws Exception {
+		CircuitBreaker breaker = breaker();
+
+		failRepeatedly(breaker, 3, 0);
+		breaker.failed(breaker.acquire(1000 * MS), 1000 * MS);
+
+		assertThat(breaker.state(), is(State.OPEN));
+		assertThat(breaker.acquire(1999 * MS), is(CircuitBreaker.REJECTED));
+		assertThat(breaker.acquire(2000 * MS), is(CircuitBreaker.PROBE));
+	}
+
+	@Test
+	public void ignoredProbeFreesSlot() throws Exception {
+		CircuitBreaker breaker = breaker();
+
+		failRepeatedly(breaker, 3, 0);
+		breaker.acquire(1000 * MS);
+		breaker.ignored(breaker.acquire(1000 * MS));
+
+		assertThat(breaker.acquire(1000 * MS), is(CircuitBreaker.PROBE));
+	}
+
+	@Test
+	public void lateRegularOutcomeDoesNotAffectProbes() throws Exception {
+		CircuitBreaker breaker = breaker();
+
+		int regular = breaker.acquire(0);
+		failRepeatedly(breaker, 3, 0);
+		int probe = breaker.acquire(1000 * MS);
+
+		breaker.failed(regular, 1000 * MS);
+		assertThat(breaker.state(), is(State.HALF_OPEN));
+
+		breaker.succeeded(probe);
+		breaker.succeeded(breaker.acquire(1000 * MS));
+		assertThat(breaker.state(), is(State.CLOSED));
+	}
+
+	@Test
+	public void classifiesFailures() throws Exception {
+		assertThat(CircuitBreaker.isFailure(new SocketTimeoutException()),
+		        is(true));
+		assertThat(CircuitBreaker.isFailure(new UnexpectedResponseException(
+		        new BasicHttpResponse(HttpVersion.HTTP_1_1, 502, "Error"))),
+		        is(true));
+		assertThat(CircuitBreaker.isFailure(new UnexpectedResponseException(
+		        new BasicHttpResponse(HttpVersion.HTTP_1_1, 429, "Error"))),
+		        is(false));
+		assertThat(CircuitBreaker.isFailure(new NotFoundException("/")),
+		        is(false));
+	}
+
+	@Test
+	public void connectionFailsFastWhileOpen() throws Exception {
+		StubTransport transport = new StubTransport(StubTransport
+		        .failing(Integer.MAX_VALUE, new SocketTimeoutException()));
+
+		ApiConnection conn = transport.connectionBuilder()
+		        .circuitBreakerPolicy(POLICY)
+		        .build();
+
+		for (int i = 0; i < 3; i++) {
+			conn.fetchBatchAsync(BatchId.of("batch"), null);
+		}
+
+		assertThat(transport.executions(), is(3));
+
+		try {
+			conn.fetchBatchAsync(BatchId.of("batch"), null).get();
+			fail("expected open circuit");
+		} catch (ExecutionException e) {
+			assertThat(e.getCause() instanceof CircuitOpenException, is(true));
+			assertThat(((CircuitOpenException) e.getCause())
+			        .getEndpointFamily(), is(EndpointFamily.BATCHES));
+		}
+
+		assertThat(transport.executions(), is(3));
+
+		// Other endpoint families are unaffected.
+		conn.fetchGroupAsync(GroupId.of("group"), null);
+		assertThat(transport.executions(), is(4));
+	}
+
+}
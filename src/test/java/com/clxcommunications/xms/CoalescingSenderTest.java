@@ -0,0 +1,243 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.FutureCallback;
+import org.junit.After;
+import org.junit.Test;
+import org.threeten.bp.OffsetDateTime;
+
+import com.clxcommunications.xms.api.BatchId;
+import com.clxcommunications.xms.api.MtBatchTextSmsCreate;
+import com.clxcommunications.xms.api.MtBatchTextSmsResult;
+
+public class CoalescingSenderTest {
+
+	/**
+	 * A sender that records the created batches and completes them at once.
+	 */
+	private static class RecordingSender extends CoalescingSender {
+
+		final List<MtBatchTextSmsCreate> created = Collections
+		        .synchronizedList(new ArrayList<MtBatchTextSmsCreate>());
+
+		volatile Exception failure = null;
+
+		RecordingSender(long lingerMillis, int maxRecipients) {
+			super(null, lingerMillis, maxRecipients);
+		}
+
+		@Override
+		Future<MtBatchTextSmsResult> createBatch(MtBatchTextSmsCreate sms,
+		        FutureCallback<MtBatchTextSmsResult> callback) {
+			created.add(sms);
+
+			BasicFuture<MtBatchTextSmsResult> future =
+			        new BasicFuture<MtBatchTextSmsResult>(callback);
+
+			if (failure != null) {
+				future.failed(failure);
+			} else {
+				OffsetDateTime time = OffsetDateTime.now();
+
+				future.completed(MtBatchTextSmsResult.builder()
+				        .sender(sms.sender())
+				        .recipients(sms.recipients())
+				        .body(sms.body())
+				        .canceled(false)
+				        .id(BatchId.of("batch" + created.size()))
+				        .createdAt(time)
+				        .modifiedAt(time)
+				        .build());
+			}
+
+			return future;
+		}
+
+	}
+
+	private RecordingSender sender;
+
+	@After
+	public void tearDown() {
+		if (sender != null) {
+			sender.close();
+		}
+	}
+
+	private static MtBatchTextSmsCreate sms(String to, String body) {
+		return ClxApi.batchTextSms()
+		        .sender("12345")
+		        .addRecipient(to)
+		        .body(body)
+		        .build();
+	}
+
+	@Test
+	public void mergesMessagesWhenBatchIsFull() throws Exception {
+		sender = new RecordingSender(60000, 3);
+
+		Future<MtBatchTextSmsResult> f1 = sender.send(sms("1", "hi"), null);
+		Future<MtBatchTextSmsResult> f2 = sender.send(sms("2", "hi"), null);
+
+		assertThat(sender.created.isEmpty(), is(true));
+
+		Future<MtBatchTextSmsResult> f3 = sender.send(sms("3", "hi"), null);
+
+		assertThat(sender.created.size(), is(1));
+		assertThat(sender.created.get(0).recipients(),
+		        is(Arrays.asList("1", "2", "3")));
+		assertThat(sender.created.get(0).body(), is("hi"));
+
+		assertThat(f1.get(), is(sameInstance(f2.get())));
+		assertThat(f2.get(), is(sameInstance(f3.get())));
+	}
+
+	@Test
+	public void keepsDifferentMessagesApart() throws Exception {
+		sender = new RecordingSender(60000, 10);
+
+		sender.send(sms("1", "hi"), null);
+		sender.send(sms("2", "bye"), null);
+		sender.send(sms("3", "hi"), null);
+		sender.flush();
+
+		assertThat(sender.created.size(), is(2));
+		assertThat(sender.created.get(0).recipients(),
+		        is(Arrays.asList("1", "3")));
+		assertThat(sender.created.get(1).recipients(),
+		        is(Arrays.asList("2")));
+	}
+
+	@Test
+	public void sendsAfterLingerTime() throws Exception {
+		sender = new RecordingSender(10, 100);
+
+		Future<MtBatchTextSmsResult> f1 = sender.send(sms("1", "hi"), null);
+		Future<MtBatchTextSmsResult> f2 = sender.send(sms("2", "hi"), null);
+
+		assertThat(f1.get(5, TimeUnit.SECONDS).recipients(),
+		        is(Arrays.asList("1", "2")));
+		assertThat(f2.isDone(), is(true));
+		assertThat(sender.created.size(), is(1));
+	}
+
+	@Test
+	public void sendsMultipleRecipientsImmediately() throws Exception {
+		sender = new RecordingSender(60000, 100);
+
+		MtBatchTextSmsCreate sms = ClxApi.batchTextSms()
+		        .sender("12345")
+		        .addRecipient("1", "2")
+		        .body("hi")
+		        .build();
+
+		Future<MtBatchTextSmsResult> future = sender.send(sms, null);
+
+		assertThat(future.isDone(), is(true));
+		assertThat(sender.created, is(Arrays.asList(sms)));
+	}
+
+	@Test
+	public void leavesOutCancelledMessages() throws Exception {
+		sender = new RecordingSender(60000, 100);
+
+		Future<MtBatchTextSmsResult> f1 = sender.send(sms("1", "hi"), null);
+		Future<MtBatchTextSmsResult> f2 = sender.send(sms("2", "hi"), null);
+
+		f1.cancel(false);
+		sender.flush();
+
+		assertThat(sender.created.get(0).recipients(),
+		        is(Arrays.asList("2")));
+		assertThat(f2.isDone(), is(true));
+	}
+
+	@Test
+	public void splitsBatchOnRepeatedRecipient() throws Exception {
+		sender = new RecordingSender(60000, 100);
+
+		sender.send(sms("1", "hi"), null);
+		sender.send(sms("1", "hi"), null);
+		sender.flush();
+
+		assertThat(sender.created.size(), is(2));
+		assertThat(sender.created.get(0).recipients(),
+		        is(Arrays.asList("1")));
+		assertThat(sender.created.get(1).recipients(),
+		        is(Arrays.asList("1")));
+	}
+
+	@Test
+	public void failsAllMessagesOfFailedBatch() throws Exception {
+		sender = new RecordingSender(60000, 2);
+		sender.failure = new IOException("boom");
+
+		Future<MtBatchTextSmsResult> f1 = sender.send(sms("1", "hi"), null);
+		Future<MtBatchTextSmsResult> f2 = sender.send(sms("2", "hi"), null);
+
+		for (Future<MtBatchTextSmsResult> f : Arrays.asList(f1, f2)) {
+			try {
+				f.get();
+				fail("expected exception");
+			} catch (ExecutionException e) {
+				assertThat(e.getCause(),
+				        is(sameInstance((Throwable) sender.failure)));
+			}
+		}
+	}
+
+	@Test
+	public void closeSendsPendingMessages() throws Exception {
+		sender = new RecordingSender(60000, 100);
+
+		Future<MtBatchTextSmsResult> future =
+		        sender.send(sms("1", "hi"), null);
+
+		sender.close();
+
+		assertThat(future.isDone(), is(true));
+		assertThat(sender.created.size(), is(1));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void rejectsSendAfterClose() throws Exception {
+		sender = new RecordingSender(60000, 100);
+		sender.close();
+
+		sender.send(sms("1", "hi"), null);
+	}
+
+}
@@ -0,0 +1,256 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import static com.clxcommunications.testsupport.TestUtils.MS;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.net.SocketTimeoutException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpVersion;
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Test;
+
+import com.clxcommunications.testsupport.StubTransport;
+import com.clxcommunications.xms.api.BatchId;
+
+public class ConcurrencyLimiterTest {
+
+	private static final class CountingTask implements Runnable {
+
+		int runs = 0;
+
+		@Override
+		public void run() {
+			runs++;
+		}
+
+	}
+
+	private static ConcurrencyLimiter limiter(int initial) {
+		return new ConcurrencyLimiter(ConcurrencyLimit.builder()
+		        .initialLimit(initial)
+		        .minLimit(1)
+		        .maxLimit(20)
+		        .build());
+	}
+
+	private static void acquire(ConcurrencyLimiter limiter, int count) {
+		for (int i = 0; i < count; i++) {
+			limiter.acquire(new BasicFuture<Void>(null), new CountingTask());
+		}
+	}
+
+	@Test
+	public void queuesBeyondLimit() throws Exception {
+		ConcurrencyLimiter limiter = limiter(2);
+		CountingTask task = new CountingTask();
+
+		acquire(limiter, 2);
+		limiter.acquire(new BasicFuture<Void>(null), task);
+
+		assertThat(task.runs, is(0));
+		assertThat(limiter.inFlight(), is(2));
+		assertThat(limiter.queued(), is(1));
+
+		limiter.release(-1, false);
+
+		assertThat(task.runs, is(1));
+		assertThat(limiter.inFlight(), is(2));
+		assertThat(limiter.queued(), is(0));
+	}
+
+	@Test
+	public void drainsQueueOfFailingTasksIteratively() throws Exception {
+		final ConcurrencyLimiter limiter = limiter(1);
+		final AtomicInteger runs = new AtomicInteger();
+
+		acquire(limiter, 1);
+
+		// Each task fails at once and returns its permit from within.
+		for (int i = 0; i < 100000; i++) {
+			limiter.acquire(new BasicFuture<Void>(null), new Runnable() {
+
+				@Override
+				public void run() {
+					runs.incrementAndGet();
+					limiter.release(-1, false);
+				}
+
+			});
+		}
+
+		limiter.release(-1, false);
+
+		assertThat(runs.get(), is(100000));
+		assertThat(limiter.inFlight(), is(0));
+		assertThat(limiter.queued(), is(0));
+	}
+
+	@Test
+	public void runsQueuedTasksAfterThrowingTask() throws Exception {
+		final ConcurrencyLimiter limiter = limiter(1);
+		CountingTask task = new CountingTask();
+
+		acquire(limiter, 1);
+
+		// Returns its permit and then throws, like a failing user callback.
+		limiter.acquire(new BasicFuture<Void>(null), new Runnable() {
+
+			@Override
+			public void run() {
+				limiter.release(-1, false);
+				throw new IllegalStateException("callback failed");
+			}
+
+		});
+		limiter.acquire(new BasicFuture<Void>(null), task);
+
+		limiter.release(-1, false);
+
+		assertThat(task.runs, is(1));
+		assertThat(limiter.inFlight(), is(1));
+		assertThat(limiter.queued(), is(0));
+	}
+
+	@Test
+	public void skipsCancelledWaiters() throws Exception {
+		ConcurrencyLimiter limiter = limiter(1);
+		BasicFuture<Void> cancelled = new BasicFuture<Void>(null);
+		CountingTask skipped = new CountingTask();
+		CountingTask task = new CountingTask();
+
+		acquire(limiter, 1);
+		limiter.acquire(cancelled, skipped);
+		limiter.acquire(new BasicFuture<Void>(null), task);
+		cancelled.cancel();
+
+		limiter.release(-1, false);
+
+		assertThat(skipped.runs, is(0));
+		assertThat(task.runs, is(1));
+		assertThat(limiter.inFlight(), is(1));
+	}
+
+	@Test
+	public void growsWhileLatencyIsStable() throws Exception {
+		ConcurrencyLimiter limiter = limiter(4);
+
+		acquire(limiter, 4);
+
+		for (int i = 0; i < 4; i++) {
+			limiter.release(10 * MS, false);
+			acquire(limiter, 1);
+		}
+
+		assertThat(limiter.limit(), is(8));
+	}
+
+	@Test
+	public void doesNotGrowWhenUnderused() throws Exception {
+		ConcurrencyLimiter limiter = limiter(10);
+
+		acquire(limiter, 1);
+		limiter.release(10 * MS, false);
+
+		assertThat(limiter.limit(), is(10));
+	}
+
+	@Test
+	public void shrinksWhenLatencyIncreases() throws Exception {
+		ConcurrencyLimiter limiter = limiter(10);
+
+		acquire(limiter, 10);
+		limiter.release(10 * MS, false);
+		assertThat(limiter.limit(), is(11));
+
+		// With 11 permitted requests taking twice the unloaded latency,
+		// about 5.5 requests are queued at the server, keep the limit.
+		acquire(limiter, 1);
+		limiter.release(20 * MS, false);
+		assertThat(limiter.limit(), is(11));
+
+		// Latency tripled, about 7 requests are queued, shrink.
+		acquire(limiter, 1);
+		limiter.release(30 * MS, false);
+		assertThat(limiter.limit(), is(10));
+	}
+
+	@Test
+	public void backsOffWhenDropped() throws Exception {
+		ConcurrencyLimiter limiter = limiter(10);
+
+		acquire(limiter, 10);
+		limiter.release(10 * MS, true);
+		assertThat(limiter.limit(), is(9));
+
+		for (int i = 0; i < 20; i++) {
+			limiter.release(10 * MS, true);
+			acquire(limiter, 1);
+		}
+
+		assertThat(limiter.limit(), is(1));
+	}
+
+	@Test
+	public void classifiesDrops() throws Exception {
+		assertThat(ConcurrencyLimiter.isDropped(new SocketTimeoutException()),
+		        is(true));
+		assertThat(ConcurrencyLimiter.isDropped(
+		        new UnexpectedResponseException(new BasicHttpResponse(
+		                HttpVersion.HTTP_1_1, 503, "Service Unavailable"))),
+		        is(true));
+		assertThat(ConcurrencyLimiter.isDropped(
+		        new UnexpectedResponseException(new BasicHttpResponse(
+		                HttpVersion.HTTP_1_1, 429, "Too Many Requests"))),
+		        is(true));
+		assertThat(ConcurrencyLimiter.isDropped(
+		        new UnexpectedResponseException(new BasicHttpResponse(
+		                HttpVersion.HTTP_1_1, 400, "Bad Request"))),
+		        is(false));
+	}
+
+	@Test
+	public void connectionQueuesRequestsOverLimit() throws Exception {
+		StubTransport transport = new StubTransport();
+
+		ApiConnection conn = transport.connectionBuilder()
+		        .concurrencyLimit(ConcurrencyLimit.builder()
+		                .initialLimit(1)
+		                .maxLimit(1)
+		                .build())
+		        .build();
+
+		conn.fetchBatchAsync(BatchId.of("batch1"), null);
+		Future<?> queued = conn.fetchBatchAsync(BatchId.of("batch2"), null);
+
+		assertThat(transport.executions(), is(1));
+		assertThat(queued.isDone(), is(false));
+
+		transport.futures().get(0).failed(new SocketTimeoutException());
+
+		assertThat(transport.executions(), is(2));
+	}
+
+}
@@ -0,0 +1,269 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+import org.apache.http.HttpVersion;
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Test;
+
+import com.clxcommunications.xms.api.ApiError;
+import com.clxcommunications.xms.api.Page;
+
+public class CursorPageIteratorTest {
+
+	/**
+	 * A fetcher of the given pages that fails each page fetch a given number
+	 * of times before succeeding.
+	 */
+	private static class FlakyFetcher extends PagedFetcher<Integer> {
+
+		final List<List<Integer>> pages;
+
+		final Map<Integer, Integer> failuresLeft =
+		        new HashMap<Integer, Integer>();
+
+		final List<Integer> requested = new ArrayList<Integer>();
+
+		Exception failure = new IOException("connection reset");
+
+		FlakyFetcher(List<List<Integer>> pages) {
+			this.pages = pages;
+		}
+
+		@Override
+		String listing() {
+			return "/test?";
+		}
+
+		@Override
+		Future<Page<Integer>> fetchAsync(final int page,
+		        FutureCallback<Page<Integer>> callback) {
+			requested.add(page);
+
+			BasicFuture<Page<Integer>> future =
+			        new BasicFuture<Page<Integer>>(callback);
+
+			Integer left = failuresLeft.get(page);
+			if (left != null && left > 0) {
+				failuresLeft.put(page, left - 1);
+				future.failed(failure);
+				return future;
+			}
+
+			int total = 0;
+			for (List<Integer> p : pages) {
+				total += p.size();
+			}
+			final int totalSize = total;
+
+			future.completed(new Page<Integer>() {
+
+				@Override
+				public int page() {
+					return page;
+				}
+
+				@Override
+				public int size() {
+					return pages.get(page).size();
+				}
+
+				@Override
+				public int totalSize() {
+					return totalSize;
+				}
+
+				@Override
+				public List<Integer> content() {
+					return pages.get(page);
+				}
+
+			});
+
+			return future;
+		}
+
+	}
+
+	private final FlakyFetcher fetcher = new FlakyFetcher(Arrays.asList(
+	        Arrays.asList(1, 2), Arrays.asList(3, 4), Arrays.asList(5)));
+
+	@Test
+	public void traversesAllPages() throws Exception {
+		CursorPageIterator<Integer> it = fetcher.pagesFrom(fetcher.cursor());
+
+		List<Integer> actual = new ArrayList<Integer>();
+		while (it.hasNext()) {
+			actual.addAll(it.next().content());
+		}
+
+		assertThat(actual, is(Arrays.asList(1, 2, 3, 4, 5)));
+		assertThat(it.cursor().isExhausted(), is(true));
+		assertThat(it.cursor().seenElements(), is(5));
+	}
+
+	@Test
+	public void canResumeFromSerializedCursor() throws Exception {
+		CursorPageIterator<Integer> it = fetcher.pagesFrom(fetcher.cursor());
+		it.next();
+
+		PagingCursor restored = roundTrip(it.cursor());
+
+		assertThat(restored, is(it.cursor()));
+
+		CursorPageIterator<Integer> resumed = fetcher.pagesFrom(restored);
+
+		List<Integer> actual = new ArrayList<Integer>();
+		while (resumed.hasNext()) {
+			actual.addAll(resumed.next().content());
+		}
+
+		assertThat(actual, is(Arrays.asList(3, 4, 5)));
+		assertThat(fetcher.requested, is(Arrays.asList(0, 1, 2)));
+	}
+
+	@Test
+	public void retriesTransientFailures() throws Exception {
+		fetcher.failuresLeft.put(1, 2);
+
+		CursorPageIterator<Integer> it =
+		        fetcher.pagesFrom(fetcher.cursor(), 2, 1);
+
+		List<Integer> actual = new ArrayList<Integer>();
+		while (it.hasNext()) {
+			actual.addAll(it.next().content());
+		}
+
+		assertThat(actual, is(Arrays.asList(1, 2, 3, 4, 5)));
+		assertThat(fetcher.requested, is(Arrays.asList(0, 1, 1, 1, 2)));
+	}
+
+	@Test
+	public void keepsCursorWhenRetriesAreExhausted() throws Exception {
+		fetcher.failuresLeft.put(1, 5);
+
+		CursorPageIterator<Integer> it =
+		        fetcher.pagesFrom(fetcher.cursor(), 1, 1);
+		it.next();
+
+		PagingCursor before = it.cursor();
+
+		try {
+			it.next();
+			fail("expected exception");
+		} catch (RuntimeApiException e) {
+			assertThat(e.getCause(), is(instanceOf(ConcurrentException.class)));
+		}
+
+		assertThat(it.cursor(), is(before));
+		assertThat(it.cursor().page(), is(1));
+	}
+
+	@Test
+	public void doesNotRetryApiErrors() throws Exception {
+		fetcher.failure = new ErrorResponseException(
+		        ApiError.of("code", "text"));
+		fetcher.failuresLeft.put(0, 1);
+
+		CursorPageIterator<Integer> it =
+		        fetcher.pagesFrom(fetcher.cursor(), 3, 1);
+
+		try {
+			it.next();
+			fail("expected exception");
+		} catch (RuntimeApiException e) {
+			assertThat(e.getCause(),
+			        is(instanceOf(ErrorResponseException.class)));
+		}
+
+		assertThat(fetcher.requested, is(Arrays.asList(0)));
+	}
+
+	@Test
+	public void retriesUnavailableServer() throws Exception {
+		fetcher.failure = new UnexpectedResponseException(
+		        new BasicHttpResponse(HttpVersion.HTTP_1_1, 503, "Error"));
+		fetcher.failuresLeft.put(0, 1);
+
+		CursorPageIterator<Integer> it =
+		        fetcher.pagesFrom(fetcher.cursor(), 3, 1);
+
+		assertThat(it.next().content(), is(Arrays.asList(1, 2)));
+		assertThat(fetcher.requested, is(Arrays.asList(0, 0)));
+	}
+
+	@Test
+	public void doesNotRetryInternalServerError() throws Exception {
+		fetcher.failure = new UnexpectedResponseException(
+		        new BasicHttpResponse(HttpVersion.HTTP_1_1, 500, "Error"));
+		fetcher.failuresLeft.put(0, 1);
+
+		CursorPageIterator<Integer> it =
+		        fetcher.pagesFrom(fetcher.cursor(), 3, 1);
+
+		try {
+			it.next();
+			fail("expected exception");
+		} catch (RuntimeApiException e) {
+			assertThat(e.getCause(),
+			        is(instanceOf(UnexpectedResponseException.class)));
+		}
+
+		assertThat(fetcher.requested, is(Arrays.asList(0)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsCursorOfOtherListing() throws Exception {
+		fetcher.pagesFrom(new PagingCursor("/other?", 0, 0, false));
+	}
+
+	private static PagingCursor roundTrip(PagingCursor cursor)
+	        throws Exception {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		ObjectOutputStream oos = new ObjectOutputStream(bos);
+		oos.writeObject(cursor);
+		oos.close();
+
+		ObjectInputStream ois = new ObjectInputStream(
+		        new ByteArrayInputStream(bos.toByteArray()));
+
+		return (PagingCursor) ois.readObject();
+	}
+
+}
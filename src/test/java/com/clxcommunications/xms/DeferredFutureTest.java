@@ -0,0 +1,76 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.apache.http.concurrent.BasicFuture;
+import org.junit.Test;
+
+public class DeferredFutureTest {
+
+	private final DeferredFuture<String> future =
+	        new DeferredFuture<String>(null);
+
+	@Test
+	public void cancelCancelsDelegate() {
+		BasicFuture<Object> delegate = new BasicFuture<Object>(null);
+
+		future.setDelegate(delegate);
+		future.cancel();
+
+		assertThat(delegate.isCancelled(), is(true));
+	}
+
+	@Test
+	public void setDelegateIfAbsentKeepsExistingDelegate() {
+		BasicFuture<Object> sent = new BasicFuture<Object>(null);
+		BasicFuture<Object> scheduled = new BasicFuture<Object>(null);
+
+		future.setDelegate(sent);
+		future.setDelegateIfAbsent(scheduled);
+		future.cancel();
+
+		assertThat(sent.isCancelled(), is(true));
+		assertThat(scheduled.isCancelled(), is(false));
+	}
+
+	@Test
+	public void setDelegateIfAbsentRegistersFirstDelegate() {
+		BasicFuture<Object> scheduled = new BasicFuture<Object>(null);
+
+		future.setDelegateIfAbsent(scheduled);
+		future.cancel();
+
+		assertThat(scheduled.isCancelled(), is(true));
+	}
+
+	@Test
+	public void setDelegateIfAbsentCancelsDelegateOfCancelledFuture() {
+		BasicFuture<Object> scheduled = new BasicFuture<Object>(null);
+
+		future.cancel();
+		future.setDelegateIfAbsent(scheduled);
+
+		assertThat(scheduled.isCancelled(), is(true));
+	}
+
+}
@@ -0,0 +1,118 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.entity.ContentType;
+import org.apache.http.message.BasicHeader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares building a request URL and standard headers by parsing the base
+ * URL for every request against using the precomputed {@link Endpoints} and
+ * header instances.
+ * <p>
+ * Allocation rates are best observed using the GC profiler, e.g.,
+ * <code>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.clxcommunications.xms.EndpointsBenchmark</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class EndpointsBenchmark {
+
+	private static final URI BASE = ApiConnection.DEFAULT_ENDPOINT;
+
+	private static final String SPID = "my-service-plan";
+
+	private static final String TOKEN = "0123456789abcdef0123456789abcdef";
+
+	private static final String BATCH_ID = "5Z8QsIRsk86f-jHB";
+
+	private Endpoints endpoints;
+
+	private BasicHeader authorization;
+
+	private BasicHeader accept;
+
+	private BasicHeader version;
+
+	@Setup
+	public void setup() {
+		endpoints = new Endpoints(BASE, SPID);
+		authorization =
+		        new BasicHeader(HttpHeaders.AUTHORIZATION, "Bearer " + TOKEN);
+		accept = new BasicHeader(HttpHeaders.ACCEPT,
+		        ContentType.APPLICATION_JSON.toString());
+		version = new BasicHeader("X-CLX-SDK-Version", Version.VERSION);
+	}
+
+	@Benchmark
+	public HttpGet buildRequestPerCall() throws Exception {
+		String spid = URLEncoder.encode(SPID, "UTF-8");
+		String path = BASE.getPath() + "/v1/" + spid + "/batches/" + BATCH_ID;
+		URI uri = new URIBuilder(BASE).setPath(path).build();
+
+		HttpGet req = new HttpGet(uri);
+		req.setHeader(HttpHeaders.AUTHORIZATION, "Bearer " + TOKEN);
+		req.setHeader(HttpHeaders.ACCEPT,
+		        ContentType.APPLICATION_JSON.toString());
+		req.setHeader("X-CLX-SDK-Version", Version.VERSION);
+		return req;
+	}
+
+	@Benchmark
+	public HttpGet buildRequestPrecomputed() {
+		HttpGet req = new HttpGet(endpoints.uri("/batches/" + BATCH_ID));
+		req.setHeader(authorization);
+		req.setHeader(accept);
+		req.setHeader(version);
+		return req;
+	}
+
+	public static void main(String[] args) throws Exception {
+		new Runner(new OptionsBuilder()
+		        .include(EndpointsBenchmark.class.getSimpleName())
+		        .addProfiler("gc")
+		        .build())
+		                .run();
+	}
+
+}
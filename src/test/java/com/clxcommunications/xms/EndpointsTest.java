@@ -0,0 +1,136 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.http.NameValuePair;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.message.BasicNameValuePair;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.pholser.junit.quickcheck.Property;
+import com.pholser.junit.quickcheck.runner.JUnitQuickcheck;
+
+@RunWith(JUnitQuickcheck.class)
+public class EndpointsTest {
+
+	private static final URI BASE = URI.create("https://example.com/xms");
+
+	/**
+	 * The URL building of the original connection implementation, used as a
+	 * reference.
+	 */
+	private static URI expected(String spid, String subPath,
+	        List<NameValuePair> params) throws Exception {
+		String path = BASE.getPath() + "/v1/"
+		        + URLEncoder.encode(spid, "UTF-8") + subPath;
+		URIBuilder uriBuilder = new URIBuilder(BASE).setPath(path);
+
+		if (!params.isEmpty()) {
+			uriBuilder.setParameters(params);
+		}
+
+		return uriBuilder.build();
+	}
+
+	@Test
+	public void precomputesBatchesEndpoint() throws Exception {
+		Endpoints endpoints = new Endpoints(BASE, "spid");
+
+		assertThat(endpoints.batches(),
+		        is(URI.create("https://example.com/xms/v1/spid/batches")));
+		assertThat(endpoints.batches(), is(sameInstance(endpoints.batches())));
+	}
+
+	@Test
+	public void precomputesGroupsEndpoint() throws Exception {
+		Endpoints endpoints = new Endpoints(BASE, "spid");
+
+		assertThat(endpoints.groups(),
+		        is(URI.create("https://example.com/xms/v1/spid/groups")));
+	}
+
+	@Test
+	public void encodesServicePlanId() throws Exception {
+		Endpoints endpoints = new Endpoints(BASE, "my spid/ö");
+
+		assertThat(endpoints.uri("/batches"),
+		        is(expected("my spid/ö", "/batches",
+		                Collections.<NameValuePair> emptyList())));
+	}
+
+	@Test
+	public void addsQueryParameters() throws Exception {
+		Endpoints endpoints = new Endpoints(BASE, "spid");
+		List<NameValuePair> params = Arrays.<NameValuePair> asList(
+		        new BasicNameValuePair("page", "2"),
+		        new BasicNameValuePair("to", "2016-10-01 12:00 ä&b"));
+
+		assertThat(endpoints.uri("/batches", params),
+		        is(expected("spid", "/batches", params)));
+	}
+
+	@Test
+	public void leavesSafePathUnchanged() throws Exception {
+		String path = "/batches/abc_DEF-123/delivery_report";
+
+		assertThat(Endpoints.encodePath(path), is(sameInstance(path)));
+	}
+
+	@Test
+	public void classifiesEndpointFamilies() throws Exception {
+		Endpoints endpoints = new Endpoints(BASE, "spid");
+
+		assertThat(endpoints.familyOf(endpoints.batches()),
+		        is(EndpointFamily.BATCHES));
+		assertThat(endpoints.familyOf(endpoints.uri("/batches/abc/tags")),
+		        is(EndpointFamily.BATCHES));
+		assertThat(
+		        endpoints.familyOf(
+		                endpoints.uri("/batches/abc/delivery_report/123")),
+		        is(EndpointFamily.DELIVERY_REPORTS));
+		assertThat(endpoints.familyOf(endpoints.uri("/groups/abc/members")),
+		        is(EndpointFamily.GROUPS));
+		assertThat(endpoints.familyOf(endpoints.uri("/inbounds/abc")),
+		        is(EndpointFamily.INBOUNDS));
+		assertThat(endpoints.familyOf(URI.create("https://example.com/")),
+		        is((EndpointFamily) null));
+	}
+
+	@Property
+	public void encodesPathLikeUriBuilder(String id) throws Exception {
+		Endpoints endpoints = new Endpoints(BASE, "spid");
+		String subPath = "/inbounds/" + id;
+
+		assertThat(endpoints.uri(subPath), is(expected("spid", subPath,
+		        Collections.<NameValuePair> emptyList())));
+	}
+
+}
@@ -0,0 +1,231 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import static com.clxcommunications.testsupport.TestUtils.MS;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.concurrent.BasicFuture;
+import org.junit.Test;
+import org.threeten.bp.Duration;
+
+import com.clxcommunications.testsupport.StubTransport;
+import com.clxcommunications.xms.api.BatchId;
+
+public class HedgerTest {
+
+	/**
+	 * Returns a handler that leaves the first request outstanding and handles
+	 * the following requests using the given outcome.
+	 */
+	private static StubTransport.Handler slowFirst(final Exception failure) {
+		return new StubTransport.Handler() {
+
+			@Override
+			public void handle(int index, HttpUriRequest request,
+			        BasicFuture<?> future) {
+				if (index == 0) {
+					return;
+				}
+
+				if (failure == null) {
+					future.completed(null);
+				} else {
+					future.failed(failure);
+				}
+			}
+
+		};
+	}
+
+	private static ApiConnection connection(StubTransport transport,
+	        double ratio) {
+		return transport.connectionBuilder()
+		        .hedgingPolicy(HedgingPolicy.builder()
+		                .initialDelay(Duration.ofMillis(10))
+		                .maxHedgeRatio(ratio)
+		                .build())
+		        .build();
+	}
+
+	@Test
+	public void usesInitialDelayUntilEnoughSamples() throws Exception {
+		Hedger hedger = new Hedger(HedgingPolicy.builder()
+		        .initialDelay(Duration.ofMillis(50))
+		        .build());
+
+		for (int i = 1; i < Hedger.REFRESH_INTERVAL; i++) {
+			hedger.record(i * MS);
+		}
+
+		assertThat(hedger.delay(), is(50 * MS));
+	}
+
+	@Test
+	public void delayIsLatencyPercentile() throws Exception {
+		Hedger hedger = new Hedger(HedgingPolicy.builder()
+		        .percentile(90)
+		        .build());
+
+		for (int i = 1; i <= 10 * Hedger.REFRESH_INTERVAL; i++) {
+			hedger.record((i % 100) * MS);
+		}
+
+		assertThat(hedger.delay(), is(89 * MS));
+	}
+
+	@Test
+	public void capsHedgesByBudget() throws Exception {
+		Hedger hedger = new Hedger(HedgingPolicy.builder()
+		        .maxHedgeRatio(0.25)
+		        .build());
+
+		int hedges = 0;
+		for (int i = 0; i < 100; i++) {
+			hedger.requested();
+
+			if (hedger.tryHedge()) {
+				hedges++;
+			}
+		}
+
+		assertThat(hedges, is(25));
+	}
+
+	@Test
+	public void capsSavedBudget() throws Exception {
+		Hedger hedger = new Hedger(HedgingPolicy.builder()
+		        .maxHedgeRatio(1)
+		        .build());
+
+		for (int i = 0; i < 100; i++) {
+			hedger.requested();
+		}
+
+		int hedges = 0;
+		while (hedger.tryHedge()) {
+			hedges++;
+		}
+
+		assertThat(hedges, is((int) Hedger.MAX_BUDGET));
+	}
+
+	@Test
+	public void connectionUsesHedgeAndCancelsFirst() throws Exception {
+		StubTransport transport = new StubTransport(slowFirst(null));
+
+		Future<?> future = connection(transport, 1)
+		        .fetchBatchAsync(BatchId.of("batch"), null);
+
+		future.get(5, TimeUnit.SECONDS);
+
+		assertThat(transport.futures().size(), is(2));
+		assertThat(transport.futures().get(0).isCancelled(), is(true));
+	}
+
+	@Test
+	public void connectionWaitsForFirstWhenHedgeFails() throws Exception {
+		StubTransport transport =
+		        new StubTransport(slowFirst(new SocketTimeoutException()));
+
+		Future<?> future = connection(transport, 1)
+		        .fetchBatchAsync(BatchId.of("batch"), null);
+
+		while (transport.futures().size() < 2) {
+			Thread.sleep(1);
+		}
+
+		assertThat(future.isDone(), is(false));
+
+		transport.futures().get(0).completed(null);
+
+		assertThat(future.isDone(), is(true));
+		assertThat(future.isCancelled(), is(false));
+	}
+
+	@Test
+	public void connectionFailsWhenHedgeThrowsAndFirstFails()
+	        throws Exception {
+		IllegalStateException thrown = new IllegalStateException("closed");
+		StubTransport transport = new StubTransport(
+		        StubTransport.throwingAfter(slowFirst(null), 1, thrown));
+
+		Future<?> future = connection(transport, 1)
+		        .fetchBatchAsync(BatchId.of("batch"), null);
+
+		while (transport.executions() < 2) {
+			Thread.sleep(1);
+		}
+
+		assertThat(future.isDone(), is(false));
+
+		SocketTimeoutException failure = new SocketTimeoutException();
+		transport.futures().get(0).failed(failure);
+
+		try {
+			future.get(5, TimeUnit.SECONDS);
+			fail("expected failure");
+		} catch (ExecutionException e) {
+			assertThat(e.getCause() == failure
+			        || e.getCause() == thrown, is(true));
+		}
+	}
+
+	@Test
+	public void connectionDoesNotHedgeWithoutBudget() throws Exception {
+		StubTransport transport = new StubTransport(slowFirst(null));
+
+		Future<?> future = connection(transport, 0)
+		        .fetchBatchAsync(BatchId.of("batch"), null);
+
+		Thread.sleep(50);
+
+		assertThat(transport.futures().size(), is(1));
+		assertThat(future.isDone(), is(false));
+
+		future.cancel(true);
+
+		assertThat(transport.futures().get(0).isCancelled(), is(true));
+	}
+
+	@Test
+	public void connectionDoesNotHedgeCreate() throws Exception {
+		StubTransport transport = new StubTransport(slowFirst(null));
+
+		connection(transport, 1).createBatchAsync(ClxApi.batchTextSms()
+		        .sender("12345")
+		        .addRecipient("987654321")
+		        .body("Hello")
+		        .build(), null);
+
+		Thread.sleep(50);
+
+		assertThat(transport.futures().size(), is(1));
+	}
+
+}
@@ -0,0 +1,288 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Future;
+
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.FutureCallback;
+import org.junit.Test;
+import org.threeten.bp.LocalDate;
+import org.threeten.bp.OffsetDateTime;
+import org.threeten.bp.ZoneOffset;
+
+import com.clxcommunications.xms.api.MoSms;
+import com.clxcommunications.xms.api.MoTextSms;
+import com.clxcommunications.xms.api.Page;
+
+public class InboundsSynchronizerTest {
+
+	private static final OffsetDateTime T0 =
+	        OffsetDateTime.of(2016, 10, 1, 12, 0, 0, 0, ZoneOffset.UTC);
+
+	/**
+	 * Serves a newest-first listing of the messages in {@link #messages}
+	 * using pages of size 2.
+	 */
+	private final List<MoSms> messages = new ArrayList<MoSms>();
+
+	private final List<Integer> requestedPages = new ArrayList<Integer>();
+
+	private final List<InboundsFilter> requestedFilters =
+	        new ArrayList<InboundsFilter>();
+
+	private final List<String> delivered = new ArrayList<String>();
+
+	private final InboundsSynchronizer.Listener listener =
+	        new InboundsSynchronizer.Listener() {
+
+		        @Override
+		        public void onInbound(MoSms mo) {
+			        delivered.add(mo.id());
+		        }
+
+	        };
+
+	private InboundsSynchronizer synchronizer(InboundsFilter filter,
+	        InboundsSynchronizer.Listener listener) {
+		return new InboundsSynchronizer(null, filter,
+		        InboundsWatermark.initial(), listener) {
+
+			@Override
+			PagedFetcher<MoSms> fetcher(InboundsFilter filter) {
+				requestedFilters.add(filter);
+				return listingFetcher();
+			}
+
+		};
+	}
+
+	private PagedFetcher<MoSms> listingFetcher() {
+		final List<MoSms> listing = new ArrayList<MoSms>(messages);
+		Collections.reverse(listing);
+
+		return new PagedFetcher<MoSms>() {
+
+			@Override
+			Future<Page<MoSms>> fetchAsync(final int page,
+			        FutureCallback<Page<MoSms>> callback) {
+				requestedPages.add(page);
+
+				int from = Math.min(2 * page, listing.size());
+				int to = Math.min(from + 2, listing.size());
+				final List<MoSms> content = listing.subList(from, to);
+
+				BasicFuture<Page<MoSms>> future =
+				        new BasicFuture<Page<MoSms>>(callback);
+
+				future.completed(new Page<MoSms>() {
+
+					@Override
+					public int page() {
+						return page;
+					}
+
+					@Override
+					public int size() {
+						return content.size();
+					}
+
+					@Override
+					public int totalSize() {
+						return listing.size();
+					}
+
+					@Override
+					public List<MoSms> content() {
+						return content;
+					}
+
+				});
+
+				return future;
+			}
+
+		};
+	}
+
+	private void receive(String id, int minutes) {
+		receive(id, T0.plusMinutes(minutes));
+	}
+
+	private void receive(String id, OffsetDateTime receivedAt) {
+		messages.add(MoTextSms.builder()
+		        .id(id)
+		        .sender("12345")
+		        .recipient("54321")
+		        .receivedAt(receivedAt)
+		        .body("body " + id)
+		        .build());
+	}
+
+	@Test
+	public void firstSyncDeliversAllMessagesOldestFirst() throws Exception {
+		receive("a", 0);
+		receive("b", 1);
+		receive("c", 2);
+
+		InboundsSynchronizer sync =
+		        synchronizer(InboundsFilter.builder().build(), listener);
+
+		assertThat(sync.sync(), is(3));
+		assertThat(delivered, is(Arrays.asList("a", "b", "c")));
+		assertThat(sync.watermark().receivedAt(), is(T0.plusMinutes(2)));
+		assertThat(sync.watermark().boundaryIds(),
+		        is(Collections.singleton("c")));
+	}
+
+	@Test
+	public void laterSyncOnlyWalksNewPages() throws Exception {
+		for (int i = 0; i < 10; i++) {
+			receive("m" + i, i);
+		}
+
+		InboundsSynchronizer sync =
+		        synchronizer(InboundsFilter.builder().build(), listener);
+		sync.sync();
+
+		delivered.clear();
+		requestedPages.clear();
+
+		receive("n0", 20);
+
+		assertThat(sync.sync(), is(1));
+		assertThat(delivered, is(Arrays.asList("n0")));
+		assertThat(requestedPages, is(Arrays.asList(0, 1)));
+
+		delivered.clear();
+
+		assertThat(sync.sync(), is(0));
+		assertThat(delivered.isEmpty(), is(true));
+	}
+
+	@Test
+	public void deliversNewMessagesAtBoundaryTime() throws Exception {
+		receive("a", 0);
+		receive("b", 5);
+
+		InboundsSynchronizer sync =
+		        synchronizer(InboundsFilter.builder().build(), listener);
+		sync.sync();
+
+		delivered.clear();
+
+		receive("c", 5);
+
+		Set<String> expectedIds = new HashSet<String>(Arrays.asList("b", "c"));
+
+		assertThat(sync.sync(), is(1));
+		assertThat(delivered, is(Arrays.asList("c")));
+		assertThat(sync.watermark().boundaryIds(), is(expectedIds));
+	}
+
+	@Test
+	public void comparesReceiveTimesAsInstants() throws Exception {
+		receive("a", 0);
+		receive("b", 5);
+
+		InboundsSynchronizer sync =
+		        synchronizer(InboundsFilter.builder().build(), listener);
+		sync.sync();
+
+		delivered.clear();
+		messages.clear();
+
+		ZoneOffset offset = ZoneOffset.ofHours(2);
+		receive("a", T0.withOffsetSameInstant(offset));
+		receive("b", T0.plusMinutes(5).withOffsetSameInstant(offset));
+
+		assertThat(sync.sync(), is(0));
+		assertThat(delivered.isEmpty(), is(true));
+	}
+
+	@Test
+	public void narrowsStartDateToWatermark() throws Exception {
+		receive("a", 0);
+
+		InboundsFilter filter = InboundsFilter.builder()
+		        .startDate(LocalDate.of(2016, 9, 1))
+		        .addRecipient("54321")
+		        .build();
+
+		InboundsSynchronizer sync = synchronizer(filter, listener);
+		sync.sync();
+		sync.sync();
+
+		assertThat(requestedFilters.get(0), is(filter));
+		assertThat(requestedFilters.get(1).startDate(),
+		        is(LocalDate.of(2016, 10, 1)));
+		assertThat(requestedFilters.get(1).recipients(),
+		        is(filter.recipients()));
+	}
+
+	@Test
+	public void failingListenerLeavesWatermarkAtLastDelivered()
+	        throws Exception {
+		receive("a", 0);
+		receive("b", 1);
+		receive("c", 2);
+
+		InboundsSynchronizer sync = synchronizer(
+		        InboundsFilter.builder().build(),
+		        new InboundsSynchronizer.Listener() {
+
+			        @Override
+			        public void onInbound(MoSms mo) {
+				        if (mo.id().equals("b")) {
+					        throw new IllegalStateException("boom");
+				        }
+				        delivered.add(mo.id());
+			        }
+
+		        });
+
+		try {
+			sync.sync();
+			fail("expected exception");
+		} catch (IllegalStateException e) {
+			// Expected.
+		}
+
+		assertThat(delivered, is(Arrays.asList("a")));
+		assertThat(sync.watermark().receivedAt(), is(T0));
+	}
+
+	@Test
+	public void initialWatermarkHasNoTime() throws Exception {
+		assertThat(InboundsWatermark.initial().receivedAt(), is(nullValue()));
+	}
+
+}
@@ -0,0 +1,121 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.clxcommunications.testsupport.TestUtils;
+import com.clxcommunications.xms.api.MtBatchTextSmsCreate;
+import com.clxcommunications.xms.api.MtBatchTextSmsResult;
+import com.clxcommunications.xms.api.PagedBatchResult;
+
+/**
+ * Compares JSON handling through the object mapper against the prebuilt
+ * readers and writers of {@link JsonCodecs}.
+ * <p>
+ * Run using, e.g., <code>mvn test-compile exec:java
+ * -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.clxcommunications.xms.JsonCodecsBenchmark</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class JsonCodecsBenchmark {
+
+	private ApiObjectMapper json;
+
+	private JsonCodecs codecs;
+
+	private MtBatchTextSmsCreate create;
+
+	private byte[] page;
+
+	@Setup
+	public void setup() throws Exception {
+		json = new ApiObjectMapper(false);
+		codecs = new JsonCodecs(json, false);
+
+		create = ClxApi.batchTextSms()
+		        .sender("12345")
+		        .addRecipient("123456789", "987654321")
+		        .body("Hello, world!")
+		        .build();
+
+		PagedBatchResult.Builder builder = PagedBatchResult.builder();
+
+		builder.page(0).size(30).totalSize(30);
+
+		for (int i = 0; i < 30; i++) {
+			builder.addContent(MtBatchTextSmsResult.builder()
+			        .id(TestUtils.freshBatchId())
+			        .sender("12345")
+			        .addRecipient("123456789")
+			        .body("Hello, world!")
+			        .canceled(false)
+			        .build());
+		}
+
+		page = json.writeValueAsBytes(builder.build());
+	}
+
+	@Benchmark
+	public Object readPageUsingMapper() throws Exception {
+		return json.readValue(page, PagedBatchResult.class);
+	}
+
+	@Benchmark
+	public Object readPageUsingReader() throws Exception {
+		return codecs.reader(PagedBatchResult.class).readValue(page);
+	}
+
+	@Benchmark
+	public byte[] writeCreateUsingMapper() throws Exception {
+		return json.writeValueAsBytes(create);
+	}
+
+	@Benchmark
+	public byte[] writeCreateUsingWriter() throws Exception {
+		return codecs.writer(create).writeValueAsBytes(create);
+	}
+
+	public static void main(String[] args) throws Exception {
+		new Runner(new OptionsBuilder()
+		        .include(JsonCodecsBenchmark.class.getSimpleName())
+		        .build())
+		                .run();
+	}
+
+}
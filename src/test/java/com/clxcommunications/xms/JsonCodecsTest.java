@@ -0,0 +1,107 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import static com.clxcommunications.testsupport.TestUtils.jsonEqualTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.clxcommunications.testsupport.TestUtils;
+import com.clxcommunications.xms.api.MtBatchTextSmsCreate;
+import com.clxcommunications.xms.api.MtBatchTextSmsResult;
+import com.clxcommunications.xms.api.Tags;
+
+public class JsonCodecsTest {
+
+	private final ApiObjectMapper json = new ApiObjectMapper(false);
+
+	private final JsonCodecs codecs = new JsonCodecs(json, false);
+
+	@Test
+	public void writesTagsLikeMapper() throws Exception {
+		Tags tags = Tags.of("tag1", "tag2");
+
+		String expected = json.writeValueAsString(tags);
+		String actual = codecs.writer(tags).writeValueAsString(tags);
+
+		assertThat(actual, is(jsonEqualTo(expected)));
+	}
+
+	@Test
+	public void writesBatchLikeMapper() throws Exception {
+		MtBatchTextSmsCreate batch = ClxApi.batchTextSms()
+		        .sender("12345")
+		        .addRecipient("123456789")
+		        .body("Hello, world!")
+		        .build();
+
+		String expected = json.writeValueAsString(batch);
+		String actual = codecs.writer(batch).writeValueAsString(batch);
+
+		assertThat(actual, is(jsonEqualTo(expected)));
+	}
+
+	@Test
+	public void reusesWriterForSameClass() throws Exception {
+		Tags tags1 = Tags.of("tag1");
+		Tags tags2 = Tags.of("tag2");
+
+		assertThat(codecs.writer(tags1),
+		        is(sameInstance(codecs.writer(tags2))));
+	}
+
+	@Test
+	public void writesOtherValuesLikeMapper() throws Exception {
+		List<String> value = Arrays.asList("a", "b");
+
+		String expected = json.writeValueAsString(value);
+		String actual = codecs.writer(value).writeValueAsString(value);
+
+		assertThat(actual, is(jsonEqualTo(expected)));
+	}
+
+	@Test
+	public void readsBatchLikeMapper() throws Exception {
+		MtBatchTextSmsResult batch = MtBatchTextSmsResult.builder()
+		        .id(TestUtils.freshBatchId())
+		        .body("body")
+		        .canceled(false)
+		        .build();
+
+		byte[] input = json.writeValueAsBytes(batch);
+
+		MtBatchTextSmsResult actual =
+		        codecs.reader(MtBatchTextSmsResult.class).readValue(input);
+
+		assertThat(actual, is(batch));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void rejectsUnknownReadType() throws Exception {
+		codecs.reader(String.class);
+	}
+
+}
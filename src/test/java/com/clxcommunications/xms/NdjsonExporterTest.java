@@ -0,0 +1,260 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.http.NameValuePair;
+import org.apache.http.concurrent.BasicFuture;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+
+public class NdjsonExporterTest {
+
+	@Rule
+	public final TemporaryFolder tmp = new TemporaryFolder();
+
+	private final ObjectReader rawPageReader =
+	        new ApiObjectMapper().readerFor(RawPage.class);
+
+	/**
+	 * An exporter serving a listing of the given total size, where each
+	 * element is a JSON object holding its index. Page requests are only
+	 * completed when the test says so.
+	 */
+	private class StubExporter extends NdjsonExporter {
+
+		final int totalSize;
+
+		final int pageSize;
+
+		final List<Integer> requested = new ArrayList<Integer>();
+
+		final List<String> paths = new ArrayList<String>();
+
+		boolean failSecondPage = false;
+
+		StubExporter(int concurrency, boolean gzip, int totalSize,
+		        int pageSize) {
+			super(null, concurrency, gzip);
+			this.totalSize = totalSize;
+			this.pageSize = pageSize;
+		}
+
+		@Override
+		Future<RawPage> fetchRawPage(String path,
+		        List<NameValuePair> params) {
+			int page = Integer.parseInt(params.get(0).getValue());
+
+			requested.add(page);
+			paths.add(path);
+
+			BasicFuture<RawPage> future = new BasicFuture<RawPage>(null);
+
+			if (failSecondPage && page == 1) {
+				future.failed(new IOException("boom"));
+			} else {
+				try {
+					future.completed(rawPageReader.<RawPage> readValue(
+					        pageJson(page, pageSize, totalSize)));
+				} catch (IOException e) {
+					future.failed(e);
+				}
+			}
+
+			return future;
+		}
+
+	}
+
+	private static String pageJson(int page, int pageSize, int totalSize) {
+		int from = Math.min(page * pageSize, totalSize);
+		int to = Math.min(from + pageSize, totalSize);
+
+		StringBuilder sb = new StringBuilder();
+		sb.append("{\"count\": ").append(totalSize);
+		sb.append(", \"page\": ").append(page);
+		sb.append(", \"batches\": [");
+
+		for (int i = from; i < to; i++) {
+			if (i > from) {
+				sb.append(", ");
+			}
+			sb.append("{ \"id\": \"b").append(i)
+			        .append("\", \"tags\": [\"x\", \"y\"], \"n\": ").append(i)
+			        .append(" }");
+		}
+
+		sb.append("], \"page_size\": ").append(to - from).append("}");
+
+		return sb.toString();
+	}
+
+	private static List<String> expectedLines(int totalSize) {
+		List<String> lines = new ArrayList<String>();
+		for (int i = 0; i < totalSize; i++) {
+			lines.add("{\"id\":\"b" + i + "\",\"tags\":[\"x\",\"y\"],\"n\":" + i
+			        + "}");
+		}
+		return lines;
+	}
+
+	private static List<String> readLines(InputStream is) throws IOException {
+		BufferedReader reader = new BufferedReader(
+		        new InputStreamReader(is, StandardCharsets.UTF_8));
+
+		List<String> lines = new ArrayList<String>();
+
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lines.add(line);
+			}
+		} finally {
+			reader.close();
+		}
+
+		return lines;
+	}
+
+	@Test
+	public void readsRawPage() throws Exception {
+		RawPage page = rawPageReader.readValue(pageJson(1, 2, 3));
+
+		assertThat(page.page(), is(1));
+		assertThat(page.size(), is(1));
+		assertThat(page.totalSize(), is(3));
+
+		byte[] bytes = new byte[page.content().remaining()];
+		page.content().get(bytes);
+
+		assertThat(new String(bytes, StandardCharsets.UTF_8),
+		        is("{\"id\":\"b2\",\"tags\":[\"x\",\"y\"],\"n\":2}\n"));
+	}
+
+	@Test
+	public void readsEmptyRawPage() throws Exception {
+		RawPage page = rawPageReader.readValue(pageJson(0, 10, 0));
+
+		assertThat(page.size(), is(0));
+		assertThat(page.content().remaining(), is(0));
+	}
+
+	@Test
+	public void exportsToChannelInPageOrder() throws Exception {
+		StubExporter exporter = new StubExporter(3, false, 25, 4);
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+		long count = exporter.exportBatches(BatchFilter.builder().build(),
+		        Channels.newChannel(baos));
+
+		assertThat(count, is(25L));
+		assertThat(exporter.requested,
+		        is(Arrays.asList(0, 1, 2, 3, 4, 5, 6)));
+		assertThat(readLines(new ByteArrayInputStream(
+		        baos.toByteArray())), is(expectedLines(25)));
+	}
+
+	@Test
+	public void exportsPlainFile() throws Exception {
+		File file = tmp.newFile();
+		StubExporter exporter = new StubExporter(2, false, 10, 3);
+
+		long count =
+		        exporter.exportGroups(GroupFilter.builder().build(), file);
+
+		assertThat(count, is(10L));
+		assertThat(exporter.paths.get(0), is("/groups"));
+		assertThat(readLines(new FileInputStream(file)),
+		        is(expectedLines(10)));
+	}
+
+	@Test
+	public void exportsGzipFile() throws Exception {
+		File file = tmp.newFile();
+		StubExporter exporter = new StubExporter(4, true, 100, 7);
+
+		long count = exporter.exportInbounds(
+		        InboundsFilter.builder().build(), file);
+
+		assertThat(count, is(100L));
+		assertThat(exporter.paths.get(0), is("/inbounds"));
+		assertThat(readLines(new GZIPInputStream(new FileInputStream(file))),
+		        is(expectedLines(100)));
+	}
+
+	@Test
+	public void exportsEmptyListing() throws Exception {
+		StubExporter exporter = new StubExporter(4, false, 0, 10);
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+		long count = exporter.exportBatches(BatchFilter.builder().build(),
+		        Channels.newChannel(baos));
+
+		assertThat(count, is(0L));
+		assertThat(baos.size(), is(0));
+		assertThat(exporter.requested, is(Arrays.asList(0)));
+	}
+
+	@Test
+	public void failedPageAbortsExport() throws Exception {
+		StubExporter exporter = new StubExporter(2, false, 10, 2);
+		exporter.failSecondPage = true;
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+		try {
+			exporter.exportBatches(BatchFilter.builder().build(),
+			        Channels.newChannel(baos));
+			fail("expected exception");
+		} catch (RuntimeApiException e) {
+			assertThat(e.getCause() instanceof ConcurrentException, is(true));
+		}
+
+		assertThat(readLines(new ByteArrayInputStream(
+		        baos.toByteArray())), is(expectedLines(2)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsNonPositiveConcurrency() throws Exception {
+		new StubExporter(0, false, 0, 1);
+	}
+
+}
@@ -0,0 +1,252 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.FutureCallback;
+import org.junit.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import com.clxcommunications.xms.api.Page;
+
+public class PagePublisherTest {
+
+	/**
+	 * A subscriber recording all received signals.
+	 */
+	private static class RecordingSubscriber implements Subscriber<Integer> {
+
+		Subscription subscription;
+
+		final List<Integer> elements = new ArrayList<Integer>();
+
+		Throwable error;
+
+		boolean completed;
+
+		@Override
+		public void onSubscribe(Subscription s) {
+			subscription = s;
+		}
+
+		@Override
+		public void onNext(Integer t) {
+			elements.add(t);
+		}
+
+		@Override
+		public void onError(Throwable t) {
+			error = t;
+		}
+
+		@Override
+		public void onComplete() {
+			completed = true;
+		}
+
+	}
+
+	/**
+	 * A fetcher that synchronously completes fetches of the given pages and
+	 * records the requested page numbers.
+	 */
+	private static class SyncFetcher extends PagedFetcher<Integer> {
+
+		final List<List<Integer>> pages;
+
+		final List<Integer> requested = new ArrayList<Integer>();
+
+		Exception failure;
+
+		SyncFetcher(List<List<Integer>> pages) {
+			this.pages = pages;
+		}
+
+		@Override
+		Future<Page<Integer>> fetchAsync(final int page,
+		        FutureCallback<Page<Integer>> callback) {
+			requested.add(page);
+
+			BasicFuture<Page<Integer>> future =
+			        new BasicFuture<Page<Integer>>(callback);
+
+			if (failure != null) {
+				future.failed(failure);
+			} else {
+				future.completed(page(page));
+			}
+
+			return future;
+		}
+
+		private Page<Integer> page(final int pageNum) {
+			int total = 0;
+			for (List<Integer> p : pages) {
+				total += p.size();
+			}
+			final int totalSize = total;
+
+			return new Page<Integer>() {
+
+				@Override
+				public int page() {
+					return pageNum;
+				}
+
+				@Override
+				public int size() {
+					return pages.get(pageNum).size();
+				}
+
+				@Override
+				public int totalSize() {
+					return totalSize;
+				}
+
+				@Override
+				public List<Integer> content() {
+					return pages.get(pageNum);
+				}
+
+			};
+		}
+
+	}
+
+	private final SyncFetcher fetcher = new SyncFetcher(
+	        Arrays.asList(Arrays.asList(1, 2), Arrays.asList(3, 4),
+	                Arrays.asList(5)));
+
+	@Test
+	public void fetchesNothingWithoutDemand() throws Exception {
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+
+		fetcher.publisher().subscribe(subscriber);
+
+		assertThat(fetcher.requested.isEmpty(), is(true));
+	}
+
+	@Test
+	public void fetchesPagesOnDemand() throws Exception {
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+
+		fetcher.publisher().subscribe(subscriber);
+
+		subscriber.subscription.request(1);
+
+		assertThat(subscriber.elements, is(Arrays.asList(1)));
+		assertThat(fetcher.requested, is(Arrays.asList(0)));
+
+		subscriber.subscription.request(1);
+
+		assertThat(subscriber.elements, is(Arrays.asList(1, 2)));
+		assertThat(fetcher.requested, is(Arrays.asList(0)));
+
+		subscriber.subscription.request(1);
+
+		assertThat(subscriber.elements, is(Arrays.asList(1, 2, 3)));
+		assertThat(fetcher.requested, is(Arrays.asList(0, 1)));
+		assertThat(subscriber.completed, is(false));
+	}
+
+	@Test
+	public void completesAfterLastPage() throws Exception {
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+
+		fetcher.publisher().subscribe(subscriber);
+
+		subscriber.subscription.request(Long.MAX_VALUE);
+
+		assertThat(subscriber.elements, is(Arrays.asList(1, 2, 3, 4, 5)));
+		assertThat(fetcher.requested, is(Arrays.asList(0, 1, 2)));
+		assertThat(subscriber.completed, is(true));
+		assertThat(subscriber.error, is(nullValue()));
+	}
+
+	@Test
+	public void completesOnEmptyListing() throws Exception {
+		SyncFetcher empty = new SyncFetcher(
+		        Collections.singletonList(Collections.<Integer> emptyList()));
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+
+		empty.publisher().subscribe(subscriber);
+
+		subscriber.subscription.request(1);
+
+		assertThat(subscriber.elements.isEmpty(), is(true));
+		assertThat(subscriber.completed, is(true));
+	}
+
+	@Test
+	public void signalsFetchFailure() throws Exception {
+		Exception failure = new IOException("oops");
+		fetcher.failure = failure;
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+
+		fetcher.publisher().subscribe(subscriber);
+
+		subscriber.subscription.request(1);
+
+		assertThat(subscriber.error, is(sameInstance((Throwable) failure)));
+		assertThat(subscriber.completed, is(false));
+	}
+
+	@Test
+	public void stopsFetchingAfterCancel() throws Exception {
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+
+		fetcher.publisher().subscribe(subscriber);
+
+		subscriber.subscription.request(2);
+		subscriber.subscription.cancel();
+		subscriber.subscription.request(10);
+
+		assertThat(subscriber.elements, is(Arrays.asList(1, 2)));
+		assertThat(fetcher.requested, is(Arrays.asList(0)));
+		assertThat(subscriber.completed, is(false));
+	}
+
+	@Test
+	public void rejectsNonPositiveRequest() throws Exception {
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+
+		fetcher.publisher().subscribe(subscriber);
+
+		subscriber.subscription.request(0);
+
+		assertThat(subscriber.error,
+		        is(instanceOf(IllegalArgumentException.class)));
+	}
+
+}
@@ -19,21 +19,28 @@
  */
 package com.clxcommunications.xms;
 
+import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.hasSize;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 import static org.junit.Assume.assumeThat;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import org.apache.http.concurrent.FutureCallback;
+import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import com.clxcommunications.xms.api.Page;
@@ -99,6 +106,238 @@ public class PagedFetcherTest {
 		assertThat(actual, is(expected));
 	}
 
+	@Property
+	public void canIterateOverPagesWithPrefetch(
+	        final List<List<Integer>> pages) throws Exception {
+		// We are always able to fetch at least one page from XMS.
+		assumeThat(pages, hasSize(greaterThanOrEqualTo(1)));
+
+		PagedFetcher<Integer> fetcher = mockedFetcher(pages);
+
+		List<List<Integer>> actual = new ArrayList<List<Integer>>();
+		for (Page<Integer> p : fetcher.pages(3)) {
+			actual.add(new ArrayList<Integer>(p.content()));
+		}
+
+		assertThat(actual, is(pages));
+	}
+
+	@Property
+	public void canIterateOverElementsWithPrefetch(
+	        final List<List<Integer>> pages) throws Exception {
+		// We are always able to fetch at least one page from XMS.
+		assumeThat(pages, hasSize(greaterThanOrEqualTo(1)));
+
+		PagedFetcher<Integer> fetcher = mockedFetcher(pages);
+
+		List<Integer> expected = new ArrayList<Integer>();
+		for (List<Integer> p : pages) {
+			expected.addAll(p);
+		}
+
+		List<Integer> actual = new ArrayList<Integer>();
+		for (int a : fetcher.elements(2)) {
+			actual.add(a);
+		}
+
+		assertThat(actual, is(expected));
+	}
+
+	@Test
+	public void prefetchIsBoundedByDepth() throws Exception {
+		final List<List<Integer>> pages = new ArrayList<List<Integer>>();
+		for (int i = 0; i < 10; i++) {
+			pages.add(Arrays.asList(2 * i, 2 * i + 1));
+		}
+
+		final List<Integer> requested = new ArrayList<Integer>();
+
+		PagedFetcher<Integer> fetcher = new PagedFetcher<Integer>() {
+
+			@Override
+			Future<Page<Integer>> fetchAsync(int page,
+			        FutureCallback<Page<Integer>> callback) {
+				requested.add(page);
+
+				FutureTask<Page<Integer>> task = new FutureTask<Page<Integer>>(
+				        mockedFetchCallable(pages, page));
+				task.run();
+				return task;
+			}
+
+		};
+
+		Iterator<Page<Integer>> it = fetcher.pages(3).iterator();
+
+		it.next();
+		assertThat(requested, is(Arrays.asList(0, 1, 2, 3)));
+
+		it.next();
+		assertThat(requested, is(Arrays.asList(0, 1, 2, 3, 4)));
+
+		while (it.hasNext()) {
+			it.next();
+		}
+
+		// Never requests pages beyond the last one.
+		assertThat(requested.size(), is(10));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsNegativePrefetch() throws Exception {
+		mockedFetcher(new ArrayList<List<Integer>>()).pages(-1);
+	}
+
+	@Test
+	public void canFetchAllInParallelInOrder() throws Exception {
+		List<List<Integer>> pages = uniformPages(23, 5);
+
+		List<Integer> actual = new ArrayList<Integer>();
+		for (int a : callbackFetcher(pages).fetchAllParallel(4)) {
+			actual.add(a);
+		}
+
+		assertThat(actual, is(flatten(pages)));
+	}
+
+	@Test
+	public void canFetchAllInParallelUnordered() throws Exception {
+		List<List<Integer>> pages = uniformPages(23, 5);
+
+		List<Integer> actual = new ArrayList<Integer>();
+		for (int a : callbackFetcher(pages).fetchAllParallel(4, false)) {
+			actual.add(a);
+		}
+
+		Collections.sort(actual);
+
+		assertThat(actual, is(flatten(pages)));
+	}
+
+	@Test
+	public void canFetchSinglePageInParallelUnordered() throws Exception {
+		List<List<Integer>> pages = uniformPages(3, 5);
+
+		List<Integer> actual = new ArrayList<Integer>();
+		for (int a : callbackFetcher(pages).fetchAllParallel(4, false)) {
+			actual.add(a);
+		}
+
+		assertThat(actual, is(flatten(pages)));
+	}
+
+	@Test
+	public void stopsUnorderedIterationOnFailedPage() throws Exception {
+		final List<List<Integer>> pages = uniformPages(25, 5);
+
+		PagedFetcher<Integer> fetcher = new PagedFetcher<Integer>() {
+
+			@Override
+			Future<Page<Integer>> fetchAsync(int page,
+			        FutureCallback<Page<Integer>> callback) {
+				FutureTask<Page<Integer>> task = new FutureTask<Page<Integer>>(
+				        mockedFetchCallable(pages, page));
+				task.run();
+
+				if (callback == null) {
+					return task;
+				} else if (page == 2) {
+					callback.failed(new IOException("page 2"));
+				} else {
+					try {
+						callback.completed(task.get());
+					} catch (Exception e) {
+						callback.failed(e);
+					}
+				}
+
+				return task;
+			}
+
+		};
+
+		Iterator<Page<Integer>> it =
+		        new UnorderedPageIterator<Integer>(fetcher, 2);
+
+		assertThat(it.next().page(), is(0));
+		assertThat(it.next().page(), is(1));
+
+		try {
+			it.next();
+			fail("Expected exception, got none");
+		} catch (RuntimeApiException e) {
+			assertThat(e.getCause().getCause(),
+			        is(instanceOf(IOException.class)));
+		}
+
+		// The failure ends the iteration rather than blocking forever.
+		assertThat(it.hasNext(), is(false));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsNonPositiveConcurrency() throws Exception {
+		callbackFetcher(uniformPages(1, 1)).fetchAllParallel(0);
+	}
+
+	/**
+	 * Splits the integers 0 to <code>n - 1</code> into pages of the given
+	 * size.
+	 */
+	private static List<List<Integer>> uniformPages(int n, int pageSize) {
+		List<List<Integer>> pages = new ArrayList<List<Integer>>();
+
+		for (int i = 0; i < n; i += pageSize) {
+			List<Integer> page = new ArrayList<Integer>();
+			for (int j = i; j < Math.min(n, i + pageSize); j++) {
+				page.add(j);
+			}
+			pages.add(page);
+		}
+
+		return pages;
+	}
+
+	private static List<Integer> flatten(List<List<Integer>> pages) {
+		List<Integer> result = new ArrayList<Integer>();
+		for (List<Integer> p : pages) {
+			result.addAll(p);
+		}
+		return result;
+	}
+
+	/**
+	 * Like {@link #mockedFetcher(List)} but fetches pages concurrently and
+	 * notifies the given callback.
+	 */
+	private static PagedFetcher<Integer> callbackFetcher(
+	        final List<List<Integer>> pages) {
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+		return new PagedFetcher<Integer>() {
+
+			@Override
+			Future<Page<Integer>> fetchAsync(final int page,
+			        final FutureCallback<Page<Integer>> callback) {
+				final Callable<Page<Integer>> callable =
+				        mockedFetchCallable(pages, page);
+
+				return executor.submit(new Callable<Page<Integer>>() {
+
+					@Override
+					public Page<Integer> call() throws Exception {
+						Page<Integer> result = callable.call();
+						if (callback != null) {
+							callback.completed(result);
+						}
+						return result;
+					}
+
+				});
+			}
+
+		};
+	}
+
 	private static PagedFetcher<Integer> mockedFetcher(
 	        final List<List<Integer>> pages) {
 		final ExecutorService executor = Executors.newSingleThreadExecutor();
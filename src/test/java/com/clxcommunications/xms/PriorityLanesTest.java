@@ -0,0 +1,227 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.concurrent.BasicFuture;
+import org.junit.Test;
+
+import com.clxcommunications.testsupport.StubTransport;
+import com.clxcommunications.xms.api.BatchId;
+
+public class PriorityLanesTest {
+
+	/**
+	 * A task that records its name when run.
+	 */
+	private static final class NamedTask implements Runnable {
+
+		private final List<String> log;
+
+		private final String name;
+
+		NamedTask(List<String> log, String name) {
+			this.log = log;
+			this.name = name;
+		}
+
+		@Override
+		public void run() {
+			log.add(name);
+		}
+
+	}
+
+	private final List<String> log = new ArrayList<String>();
+
+	private void acquire(PriorityLanes lanes, Priority priority, String name) {
+		lanes.acquire(priority, new BasicFuture<Void>(null),
+		        new NamedTask(log, name));
+	}
+
+	@Test
+	public void reservesCapacityForHighPriority() throws Exception {
+		PriorityLanes lanes = PriorityLanes.of(3, 1);
+
+		acquire(lanes, Priority.LOW, "low1");
+		acquire(lanes, Priority.NORMAL, "normal1");
+		acquire(lanes, Priority.LOW, "low2");
+		acquire(lanes, Priority.HIGH, "high1");
+
+		assertThat(log.toString(), is("[low1, normal1, high1]"));
+		assertThat(lanes.inFlight(), is(3));
+		assertThat(lanes.queued(Priority.LOW), is(1));
+	}
+
+	@Test
+	public void servesHighestPriorityFirst() throws Exception {
+		PriorityLanes lanes = PriorityLanes.of(1, 0);
+
+		acquire(lanes, Priority.LOW, "low1");
+		acquire(lanes, Priority.LOW, "low2");
+		acquire(lanes, Priority.NORMAL, "normal1");
+		acquire(lanes, Priority.HIGH, "high1");
+		acquire(lanes, Priority.HIGH, "high2");
+
+		for (int i = 0; i < 4; i++) {
+			lanes.release();
+		}
+
+		assertThat(log.toString(),
+		        is("[low1, high1, high2, normal1, low2]"));
+	}
+
+	@Test
+	public void doesNotOvertakeQueuedRequests() throws Exception {
+		PriorityLanes lanes = PriorityLanes.of(2, 1);
+
+		acquire(lanes, Priority.HIGH, "high1");
+		acquire(lanes, Priority.HIGH, "high2");
+		acquire(lanes, Priority.LOW, "low1");
+		lanes.release();
+
+		// One slot is free but it is reserved, the low request must wait.
+		assertThat(log.toString(), is("[high1, high2]"));
+
+		lanes.release();
+		assertThat(log.toString(), is("[high1, high2, low1]"));
+	}
+
+	@Test
+	public void skipsCancelledRequests() throws Exception {
+		PriorityLanes lanes = PriorityLanes.of(1, 0);
+		BasicFuture<Void> cancelled = new BasicFuture<Void>(null);
+
+		acquire(lanes, Priority.LOW, "low1");
+		lanes.acquire(Priority.HIGH, cancelled, new NamedTask(log, "high1"));
+		acquire(lanes, Priority.LOW, "low2");
+		cancelled.cancel();
+
+		lanes.release();
+
+		assertThat(log.toString(), is("[low1, low2]"));
+		assertThat(lanes.inFlight(), is(1));
+	}
+
+	@Test
+	public void drainsQueueOfFailingRequestsIteratively() throws Exception {
+		final PriorityLanes lanes = PriorityLanes.of(1, 0);
+		final List<Priority> runs = new ArrayList<Priority>();
+
+		acquire(lanes, Priority.NORMAL, "first");
+
+		// Each task fails at once and returns its capacity from within.
+		for (int i = 0; i < 100000; i++) {
+			final Priority priority =
+			        (i % 2 == 0) ? Priority.LOW : Priority.HIGH;
+
+			lanes.acquire(priority, new BasicFuture<Void>(null),
+			        new Runnable() {
+
+				        @Override
+				        public void run() {
+					        runs.add(priority);
+					        lanes.release();
+				        }
+
+			        });
+		}
+
+		lanes.release();
+
+		assertThat(runs.size(), is(100000));
+		assertThat(runs.get(49999), is(Priority.HIGH));
+		assertThat(runs.get(50000), is(Priority.LOW));
+		assertThat(lanes.inFlight(), is(0));
+	}
+
+	@Test
+	public void runsQueuedRequestsAfterThrowingRequest() throws Exception {
+		final PriorityLanes lanes = PriorityLanes.of(1, 0);
+
+		acquire(lanes, Priority.NORMAL, "first");
+
+		// Returns its capacity and then throws, like a failing user callback.
+		lanes.acquire(Priority.HIGH, new BasicFuture<Void>(null),
+		        new Runnable() {
+
+			        @Override
+			        public void run() {
+				        lanes.release();
+				        throw new IllegalStateException("callback failed");
+			        }
+
+		        });
+		acquire(lanes, Priority.LOW, "low1");
+
+		lanes.release();
+
+		assertThat(log.toString(), is("[first, low1]"));
+		assertThat(lanes.inFlight(), is(1));
+		assertThat(lanes.queued(Priority.LOW), is(0));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsReservingAllCapacity() throws Exception {
+		PriorityLanes.of(2, 2);
+	}
+
+	@Test
+	public void highPriorityConnectionBypassesBulkWork() throws Exception {
+		StubTransport transport = new StubTransport();
+		List<HttpUriRequest> sent = transport.requests();
+
+		PriorityLanes lanes = PriorityLanes.of(2, 1);
+
+		ApiConnection bulk = transport.connectionBuilder()
+		        .priorityLanes(lanes)
+		        .priority(Priority.LOW)
+		        .build();
+
+		ApiConnection otp = transport.connectionBuilder()
+		        .priorityLanes(lanes)
+		        .priority(Priority.HIGH)
+		        .build();
+
+		bulk.fetchBatchAsync(BatchId.of("bulk1"), null);
+		bulk.fetchBatchAsync(BatchId.of("bulk2"), null);
+		otp.fetchBatchAsync(BatchId.of("otp1"), null);
+
+		assertThat(sent.size(), is(2));
+		assertThat(sent.get(1).getURI().getPath().endsWith("/otp1"),
+		        is(true));
+
+		// The only unreserved slot is still in use by the high priority call.
+		transport.futures().get(0).completed(null);
+		assertThat(sent.size(), is(2));
+
+		transport.futures().get(1).completed(null);
+		assertThat(sent.size(), is(3));
+		assertThat(sent.get(2).getURI().getPath().endsWith("/bulk2"),
+		        is(true));
+	}
+
+}
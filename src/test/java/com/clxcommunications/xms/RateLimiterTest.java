@@ -0,0 +1,275 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import static com.clxcommunications.testsupport.TestUtils.MS;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.threeten.bp.Duration;
+
+import com.clxcommunications.testsupport.StubTransport;
+import com.clxcommunications.xms.api.BatchId;
+
+public class RateLimiterTest {
+
+	private static final long NOW = 1000000 * MS;
+
+	@Test
+	public void admitsBurstThenDelays() throws Exception {
+		RateLimiter limiter = new RateLimiter("spid", RateLimit.builder()
+		        .requestsPerSecond(10)
+		        .build(), NOW);
+
+		for (int i = 0; i < 10; i++) {
+			assertThat(limiter.reserve(0, NOW), is(0L));
+		}
+
+		assertThat(limiter.reserve(0, NOW), is(100 * MS));
+		assertThat(limiter.reserve(0, NOW), is(200 * MS));
+		assertThat(limiter.reserve(0, NOW + 200 * MS), is(100 * MS));
+	}
+
+	@Test
+	public void refillsOverTime() throws Exception {
+		RateLimiter limiter = new RateLimiter("spid", RateLimit.builder()
+		        .requestsPerSecond(10)
+		        .build(), NOW);
+
+		for (int i = 0; i < 10; i++) {
+			limiter.reserve(0, NOW);
+		}
+
+		assertThat(limiter.reserve(0, NOW + 100 * MS), is(0L));
+		assertThat(limiter.reserve(0, NOW + 100 * MS), is(100 * MS));
+	}
+
+	@Test
+	public void weighsMessagesByRecipients() throws Exception {
+		RateLimiter limiter = new RateLimiter("spid", RateLimit.builder()
+		        .messagesPerSecond(100)
+		        .build(), NOW);
+
+		// A large batch is admitted but puts the bucket in debt.
+		assertThat(limiter.reserve(300, NOW), is(0L));
+
+		// Requests that do not send messages are not affected.
+		assertThat(limiter.reserve(0, NOW), is(0L));
+
+		assertThat(limiter.reserve(1, NOW), is(2010 * MS));
+	}
+
+	@Test
+	public void rejectsWhenDelayTooLong() throws Exception {
+		RateLimiter limiter = new RateLimiter("spid", RateLimit.builder()
+		        .requestsPerSecond(1)
+		        .maxQueueDelay(Duration.ofMillis(500))
+		        .build(), NOW);
+
+		assertThat(limiter.reserve(0, NOW), is(0L));
+		assertThat(limiter.reserve(0, NOW), is(-1L));
+		assertThat(limiter.reserve(0, NOW + 600 * MS), is(400 * MS));
+	}
+
+	@Test
+	public void sharesLimiterPerServicePlan() throws Exception {
+		RateLimit limit = RateLimit.builder().requestsPerSecond(5).build();
+
+		RateLimiter a = RateLimiter.acquire("shared-spid", limit);
+		RateLimiter b = RateLimiter.acquire("shared-spid", limit);
+		RateLimiter c = RateLimiter.acquire("other-spid", limit);
+
+		try {
+			assertThat(a, is(sameInstance(b)));
+			assertThat(a == c, is(false));
+		} finally {
+			a.release();
+			b.release();
+			c.release();
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void rejectsConflictingLimitForServicePlan() throws Exception {
+		RateLimiter limiter = RateLimiter.acquire("conflicting-spid",
+		        RateLimit.builder().requestsPerSecond(5).build());
+
+		try {
+			RateLimiter.acquire("conflicting-spid",
+			        RateLimit.builder().requestsPerSecond(50).build());
+		} finally {
+			limiter.release();
+		}
+	}
+
+	@Test
+	public void acceptsNewLimitOnceAllUsersReleased() throws Exception {
+		RateLimit slow = RateLimit.builder().requestsPerSecond(5).build();
+		RateLimit fast = RateLimit.builder().requestsPerSecond(50).build();
+
+		RateLimiter a = RateLimiter.acquire("released-spid", slow);
+		RateLimiter b = RateLimiter.acquire("released-spid", slow);
+
+		a.release();
+
+		try {
+			RateLimiter.acquire("released-spid", fast);
+			fail("expected conflicting limit while still in use");
+		} catch (IllegalStateException e) {
+			// Expected since b still uses the slow limit.
+		}
+
+		b.release();
+
+		RateLimiter c = RateLimiter.acquire("released-spid", fast);
+		c.release();
+
+		assertThat(c == a, is(false));
+	}
+
+	@Test
+	public void closingConnectionsReleasesLimiter() throws Exception {
+		StubTransport transport = new StubTransport();
+		RateLimit slow = RateLimit.builder().requestsPerSecond(5).build();
+		RateLimit fast = RateLimit.builder().requestsPerSecond(50).build();
+
+		ApiConnection first = transport.connectionBuilder()
+		        .servicePlanId("closed-spid")
+		        .rateLimit(slow)
+		        .build();
+		ApiConnection second = transport.connectionBuilder()
+		        .servicePlanId("closed-spid")
+		        .rateLimit(slow)
+		        .build();
+
+		// Closing twice must only release the limiter once.
+		first.close();
+		first.close();
+
+		try {
+			transport.connectionBuilder()
+			        .servicePlanId("closed-spid")
+			        .rateLimit(fast)
+			        .build();
+			fail("expected conflicting limit while still in use");
+		} catch (IllegalStateException e) {
+			// Expected since the second connection still is open.
+		}
+
+		second.close();
+
+		transport.connectionBuilder()
+		        .servicePlanId("closed-spid")
+		        .rateLimit(fast)
+		        .build()
+		        .close();
+	}
+
+	@Test
+	public void failedBuildReleasesLimiter() throws Exception {
+		StubTransport transport = new StubTransport();
+		RateLimit slow = RateLimit.builder().requestsPerSecond(5).build();
+		RateLimit fast = RateLimit.builder().requestsPerSecond(50).build();
+
+		try {
+			transport.connectionBuilder()
+			        .servicePlanId("invalid-spid")
+			        .endpoint("https://localhost:3000/basepath?query")
+			        .rateLimit(slow)
+			        .build();
+			fail("expected invalid endpoint");
+		} catch (IllegalStateException e) {
+			// Expected.
+		}
+
+		transport.connectionBuilder()
+		        .servicePlanId("invalid-spid")
+		        .rateLimit(fast)
+		        .build()
+		        .close();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void rejectsNegativeRate() throws Exception {
+		RateLimit.builder().messagesPerSecond(-1).build();
+	}
+
+	@Test
+	public void connectionRejectsRequestsOverLimit() throws Exception {
+		StubTransport transport = new StubTransport();
+
+		ApiConnection conn = transport.connectionBuilder()
+		        .servicePlanId("rate-limited-spid")
+		        .rateLimit(RateLimit.builder()
+		                .requestsPerSecond(0.001)
+		                .maxQueueDelay(Duration.ZERO)
+		                .build())
+		        .build();
+
+		conn.fetchBatchAsync(BatchId.of("batchid"), null);
+		Future<?> rejected = conn.fetchBatchAsync(BatchId.of("batchid"), null);
+
+		assertThat(transport.executions(), is(1));
+
+		try {
+			rejected.get();
+			fail("expected rejection");
+		} catch (ExecutionException e) {
+			assertThat(e.getCause() instanceof RateLimitExceededException,
+			        is(true));
+		}
+	}
+
+	@Test
+	public void connectionFailsDelayedRequestWhenSendThrows()
+	        throws Exception {
+		IllegalStateException thrown = new IllegalStateException("closed");
+		StubTransport transport = new StubTransport(StubTransport
+		        .throwingAfter(StubTransport.pending(), 1, thrown));
+
+		ApiConnection conn = transport.connectionBuilder()
+		        .servicePlanId("throwing-spid")
+		        .rateLimit(RateLimit.builder()
+		                .requestsPerSecond(1)
+		                .maxQueueDelay(Duration.ofSeconds(2))
+		                .build())
+		        .build();
+
+		conn.fetchBatchAsync(BatchId.of("batchid"), null);
+		Future<?> delayed = conn.fetchBatchAsync(BatchId.of("batchid"), null);
+
+		try {
+			delayed.get(5, TimeUnit.SECONDS);
+			fail("expected failure");
+		} catch (ExecutionException e) {
+			assertThat(e.getCause() == thrown, is(true));
+		}
+
+		assertThat(transport.executions(), is(2));
+	}
+
+}
@@ -0,0 +1,169 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+public class ResponseBufferPoolTest {
+
+	@Test
+	public void allocatesMinimumSizeForUnknownLength() throws Exception {
+		ResponseBufferPool pool = new ResponseBufferPool(2, 1024 * 1024);
+
+		byte[] buf = pool.acquire(-1);
+
+		assertThat(buf.length, is(ResponseBufferPool.MIN_BUFFER_SIZE));
+		assertThat(pool.hits(), is(0L));
+		assertThat(pool.misses(), is(1L));
+	}
+
+	@Test
+	public void allocatesAfterContentLength() throws Exception {
+		ResponseBufferPool pool = new ResponseBufferPool(2, 1024 * 1024);
+
+		byte[] buf = pool.acquire(200 * 1024);
+
+		assertThat(buf.length, is(200 * 1024));
+	}
+
+	@Test
+	public void capsContentLengthAtMaxPooledSize() throws Exception {
+		ResponseBufferPool pool = new ResponseBufferPool(2, 4096);
+
+		assertThat(pool.acquire(8192).length, is(4096));
+		assertThat(pool.acquire(Long.MAX_VALUE).length, is(4096));
+	}
+
+	@Test
+	public void reusesReleasedBuffer() throws Exception {
+		ResponseBufferPool pool = new ResponseBufferPool(2, 1024 * 1024);
+
+		byte[] buf = pool.acquire(2000);
+		pool.release(buf);
+
+		assertThat(pool.acquire(1500), is(sameInstance(buf)));
+		assertThat(pool.hits(), is(1L));
+		assertThat(pool.misses(), is(1L));
+	}
+
+	@Test
+	public void skipsTooSmallPooledBuffer() throws Exception {
+		ResponseBufferPool pool = new ResponseBufferPool(2, 1024 * 1024);
+
+		byte[] buf = pool.acquire(2000);
+		pool.release(buf);
+
+		byte[] larger = pool.acquire(4000);
+
+		assertThat(larger, is(not(sameInstance(buf))));
+		assertThat(larger.length, is(greaterThanOrEqualTo(4000)));
+		assertThat(pool.misses(), is(2L));
+
+		// The small buffer should still be available.
+		assertThat(pool.acquire(-1), is(sameInstance(buf)));
+	}
+
+	@Test
+	public void dropsBuffersBeyondBounds() throws Exception {
+		ResponseBufferPool pool = new ResponseBufferPool(1, 4096);
+
+		byte[] huge = new byte[8192];
+		pool.release(huge);
+
+		assertThat(pool.acquire(-1), is(not(sameInstance(huge))));
+
+		byte[] buf1 = pool.acquire(-1);
+		byte[] buf2 = pool.acquire(-1);
+		pool.release(buf1);
+		pool.release(buf2);
+
+		assertThat(pool.acquire(-1), is(sameInstance(buf1)));
+		assertThat(pool.acquire(-1), is(not(sameInstance(buf2))));
+	}
+
+	@Test
+	public void keepsBuffersPerThread() throws Exception {
+		final ResponseBufferPool pool = new ResponseBufferPool(2, 4096);
+
+		pool.release(pool.acquire(-1));
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+
+		try {
+			executor.submit(new Callable<byte[]>() {
+
+				@Override
+				public byte[] call() throws Exception {
+					return pool.acquire(-1);
+				}
+
+			}).get();
+		} finally {
+			executor.shutdown();
+		}
+
+		assertThat(pool.hits(), is(0L));
+		assertThat(pool.misses(), is(2L));
+	}
+
+	@Test
+	public void dropsBuffersReleasedByOtherThread() throws Exception {
+		final ResponseBufferPool pool = new ResponseBufferPool(2, 4096);
+		final Thread acquirer = Thread.currentThread();
+		final byte[] buf = pool.acquire(-1);
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+
+		try {
+			byte[] reacquired = executor.submit(new Callable<byte[]>() {
+
+				@Override
+				public byte[] call() throws Exception {
+					pool.release(buf, acquirer);
+					return pool.acquire(-1);
+				}
+
+			}).get();
+
+			assertThat(reacquired, is(not(sameInstance(buf))));
+		} finally {
+			executor.shutdown();
+		}
+
+		assertThat(pool.acquire(-1), is(not(sameInstance(buf))));
+		assertThat(pool.hits(), is(0L));
+
+		byte[] own = pool.acquire(-1);
+		pool.release(own, acquirer);
+
+		assertThat(pool.acquire(-1), is(sameInstance(own)));
+	}
+
+}
@@ -0,0 +1,236 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import static com.clxcommunications.testsupport.TestUtils.MS;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.Date;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Test;
+import org.threeten.bp.Duration;
+
+import com.clxcommunications.testsupport.StubTransport;
+import com.clxcommunications.xms.api.BatchId;
+
+public class RetryPolicyTest {
+
+	private static final RetryPolicy FAST = RetryPolicy.builder()
+	        .maxAttempts(3)
+	        .initialBackoff(Duration.ofMillis(1))
+	        .build();
+
+	private static UnexpectedResponseException status(int code) {
+		return new UnexpectedResponseException(
+		        new BasicHttpResponse(HttpVersion.HTTP_1_1, code, "Error"));
+	}
+
+	private static ApiConnection connection(StubTransport transport) {
+		return transport.connectionBuilder().retryPolicy(FAST).build();
+	}
+
+	private static StubTransport failing(int failures, Exception failure) {
+		return new StubTransport(StubTransport.failing(failures, failure));
+	}
+
+	@Test
+	public void retriesIdempotentRequestsOnTransientFailures()
+	        throws Exception {
+		assertThat(RetryPolicy.isRetryable(status(429), true), is(true));
+		assertThat(RetryPolicy.isRetryable(status(502), true), is(true));
+		assertThat(RetryPolicy.isRetryable(status(503), true), is(true));
+		assertThat(RetryPolicy.isRetryable(status(504), true), is(true));
+		assertThat(RetryPolicy.isRetryable(new SocketTimeoutException(), true),
+		        is(true));
+
+		assertThat(RetryPolicy.isRetryable(status(500), true), is(false));
+		assertThat(RetryPolicy.isRetryable(status(400), true), is(false));
+		assertThat(RetryPolicy.isRetryable(
+		        new RateLimitExceededException("spid"), true), is(false));
+	}
+
+	@Test
+	public void retriesOtherRequestsOnlyWhenNotSent() throws Exception {
+		assertThat(RetryPolicy.isRetryable(status(429), false), is(true));
+		assertThat(RetryPolicy.isRetryable(new ConnectException(), false),
+		        is(true));
+
+		assertThat(RetryPolicy.isRetryable(status(503), false), is(false));
+		assertThat(
+		        RetryPolicy.isRetryable(new SocketTimeoutException(), false),
+		        is(false));
+	}
+
+	@Test
+	public void backoffGrowsExponentiallyUpToMax() throws Exception {
+		RetryPolicy policy = RetryPolicy.builder()
+		        .initialBackoff(Duration.ofMillis(100))
+		        .maxBackoff(Duration.ofMillis(1000))
+		        .build();
+
+		assertThat(policy.backoff(1, 0.5), is(50 * MS));
+		assertThat(policy.backoff(2, 0.5), is(100 * MS));
+		assertThat(policy.backoff(3, 0.5), is(200 * MS));
+		assertThat(policy.backoff(5, 0.5), is(500 * MS));
+		assertThat(policy.backoff(40, 0.5), is(500 * MS));
+		assertThat(policy.backoff(3, 0.0), is(0L));
+	}
+
+	@Test
+	public void stopsAfterMaxAttempts() throws Exception {
+		assertThat(FAST.retryDelay(2, status(503), true, 0.5, 0) >= 0,
+		        is(true));
+		assertThat(FAST.retryDelay(3, status(503), true, 0.5, 0), is(-1L));
+	}
+
+	@Test
+	public void honorsRetryAfterSeconds() throws Exception {
+		UnexpectedResponseException e = status(429);
+		e.getResponse().setHeader("Retry-After", "2");
+
+		assertThat(FAST.retryDelay(1, e, false, 0.5, 0), is(2000 * MS));
+	}
+
+	@Test
+	public void honorsRetryAfterDate() throws Exception {
+		long now = 1480000000000L;
+		HttpResponse response =
+		        new BasicHttpResponse(HttpVersion.HTTP_1_1, 503, "Error");
+		response.setHeader("Retry-After",
+		        DateUtils.formatDate(new Date(now + 3000)));
+
+		assertThat(RetryPolicy.retryAfter(response, now), is(3000L));
+	}
+
+	@Test
+	public void givesUpOnLongRetryAfter() throws Exception {
+		UnexpectedResponseException e = status(503);
+		e.getResponse().setHeader("Retry-After", "3600");
+
+		assertThat(FAST.retryDelay(1, e, true, 0.5, 0), is(-1L));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void rejectsZeroAttempts() throws Exception {
+		RetryPolicy.builder().maxAttempts(0).build();
+	}
+
+	@Test
+	public void connectionRetriesFetch() throws Exception {
+		StubTransport transport = failing(2, status(503));
+
+		Future<?> future =
+		        connection(transport).fetchBatchAsync(BatchId.of("b"), null);
+
+		future.get(5, TimeUnit.SECONDS);
+
+		assertThat(transport.executions(), is(3));
+	}
+
+	@Test
+	public void connectionReportsLastFailure() throws Exception {
+		UnexpectedResponseException failure = status(503);
+		StubTransport transport = failing(5, failure);
+
+		Future<?> future =
+		        connection(transport).fetchBatchAsync(BatchId.of("b"), null);
+
+		try {
+			future.get(5, TimeUnit.SECONDS);
+			fail("expected failure");
+		} catch (ExecutionException e) {
+			assertThat(e.getCause() == failure, is(true));
+		}
+
+		assertThat(transport.executions(), is(3));
+	}
+
+	@Test
+	public void connectionFailsWhenRetryThrows() throws Exception {
+		IllegalStateException thrown = new IllegalStateException("closed");
+		StubTransport transport = new StubTransport(StubTransport
+		        .throwingAfter(StubTransport.failing(1, status(503)), 1,
+		                thrown));
+
+		Future<?> future =
+		        connection(transport).fetchBatchAsync(BatchId.of("b"), null);
+
+		try {
+			future.get(5, TimeUnit.SECONDS);
+			fail("expected failure");
+		} catch (ExecutionException e) {
+			assertThat(e.getCause() == thrown, is(true));
+		}
+
+		assertThat(transport.executions(), is(2));
+	}
+
+	@Test
+	public void connectionDoesNotResendCreatedBatch() throws Exception {
+		StubTransport transport = failing(1, status(503));
+
+		Future<?> future = connection(transport).createBatchAsync(
+		        ClxApi.batchTextSms()
+		                .sender("12345")
+		                .addRecipient("987654321")
+		                .body("Hello")
+		                .build(),
+		        null);
+
+		try {
+			future.get(5, TimeUnit.SECONDS);
+			fail("expected failure");
+		} catch (ExecutionException e) {
+			assertThat(e.getCause() instanceof UnexpectedResponseException,
+			        is(true));
+		}
+
+		assertThat(transport.executions(), is(1));
+	}
+
+	@Test
+	public void connectionRetriesUnsentCreateBatch() throws Exception {
+		StubTransport transport = failing(1, new ConnectException());
+
+		Future<?> future = connection(transport).createBatchAsync(
+		        ClxApi.batchTextSms()
+		                .sender("12345")
+		                .addRecipient("987654321")
+		                .body("Hello")
+		                .build(),
+		        null);
+
+		future.get(5, TimeUnit.SECONDS);
+
+		assertThat(transport.executions(), is(2));
+	}
+
+}
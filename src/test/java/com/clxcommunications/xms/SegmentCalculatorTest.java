@@ -0,0 +1,233 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.InputStream;
+
+import org.junit.Test;
+
+import com.clxcommunications.xms.api.MtBatchBinarySmsCreate;
+import com.clxcommunications.xms.api.MtBatchDryRunResult;
+import com.clxcommunications.xms.api.MtBatchSmsCreate;
+import com.clxcommunications.xms.api.MtBatchTextSmsCreate;
+import com.fasterxml.jackson.databind.JsonNode;
+
+public class SegmentCalculatorTest {
+
+	/**
+	 * Synthetic dry run exchanges kept in the <code>synthetic-dryrun</code>
+	 * resource directory. Each fixture holds the query parameters and body of
+	 * a <code>batches/dry_run</code> request together with a response body
+	 * written by hand from the segmentation rules of 3GPP TS 23.038 and TS
+	 * 23.040. They are regression data for the local calculation and have
+	 * not been checked against XMS.
+	 */
+	private static final String[] SYNTHETIC_DRY_RUN_FIXTURES = {
+	        "gsm7-extension",
+	        "gsm7-multipart",
+	        "parameterized",
+	        "ucs2-surrogates"
+	};
+
+	private final ApiObjectMapper json = new ApiObjectMapper();
+
+	private static String repeat(String s, int n) {
+		StringBuilder sb = new StringBuilder(s.length() * n);
+		for (int i = 0; i < n; i++) {
+			sb.append(s);
+		}
+		return sb.toString();
+	}
+
+	@Test
+	public void gsmSinglePart() throws Exception {
+		assertThat(SegmentCalculator.numberOfParts("Hello, world!"), is(1));
+		assertThat(SegmentCalculator.numberOfParts(repeat("a", 160)), is(1));
+		assertThat(SegmentCalculator.encoding("Smörgåsbord @ £5"),
+		        is(SegmentCalculator.ENCODING_TEXT));
+	}
+
+	@Test
+	public void gsmConcatenated() throws Exception {
+		assertThat(SegmentCalculator.numberOfParts(repeat("a", 161)), is(2));
+		assertThat(SegmentCalculator.numberOfParts(repeat("a", 306)), is(2));
+		assertThat(SegmentCalculator.numberOfParts(repeat("a", 307)), is(3));
+	}
+
+	@Test
+	public void gsmExtensionCharactersUseTwoSeptets() throws Exception {
+		assertThat(SegmentCalculator.numberOfParts(repeat("{", 80)), is(1));
+		assertThat(SegmentCalculator.numberOfParts(repeat("€", 81)), is(2));
+		assertThat(SegmentCalculator.encoding("[~]"),
+		        is(SegmentCalculator.ENCODING_TEXT));
+	}
+
+	@Test
+	public void gsmExtensionCharacterIsNotSplit() throws Exception {
+		String text = repeat("a", 152) + "{" + repeat("a", 152);
+
+		assertThat(SegmentCalculator.numberOfParts(text), is(3));
+	}
+
+	@Test
+	public void ucs2Parts() throws Exception {
+		assertThat(SegmentCalculator.numberOfParts(repeat("Ж", 70)), is(1));
+		assertThat(SegmentCalculator.numberOfParts(repeat("Ж", 71)), is(2));
+		assertThat(SegmentCalculator.numberOfParts(repeat("Ж", 134)), is(2));
+		assertThat(SegmentCalculator.numberOfParts(repeat("Ж", 135)), is(3));
+		assertThat(SegmentCalculator.encoding("back`tick"),
+		        is(SegmentCalculator.ENCODING_UNICODE));
+	}
+
+	@Test
+	public void surrogatePairIsNotSplit() throws Exception {
+		String text = repeat("Ж", 66) + "😀" + repeat("Ж", 66);
+
+		assertThat(SegmentCalculator.numberOfParts(text), is(3));
+	}
+
+	@Test
+	public void binaryParts() throws Exception {
+		assertThat(SegmentCalculator.numberOfParts(new byte[6], new byte[134]),
+		        is(1));
+		assertThat(SegmentCalculator.numberOfParts(new byte[0], new byte[141]),
+		        is(2));
+	}
+
+	@Test
+	public void binaryDryRun() throws Exception {
+		MtBatchBinarySmsCreate sms = ClxApi.batchBinarySms()
+		        .sender("12345")
+		        .addRecipient("1", "2", "3")
+		        .udh(new byte[0])
+		        .body(new byte[200])
+		        .build();
+
+		MtBatchDryRunResult result = SegmentCalculator.dryRun(sms, true, null);
+
+		assertThat(result.numberOfRecipients(), is(3));
+		assertThat(result.numberOfMessages(), is(6));
+		assertThat(result.perRecipient().isEmpty(), is(true));
+	}
+
+	@Test
+	public void dryRunExpandsParametersPerRecipient() throws Exception {
+		MtBatchTextSmsCreate sms = ClxApi.batchTextSms()
+		        .sender("12345")
+		        .addRecipient("987654321", "123456789", "555555555")
+		        .body("Hello ${name}, your balance is ${amount}. "
+		                + repeat("Thanks! ", 16))
+		        .putParameter("name",
+		                ClxApi.parameterValues()
+		                        .putSubstitution("987654321", "Jane")
+		                        .putSubstitution("123456789", "Жанна")
+		                        .defaultValue("customer")
+		                        .build())
+		        .putParameter("amount",
+		                ClxApi.parameterValues()
+		                        .defaultValue("€10")
+		                        .build())
+		        .build();
+
+		String janeBody = "Hello Jane, your balance is €10. "
+		        + repeat("Thanks! ", 16);
+		String zhannaBody = "Hello Жанна, your balance is €10. "
+		        + repeat("Thanks! ", 16);
+
+		String response = "{"
+		        + "\"number_of_recipients\":3,"
+		        + "\"number_of_messages\":7,"
+		        + "\"per_recipient\":["
+		        + "{\"recipient\":\"987654321\",\"number_of_parts\":2,"
+		        + "\"body\":\"" + janeBody + "\",\"encoding\":\"text\"},"
+		        + "{\"recipient\":\"123456789\",\"number_of_parts\":3,"
+		        + "\"body\":\"" + zhannaBody + "\",\"encoding\":\"unicode\"}"
+		        + "]}";
+
+		MtBatchDryRunResult expected =
+		        json.readValue(response, MtBatchDryRunResult.class);
+
+		MtBatchDryRunResult local = SegmentCalculator.dryRun(sms, true, 2);
+
+		assertThat(local, is(expected));
+	}
+
+	@Test
+	public void dryRunMatchesSyntheticFixtures() throws Exception {
+		for (String name : SYNTHETIC_DRY_RUN_FIXTURES) {
+			JsonNode fixture;
+
+			String resource = "synthetic-dryrun/" + name + ".json";
+
+			try (InputStream in = SegmentCalculatorTest.class
+			        .getResourceAsStream(resource)) {
+				fixture = json.readTree(in);
+			}
+
+			JsonNode query = fixture.path("query");
+
+			MtBatchSmsCreate sms = json.treeToValue(fixture.get("request"),
+			        MtBatchSmsCreate.class);
+			Boolean perRecipient = query.has("per_recipient")
+			        ? query.get("per_recipient").asBoolean()
+			        : null;
+			Integer numRecipients = query.has("number_of_recipients")
+			        ? query.get("number_of_recipients").asInt()
+			        : null;
+
+			MtBatchDryRunResult expected = json.treeToValue(
+			        fixture.get("response"), MtBatchDryRunResult.class);
+
+			MtBatchDryRunResult local =
+			        SegmentCalculator.dryRun(sms, perRecipient, numRecipients);
+
+			assertThat(name, local, is(expected));
+		}
+	}
+
+	@Test
+	public void binaryUsesSinglePartForLongHeader() throws Exception {
+		assertThat(SegmentCalculator.numberOfParts(new byte[134],
+		        new byte[6]), is(1));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsHeaderTooLongForConcatenation() throws Exception {
+		SegmentCalculator.numberOfParts(new byte[134], new byte[7]);
+	}
+
+	@Test
+	public void dryRunWithoutPerRecipient() throws Exception {
+		MtBatchTextSmsCreate sms = ClxApi.batchTextSms()
+		        .sender("12345")
+		        .addRecipient("1", "2")
+		        .body(repeat("a", 200))
+		        .build();
+
+		MtBatchDryRunResult result = SegmentCalculator.dryRun(sms, null, null);
+
+		assertThat(result.numberOfMessages(), is(4));
+		assertThat(result.perRecipient().isEmpty(), is(true));
+	}
+
+}
@@ -0,0 +1,177 @@
+/*-
+ * #%L
+ * SDK for CLX XMS
+ * %%
+ * Copyright (C) 2016 CLX Communications
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.clxcommunications.xms;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.clxcommunications.xms.api.MtBatchTextSmsCreate;
+import com.clxcommunications.xms.api.ParameterValues;
+
+public class TemplateBatchBuilderTest {
+
+	private static List<MtBatchTextSmsCreate> batches(TemplateBatchBuilder b) {
+		List<MtBatchTextSmsCreate> list = new ArrayList<MtBatchTextSmsCreate>();
+		for (MtBatchTextSmsCreate batch : b.batches()) {
+			list.add(batch);
+		}
+		return list;
+	}
+
+	/**
+	 * Expands the template of the given batch for the given recipient, the
+	 * same way XMS does.
+	 */
+	private static String expand(MtBatchTextSmsCreate batch,
+	        String recipient) {
+		String text = batch.body();
+
+		for (Map.Entry<String, ParameterValues> entry : batch.parameters()
+		        .entrySet()) {
+			ParameterValues pv = entry.getValue();
+			String value = pv.substitutions().get(recipient);
+			if (value == null) {
+				value = pv.defaultValue();
+			}
+			text = text.replace("${" + entry.getKey() + "}", value);
+		}
+
+		return text;
+	}
+
+	@Test
+	public void findsTemplateParameters() throws Exception {
+		TemplateBatchBuilder b = TemplateBatchBuilder.of("12345",
+		        "Hi ${name}, ${name}! Code ${code}.");
+
+		assertThat(b.parameters(), is(Arrays.asList("name", "code")));
+	}
+
+	@Test
+	public void usesMostCommonValueAsDefault() throws Exception {
+		TemplateBatchBuilder b =
+		        TemplateBatchBuilder.of("12345", "Hi ${name}, ${greeting}");
+
+		b.addRow("1", "Jane", "welcome");
+		b.addRow("2", "John", "welcome");
+		b.addRow("3", "Jane", "welcome");
+		b.addRow("4", "Jill", "hello");
+
+		List<MtBatchTextSmsCreate> batches = batches(b);
+
+		assertThat(batches.size(), is(1));
+
+		MtBatchTextSmsCreate batch = batches.get(0);
+		ParameterValues name = batch.parameters().get("name");
+		ParameterValues greeting = batch.parameters().get("greeting");
+
+		assertThat(batch.recipients(), is(Arrays.asList("1", "2", "3", "4")));
+		assertThat(name.defaultValue(), is("Jane"));
+		assertThat(name.substitutions().keySet().size(), is(2));
+		assertThat(greeting.defaultValue(), is("welcome"));
+		assertThat(greeting.substitutions(),
+		        is(Collections.singletonMap("4", "hello")));
+
+		assertThat(expand(batch, "1"), is("Hi Jane, welcome"));
+		assertThat(expand(batch, "2"), is("Hi John, welcome"));
+		assertThat(expand(batch, "4"), is("Hi Jill, hello"));
+	}
+
+	@Test
+	public void splitsIntoBatchesOfMaxRecipients() throws Exception {
+		TemplateBatchBuilder b = TemplateBatchBuilder.of("12345", "${code}")
+		        .maxRecipients(10);
+
+		for (int i = 0; i < 25; i++) {
+			b.addRow("r" + i, "c" + i);
+		}
+
+		List<MtBatchTextSmsCreate> batches = batches(b);
+
+		assertThat(b.rowCount(), is(25));
+		assertThat(b.batchCount(), is(3));
+		assertThat(batches.size(), is(3));
+		assertThat(batches.get(2).recipients().size(), is(5));
+
+		for (int i = 0; i < 25; i++) {
+			MtBatchTextSmsCreate batch = batches.get(i / 10);
+			assertThat(expand(batch, "r" + i), is("c" + i));
+		}
+	}
+
+	@Test
+	public void acceptsMapRowsAndFallbacks() throws Exception {
+		TemplateBatchBuilder b =
+		        TemplateBatchBuilder.of("12345", "Hi ${name} ${code}")
+		                .defaultValue("name", "friend");
+
+		Map<String, String> row = new HashMap<String, String>();
+		row.put("code", "1");
+		b.addRow("1", row);
+		b.addRow("2", null, "2");
+
+		MtBatchTextSmsCreate batch = batches(b).get(0);
+
+		assertThat(expand(batch, "1"), is("Hi friend 1"));
+		assertThat(expand(batch, "2"), is("Hi friend 2"));
+	}
+
+	@Test
+	public void plainBodyHasNoParameters() throws Exception {
+		TemplateBatchBuilder b = TemplateBatchBuilder.of("12345", "Hello");
+
+		b.addRow("1");
+		b.addRow("2");
+
+		MtBatchTextSmsCreate batch = batches(b).get(0);
+
+		assertThat(batch.parameters().isEmpty(), is(true));
+		assertThat(batch.recipients(), is(Arrays.asList("1", "2")));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsUnknownParameter() throws Exception {
+		Map<String, String> row = new HashMap<String, String>();
+		row.put("other", "x");
+
+		TemplateBatchBuilder.of("12345", "Hi ${name}").addRow("1", row);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsMissingValueWithoutDefault() throws Exception {
+		TemplateBatchBuilder.of("12345", "Hi ${name}")
+		        .addRow("1", (String) null);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsWrongNumberOfValues() throws Exception {
+		TemplateBatchBuilder.of("12345", "Hi ${name}").addRow("1", "a", "b");
+	}
+
+}